@@ -34,11 +34,26 @@ public class EnrichmentWorkerBuilder {
    */
   public static final int DEFAULT_BATCH_SIZE_ENRICHMENT = 20;
 
+  /**
+   * The default value of the maximum number of dereference calls that are performed concurrently.
+   * It's currently set to {@value EnrichmentWorkerBuilder#DEFAULT_DEREFERENCE_PARALLELISM} calls.
+   */
+  public static final int DEFAULT_DEREFERENCE_PARALLELISM = 4;
+
+  /**
+   * The default value of the maximum amount of time, in milliseconds, we wait for the result of a
+   * single dereference call. It's currently set to {@value EnrichmentWorkerBuilder#DEFAULT_DEREFERENCE_TIMEOUT}
+   * milliseconds.
+   */
+  public static final int DEFAULT_DEREFERENCE_TIMEOUT = 300_000;
+
   private String dereferenceUrl = null;
   private String enrichmentUrl = null;
   private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
   private int responseTimeout = DEFAULT_RESPONSE_TIMEOUT;
   private int batchSizeEnrichment = DEFAULT_BATCH_SIZE_ENRICHMENT;
+  private int dereferenceParallelism = DEFAULT_DEREFERENCE_PARALLELISM;
+  private int dereferenceTimeout = DEFAULT_DEREFERENCE_TIMEOUT;
 
   /**
    * Set the URL of the dereferencing service. The default is null. If set to a blank value, the
@@ -107,6 +122,40 @@ public class EnrichmentWorkerBuilder {
     return this;
   }
 
+  /**
+   * Set the maximum number of dereference calls that are performed concurrently. The default (when
+   * not calling this method) is {@value EnrichmentWorkerBuilder#DEFAULT_DEREFERENCE_PARALLELISM}
+   * calls. This limit applies to the worker as a whole, not to every record separately.
+   *
+   * @param dereferenceParallelism The maximum number of concurrent dereference calls. Must be
+   * strictly positive. If 1, dereferencing is performed sequentially.
+   * @return This instance, for convenience.
+   */
+  public EnrichmentWorkerBuilder setDereferenceParallelism(int dereferenceParallelism) {
+    if (dereferenceParallelism < 1) {
+      throw new IllegalArgumentException("Dereference parallelism cannot be 0 or negative.");
+    }
+    this.dereferenceParallelism = dereferenceParallelism;
+    return this;
+  }
+
+  /**
+   * Set the maximum amount of time, in milliseconds, that a single dereference call (including
+   * retries) may take, measured from the moment the call starts. All calls for one record together
+   * may take this amount of time for every round of calls that the parallelism requires. The
+   * default (when not calling this method) is {@value
+   * EnrichmentWorkerBuilder#DEFAULT_DEREFERENCE_TIMEOUT} milliseconds. This only applies when
+   * dereferencing is performed concurrently (see {@link #setDereferenceParallelism(int)}).
+   *
+   * @param dereferenceTimeout The maximum amount of time, in milliseconds, that a dereference call
+   * may take. If not positive, this signifies that we wait indefinitely.
+   * @return This instance, for convenience.
+   */
+  public EnrichmentWorkerBuilder setDereferenceTimeout(int dereferenceTimeout) {
+    this.dereferenceTimeout = dereferenceTimeout;
+    return this;
+  }
+
   /**
    * Builds an {@link EnrichmentWorker} according to the parameters that are set.
    *
@@ -139,7 +188,8 @@ public class EnrichmentWorkerBuilder {
     }
 
     // Done.
-    return new EnrichmentWorkerImpl(dereferenceClient, enrichmentClient, new EntityMergeEngine());
+    return new EnrichmentWorkerImpl(dereferenceClient, enrichmentClient, new EntityMergeEngine(),
+            dereferenceParallelism, dereferenceTimeout);
   }
 
   private RestTemplate createRestTemplate() {
@@ -20,6 +20,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.jibx.runtime.JiBXException;
@@ -28,19 +38,28 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.client.HttpClientErrorException.BadRequest;
 
 /**
- * This class performs the task of dereferencing and enrichment for a given RDF document.
+ * This class performs the task of dereferencing and enrichment for a given RDF document. Resources
+ * that are not found in our own entity collection are dereferenced concurrently (if so
+ * configured), on worker threads that are shared by all documents processed by this instance. These
+ * threads are daemon threads that are released when they are idle for some time, so instances of
+ * this class don't need to be closed.
  */
 public class EnrichmentWorkerImpl implements EnrichmentWorker {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EnrichmentWorkerImpl.class);
 
+  private static final long DEREFERENCE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
   private final EnrichmentClient enrichmentClient;
   private final DereferenceClient dereferenceClient;
   private final EntityMergeEngine entityMergeEngine;
   private final Set<Mode> supportedModes;
+  private final ExecutorService dereferenceExecutor;
+  private final int dereferenceParallelism;
+  private final long dereferenceTimeout;
 
   /**
-   * Constructor.
+   * Constructor. Dereferencing is performed sequentially and without time limit.
    *
    * @param dereferenceClient The dereference client.
    * @param enrichmentClient The enrichment client.
@@ -48,9 +67,35 @@ public class EnrichmentWorkerImpl implements EnrichmentWorker {
    */
   EnrichmentWorkerImpl(DereferenceClient dereferenceClient, EnrichmentClient enrichmentClient,
       EntityMergeEngine entityMergeEngine) {
+    this(dereferenceClient, enrichmentClient, entityMergeEngine, 1, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param dereferenceClient The dereference client.
+   * @param enrichmentClient The enrichment client.
+   * @param entityMergeEngine The engine to be used for merging entities into the RDF.
+   * @param dereferenceParallelism The maximum number of dereference calls that are performed
+   * concurrently. If this is 1 (or less), dereferencing is performed sequentially in the calling
+   * thread.
+   * @param dereferenceTimeout The maximum amount of time, in milliseconds, that a single
+   * dereference call (including retries) may take, measured from the moment the call starts (so
+   * excluding the time it waits for a worker thread). In addition, all dereference calls for one
+   * record together may take no longer than this timeout multiplied by the number of rounds
+   * needed to perform them with the given parallelism, measured from the moment the first of them
+   * starts. If not positive, this signifies that we wait indefinitely. This only applies if
+   * dereferencing is performed concurrently.
+   */
+  EnrichmentWorkerImpl(DereferenceClient dereferenceClient, EnrichmentClient enrichmentClient,
+      EntityMergeEngine entityMergeEngine, int dereferenceParallelism, long dereferenceTimeout) {
     this.dereferenceClient = dereferenceClient;
     this.enrichmentClient = enrichmentClient;
     this.entityMergeEngine = entityMergeEngine;
+    this.dereferenceExecutor = dereferenceClient != null && dereferenceParallelism > 1
+        ? createDereferenceExecutor(dereferenceParallelism) : null;
+    this.dereferenceParallelism = Math.max(dereferenceParallelism, 1);
+    this.dereferenceTimeout = dereferenceTimeout;
     supportedModes = EnumSet.noneOf(Mode.class);
     if (dereferenceClient != null) {
       supportedModes.add(Mode.DEREFERENCE_ONLY);
@@ -63,6 +108,20 @@ public class EnrichmentWorkerImpl implements EnrichmentWorker {
     }
   }
 
+  private static ExecutorService createDereferenceExecutor(int parallelism) {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+        DEREFERENCE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        runnable -> {
+          final Thread thread = new Thread(runnable,
+              "dereference-worker-" + threadCounter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   @Override
   public Set<Mode> getSupportedModes() {
     return Collections.unmodifiableSet(supportedModes);
@@ -261,16 +320,108 @@ public class EnrichmentWorkerImpl implements EnrichmentWorker {
         .collect(Collectors.toSet());
 
     // For the remaining ones, get them from the dereference service.
-    for (String resourceId : resourceIds) {
-      if (!foundOwnEntityIds.contains(resourceId)) {
+    final List<String> remainingResourceIds = resourceIds.stream()
+        .filter(resourceId -> !foundOwnEntityIds.contains(resourceId))
+        .collect(Collectors.toList());
+    if (dereferenceExecutor == null || remainingResourceIds.size() < 2) {
+      for (String resourceId : remainingResourceIds) {
         result.addAll(dereferenceExternalEntity(resourceId));
       }
+    } else {
+      result.addAll(dereferenceExternalEntitiesConcurrently(remainingResourceIds));
     }
 
     // Done.
     return result;
   }
 
+  private List<EnrichmentBaseWrapper> dereferenceExternalEntitiesConcurrently(
+      List<String> resourceIds) throws DereferenceOrEnrichException {
+
+    // Submit all calls. The tasks and futures are kept in the order of the resource IDs.
+    final AtomicReference<Long> recordStartTime = new AtomicReference<>();
+    final List<DereferenceTask> tasks = new ArrayList<>(resourceIds.size());
+    final List<Future<List<EnrichmentBaseWrapper>>> futures = new ArrayList<>(resourceIds.size());
+    for (String resourceId : resourceIds) {
+      final DereferenceTask task = new DereferenceTask(resourceId, recordStartTime);
+      tasks.add(task);
+      futures.add(dereferenceExecutor.submit(task));
+    }
+
+    // The record may take as many timeouts as there are rounds of calls given the parallelism.
+    final long recordTimeout = TimeUnit.MILLISECONDS.toNanos(dereferenceTimeout)
+        * ((resourceIds.size() + dereferenceParallelism - 1) / dereferenceParallelism);
+
+    // Collect the results in that same order, so that they don't depend on the completion order.
+    final List<EnrichmentBaseWrapper> result = new ArrayList<>();
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        result.addAll(getDereferenceResult(futures.get(i), tasks.get(i), recordStartTime,
+            recordTimeout));
+      }
+    } finally {
+      // In case of failure, we don't need the other results anymore.
+      futures.forEach(future -> future.cancel(true));
+    }
+    return result;
+  }
+
+  private List<EnrichmentBaseWrapper> getDereferenceResult(
+      Future<List<EnrichmentBaseWrapper>> future, DereferenceTask task,
+      AtomicReference<Long> recordStartTime, long recordTimeout)
+      throws DereferenceOrEnrichException {
+    try {
+      return dereferenceTimeout > 0 ? waitForDereferenceResult(future, task, recordStartTime,
+          recordTimeout) : future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DereferenceOrEnrichException("Interrupted while performing dereferencing.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DereferenceOrEnrichException) {
+        throw (DereferenceOrEnrichException) e.getCause();
+      }
+      throw new DereferenceOrEnrichException(
+          "Exception occurred while trying to perform dereferencing.", e.getCause());
+    }
+  }
+
+  private List<EnrichmentBaseWrapper> waitForDereferenceResult(
+      Future<List<EnrichmentBaseWrapper>> future, DereferenceTask task,
+      AtomicReference<Long> recordStartTime, long recordTimeout)
+      throws InterruptedException, ExecutionException, DereferenceOrEnrichException {
+    final long callTimeout = TimeUnit.MILLISECONDS.toNanos(dereferenceTimeout);
+    while (true) {
+
+      // Deadlines are measured from the moment the calls start, so that time spent waiting in
+      // the queue of the (shared) executor is not counted. Until the first call of the record has
+      // started, we wait one call timeout at the time and then check again.
+      final Long callStart = task.getStartTime();
+      final Long recordStart = recordStartTime.get();
+      final long now = System.nanoTime();
+      final long remainingForRecord =
+          recordStart == null ? callTimeout : (recordStart + recordTimeout - now);
+      final long remainingForCall =
+          callStart == null ? Long.MAX_VALUE : (callStart + callTimeout - now);
+      if (remainingForCall <= 0) {
+        throw new DereferenceOrEnrichException(String
+            .format("Dereferencing of %s did not complete within %d milliseconds.",
+                task.getResourceId(), dereferenceTimeout));
+      }
+      if (remainingForRecord <= 0) {
+        throw new DereferenceOrEnrichException(String
+            .format("Dereferencing of the record did not complete within %d milliseconds.",
+                TimeUnit.NANOSECONDS.toMillis(recordTimeout)));
+      }
+
+      // Wait until the first of the deadlines and then evaluate the deadlines again.
+      try {
+        return future.get(Math.min(remainingForCall, remainingForRecord), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        LOGGER.trace("Deadline reached while waiting for {}.", task.getResourceId(), e);
+      }
+    }
+  }
+
   private List<EnrichmentBaseWrapper> dereferenceOwnEntities(Set<String> resourceIds)
       throws DereferenceOrEnrichException {
     try {
@@ -332,4 +483,36 @@ public class EnrichmentWorkerImpl implements EnrichmentWorker {
   RDF convertInputStreamToRdf(InputStream xml) throws JiBXException {
     return RdfConversionUtils.convertInputStreamToRdf(xml);
   }
+
+  /**
+   * A dereference call that keeps track of when it started, as well as of when the first call for
+   * the same record started.
+   */
+  private final class DereferenceTask implements Callable<List<EnrichmentBaseWrapper>> {
+
+    private final String resourceId;
+    private final AtomicReference<Long> recordStartTime;
+    private volatile Long startTime;
+
+    DereferenceTask(String resourceId, AtomicReference<Long> recordStartTime) {
+      this.resourceId = resourceId;
+      this.recordStartTime = recordStartTime;
+    }
+
+    @Override
+    public List<EnrichmentBaseWrapper> call() throws DereferenceOrEnrichException {
+      final Long now = System.nanoTime();
+      recordStartTime.compareAndSet(null, now);
+      startTime = now;
+      return dereferenceExternalEntity(resourceId);
+    }
+
+    String getResourceId() {
+      return resourceId;
+    }
+
+    Long getStartTime() {
+      return startTime;
+    }
+  }
 }
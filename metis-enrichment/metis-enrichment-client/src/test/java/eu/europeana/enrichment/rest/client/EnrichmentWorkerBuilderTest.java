@@ -11,6 +11,8 @@ class EnrichmentWorkerBuilderTest {
     assertThrows(IllegalStateException.class, () -> new EnrichmentWorkerBuilder().build());
     assertThrows(IllegalStateException.class,
             () -> new EnrichmentWorkerBuilder().setDereferenceUrl("").setEnrichmentUrl("").build());
+    assertThrows(IllegalArgumentException.class,
+            () -> new EnrichmentWorkerBuilder().setDereferenceParallelism(0));
   }
 
 }
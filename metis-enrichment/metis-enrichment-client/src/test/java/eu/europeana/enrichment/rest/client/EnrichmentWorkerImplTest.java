@@ -2,10 +2,13 @@ package eu.europeana.enrichment.rest.client;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -26,9 +29,15 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.jibx.runtime.JiBXException;
 import org.junit.jupiter.api.Test;
@@ -277,6 +286,133 @@ class EnrichmentWorkerImplTest {
     verify(entityMergeEngine, times(mergeCount)).mergeEntities(any(), any());
   }
 
+  @Test
+  void testConcurrentDereferencingKeepsOrder() throws DereferenceOrEnrichException {
+
+    // Create mocks: the first resource only completes after the last one has completed.
+    final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
+    final CountDownLatch lastResourceDone = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      lastResourceDone.await(10, TimeUnit.SECONDS);
+      return DEREFERENCE_RESULT.get(0);
+    }).when(dereferenceClient).dereference("enrich1");
+    doReturn(DEREFERENCE_RESULT.get(1)).when(dereferenceClient).dereference("enrich3");
+    doAnswer(invocation -> {
+      lastResourceDone.countDown();
+      return DEREFERENCE_RESULT.get(2);
+    }).when(dereferenceClient).dereference("enrich4");
+    final EnrichmentClient enrichmentClient = Mockito.mock(EnrichmentClient.class);
+    final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
+
+    // Create the worker with concurrent dereferencing.
+    final EnrichmentWorkerImpl worker = spy(new EnrichmentWorkerImpl(dereferenceClient,
+        enrichmentClient, entityMergeEngine, DEREFERENCE_EXTRACT_RESULT.length, 0));
+    doReturn(new LinkedHashSet<>(Arrays.asList(DEREFERENCE_EXTRACT_RESULT))).when(worker)
+        .extractReferencesForDereferencing(any());
+
+    // Execute the worker and check that the results are merged in the order of the resources.
+    final RDF inputRdf = new RDF();
+    worker.process(inputRdf, Mode.DEREFERENCE_ONLY);
+    verify(entityMergeEngine, times(1))
+        .mergeEntities(eq(inputRdf), enrichmentResultCaptor.capture());
+    final List<EnrichmentBaseWrapper> expectedResult = new ArrayList<>();
+    expectedResult.addAll(DEREFERENCE_RESULT.get(0).getEnrichmentBaseWrapperList());
+    expectedResult.addAll(DEREFERENCE_RESULT.get(2).getEnrichmentBaseWrapperList());
+    assertEquals(expectedResult, enrichmentResultCaptor.getValue());
+    for (String dereferenceUrl : DEREFERENCE_EXTRACT_RESULT) {
+      verify(dereferenceClient, times(1)).dereference(dereferenceUrl);
+    }
+  }
+
+  @Test
+  void testConcurrentDereferencingTimeout() {
+
+    // Create mocks: the first resource never completes.
+    final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
+    final CountDownLatch neverReleased = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      neverReleased.await();
+      return null;
+    }).when(dereferenceClient).dereference("enrich1");
+    final EnrichmentClient enrichmentClient = Mockito.mock(EnrichmentClient.class);
+    final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
+
+    // Create the worker with concurrent dereferencing and a short timeout.
+    final EnrichmentWorkerImpl worker = spy(new EnrichmentWorkerImpl(dereferenceClient,
+        enrichmentClient, entityMergeEngine, 2, 100));
+    doReturn(new LinkedHashSet<>(Arrays.asList(DEREFERENCE_EXTRACT_RESULT))).when(worker)
+        .extractReferencesForDereferencing(any());
+
+    // Execute the worker: the timeout should cause the dereferencing to fail.
+    final RDF inputRdf = new RDF();
+    assertThrows(DereferenceOrEnrichException.class,
+        () -> worker.process(inputRdf, Mode.DEREFERENCE_ONLY));
+    verify(entityMergeEngine, never()).mergeEntities(any(), any());
+  }
+
+  @Test
+  void testConcurrentDereferencingTimeoutExcludesQueueTime() throws Exception {
+
+    // Create mocks: every call takes a bit more than half the timeout.
+    final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
+    doAnswer(invocation -> {
+      Thread.sleep(300);
+      return null;
+    }).when(dereferenceClient).dereference(any());
+    final EnrichmentClient enrichmentClient = Mockito.mock(EnrichmentClient.class);
+    final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
+
+    // Create the worker with concurrent dereferencing.
+    final EnrichmentWorkerImpl worker = spy(new EnrichmentWorkerImpl(dereferenceClient,
+        enrichmentClient, entityMergeEngine, 2, 500));
+    doReturn(new LinkedHashSet<>(Arrays.asList(DEREFERENCE_EXTRACT_RESULT))).when(worker)
+        .extractReferencesForDereferencing(any());
+
+    // Process two records at the same time: the calls of one record have to wait for those of the
+    // other, which should not count against the timeout.
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<RDF> first = executor
+          .submit(() -> worker.process(new RDF(), Mode.DEREFERENCE_ONLY));
+      final Future<RDF> second = executor
+          .submit(() -> worker.process(new RDF(), Mode.DEREFERENCE_ONLY));
+      first.get(10, TimeUnit.SECONDS);
+      second.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+    verify(entityMergeEngine, times(2)).mergeEntities(any(), any());
+  }
+
+  @Test
+  void testConcurrentDereferencingTimeoutIsNotCumulative() {
+
+    // Create mocks: no resource ever completes.
+    final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
+    final CountDownLatch neverReleased = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      neverReleased.await();
+      return null;
+    }).when(dereferenceClient).dereference(any());
+    final EnrichmentClient enrichmentClient = Mockito.mock(EnrichmentClient.class);
+    final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
+
+    // Create the worker with concurrent dereferencing for all resources at the same time.
+    final EnrichmentWorkerImpl worker = spy(new EnrichmentWorkerImpl(dereferenceClient,
+        enrichmentClient, entityMergeEngine, DEREFERENCE_EXTRACT_RESULT.length, 300));
+    doReturn(new LinkedHashSet<>(Arrays.asList(DEREFERENCE_EXTRACT_RESULT))).when(worker)
+        .extractReferencesForDereferencing(any());
+
+    // Execute the worker: it should fail after one timeout, not after one timeout per resource.
+    final long start = System.nanoTime();
+    assertThrows(DereferenceOrEnrichException.class,
+        () -> worker.process(new RDF(), Mode.DEREFERENCE_ONLY));
+    final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(duration < 300L * DEREFERENCE_EXTRACT_RESULT.length,
+        "Took " + duration + " milliseconds.");
+    verify(entityMergeEngine, never()).mergeEntities(any(), any());
+  }
+
   @Test
   void testProcessWrapperMethods()
       throws JiBXException, UnsupportedEncodingException, DereferenceOrEnrichException {
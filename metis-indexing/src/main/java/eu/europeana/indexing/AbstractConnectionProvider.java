@@ -1,5 +1,6 @@
 package eu.europeana.indexing;
 
+import eu.europeana.indexing.solr.SolrBatchPolicy;
 import eu.europeana.metis.mongo.RecordRedirectDao;
 import java.io.Closeable;
 import java.io.IOException;
@@ -27,11 +28,33 @@ public interface AbstractConnectionProvider extends Closeable {
    *
    * @param preserveUpdateAndCreateTimesFromRdf This determines whether this publisher should use
    * the updated and created times from the incoming RDFs, or whether it computes its own.
-   * @return A publisher.
+   * @return A new publisher. Note that the Solr documents are batched per publisher (see {@link
+   * eu.europeana.indexing.solr.BatchingSolrWriter}): documents of different publishers are never
+   * sent to Solr together.
    */
   default FullBeanPublisher getFullBeanPublisher(boolean preserveUpdateAndCreateTimesFromRdf) {
     return new FullBeanPublisher(getEdmMongoClient(), getRecordRedirectDao(), getSolrClient(),
-        preserveUpdateAndCreateTimesFromRdf);
+        getSolrBatchPolicy(), preserveUpdateAndCreateTimesFromRdf);
+  }
+
+  /**
+   * Provides the policy that determines when documents are sent to Solr in batches. The default
+   * implementation returns {@link SolrBatchPolicy#DEFAULT}.
+   *
+   * @return The Solr batch policy.
+   */
+  default SolrBatchPolicy getSolrBatchPolicy() {
+    return SolrBatchPolicy.DEFAULT;
+  }
+
+  /**
+   * Provides the settings of the pipeline that is used to index multiple records. The default
+   * implementation returns {@link IndexingPipelineSettings#DEFAULT}.
+   *
+   * @return The pipeline settings.
+   */
+  default IndexingPipelineSettings getIndexingPipelineSettings() {
+    return IndexingPipelineSettings.DEFAULT;
   }
 
   /**
@@ -1,7 +1,5 @@
 package eu.europeana.indexing;
 
-import static eu.europeana.metis.utils.ExternalRequestUtil.retryableExternalRequestForNetworkExceptions;
-
 import com.mongodb.MongoClientException;
 import com.mongodb.MongoConfigurationException;
 import com.mongodb.MongoIncompatibleDriverException;
@@ -19,16 +17,22 @@ import eu.europeana.indexing.exception.RecordRelatedIndexingException;
 import eu.europeana.indexing.exception.SetupRelatedIndexingException;
 import eu.europeana.indexing.fullbean.RdfToFullBeanConverter;
 import eu.europeana.indexing.mongo.FullBeanUpdater;
+import eu.europeana.indexing.mongo.property.MongoOperationBatch;
+import eu.europeana.indexing.solr.BatchingSolrWriter;
+import eu.europeana.indexing.solr.SolrBatchPolicy;
 import eu.europeana.indexing.solr.SolrDocumentPopulator;
 import eu.europeana.indexing.utils.RdfWrapper;
 import eu.europeana.indexing.utils.TriConsumer;
 import eu.europeana.metis.mongo.RecordRedirectDao;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -36,6 +40,8 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.MapSolrParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Publisher for Full Beans (instances of {@link FullBeanImpl}) that makes them accessible and
@@ -45,6 +51,8 @@ import org.apache.solr.common.params.MapSolrParams;
  */
 class FullBeanPublisher {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(FullBeanPublisher.class);
+
   private static final String REDIRECT_PUBLISH_ERROR = "Could not publish the redirection changes.";
 
   private static final String MONGO_SERVER_PUBLISH_ERROR = "Could not publish to Mongo server.";
@@ -59,6 +67,7 @@ class FullBeanPublisher {
 
   private final EdmMongoServer edmMongoClient;
   private final SolrClient solrServer;
+  private final BatchingSolrWriter solrWriter;
   private final boolean preserveUpdateAndCreateTimesFromRdf;
   private final RecordRedirectDao recordRedirectDao;
 
@@ -68,13 +77,15 @@ class FullBeanPublisher {
    * @param edmMongoClient The Mongo persistence.
    * @param recordRedirectDao The record redirect dao
    * @param solrServer The searchable persistence.
+   * @param solrBatchPolicy The policy that determines when documents are sent to Solr.
    * @param preserveUpdateAndCreateTimesFromRdf This determines whether this publisher will use the
    * updated and created times from the incoming RDFs, or whether it computes its own.
    */
   FullBeanPublisher(EdmMongoServer edmMongoClient, RecordRedirectDao recordRedirectDao,
-      SolrClient solrServer, boolean preserveUpdateAndCreateTimesFromRdf) {
-    this(edmMongoClient, recordRedirectDao, solrServer, preserveUpdateAndCreateTimesFromRdf,
-        RdfToFullBeanConverter::new);
+      SolrClient solrServer, SolrBatchPolicy solrBatchPolicy,
+      boolean preserveUpdateAndCreateTimesFromRdf) {
+    this(edmMongoClient, recordRedirectDao, solrServer, solrBatchPolicy,
+        preserveUpdateAndCreateTimesFromRdf, RdfToFullBeanConverter::new);
   }
 
   /**
@@ -83,16 +94,20 @@ class FullBeanPublisher {
    * @param edmMongoClient The Mongo persistence.
    * @param recordRedirectDao The record redirect dao
    * @param solrServer The searchable persistence.
+   * @param solrBatchPolicy The policy that determines when documents are sent to Solr.
    * @param preserveUpdateAndCreateTimesFromRdf This determines whether this publisher will use the
    * updated and created times from the incoming RDFs, or whether it computes its own.
    * @param fullBeanConverterSupplier Supplies an instance of {@link RdfToFullBeanConverter} used to
-   * parse strings to instances of {@link FullBeanImpl}. Will be called once during every publish.
+   * parse strings to instances of {@link FullBeanImpl}. Will be called once for every batch of
+   * records that is prepared or that needs to be persisted record by record.
    */
   FullBeanPublisher(EdmMongoServer edmMongoClient, RecordRedirectDao recordRedirectDao,
-      SolrClient solrServer, boolean preserveUpdateAndCreateTimesFromRdf,
+      SolrClient solrServer, SolrBatchPolicy solrBatchPolicy,
+      boolean preserveUpdateAndCreateTimesFromRdf,
       Supplier<RdfToFullBeanConverter> fullBeanConverterSupplier) {
     this.edmMongoClient = edmMongoClient;
     this.solrServer = solrServer;
+    this.solrWriter = new BatchingSolrWriter(solrServer, solrBatchPolicy);
     this.fullBeanConverterSupplier = fullBeanConverterSupplier;
     this.preserveUpdateAndCreateTimesFromRdf = preserveUpdateAndCreateTimesFromRdf;
     this.recordRedirectDao = recordRedirectDao;
@@ -112,87 +127,105 @@ class FullBeanPublisher {
     updated.setTimestampUpdated(updatedDate);
   }
 
-  /**
-   * Publishes an RDF.
-   *
-   * @param rdf RDF to publish.
-   * @param recordDate The date that would represent the created/updated date of a record
-   * @param datasetIdsToRedirectFrom The dataset ids that their records need to be redirected
-   * @throws IndexingException which can be one of:
-   * <ul>
-   * <li>{@link IndexerRelatedIndexingException} In case an error occurred during publication.</li>
-   * <li>{@link SetupRelatedIndexingException} in case an error occurred during indexing setup</li>
-   * <li>{@link RecordRelatedIndexingException} in case an error occurred related to record
-   * contents</li>
-   * </ul>
-   */
-  public void publishWithRedirects(RdfWrapper rdf, Date recordDate,
-      List<String> datasetIdsToRedirectFrom) throws IndexingException {
-    publish(rdf, recordDate, datasetIdsToRedirectFrom, true);
-  }
-
-  /**
-   * Publishes an RDF.
-   *
-   * @param rdf RDF to publish.
-   * @param recordDate The date that would represent the created/updated date of a record
-   * @param datasetIdsToRedirectFrom The dataset ids that their records need to be redirected
-   * @throws IndexingException which can be one of:
-   * <ul>
-   * <li>{@link IndexerRelatedIndexingException} In case an error occurred during publication.</li>
-   * <li>{@link SetupRelatedIndexingException} in case an error occurred during indexing setup</li>
-   * <li>{@link RecordRelatedIndexingException} in case an error occurred related to record
-   * contents</li>
-   * </ul>
-   */
-  public void publish(RdfWrapper rdf, Date recordDate, List<String> datasetIdsToRedirectFrom)
-      throws IndexingException {
-    publish(rdf, recordDate, datasetIdsToRedirectFrom, false);
+  private TriConsumer<FullBeanImpl, FullBeanImpl, Pair<Date, Date>> getFullBeanPreprocessor() {
+    // Provide the preprocessor: this will set the created and updated timestamps as needed.
+    return preserveUpdateAndCreateTimesFromRdf ? EMPTY_PREPROCESSOR
+        : (FullBeanPublisher::setUpdateAndCreateTime);
   }
 
   /**
-   * Publishes an RDF.
+   * Prepares a list of RDFs for publication: converts them to Full Beans and performs the
+   * redirection. The redirection candidates are searched for all records at the same time (see
+   * {@link RecordRedirectsUtil#checkAndApplyRedirects(RecordRedirectDao, List, Date, List, boolean,
+   * RecordRedirectsUtil.ThrowingFunction)}). This method is the first half of publishing records:
+   * the second half is {@link #persist(List, Date)}. This method is thread-safe.
    *
-   * @param rdf RDF to publish.
+   * @param rdfs RDFs to publish.
    * @param recordDate The date that would represent the created/updated date of a record
    * @param datasetIdsToRedirectFrom The dataset ids that their records need to be redirected
    * @param performRedirects flag that indicates if redirect should be performed
-   * @throws IndexingException which can be one of:
-   * <ul>
-   * <li>{@link IndexerRelatedIndexingException} In case an error occurred during publication.</li>
-   * <li>{@link SetupRelatedIndexingException} in case an error occurred during indexing setup</li>
-   * <li>{@link RecordRelatedIndexingException} in case an error occurred related to record
-   * contents</li>
-   * </ul>
+   * @return The prepared records, in the same order as the input.
+   * @throws IndexingException In case an error occurred during preparation.
    */
-  private void publish(RdfWrapper rdf, Date recordDate, List<String> datasetIdsToRedirectFrom,
-      boolean performRedirects) throws IndexingException {
+  List<PreparedRecord> prepare(List<RdfWrapper> rdfs, Date recordDate,
+      List<String> datasetIdsToRedirectFrom, boolean performRedirects) throws IndexingException {
 
-    // Convert RDF to Full Bean.
+    // Convert RDFs to Full Beans.
     final RdfToFullBeanConverter fullBeanConverter = fullBeanConverterSupplier.get();
-    final FullBeanImpl fullBean = fullBeanConverter.convertRdfToFullBean(rdf);
-
-    // Provide the preprocessor: this will set the created and updated timestamps as needed.
-    final TriConsumer<FullBeanImpl, FullBeanImpl, Pair<Date, Date>> fullBeanPreprocessor =
-        preserveUpdateAndCreateTimesFromRdf ? EMPTY_PREPROCESSOR
-            : (FullBeanPublisher::setUpdateAndCreateTime);
+    final List<FullBeanImpl> fullBeans = rdfs.stream()
+        .map(fullBeanConverter::convertRdfToFullBean).collect(Collectors.toList());
 
     // Perform redirection
-    final List<Pair<String, Date>> recordsForRedirection;
+    final List<List<Pair<String, Date>>> recordsForRedirection;
     try {
       recordsForRedirection = RecordRedirectsUtil
-          .checkAndApplyRedirects(recordRedirectDao, rdf, recordDate, datasetIdsToRedirectFrom,
+          .checkAndApplyRedirects(recordRedirectDao, rdfs, recordDate, datasetIdsToRedirectFrom,
               performRedirects, this::getSolrDocuments);
     } catch (RuntimeException e) {
       throw new RecordRelatedIndexingException(REDIRECT_PUBLISH_ERROR, e);
     }
 
-    // Publish to Mongo
-    final FullBeanImpl savedFullBean;
+    // Assemble the result.
+    final List<PreparedRecord> result = new ArrayList<>(rdfs.size());
+    for (int i = 0; i < rdfs.size(); i++) {
+      result.add(new PreparedRecord(rdfs.get(i), fullBeans.get(i),
+          getMinimumCreationDate(recordsForRedirection.get(i))));
+    }
+    return result;
+  }
+
+  /**
+   * Persists a list of prepared records (see {@link #prepare(List, Date, List, boolean)}).
+   * The Mongo updates for all records are collected and sent to the database in bulk (see {@link
+   * MongoOperationBatch}), after which the Solr documents are sent. This method is thread-safe.
+   *
+   * @param records The records to persist.
+   * @param recordDate The date that would represent the created/updated date of a record
+   * @throws IndexingException In case an error occurred during persistence.
+   */
+  void persist(List<PreparedRecord> records, Date recordDate) throws IndexingException {
+
+    // Publish to Mongo: collect all updates in one batch and then flush it.
+    final List<FullBeanImpl> savedFullBeans = publishToMongo(() -> {
+      final MongoOperationBatch batch = new MongoOperationBatch(edmMongoClient);
+      FullBeanUpdater.prefetch(
+          records.stream().map(PreparedRecord::getFullBean).collect(Collectors.toList()), batch);
+      final FullBeanUpdater updater = new FullBeanUpdater(getFullBeanPreprocessor());
+      final List<FullBeanImpl> result = new ArrayList<>(records.size());
+      for (PreparedRecord record : records) {
+        result.add(updater.update(record.getFullBean(), recordDate, record.getCreationDate(),
+            batch));
+      }
+      if (batch.flush()) {
+        return result;
+      }
+
+      // Some new entities were concurrently created elsewhere: update the records one by one.
+      LOGGER.info("Conflicting concurrent insert detected: updating records individually.");
+      final RdfToFullBeanConverter fullBeanConverter = fullBeanConverterSupplier.get();
+      return records.stream().map(record -> updater
+          .update(fullBeanConverter.convertRdfToFullBean(record.getRdf()), recordDate,
+              record.getCreationDate(), edmMongoClient)).collect(Collectors.toList());
+    });
+
+    // Publish to Solr: the documents are sent in batches, possibly along with those of other
+    // threads using this publisher. We only report failures of batches with these records.
+    final List<CompletableFuture<Void>> solrDocuments = new ArrayList<>(records.size());
+    for (int i = 0; i < records.size(); i++) {
+      solrDocuments.add(publishToSolr(records.get(i).getRdf(), savedFullBeans.get(i)));
+    }
+    solrWriter.flush();
+    BatchingSolrWriter.waitFor(solrDocuments);
+  }
+
+  private static Date getMinimumCreationDate(List<Pair<String, Date>> recordsForRedirection) {
+    return recordsForRedirection.stream().map(Pair::getValue).min(Comparator.naturalOrder())
+        .orElse(null);
+  }
+
+  private static <T> T publishToMongo(Supplier<T> mongoOperation) throws IndexingException {
     try {
-      savedFullBean = new FullBeanUpdater(fullBeanPreprocessor).update(fullBean, recordDate,
-          recordsForRedirection.stream().map(Pair::getValue).min(Comparator.naturalOrder())
-              .orElse(null), edmMongoClient);
+      return mongoOperation.get();
     } catch (MongoIncompatibleDriverException | MongoConfigurationException | MongoSecurityException e) {
       throw new SetupRelatedIndexingException(MONGO_SERVER_PUBLISH_ERROR, e);
     } catch (MongoSocketException | MongoClientException | MongoInternalException | MongoInterruptedException e) {
@@ -200,38 +233,23 @@ class FullBeanPublisher {
     } catch (RuntimeException e) {
       throw new RecordRelatedIndexingException(MONGO_SERVER_PUBLISH_ERROR, e);
     }
-
-    // Publish to Solr
-    try {
-      retryableExternalRequestForNetworkExceptions(() -> {
-        try {
-          publishToSolr(rdf, savedFullBean);
-        } catch (IndexingException e) {
-          throw new RuntimeException(e);
-        }
-        return null;
-      });
-    } catch (Exception e) {
-      throw new RecordRelatedIndexingException(SOLR_SERVER_PUBLISH_ERROR, e);
-    }
   }
 
-  private void publishToSolr(RdfWrapper rdf, FullBeanImpl fullBean) throws IndexingException {
+  private CompletableFuture<Void> publishToSolr(RdfWrapper rdf, FullBeanImpl fullBean)
+      throws IndexingException {
 
     // Create Solr document.
     final SolrDocumentPopulator documentPopulator = new SolrDocumentPopulator();
     final SolrInputDocument document = new SolrInputDocument();
-    documentPopulator.populateWithProperties(document, fullBean);
-    documentPopulator.populateWithFacets(document, rdf);
-
-    // Save Solr document.
     try {
-      solrServer.add(document);
-    } catch (IOException e) {
-      throw new IndexerRelatedIndexingException(SOLR_SERVER_PUBLISH_ERROR, e);
-    } catch (SolrServerException | RuntimeException e) {
+      documentPopulator.populateWithProperties(document, fullBean);
+      documentPopulator.populateWithFacets(document, rdf);
+    } catch (RuntimeException e) {
       throw new RecordRelatedIndexingException(SOLR_SERVER_PUBLISH_ERROR, e);
     }
+
+    // Add Solr document to the batch: this may cause the batch to be sent.
+    return solrWriter.add(document);
   }
 
   private SolrDocumentList getSolrDocuments(Map<String, String> queryParamMap)
@@ -247,4 +265,33 @@ class FullBeanPublisher {
     }
     return response.getResults();
   }
+
+  /**
+   * A record that is ready to be persisted: it is converted to a Full Bean and the redirection is
+   * performed.
+   */
+  static final class PreparedRecord {
+
+    private final RdfWrapper rdf;
+    private final FullBeanImpl fullBean;
+    private final Date creationDate;
+
+    private PreparedRecord(RdfWrapper rdf, FullBeanImpl fullBean, Date creationDate) {
+      this.rdf = rdf;
+      this.fullBean = fullBean;
+      this.creationDate = creationDate;
+    }
+
+    RdfWrapper getRdf() {
+      return rdf;
+    }
+
+    FullBeanImpl getFullBean() {
+      return fullBean;
+    }
+
+    Date getCreationDate() {
+      return creationDate;
+    }
+  }
 }
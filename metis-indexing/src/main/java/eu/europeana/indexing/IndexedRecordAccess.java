@@ -1,23 +1,38 @@
 package eu.europeana.indexing;
 
-import dev.morphia.Datastore;
-import dev.morphia.DeleteOptions;
-import dev.morphia.query.Query;
-import dev.morphia.query.experimental.filters.Filters;
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import eu.europeana.corelib.mongo.server.EdmMongoServer;
 import eu.europeana.corelib.solr.bean.impl.FullBeanImpl;
+import eu.europeana.corelib.solr.entity.AggregationImpl;
+import eu.europeana.corelib.solr.entity.EuropeanaAggregationImpl;
+import eu.europeana.corelib.solr.entity.ProvidedCHOImpl;
+import eu.europeana.corelib.solr.entity.ProxyImpl;
 import eu.europeana.indexing.exception.IndexerRelatedIndexingException;
 import eu.europeana.indexing.solr.EdmLabel;
 import eu.europeana.metis.CommonStringValues;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
-import java.util.TimeZone;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.util.ClientUtils;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class provides functionality for accessing records that are already indexed from the Mongo
@@ -26,7 +41,35 @@ import org.apache.solr.client.solrj.util.ClientUtils;
  */
 public class IndexedRecordAccess {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexedRecordAccess.class);
+
   private static final String ABOUT_FIELD = "about";
+  private static final String ID_FIELD = "_id";
+
+  private static final int REMOVAL_BATCH_SIZE = 500;
+
+  private static final DateTimeFormatter SOLR_DATE_FORMATTER = DateTimeFormatter
+      .ofPattern(CommonStringValues.DATE_FORMAT_SOLR, Locale.US).withZone(ZoneOffset.UTC);
+
+  /**
+   * The fields in the full bean that reference the dependencies that are to be removed along with
+   * the record, mapped to the type of the dependency.
+   */
+  private static final Map<String, Class<?>> DEPENDENCY_FIELDS = Map.of(
+      "aggregations", AggregationImpl.class,
+      "europeanaAggregation", EuropeanaAggregationImpl.class,
+      "providedCHOs", ProvidedCHOImpl.class,
+      "proxies", ProxyImpl.class);
+
+  /**
+   * The types of the dependencies that are to be removed along with the records of a dataset,
+   * mapped to the prefixes that precede <code>/datasetId/</code> in their rdf:about values.
+   */
+  private static final Map<Class<?>, List<String>> DEPENDENCY_ABOUT_PREFIXES = Map.of(
+      AggregationImpl.class, List.of("/aggregation/provider"),
+      EuropeanaAggregationImpl.class, List.of("/aggregation/europeana"),
+      ProvidedCHOImpl.class, List.of(""),
+      ProxyImpl.class, List.of("/proxy/provider", "/proxy/europeana"));
 
   private final EdmMongoServer mongoServer;
   private final SolrClient solrServer;
@@ -45,15 +88,14 @@ public class IndexedRecordAccess {
   /**
    * Counts the records in a given dataset. The criteria of whether a record belongs to a certain
    * dataset is the same as that used in the method {@link #removeDataset(String, Date)}, i.e. it is
-   * based on the <code>rdf:about</code> values.
+   * based on the <code>rdf:about</code> values. The records are selected using a range filter on
+   * this field, so that the count can be answered from the index.
    *
    * @param datasetId The ID of the dataset of which to count the records. Is not null.
    * @return The number of records encountered for the given dataset.
    */
   public long countRecords(String datasetId) {
-    final Query<FullBeanImpl> query = mongoServer.getDatastore().find(FullBeanImpl.class);
-    query.filter(Filters.regex(ABOUT_FIELD).pattern("^" + getRecordIdPrefix(datasetId)));
-    return query.count();
+    return getCollection(FullBeanImpl.class).countDocuments(getRecordIdPrefixFilter(datasetId));
   }
 
   /**
@@ -74,42 +116,51 @@ public class IndexedRecordAccess {
    * @throws IndexerRelatedIndexingException In case something went wrong.
    */
   public boolean removeRecord(String rdfAbout) throws IndexerRelatedIndexingException {
-    try {
+    return removeRecords(Collections.singletonList(rdfAbout)) > 0;
+  }
 
-      // Remove Solr record
-      final String queryValue = ClientUtils.escapeQueryChars(rdfAbout);
-      solrServer.deleteByQuery(EdmLabel.EUROPEANA_ID.toString() + ":" + queryValue);
-
-      // Obtain the Mongo record
-      final Datastore datastore = mongoServer.getDatastore();
-      final FullBeanImpl recordToDelete = datastore.find(FullBeanImpl.class)
-          .filter(Filters.eq(ABOUT_FIELD, rdfAbout)).first();
-
-      // Remove mongo record and dependencies
-      if (recordToDelete != null) {
-        datastore.delete(recordToDelete);
-        recordToDelete.getAggregations().forEach(datastore::delete);
-        datastore.delete(recordToDelete.getEuropeanaAggregation());
-        recordToDelete.getProvidedCHOs().forEach(datastore::delete);
-        recordToDelete.getProxies().forEach(datastore::delete);
-      }
+  /**
+   * Removes the records with the given rdf:about values. For details on what parts of the records
+   * are removed, see the documentation of {@link #removeRecord(String)}. The records are removed
+   * in batches: for every batch there is one delete query for Solr and one for each of the Mongo
+   * collections involved.
+   *
+   * @param rdfAbouts The about values of the records to remove. Is not null.
+   * @return The number of records that were removed.
+   * @throws IndexerRelatedIndexingException In case something went wrong.
+   */
+  public long removeRecords(Collection<String> rdfAbouts) throws IndexerRelatedIndexingException {
+    final List<String> distinctRdfAbouts = new ArrayList<>(new LinkedHashSet<>(rdfAbouts));
+    long count = 0;
+    try {
+      for (int start = 0; start < distinctRdfAbouts.size(); start += REMOVAL_BATCH_SIZE) {
+        final List<String> batch = distinctRdfAbouts
+            .subList(start, Math.min(start + REMOVAL_BATCH_SIZE, distinctRdfAbouts.size()));
 
-      // Done
-      return recordToDelete != null;
+        // Remove Solr records
+        solrServer.deleteByQuery(batch.stream().map(ClientUtils::escapeQueryChars)
+            .collect(Collectors.joining(" OR ", EdmLabel.EUROPEANA_ID.toString() + ":(", ")")));
 
+        // Remove mongo records and dependencies
+        count += removeRecordsFromMongo(batch);
+      }
     } catch (SolrServerException | IOException | RuntimeException e) {
-      throw new IndexerRelatedIndexingException("Could not remove record '" + rdfAbout + "'.", e);
+      throw new IndexerRelatedIndexingException("Could not remove records.", e);
     }
+    return count;
   }
 
   /**
    * <p>Removes all records that belong to a given dataset. For details on what parts of the record
-   * are removed, see the documentation of {@link #removeRecord(String)}.</p>
+   * are removed, see the documentation of {@link #removeRecord(String)}. The records are not read:
+   * there is one delete query for Solr and one for each of the Mongo collections involved.</p>
    * <p><b>NOTE</b> that the rdf:about is
-   * used to find the dependencies, rather than the actual references in the records. While this is
-   * a reasonably safe way to go for now, eventually a more generic way along the lines of {@link
-   * #removeRecord(String)} should be found, in which the exact composition of the rdf:about is
-   * taken out of the equation.</p>
+   * used to find the records that belong to the dataset: a record belongs to the dataset if its
+   * rdf:about value starts with <code>/datasetId/</code>. The dependencies are found in the same
+   * way, using the rdf:about values that Europeana assigns to them (e.g.
+   * <code>/proxy/provider/datasetId/</code>). If a maximum record date is given, the dependencies
+   * can not be found this way (they don't have a timestamp), and only the records themselves are
+   * removed.</p>
    *
    * @param datasetId The ID of the dataset to clear. Is not null.
    * @param maxRecordDate The date that all records that have lower timestampUpdated than that date
@@ -139,22 +190,90 @@ public class IndexedRecordAccess {
     solrQuery.append(EdmLabel.EUROPEANA_ID).append(':').append(datasetIdRegexEscaped);
 
     if (maxRecordDate != null) {
-      //Set date format properly for Solr, the timezone has to be added
-      DateFormat dateFormat = new SimpleDateFormat(CommonStringValues.DATE_FORMAT_SOLR, Locale.US);
-      dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
       solrQuery.append(" AND ").append(EdmLabel.TIMESTAMP_UPDATED).append(":[* TO ")
-          .append(dateFormat.format(maxRecordDate)).append('}');
+          .append(SOLR_DATE_FORMATTER.format(maxRecordDate.toInstant())).append('}');
     }
     solrServer.deleteByQuery(solrQuery.toString());
   }
 
   private long removeDatasetFromMongo(String datasetId, Date maxRecordDate) {
-    final Query<FullBeanImpl> query = mongoServer.getDatastore().find(FullBeanImpl.class);
-    query.filter(Filters.regex(ABOUT_FIELD).pattern("^" + getRecordIdPrefix(datasetId)));
-    if (maxRecordDate != null) {
-      query.filter(Filters.lt("timestampUpdated", maxRecordDate));
+    final Bson datasetFilter = getRecordIdPrefixFilter(datasetId);
+    final long count;
+    if (maxRecordDate == null) {
+      for (Map.Entry<Class<?>, List<String>> dependency : DEPENDENCY_ABOUT_PREFIXES.entrySet()) {
+        final List<Bson> filters = dependency.getValue().stream()
+            .map(prefix -> getAboutPrefixFilter(prefix + getRecordIdPrefix(datasetId)))
+            .collect(Collectors.toList());
+        getCollection(dependency.getKey())
+            .deleteMany(filters.size() == 1 ? filters.get(0) : Filters.or(filters));
+      }
+      count = getCollection(FullBeanImpl.class).deleteMany(datasetFilter).getDeletedCount();
+    } else {
+      count = getCollection(FullBeanImpl.class)
+          .deleteMany(Filters.and(datasetFilter, Filters.lt("timestampUpdated", maxRecordDate)))
+          .getDeletedCount();
+    }
+    LOGGER.debug("Removed {} records.", count);
+    return count;
+  }
+
+  /**
+   * Removes the records with the given about values and their dependencies. The references to the
+   * dependencies are read from the records, after which the dependencies and the records are
+   * removed using one delete query per collection.
+   */
+  private long removeRecordsFromMongo(List<String> rdfAbouts) {
+    final MongoCollection<Document> fullBeanCollection = getCollection(FullBeanImpl.class);
+    final Bson filter = Filters.in(ABOUT_FIELD, rdfAbouts);
+    final List<Document> records = fullBeanCollection.find(filter)
+        .projection(Projections.include(DEPENDENCY_FIELDS.keySet().toArray(String[]::new)))
+        .into(new ArrayList<>());
+    for (Map.Entry<String, Class<?>> dependency : DEPENDENCY_FIELDS.entrySet()) {
+      final List<Object> ids = records.stream()
+          .flatMap(document -> getReferencedIds(document.get(dependency.getKey())))
+          .collect(Collectors.toList());
+      if (!ids.isEmpty()) {
+        getCollection(dependency.getValue()).deleteMany(Filters.in(ID_FIELD, ids));
+      }
     }
-    return query.delete(new DeleteOptions().multi(true)).getDeletedCount();
+    final long count = records.isEmpty() ? 0 : fullBeanCollection.deleteMany(filter)
+        .getDeletedCount();
+    LOGGER.debug("Removed {} records.", count);
+    return count;
+  }
+
+  private MongoCollection<Document> getCollection(Class<?> type) {
+    return mongoServer.getDatastore().getMapper().getCollection(type)
+        .withDocumentClass(Document.class);
+  }
+
+  private static Stream<Object> getReferencedIds(Object reference) {
+    final Stream<Object> result;
+    if (reference instanceof Collection) {
+      result = ((Collection<?>) reference).stream().flatMap(IndexedRecordAccess::getReferencedIds);
+    } else if (reference instanceof DBRef) {
+      result = Stream.of(((DBRef) reference).getId());
+    } else if (reference instanceof Document) {
+      result = Stream.ofNullable(((Document) reference).get(ID_FIELD));
+    } else {
+      result = Stream.ofNullable(reference);
+    }
+    return result;
+  }
+
+  /**
+   * Creates a filter for the records of a dataset. This is a range filter on the rdf:about value,
+   * so that it can use the index on this field (as opposed to a regular expression, which would
+   * need to scan the index).
+   */
+  private static Bson getRecordIdPrefixFilter(String datasetId) {
+    return getAboutPrefixFilter(getRecordIdPrefix(datasetId));
+  }
+
+  private static Bson getAboutPrefixFilter(String prefix) {
+    final String upperBound = prefix.substring(0, prefix.length() - 1)
+        + (char) (prefix.charAt(prefix.length() - 1) + 1);
+    return Filters.and(Filters.gte(ABOUT_FIELD, prefix), Filters.lt(ABOUT_FIELD, upperBound));
   }
 
   private static String getRecordIdPrefix(String datasetId) {
@@ -2,7 +2,9 @@ package eu.europeana.indexing;
 
 import java.io.Closeable;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import eu.europeana.corelib.definitions.jibx.RDF;
 import eu.europeana.indexing.exception.IndexingException;
@@ -103,6 +105,32 @@ public interface Indexer extends Closeable {
   void index(List<String> records, Date recordDate, boolean preserveUpdateAndCreateTimesFromRdf,
       List<String> datasetIdsForRedirection, boolean performRedirects) throws IndexingException;
 
+  /**
+   * <p>
+   * This method indexes a sequence of records, publishing it to the provided data stores. The
+   * records are pulled from the iterator lazily as the indexing progresses, so that only a bounded
+   * number of records is held in memory at any time (see {@link IndexingSettings}). This makes
+   * this method suitable for large numbers of records. The iterator is only accessed by the
+   * calling thread.
+   * </p>
+   * <p>
+   * <b>NOTE:</b> this operation should not coincide with a remove operation as this operation is
+   * not done within a transaction. If a record fails, no further records are pulled from the
+   * iterator, but records that were already indexed remain indexed.
+   * </p>
+   *
+   * @param records The records to index (can be parsed to RDF).
+   * @param recordDate The date that would represent the created/updated date of a record
+   * @param preserveUpdateAndCreateTimesFromRdf This determines whether this indexer should use the
+   * updated and created times from the incoming RDFs, or whether it computes its own.
+   * @param datasetIdsForRedirection The dataset ids that their records need to be redirected
+   * @param performRedirects flag that indicates if redirect should be performed
+   * @return The number of records that were indexed.
+   * @throws IndexingException In case a problem occurred during indexing.
+   */
+  int index(Iterator<String> records, Date recordDate, boolean preserveUpdateAndCreateTimesFromRdf,
+      List<String> datasetIdsForRedirection, boolean performRedirects) throws IndexingException;
+
   /**
    * <p>
    * This method indexes a single record, publishing it to the provided data stores.
@@ -162,6 +190,24 @@ public interface Indexer extends Closeable {
    */
   boolean remove(String rdfAbout) throws IndexingException;
 
+  /**
+   * <p>
+   * Removes the records with the given rdf:about values. For details on what is removed, see the
+   * documentation of {@link #remove(String)}. The records are removed in batches, so that this
+   * method is considerably faster than calling {@link #remove(String)} for every record.
+   * </p>
+   * <p>
+   * <b>NOTE:</b> this operation should not coincide with indexing operations on the same dataset.
+   * They are not put into a transaction and therefore this method may remove what the indexing
+   * method just added.
+   * </p>
+   *
+   * @param rdfAbouts The IDs of the records to remove. Is not null.
+   * @return The number of records that were removed.
+   * @throws IndexingException In case something went wrong.
+   */
+  long remove(Collection<String> rdfAbouts) throws IndexingException;
+
   /**
    * <p>
    * Removes all records that belong to a given dataset. This method also removes the associated
@@ -177,13 +223,14 @@ public interface Indexer extends Closeable {
    * concepts etc.).
    * </p>
    * <p>
-   * Please <b>NOTE</b> that the criteria for whether a record or any of the listed dependencies are
-   * removed is based on the value of {@link eu.europeana.corelib.definitions.edm.entity.AbstractEdmEntity#getAbout()}
-   * and {@link eu.europeana.corelib.definitions.edm.beans.FullBean#getAbout()}. So the value of
-   * {@link eu.europeana.corelib.definitions.edm.beans.FullBean#getEuropeanaCollectionName()} does
-   * <b>not</b> play any role in determining which records to remove. This should eventually be
-   * changed so that the structure of the rdf:about value is taken out of the equation (like it is
-   * in {@link #remove(String)}).
+   * Please <b>NOTE</b> that the criteria for whether a record is removed is based on the value of
+   * {@link eu.europeana.corelib.definitions.edm.beans.FullBean#getAbout()}: a record belongs to the
+   * dataset if this value starts with <code>/datasetId/</code>. So the value of {@link
+   * eu.europeana.corelib.definitions.edm.beans.FullBean#getEuropeanaCollectionName()} does
+   * <b>not</b> play any role in determining which records to remove. The listed dependencies are
+   * found in the same way, based on the value of {@link
+   * eu.europeana.corelib.definitions.edm.entity.AbstractEdmEntity#getAbout()}. They are not
+   * removed if a maximum record date is given.
    * </p>
    * <p>
    * <b>NOTE:</b> this operation should not coincide with indexing operations on the same dataset.
@@ -197,7 +244,7 @@ public interface Indexer extends Closeable {
    * @return The number of records that were removed.
    * @throws IndexingException In case something went wrong.
    */
-  int removeAll(String datasetId, Date maxRecordDate) throws IndexingException;
+  long removeAll(String datasetId, Date maxRecordDate) throws IndexingException;
 
   /**
    * Counts the records in a given dataset. The criteria of whether a record belongs to a certain
@@ -1,20 +1,23 @@
 package eu.europeana.indexing;
 
 import eu.europeana.corelib.definitions.jibx.RDF;
+import eu.europeana.indexing.FullBeanPublisher.PreparedRecord;
 import eu.europeana.indexing.exception.IndexerRelatedIndexingException;
 import eu.europeana.indexing.exception.IndexingException;
 import eu.europeana.indexing.exception.SetupRelatedIndexingException;
 import eu.europeana.indexing.fullbean.StringToFullBeanConverter;
-import eu.europeana.indexing.tiers.ClassifierFactory;
+import eu.europeana.indexing.tiers.TierCalculator;
+import eu.europeana.indexing.tiers.TierCalculator.TierResults;
 import eu.europeana.indexing.utils.RdfTierUtils;
 import eu.europeana.indexing.utils.RdfWrapper;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +35,10 @@ class IndexerImpl implements Indexer {
 
   private final IndexingSupplier<StringToFullBeanConverter> stringToRdfConverterSupplier;
 
+  private final IndexingPipeline pipeline;
+
+  private final TierCalculator tierCalculator = new TierCalculator();
+
   /**
    * Constructor.
    *
@@ -52,53 +59,76 @@ class IndexerImpl implements Indexer {
       IndexingSupplier<StringToFullBeanConverter> stringToRdfConverterSupplier) {
     this.connectionProvider = connectionProvider;
     this.stringToRdfConverterSupplier = stringToRdfConverterSupplier;
+    this.pipeline = new IndexingPipeline(connectionProvider.getIndexingPipelineSettings());
   }
 
-  private void indexRecords(List<RDF> records, Date recordDate,
+  private <T> int indexRecords(Iterator<T> records, IndexingPipeline.Stage<T, RDF> parser,
+      Date recordDate, boolean preserveUpdateAndCreateTimesFromRdf,
+      List<String> datasetIdsForRedirection, boolean performRedirects) throws IndexingException {
+    final FullBeanPublisher publisher = getFullBeanPublisher(preserveUpdateAndCreateTimesFromRdf,
+        performRedirects);
+    final int count = pipeline.run(records, parser, this::preprocessRecord,
+        createRedirectResolution(publisher, recordDate, datasetIdsForRedirection,
+            performRedirects), batch -> publisher.persist(batch, recordDate));
+    LOGGER.info("Successfully processed {} records.", count);
+    return count;
+  }
+
+  private <T> void indexRecord(T record, IndexingPipeline.Stage<T, RDF> parser, Date recordDate,
       boolean preserveUpdateAndCreateTimesFromRdf, List<String> datasetIdsForRedirection,
       boolean performRedirects) throws IndexingException {
+    final FullBeanPublisher publisher = getFullBeanPublisher(preserveUpdateAndCreateTimesFromRdf,
+        performRedirects);
+    pipeline.runInCallingThread(record, parser, this::preprocessRecord,
+        createRedirectResolution(publisher, recordDate, datasetIdsForRedirection,
+            performRedirects), batch -> publisher.persist(batch, recordDate));
+    LOGGER.info("Successfully processed 1 record.");
+  }
+
+  private FullBeanPublisher getFullBeanPublisher(boolean preserveUpdateAndCreateTimesFromRdf,
+      boolean performRedirects) throws IndexingException {
     if (performRedirects && connectionProvider.getRecordRedirectDao() == null) {
       throw new SetupRelatedIndexingException(
           "Record redirect dao has not been initialized and performing redirects is requested");
     }
-    LOGGER.info("Processing {} records...", records.size());
-    final FullBeanPublisher publisher =
-        connectionProvider.getFullBeanPublisher(preserveUpdateAndCreateTimesFromRdf);
-
-    for (RDF record : records) {
-      preprocessRecord(record);
-      if (performRedirects) {
-        publisher
-            .publishWithRedirects(new RdfWrapper(record), recordDate, datasetIdsForRedirection);
-      } else {
-        publisher.publish(new RdfWrapper(record), recordDate, datasetIdsForRedirection);
-      }
-    }
+    return connectionProvider.getFullBeanPublisher(preserveUpdateAndCreateTimesFromRdf);
+  }
 
-    LOGGER.info("Successfully processed {} records.", records.size());
+  private static IndexingPipeline.BatchFunction<RDF, PreparedRecord> createRedirectResolution(
+      FullBeanPublisher publisher, Date recordDate, List<String> datasetIdsForRedirection,
+      boolean performRedirects) {
+    return batch -> publisher.prepare(
+        batch.stream().map(RdfWrapper::new).collect(Collectors.toList()), recordDate,
+        datasetIdsForRedirection, performRedirects);
   }
 
-  private static void preprocessRecord(RDF rdf) throws IndexingException {
+  private RDF preprocessRecord(RDF rdf) throws IndexingException {
 
     // Perform the tier classification
-    final RdfWrapper rdfWrapper = new RdfWrapper(rdf);
-    RdfTierUtils.setTier(rdf, ClassifierFactory.getMediaClassifier().classify(rdfWrapper));
-    RdfTierUtils.setTier(rdf, ClassifierFactory.getMetadataClassifier().classify(rdfWrapper));
-
+    final TierResults tiers = tierCalculator.calculate(rdf);
+    RdfTierUtils.setTier(rdf, tiers.getMediaTier());
+    RdfTierUtils.setTier(rdf, tiers.getMetadataTier());
+    return rdf;
   }
 
   @Override
   public void indexRdfs(List<RDF> records, Date recordDate,
       boolean preserveUpdateAndCreateTimesFromRdf, List<String> datasetIdsForRedirection,
       boolean performRedirects) throws IndexingException {
-    indexRecords(records, recordDate, preserveUpdateAndCreateTimesFromRdf, datasetIdsForRedirection,
-        performRedirects);
+    LOGGER.info("Processing {} records...", records.size());
+    if (records.size() == 1) {
+      indexRdf(records.get(0), recordDate, preserveUpdateAndCreateTimesFromRdf,
+          datasetIdsForRedirection, performRedirects);
+      return;
+    }
+    indexRecords(records.iterator(), record -> record, recordDate,
+        preserveUpdateAndCreateTimesFromRdf, datasetIdsForRedirection, performRedirects);
   }
 
   @Override
   public void indexRdf(RDF record, Date recordDate, boolean preserveUpdateAndCreateTimesFromRdf,
       List<String> datasetIdsForRedirection, boolean performRedirects) throws IndexingException {
-    indexRdfs(Collections.singletonList(record), recordDate, preserveUpdateAndCreateTimesFromRdf,
+    indexRecord(record, rdf -> rdf, recordDate, preserveUpdateAndCreateTimesFromRdf,
         datasetIdsForRedirection, performRedirects);
   }
 
@@ -106,21 +136,31 @@ class IndexerImpl implements Indexer {
   public void index(List<String> records, Date recordDate,
       boolean preserveUpdateAndCreateTimesFromRdf, List<String> datasetIdsForRedirection,
       boolean performRedirects) throws IndexingException {
-    LOGGER.info("Parsing {} records...", records.size());
-    final StringToFullBeanConverter stringToRdfConverter = stringToRdfConverterSupplier.get();
-    final List<RDF> wrappedRecords = new ArrayList<>(records.size());
-    for (String record : records) {
-      wrappedRecords.add(stringToRdfConverter.convertStringToRdf(record));
+    LOGGER.info("Parsing and processing {} records...", records.size());
+    if (records.size() == 1) {
+      index(records.get(0), recordDate, preserveUpdateAndCreateTimesFromRdf,
+          datasetIdsForRedirection, performRedirects);
+      return;
     }
-    indexRecords(wrappedRecords, recordDate, preserveUpdateAndCreateTimesFromRdf,
+    index(records.iterator(), recordDate, preserveUpdateAndCreateTimesFromRdf,
         datasetIdsForRedirection, performRedirects);
   }
 
+  @Override
+  public int index(Iterator<String> records, Date recordDate,
+      boolean preserveUpdateAndCreateTimesFromRdf, List<String> datasetIdsForRedirection,
+      boolean performRedirects) throws IndexingException {
+    final StringToFullBeanConverter stringToRdfConverter = stringToRdfConverterSupplier.get();
+    return indexRecords(records, stringToRdfConverter::convertStringToRdf, recordDate,
+        preserveUpdateAndCreateTimesFromRdf, datasetIdsForRedirection, performRedirects);
+  }
+
   @Override
   public void index(String record, Date recordDate, boolean preserveUpdateAndCreateTimesFromRdf,
       List<String> datasetIdsForRedirection, boolean performRedirects) throws IndexingException {
-    index(Collections.singletonList(record), recordDate, preserveUpdateAndCreateTimesFromRdf,
-        datasetIdsForRedirection, performRedirects);
+    final StringToFullBeanConverter stringToRdfConverter = stringToRdfConverterSupplier.get();
+    indexRecord(record, stringToRdfConverter::convertStringToRdf, recordDate,
+        preserveUpdateAndCreateTimesFromRdf, datasetIdsForRedirection, performRedirects);
   }
 
   @Override
@@ -134,6 +174,7 @@ class IndexerImpl implements Indexer {
 
   @Override
   public void close() throws IOException {
+    this.pipeline.close();
     this.connectionProvider.close();
   }
 
@@ -153,11 +194,14 @@ class IndexerImpl implements Indexer {
   }
 
   @Override
-  public int removeAll(String datasetId, Date maxRecordDate)
+  public long remove(Collection<String> rdfAbouts) throws IndexerRelatedIndexingException {
+    return this.connectionProvider.getIndexedRecordAccess().removeRecords(rdfAbouts);
+  }
+
+  @Override
+  public long removeAll(String datasetId, Date maxRecordDate)
       throws IndexerRelatedIndexingException {
-    // TODO: 8/26/20 Update removeAll method to return long instead of int, it will affect clients
-    return Math.toIntExact(
-        this.connectionProvider.getIndexedRecordAccess().removeDataset(datasetId, maxRecordDate));
+    return this.connectionProvider.getIndexedRecordAccess().removeDataset(datasetId, maxRecordDate);
   }
 
   @Override
@@ -8,10 +8,12 @@ import java.io.Closeable;
 import java.time.Duration;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,8 +25,15 @@ import org.slf4j.LoggerFactory;
  * </p>
  * <p>
  * This pool can have an unlimited number of indexers, that will be created automatically whenever
- * they are needed (i.e. when all other indexers are in use already). This thread pool implements
- * the automatic destruction of idle indexers, given a certain permissible idle time.
+ * they are needed (i.e. when all other indexers are in use already). Alternatively, the pool can be
+ * given a maximum number of indexers (see {@link #IndexerPool(IndexerFactory, long, long, int,
+ * long, IndexerPoolMetrics)}). When this maximum is reached, requests for an indexer wait (in order
+ * of arrival) until one becomes available or until the maximum wait time has passed. This limits
+ * the number of connections to Mongo and Solr under burst load. This thread pool implements the
+ * automatic destruction of idle indexers, given a certain permissible idle time.
+ * </p>
+ * <p>
+ * Measurements on the use of the pool are reported to an instance of {@link IndexerPoolMetrics}.
  * </p>
  * <p>
  * This class is thread-safe.
@@ -35,9 +44,10 @@ public class IndexerPool implements Closeable {
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexerPool.class);
 
   private final GenericObjectPool<Indexer> pool;
+  private final IndexerPoolMetrics metrics;
 
   /**
-   * Constructor.
+   * Constructor. The pool will have no maximum number of indexers.
    *
    * @param indexingSettings The  settings with which to create the indexer instances in the pool.
    * @param maxIdleTimeForIndexerInSecs The idle time after which an indexer is eligible for
@@ -52,7 +62,7 @@ public class IndexerPool implements Closeable {
   }
 
   /**
-   * Constructor.
+   * Constructor. The pool will have no maximum number of indexers.
    *
    * @param indexerFactory The factory from which to create the indexer instances in the pool.
    * @param maxIdleTimeForIndexerInSecs The idle time after which an indexer is eligible for
@@ -62,19 +72,82 @@ public class IndexerPool implements Closeable {
    */
   public IndexerPool(IndexerFactory indexerFactory, long maxIdleTimeForIndexerInSecs,
       long idleTimeCheckIntervalInSecs) {
+    this(indexerFactory, createPoolConfig(-1, -1, maxIdleTimeForIndexerInSecs,
+        idleTimeCheckIntervalInSecs), IndexerPoolMetrics.NO_OP);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param indexingSettings The  settings with which to create the indexer instances in the pool.
+   * @param maxIdleTimeForIndexerInSecs The idle time after which an indexer is eligible for
+   * destruction, in seconds.
+   * @param idleTimeCheckIntervalInSecs The interval with which we check the idle time of indexers
+   * to decide whether to destroy them, in seconds.
+   * @param maxTotal The maximum number of indexers in the pool. Must be positive.
+   * @param maxWaitInSecs The maximum time to wait for an indexer to become available, in seconds.
+   * A negative value means that there is no maximum.
+   * @param metrics The metrics to which to report the use of the pool. Is not null.
+   */
+  public IndexerPool(IndexingSettings indexingSettings, long maxIdleTimeForIndexerInSecs,
+      long idleTimeCheckIntervalInSecs, int maxTotal, long maxWaitInSecs,
+      IndexerPoolMetrics metrics) {
+    this(new IndexerFactory(indexingSettings), maxIdleTimeForIndexerInSecs,
+        idleTimeCheckIntervalInSecs, maxTotal, maxWaitInSecs, metrics);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param indexerFactory The factory from which to create the indexer instances in the pool.
+   * @param maxIdleTimeForIndexerInSecs The idle time after which an indexer is eligible for
+   * destruction, in seconds.
+   * @param idleTimeCheckIntervalInSecs The interval with which we check the idle time of indexers
+   * to decide whether to destroy them, in seconds.
+   * @param maxTotal The maximum number of indexers in the pool. Must be positive.
+   * @param maxWaitInSecs The maximum time to wait for an indexer to become available, in seconds.
+   * A negative value means that there is no maximum.
+   * @param metrics The metrics to which to report the use of the pool. Is not null.
+   */
+  public IndexerPool(IndexerFactory indexerFactory, long maxIdleTimeForIndexerInSecs,
+      long idleTimeCheckIntervalInSecs, int maxTotal, long maxWaitInSecs,
+      IndexerPoolMetrics metrics) {
+    this(indexerFactory, createPoolConfig(validateMaxTotal(maxTotal), maxWaitInSecs,
+        maxIdleTimeForIndexerInSecs, idleTimeCheckIntervalInSecs), metrics);
+  }
 
-    // Create indexer pool with default options.
-    pool = new GenericObjectPool<>(new PooledIndexerFactory(indexerFactory));
+  private IndexerPool(IndexerFactory indexerFactory, GenericObjectPoolConfig<Indexer> config,
+      IndexerPoolMetrics metrics) {
+    this.metrics = Objects.requireNonNull(metrics);
+    this.pool = new GenericObjectPool<>(new PooledIndexerFactory(indexerFactory), config);
+  }
 
-    // Set custom options for the size of the pool: no max or min number of indexer objects.
-    pool.setMaxIdle(-1);
-    pool.setMinIdle(-1);
-    pool.setMaxTotal(-1);
+  private static int validateMaxTotal(int maxTotal) {
+    if (maxTotal < 1) {
+      throw new IllegalArgumentException("The maximum number of indexers must be positive.");
+    }
+    return maxTotal;
+  }
+
+  private static GenericObjectPoolConfig<Indexer> createPoolConfig(int maxTotal,
+      long maxWaitInSecs, long maxIdleTimeForIndexerInSecs, long idleTimeCheckIntervalInSecs) {
+
+    // Set custom options for the size of the pool: no min number of indexer objects, and a max
+    // number only if one is given. Requests for indexers are served in order of arrival when the
+    // maximum is reached.
+    final GenericObjectPoolConfig<Indexer> config = new GenericObjectPoolConfig<>();
+    config.setMaxTotal(maxTotal);
+    config.setMaxIdle(maxTotal);
+    config.setMinIdle(0);
+    config.setBlockWhenExhausted(true);
+    config.setMaxWaitMillis(maxWaitInSecs < 0 ? -1 : convertSecsToMillis(maxWaitInSecs));
+    config.setFairness(true);
 
     // Set custom options for indexer pool regarding eviction (when indexer has been idle for some time).
-    pool.setSoftMinEvictableIdleTimeMillis(-1);
-    pool.setMinEvictableIdleTimeMillis(convertSecsToMillis(maxIdleTimeForIndexerInSecs));
-    pool.setTimeBetweenEvictionRunsMillis(convertSecsToMillis(idleTimeCheckIntervalInSecs));
+    config.setSoftMinEvictableIdleTimeMillis(-1);
+    config.setMinEvictableIdleTimeMillis(convertSecsToMillis(maxIdleTimeForIndexerInSecs));
+    config.setTimeBetweenEvictionRunsMillis(convertSecsToMillis(idleTimeCheckIntervalInSecs));
+    return config;
   }
 
   private static long convertSecsToMillis(long seconds) {
@@ -121,30 +194,66 @@ public class IndexerPool implements Closeable {
         datasetIdsForRedirection, performRedirects));
   }
 
+  /**
+   * @return The number of indexers that are currently in use.
+   */
+  public int getActiveCount() {
+    return pool.getNumActive();
+  }
+
+  /**
+   * @return The number of indexers that are currently available in the pool.
+   */
+  public int getIdleCount() {
+    return pool.getNumIdle();
+  }
+
+  /**
+   * @return The number of threads that are currently waiting for an indexer to become available.
+   */
+  public int getWaitingCount() {
+    return pool.getNumWaiters();
+  }
+
   private void indexRecord(IndexTask indexTask) throws IndexingException {
 
     // Obtain indexer from the pool.
     final Indexer indexer;
+    final long borrowStart = System.nanoTime();
     try {
       indexer = pool.borrowObject();
     } catch (IndexingException e) {
+      metrics.indexerBorrowFailed(getTimeSince(borrowStart));
       throw e;
     } catch (Exception e) {
+      metrics.indexerBorrowFailed(getTimeSince(borrowStart));
       throw new IndexerRelatedIndexingException("Error while obtaining indexer from the pool.", e);
     }
+    metrics.indexerBorrowed(getTimeSince(borrowStart), pool.getNumActive(), pool.getNumIdle());
 
     // Perform indexing and release indexer.
+    final long indexStart = System.nanoTime();
     try {
       indexTask.performTask(indexer);
     } catch (IndexerRelatedIndexingException e) {
+      metrics.recordsIndexed(1, getTimeSince(indexStart), false);
       invalidateAndSwallowException(indexer);
       throw e;
+    } catch (IndexingException | RuntimeException e) {
+      metrics.recordsIndexed(1, getTimeSince(indexStart), false);
+      pool.returnObject(indexer);
+      throw e;
     }
+    metrics.recordsIndexed(1, getTimeSince(indexStart), true);
 
     // Return indexer to the pool if it has not been invalidated.
     pool.returnObject(indexer);
   }
 
+  private static Duration getTimeSince(long startNanos) {
+    return Duration.ofNanos(System.nanoTime() - startNanos);
+  }
+
   private void invalidateAndSwallowException(Indexer indexer) {
     try {
       pool.invalidateObject(indexer);
@@ -0,0 +1,53 @@
+package eu.europeana.indexing;
+
+import java.time.Duration;
+
+/**
+ * <p>
+ * Implementations of this interface receive measurements from an {@link IndexerPool}, so that they
+ * can be exposed to a monitoring system. All methods have an empty default implementation, so that
+ * implementations only need to override the measurements they are interested in.
+ * </p>
+ * <p>
+ * Implementations must be thread-safe and should return quickly: the methods are called from the
+ * threads that use the pool.
+ * </p>
+ */
+public interface IndexerPoolMetrics {
+
+  /**
+   * Metrics implementation that ignores all measurements.
+   */
+  IndexerPoolMetrics NO_OP = new IndexerPoolMetrics() {
+  };
+
+  /**
+   * Called when an indexer was borrowed from the pool.
+   *
+   * @param waitTime The time it took to obtain the indexer (including the time waiting for an
+   * indexer to become available and the time creating one).
+   * @param activeCount The number of indexers that are in use (including this one).
+   * @param idleCount The number of indexers that are available in the pool.
+   */
+  default void indexerBorrowed(Duration waitTime, int activeCount, int idleCount) {
+  }
+
+  /**
+   * Called when no indexer could be borrowed from the pool (e.g. because the maximum wait time was
+   * exceeded).
+   *
+   * @param waitTime The time spent trying to obtain an indexer.
+   */
+  default void indexerBorrowFailed(Duration waitTime) {
+  }
+
+  /**
+   * Called when an indexing operation completed.
+   *
+   * @param recordCount The number of records that were processed by the operation.
+   * @param duration The time the operation took (excluding the time to borrow the indexer).
+   * @param successful Whether the operation completed successfully.
+   */
+  default void recordsIndexed(int recordCount, Duration duration, boolean successful) {
+  }
+}
@@ -0,0 +1,304 @@
+package eu.europeana.indexing;
+
+import eu.europeana.indexing.exception.IndexerRelatedIndexingException;
+import eu.europeana.indexing.exception.IndexingException;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * This class processes records in a staged pipeline. Every record passes through two per-record
+ * stages (parsing and tier calculation), after which the records are collected in batches for the
+ * redirect resolution and persistence stages. Each stage has its own pool of workers (see {@link
+ * IndexingPipelineSettings}), so that CPU-bound and IO-bound stages can overlap.
+ * </p>
+ * <p>
+ * The number of records in the pipeline is bounded: when the maximum is reached, the supply of new
+ * records blocks until a batch is persisted. Records are divided into batches in the order in
+ * which they are supplied, but batches may be persisted in any order if there is more than one
+ * persistence worker.
+ * </p>
+ * <p>
+ * If one of the records fails, no new records are accepted and no further batches are persisted.
+ * The pipeline waits for all records that are already being processed, after which the first
+ * failure is thrown. Records in batches that were already persisted remain persisted.
+ * </p>
+ * <p>
+ * This class is thread-safe: multiple runs may share the workers. The pipeline should be closed to
+ * release its worker threads. The workers are daemon threads, so a pipeline that is not closed does
+ * not prevent the JVM from shutting down. Single records can be processed in the calling thread
+ * instead (see {@link #runInCallingThread(Object, Stage, Stage, BatchFunction, BatchStage)}), so
+ * that they don't need to be handed over from one worker to the next.
+ * </p>
+ */
+class IndexingPipeline implements Closeable {
+
+  private final IndexingPipelineSettings settings;
+
+  private final ExecutorService parsingExecutor;
+  private final ExecutorService tierCalculationExecutor;
+  private final ExecutorService redirectResolutionExecutor;
+  private final ExecutorService persistenceExecutor;
+
+  /**
+   * Constructor.
+   *
+   * @param settings The settings of this pipeline.
+   */
+  IndexingPipeline(IndexingPipelineSettings settings) {
+    this.settings = settings;
+    this.parsingExecutor = createExecutor("parsing", settings.getParsingWorkers());
+    this.tierCalculationExecutor = createExecutor("tier-calculation",
+        settings.getTierCalculationWorkers());
+    this.redirectResolutionExecutor = createExecutor("redirect-resolution",
+        settings.getRedirectResolutionWorkers());
+    this.persistenceExecutor = createExecutor("persistence", settings.getPersistenceWorkers());
+  }
+
+  private static ExecutorService createExecutor(String stageName, int workers) {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    return Executors.newFixedThreadPool(workers, runnable -> {
+      final Thread thread = new Thread(runnable,
+          "indexing-" + stageName + "-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Processes one record in the calling thread, passing it through the same stages as {@link
+   * #run(Iterator, Stage, Stage, BatchFunction, BatchStage)} would (with a batch of one record),
+   * but without using the workers of this pipeline.
+   *
+   * @param record The record to process.
+   * @param parsing The parsing stage.
+   * @param tierCalculation The tier calculation stage.
+   * @param redirectResolution The redirect resolution stage. It should return a list of the same
+   * size as the input.
+   * @param persistence The persistence stage.
+   * @param <I> The type of the input record.
+   * @param <R> The type of the record after parsing (and after tier calculation).
+   * @param <P> The type of the record after redirect resolution.
+   * @throws IndexingException In case the record failed.
+   */
+  <I, R, P> void runInCallingThread(I record, Stage<I, R> parsing, Stage<R, R> tierCalculation,
+      BatchFunction<R, P> redirectResolution, BatchStage<P> persistence) throws IndexingException {
+    final R parsed = tierCalculation.apply(parsing.apply(record));
+    persistence.persist(redirectResolution.apply(Collections.singletonList(parsed)));
+  }
+
+  /**
+   * Processes the given records. This method returns when all records have been persisted, or when
+   * a record failed.
+   *
+   * @param records The records to process. This iterator is only accessed by the calling thread.
+   * @param parsing The parsing stage.
+   * @param tierCalculation The tier calculation stage.
+   * @param redirectResolution The redirect resolution stage. It should return a list of the same
+   * size as the input.
+   * @param persistence The persistence stage.
+   * @param <I> The type of the input records.
+   * @param <R> The type of the records after parsing (and after tier calculation).
+   * @param <P> The type of the records after redirect resolution.
+   * @return The number of records that were processed.
+   * @throws IndexingException In case one of the records failed (the first exception is thrown),
+   * or if the calling thread was interrupted.
+   */
+  <I, R, P> int run(Iterator<I> records, Stage<I, R> parsing, Stage<R, R> tierCalculation,
+      BatchFunction<R, P> redirectResolution, BatchStage<P> persistence) throws IndexingException {
+
+    final Semaphore availableSlots = new Semaphore(settings.getQueueCapacity());
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final List<CompletableFuture<Void>> batches = new ArrayList<>();
+    List<CompletableFuture<R>> currentBatch = new ArrayList<>();
+    int count = 0;
+
+    // Feed the records into the pipeline.
+    try {
+      while (failure.get() == null && records.hasNext()) {
+        availableSlots.acquire();
+        final I record = records.next();
+        final CompletableFuture<R> future = CompletableFuture
+            .supplyAsync(() -> apply(parsing, record), parsingExecutor)
+            .thenApplyAsync(parsed -> apply(tierCalculation, parsed), tierCalculationExecutor);
+        future.whenComplete((result, exception) -> registerFailure(failure, exception));
+        currentBatch.add(future);
+        count++;
+        if (currentBatch.size() == settings.getPersistenceBatchSize()) {
+          // Forget about completed batches so that memory use does not grow with the input.
+          batches.removeIf(CompletableFuture::isDone);
+          batches.add(submitBatch(currentBatch, redirectResolution, persistence, availableSlots,
+              failure));
+          currentBatch = new ArrayList<>();
+        }
+      }
+    } catch (InterruptedException e) {
+      failure.compareAndSet(null, e);
+      Thread.currentThread().interrupt();
+      throw new IndexerRelatedIndexingException("Interrupted while indexing records.", e);
+    } catch (RuntimeException e) {
+      // The supply of records failed: we still wait for the records that are in the pipeline.
+      failure.compareAndSet(null, e);
+    }
+    if (!currentBatch.isEmpty()) {
+      batches.add(
+          submitBatch(currentBatch, redirectResolution, persistence, availableSlots, failure));
+    }
+
+    // Wait for all batches to complete (exceptions are registered in the failure reference).
+    CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+        .exceptionally(exception -> null).join();
+
+    // Report the first failure, if any.
+    final Throwable exception = failure.get();
+    if (exception != null) {
+      throwUnwrapped(exception);
+    }
+    return count;
+  }
+
+  private <R, P> CompletableFuture<Void> submitBatch(List<CompletableFuture<R>> batch,
+      BatchFunction<R, P> redirectResolution, BatchStage<P> persistence, Semaphore availableSlots,
+      AtomicReference<Throwable> failure) {
+    return CompletableFuture.allOf(batch.toArray(CompletableFuture[]::new))
+        .thenApplyAsync(done -> {
+          if (failure.get() != null) {
+            return null;
+          }
+          final List<R> records = batch.stream().map(CompletableFuture::join)
+              .collect(Collectors.toList());
+          try {
+            return redirectResolution.apply(records);
+          } catch (IndexingException e) {
+            throw new CompletionException(e);
+          }
+        }, redirectResolutionExecutor).thenAcceptAsync(records -> {
+          if (records != null && failure.get() == null) {
+            try {
+              persistence.persist(records);
+            } catch (IndexingException e) {
+              throw new CompletionException(e);
+            }
+          }
+        }, persistenceExecutor).whenComplete((result, exception) -> {
+          registerFailure(failure, exception);
+          availableSlots.release(batch.size());
+        });
+  }
+
+  private static void registerFailure(AtomicReference<Throwable> failure, Throwable exception) {
+    if (exception != null) {
+      failure.compareAndSet(null, unwrap(exception));
+    }
+  }
+
+  private static Throwable unwrap(Throwable exception) {
+    Throwable result = exception;
+    while (result instanceof CompletionException && result.getCause() != null) {
+      result = result.getCause();
+    }
+    return result;
+  }
+
+  private static void throwUnwrapped(Throwable exception) throws IndexingException {
+    if (exception instanceof IndexingException) {
+      throw (IndexingException) exception;
+    }
+    if (exception instanceof RuntimeException) {
+      throw (RuntimeException) exception;
+    }
+    if (exception instanceof Error) {
+      throw (Error) exception;
+    }
+    throw new IndexerRelatedIndexingException("Unexpected exception while indexing records.",
+        (Exception) exception);
+  }
+
+  private static <A, B> B apply(Stage<A, B> stage, A input) {
+    try {
+      return stage.apply(input);
+    } catch (IndexingException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Stops accepting new work and releases the worker threads. Work that is in progress is
+   * completed.
+   */
+  @Override
+  public void close() {
+    parsingExecutor.shutdown();
+    tierCalculationExecutor.shutdown();
+    redirectResolutionExecutor.shutdown();
+    persistenceExecutor.shutdown();
+  }
+
+  /**
+   * Similar to the Java interface {@link Function}, but one that may throw an {@link
+   * IndexingException}. This represents a per-record stage in the pipeline.
+   *
+   * @param <A> The type of the input.
+   * @param <B> The type of the output.
+   */
+  @FunctionalInterface
+  interface Stage<A, B> {
+
+    /**
+     * Processes a record.
+     *
+     * @param input The input record.
+     * @return The output record.
+     * @throws IndexingException In case the record could not be processed.
+     */
+    B apply(A input) throws IndexingException;
+  }
+
+  /**
+   * A stage in the pipeline that transforms records in batches.
+   *
+   * @param <A> The type of the input.
+   * @param <B> The type of the output.
+   */
+  @FunctionalInterface
+  interface BatchFunction<A, B> {
+
+    /**
+     * Processes a batch of records.
+     *
+     * @param input The input records.
+     * @return The output records, in the same order as the input records.
+     * @throws IndexingException In case the records could not be processed.
+     */
+    List<B> apply(List<A> input) throws IndexingException;
+  }
+
+  /**
+   * A stage in the pipeline that persists records in batches.
+   *
+   * @param <A> The type of the input.
+   */
+  @FunctionalInterface
+  interface BatchStage<A> {
+
+    /**
+     * Persists a batch of records.
+     *
+     * @param records The records.
+     * @throws IndexingException In case the records could not be persisted.
+     */
+    void persist(List<A> records) throws IndexingException;
+  }
+}
@@ -0,0 +1,73 @@
+package eu.europeana.indexing;
+
+/**
+ * This class contains the settings of the staged pipeline that an {@link Indexer} uses to index
+ * multiple records. There are four stages (parsing, tier calculation, redirect resolution and
+ * persistence), each of which has its own number of workers. Instances of this class are
+ * immutable.
+ */
+public final class IndexingPipelineSettings {
+
+  /**
+   * The default settings: one worker per stage, at most 200 records in the pipeline and batches
+   * of 100 records for persistence.
+   */
+  public static final IndexingPipelineSettings DEFAULT = new IndexingPipelineSettings(1, 1, 1, 1,
+      200, 100);
+
+  private final int parsingWorkers;
+  private final int tierCalculationWorkers;
+  private final int redirectResolutionWorkers;
+  private final int persistenceWorkers;
+  private final int queueCapacity;
+  private final int persistenceBatchSize;
+
+  /**
+   * Constructor. All worker counts, as well as the batch size, are at least 1: lower values are
+   * replaced by 1. The queue capacity is at least the persistence batch size.
+   *
+   * @param parsingWorkers The number of workers parsing records.
+   * @param tierCalculationWorkers The number of workers calculating the tiers of records.
+   * @param redirectResolutionWorkers The number of workers resolving redirects (and converting the
+   * records to full beans).
+   * @param persistenceWorkers The number of workers persisting batches of records.
+   * @param queueCapacity The maximum number of records that may be in the pipeline (i.e. accepted
+   * but not yet persisted) at any time. When this number is reached, the supply of new records is
+   * blocked until records are persisted.
+   * @param persistenceBatchSize The number of records that are persisted together.
+   */
+  public IndexingPipelineSettings(int parsingWorkers, int tierCalculationWorkers,
+      int redirectResolutionWorkers, int persistenceWorkers, int queueCapacity,
+      int persistenceBatchSize) {
+    this.parsingWorkers = Math.max(parsingWorkers, 1);
+    this.tierCalculationWorkers = Math.max(tierCalculationWorkers, 1);
+    this.redirectResolutionWorkers = Math.max(redirectResolutionWorkers, 1);
+    this.persistenceWorkers = Math.max(persistenceWorkers, 1);
+    this.persistenceBatchSize = Math.max(persistenceBatchSize, 1);
+    this.queueCapacity = Math.max(queueCapacity, this.persistenceBatchSize);
+  }
+
+  public int getParsingWorkers() {
+    return parsingWorkers;
+  }
+
+  public int getTierCalculationWorkers() {
+    return tierCalculationWorkers;
+  }
+
+  public int getRedirectResolutionWorkers() {
+    return redirectResolutionWorkers;
+  }
+
+  public int getPersistenceWorkers() {
+    return persistenceWorkers;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public int getPersistenceBatchSize() {
+    return persistenceBatchSize;
+  }
+}
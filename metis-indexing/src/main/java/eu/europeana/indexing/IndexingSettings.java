@@ -2,6 +2,7 @@ package eu.europeana.indexing;
 
 import com.mongodb.ServerAddress;
 import eu.europeana.indexing.exception.SetupRelatedIndexingException;
+import eu.europeana.indexing.solr.SolrBatchPolicy;
 import eu.europeana.metis.mongo.MongoProperties;
 import eu.europeana.metis.mongo.MongoProperties.ReadPreferenceValue;
 import eu.europeana.metis.solr.SolrProperties;
@@ -27,6 +28,22 @@ public final class IndexingSettings {
   private final SolrProperties<SetupRelatedIndexingException> solrProperties = new SolrProperties<>(
       SetupRelatedIndexingException::new);
 
+  // Solr batch settings
+  private int solrBatchMaxDocuments = SolrBatchPolicy.DEFAULT.getMaxDocuments();
+  private long solrBatchMaxBytes = SolrBatchPolicy.DEFAULT.getMaxBytes();
+  private long solrBatchMaxDelayInMillis = SolrBatchPolicy.DEFAULT.getMaxDelayInMillis();
+  private int solrCommitWithinInMillis = SolrBatchPolicy.DEFAULT.getCommitWithinInMillis();
+
+  // Pipeline settings
+  private int parsingWorkers = IndexingPipelineSettings.DEFAULT.getParsingWorkers();
+  private int tierCalculationWorkers = IndexingPipelineSettings.DEFAULT
+      .getTierCalculationWorkers();
+  private int redirectResolutionWorkers = IndexingPipelineSettings.DEFAULT
+      .getRedirectResolutionWorkers();
+  private int persistenceWorkers = IndexingPipelineSettings.DEFAULT.getPersistenceWorkers();
+  private int pipelineQueueCapacity = IndexingPipelineSettings.DEFAULT.getQueueCapacity();
+  private int persistenceBatchSize = IndexingPipelineSettings.DEFAULT.getPersistenceBatchSize();
+
   /**
    * Add a Mongo host. This method must be called at least once.
    *
@@ -147,6 +164,112 @@ public final class IndexingSettings {
     this.solrProperties.addSolrHost(host);
   }
 
+  /**
+   * Set the maximum number of documents that are sent to Solr in one batch. This method is
+   * optional: by default, batches contain at most 100 documents.
+   *
+   * @param solrBatchMaxDocuments The maximum number of documents. If this number is 1 or lower,
+   * documents are sent to Solr individually.
+   */
+  public void setSolrBatchMaxDocuments(int solrBatchMaxDocuments) {
+    this.solrBatchMaxDocuments = solrBatchMaxDocuments;
+  }
+
+  /**
+   * Set the maximum (estimated) size in bytes of a batch that is sent to Solr. This method is
+   * optional: by default, batches are at most 10MB.
+   *
+   * @param solrBatchMaxBytes The maximum size. If this number is zero or negative, there is no
+   * size limit.
+   */
+  public void setSolrBatchMaxBytes(long solrBatchMaxBytes) {
+    this.solrBatchMaxBytes = solrBatchMaxBytes;
+  }
+
+  /**
+   * Set the maximum time that a document may wait in a batch before the batch is sent to Solr.
+   * This method is optional: by default, this is 10 seconds.
+   *
+   * @param solrBatchMaxDelayInMillis The maximum delay in milliseconds. If this number is zero or
+   * negative, there is no time limit.
+   */
+  public void setSolrBatchMaxDelayInMillis(long solrBatchMaxDelayInMillis) {
+    this.solrBatchMaxDelayInMillis = solrBatchMaxDelayInMillis;
+  }
+
+  /**
+   * Set the commitWithin value that is sent to Solr along with every batch. This method is
+   * optional: by default, no commitWithin is sent, leaving the commit to the Solr configuration
+   * (or to {@link Indexer#triggerFlushOfPendingChanges(boolean)}).
+   *
+   * @param solrCommitWithinInMillis The commitWithin value in milliseconds. If this number is zero
+   * or negative, no commitWithin is sent.
+   */
+  public void setSolrCommitWithinInMillis(int solrCommitWithinInMillis) {
+    this.solrCommitWithinInMillis = solrCommitWithinInMillis;
+  }
+
+  /**
+   * Set the number of workers that parse records when indexing multiple records. This method is
+   * optional: by default, there is one worker.
+   *
+   * @param parsingWorkers The number of workers. Values lower than 1 are replaced by 1.
+   */
+  public void setParsingWorkers(int parsingWorkers) {
+    this.parsingWorkers = parsingWorkers;
+  }
+
+  /**
+   * Set the number of workers that calculate the tiers of records when indexing multiple records.
+   * This method is optional: by default, there is one worker.
+   *
+   * @param tierCalculationWorkers The number of workers. Values lower than 1 are replaced by 1.
+   */
+  public void setTierCalculationWorkers(int tierCalculationWorkers) {
+    this.tierCalculationWorkers = tierCalculationWorkers;
+  }
+
+  /**
+   * Set the number of workers that resolve redirects (and convert records to full beans) when
+   * indexing multiple records. This method is optional: by default, there is one worker.
+   *
+   * @param redirectResolutionWorkers The number of workers. Values lower than 1 are replaced by 1.
+   */
+  public void setRedirectResolutionWorkers(int redirectResolutionWorkers) {
+    this.redirectResolutionWorkers = redirectResolutionWorkers;
+  }
+
+  /**
+   * Set the number of workers that persist batches of records when indexing multiple records. This
+   * method is optional: by default, there is one worker.
+   *
+   * @param persistenceWorkers The number of workers. Values lower than 1 are replaced by 1.
+   */
+  public void setPersistenceWorkers(int persistenceWorkers) {
+    this.persistenceWorkers = persistenceWorkers;
+  }
+
+  /**
+   * Set the maximum number of records that may be in the indexing pipeline (i.e. accepted but not
+   * yet persisted) at any time. This method is optional: by default, this is 200.
+   *
+   * @param pipelineQueueCapacity The maximum number of records. Values lower than the persistence
+   * batch size are replaced by the persistence batch size.
+   */
+  public void setPipelineQueueCapacity(int pipelineQueueCapacity) {
+    this.pipelineQueueCapacity = pipelineQueueCapacity;
+  }
+
+  /**
+   * Set the number of records that are persisted together. This method is optional: by default,
+   * this is 100.
+   *
+   * @param persistenceBatchSize The number of records. Values lower than 1 are replaced by 1.
+   */
+  public void setPersistenceBatchSize(int persistenceBatchSize) {
+    this.persistenceBatchSize = persistenceBatchSize;
+  }
+
   /**
    * This method returns the list of Mongo hosts.
    *
@@ -200,6 +323,27 @@ public final class IndexingSettings {
     return this.solrProperties;
   }
 
+  /**
+   * This method returns the policy that determines when documents are sent to Solr.
+   *
+   * @return The Solr batch policy.
+   */
+  public SolrBatchPolicy getSolrBatchPolicy() {
+    return new SolrBatchPolicy(solrBatchMaxDocuments, solrBatchMaxBytes,
+        solrBatchMaxDelayInMillis, solrCommitWithinInMillis);
+  }
+
+  /**
+   * This method returns the settings of the pipeline that is used to index multiple records.
+   *
+   * @return The pipeline settings.
+   */
+  public IndexingPipelineSettings getIndexingPipelineSettings() {
+    return new IndexingPipelineSettings(parsingWorkers, tierCalculationWorkers,
+        redirectResolutionWorkers, persistenceWorkers, pipelineQueueCapacity,
+        persistenceBatchSize);
+  }
+
   private static <T> T nonNull(T value, String fieldName) throws SetupRelatedIndexingException {
     if (value == null) {
       throw new SetupRelatedIndexingException(
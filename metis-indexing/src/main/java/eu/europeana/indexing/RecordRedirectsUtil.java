@@ -45,6 +45,9 @@ public final class RecordRedirectsUtil {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RecordRedirectsUtil.class);
 
+  private static final int MAX_RECORDS_PER_QUERY = 25;
+  private static final int MAX_CANDIDATES_PER_QUERY = 1000;
+
   private RecordRedirectsUtil() {
   }
 
@@ -73,37 +76,73 @@ public final class RecordRedirectsUtil {
     return recordsForRedirection;
   }
 
+  /**
+   * Batch variant of {@link #checkAndApplyRedirects(RecordRedirectDao, RdfWrapper, Date, List,
+   * boolean, ThrowingFunction)}: the candidates for redirection are searched for a number of
+   * records at the same time, using one combined Solr query per (sub)batch of records, after which
+   * they are matched to the individual records locally. If a combined query yields more candidates
+   * than can be retrieved at once, the records in that (sub)batch are queried individually.
+   *
+   * @param recordRedirectDao The DAO object to manage redirects.
+   * @param rdfs The records.
+   * @param recordDate The date that would represent the created/updated date of a record
+   * @param datasetIdsToRedirectFrom The dataset ids that their records need to be redirected
+   * @param performRedirects flag that indicates if redirect should be performed
+   * @param solrDocumentRetriever Function to execute a Solr query.
+   * @return For every record (in the same order as the input), the records that were redirected to
+   * it, along with their creation dates.
+   * @throws IndexingException In case a problem occurred querying Solr.
+   */
+  static List<List<Pair<String, Date>>> checkAndApplyRedirects(
+      RecordRedirectDao recordRedirectDao, List<RdfWrapper> rdfs, Date recordDate,
+      List<String> datasetIdsToRedirectFrom, boolean performRedirects,
+      ThrowingFunction<Map<String, String>, SolrDocumentList, IndexingException> solrDocumentRetriever)
+      throws IndexingException {
+
+    // If no redirects are to be performed, we're done.
+    if (!performRedirects) {
+      return rdfs.stream().map(rdf -> Collections.<Pair<String, Date>>emptyList())
+          .collect(Collectors.toList());
+    }
+
+    // Search Solr to find matching records for redirection: only the records with a query.
+    final List<RedirectionQuery> queries = new ArrayList<>(rdfs.size());
+    for (RdfWrapper rdf : rdfs) {
+      queries.add(new RedirectionQuery(rdf, datasetIdsToRedirectFrom));
+    }
+    final List<RedirectionQuery> queriesToExecute = queries.stream()
+        .filter(RedirectionQuery::hasMatchingQuery).collect(Collectors.toList());
+    final Map<RedirectionQuery, List<Pair<String, Date>>> recordsForRedirection = new HashMap<>();
+    for (int start = 0; start < queriesToExecute.size(); start += MAX_RECORDS_PER_QUERY) {
+      recordsForRedirection.putAll(searchMatchingRecordsForRedirection(queriesToExecute
+              .subList(start, Math.min(start + MAX_RECORDS_PER_QUERY, queriesToExecute.size())),
+          solrDocumentRetriever));
+    }
+
+    // Create redirection
+    final List<List<Pair<String, Date>>> result = new ArrayList<>(queries.size());
+    for (RedirectionQuery query : queries) {
+      final List<Pair<String, Date>> recordsForQuery = recordsForRedirection
+          .getOrDefault(query, Collections.emptyList());
+      for (Pair<String, Date> recordForRedirection : recordsForQuery) {
+        introduceRedirection(recordRedirectDao, query.getAbout(), recordForRedirection.getLeft(),
+            recordDate);
+      }
+      result.add(recordsForQuery);
+    }
+
+    // Done.
+    return result;
+  }
+
   private static List<Pair<String, Date>> searchMatchingRecordForRedirection(RdfWrapper rdfWrapper,
       List<String> datasetIdsToRedirectFrom,
       ThrowingFunction<Map<String, String>, SolrDocumentList, IndexingException> solrDocumentRetriever)
       throws IndexingException {
-    //The incoming structure of the identifier is /datasetId/recordId
-    final String[] splitRecordIdentifier = rdfWrapper.getAbout().split("/");
-    String datasetId = splitRecordIdentifier[1];
-    String recordId = splitRecordIdentifier[2];
-
-    //Create combinations of all rules into one query
-    final Pair<String, List<String>> queryForDatasetIdsAndConcatenatedIds = generateQueryForDatasetIds(
-        datasetIdsToRedirectFrom, recordId);
-    final Map<String, List<String>> firstMapOfLists = new HashMap<>();
-    final Map<String, List<String>> secondMapOfLists = new HashMap<>();
-    final Map<String, List<String>> thirdMapOfLists = new HashMap<>();
-    final String queryMatchingFields = generateQueryForMatchingFields(rdfWrapper, firstMapOfLists,
-        secondMapOfLists, thirdMapOfLists);
-    final List<String> queriesToCombine = Arrays
-        .asList(queryForDatasetIdsAndConcatenatedIds.getLeft(), queryMatchingFields);
-    final String combinedQueryOr = computeJoiningQuery(getFilteredItems(queriesToCombine),
-        UnaryOperator.identity(), Collectors.joining(" OR ", "(", ")"));
+    final RedirectionQuery query = new RedirectionQuery(rdfWrapper, datasetIdsToRedirectFrom);
 
     //If combined query or is empty then we do not have a reason to search for a redirection match
-    if (StringUtils.isNotBlank(combinedQueryOr)) {
-      //Create query to restrict search on specific datasetId subsets
-      final List<String> datasetIds = new ArrayList<>();
-      datasetIds.add(datasetId);
-      if (!CollectionUtils.isEmpty(datasetIdsToRedirectFrom)) {
-        datasetIdsToRedirectFrom.stream().filter(StringUtils::isNotBlank).forEach(datasetIds::add);
-      }
-      final String datasetIdSubsets = generateQueryInDatasetSubsets(datasetIds);
+    if (query.hasMatchingQuery()) {
 
       // Query avoiding self-redirection. If the dataset already exists in the Solr it is likely that
       // our query so far would return the very record we're indexing, which should be prevented.
@@ -113,35 +152,85 @@ public final class RecordRedirectsUtil {
 
       // Assemble final query.
       final List<String> finalQueryParts = Arrays
-          .asList(datasetIdSubsets, combinedQueryOr, queryPreventingFindingSameRecord);
+          .asList(generateQueryInDatasetSubsets(query.getDatasetIds()), query.getMatchingQuery(),
+              queryPreventingFindingSameRecord);
       final String finalQuery = computeJoiningQuery(getFilteredItems(finalQueryParts),
           UnaryOperator.identity(), Collectors.joining(" AND "));
 
-      //Apply solr query and execute
-      final Map<String, String> queryParamMap = new HashMap<>();
-      queryParamMap.put("q", finalQuery);
-      queryParamMap.put("fl",
-          String.format("%s,%s,%s,%s,%s,%s", EdmLabel.EUROPEANA_ID, EdmLabel.TIMESTAMP_CREATED,
-              EdmLabel.PROXY_DC_IDENTIFIER, EdmLabel.PROXY_DC_TITLE, EdmLabel.PROXY_DC_DESCRIPTION,
-              EdmLabel.PROVIDER_AGGREGATION_EDM_IS_SHOWN_BY));
-
       //Preprocess sub-query and replace documents based on the result
-      SolrDocumentList solrDocuments = solrDocumentRetriever.apply(queryParamMap);
+      SolrDocumentList solrDocuments = solrDocumentRetriever
+          .apply(createQueryParameters(finalQuery, null));
 
       //Check exact ids match first
-      modifyDocumentListIfMatchesFound(solrDocuments,
-          queryForDatasetIdsAndConcatenatedIds.getRight(), firstMapOfLists, secondMapOfLists,
-          thirdMapOfLists);
+      modifyDocumentListIfMatchesFound(solrDocuments, query.getConcatenatedIds(),
+          query.getFirstMapOfLists(), query.getSecondMapOfLists(), query.getThirdMapOfLists());
 
       //Return all identifiers found and their creationDates
-      return solrDocuments.stream().map(document -> ImmutablePair
-          .of((String) document.getFieldValue(EdmLabel.EUROPEANA_ID.toString()),
-              (Date) document.getFieldValue(EdmLabel.TIMESTAMP_CREATED.toString())))
-          .collect(Collectors.toList());
+      return getIdentifiersAndCreationDates(solrDocuments);
     }
     return new ArrayList<>();
   }
 
+  private static Map<RedirectionQuery, List<Pair<String, Date>>> searchMatchingRecordsForRedirection(
+      List<RedirectionQuery> queries,
+      ThrowingFunction<Map<String, String>, SolrDocumentList, IndexingException> solrDocumentRetriever)
+      throws IndexingException {
+
+    // Assemble the combined query: the union of the individual queries.
+    final List<String> datasetIds = queries.stream().map(RedirectionQuery::getDatasetIds)
+        .flatMap(List::stream).distinct().collect(Collectors.toList());
+    final String combinedMatchingQuery = queries.stream().map(RedirectionQuery::getMatchingQuery)
+        .collect(Collectors.joining(" OR ", "(", ")"));
+    final String finalQuery = computeJoiningQuery(
+        getFilteredItems(Arrays.asList(generateQueryInDatasetSubsets(datasetIds),
+            combinedMatchingQuery)), UnaryOperator.identity(), Collectors.joining(" AND "));
+    final SolrDocumentList candidates = solrDocumentRetriever
+        .apply(createQueryParameters(finalQuery, MAX_CANDIDATES_PER_QUERY));
+
+    // If we did not get all candidates, we fall back to querying the records individually.
+    final Map<RedirectionQuery, List<Pair<String, Date>>> result = new HashMap<>();
+    if (candidates.getNumFound() > candidates.size()) {
+      LOGGER.debug("Too many redirection candidates for batch: querying records individually.");
+      for (RedirectionQuery query : queries) {
+        result.put(query, searchMatchingRecordForRedirection(query.getRdf(),
+            query.getDatasetIdsToRedirectFrom(), solrDocumentRetriever));
+      }
+      return result;
+    }
+
+    // Match the candidates to the individual records: first select those that the individual query
+    // would have returned, then apply the same checks as for individual queries.
+    for (RedirectionQuery query : queries) {
+      final SolrDocumentList solrDocuments = getMatchingSolrDocuments(candidates,
+          query::isInScope);
+      modifyDocumentListIfMatchesFound(solrDocuments, query.getConcatenatedIds(),
+          query.getFirstMapOfLists(), query.getSecondMapOfLists(), query.getThirdMapOfLists());
+      result.put(query, getIdentifiersAndCreationDates(solrDocuments));
+    }
+    return result;
+  }
+
+  private static Map<String, String> createQueryParameters(String query, Integer rows) {
+    final Map<String, String> queryParamMap = new HashMap<>();
+    queryParamMap.put("q", query);
+    queryParamMap.put("fl",
+        String.format("%s,%s,%s,%s,%s,%s,%s", EdmLabel.EUROPEANA_ID, EdmLabel.TIMESTAMP_CREATED,
+            EdmLabel.EDM_DATASETNAME, EdmLabel.PROXY_DC_IDENTIFIER, EdmLabel.PROXY_DC_TITLE,
+            EdmLabel.PROXY_DC_DESCRIPTION, EdmLabel.PROVIDER_AGGREGATION_EDM_IS_SHOWN_BY));
+    if (rows != null) {
+      queryParamMap.put("rows", rows.toString());
+    }
+    return queryParamMap;
+  }
+
+  private static List<Pair<String, Date>> getIdentifiersAndCreationDates(
+      SolrDocumentList solrDocuments) {
+    return solrDocuments.stream().map(document -> ImmutablePair
+        .of((String) document.getFieldValue(EdmLabel.EUROPEANA_ID.toString()),
+            (Date) document.getFieldValue(EdmLabel.TIMESTAMP_CREATED.toString())))
+        .collect(Collectors.toList());
+  }
+
   private static void modifyDocumentListIfMatchesFound(SolrDocumentList solrDocuments,
       List<String> concatenatedIds, Map<String, List<String>> firstMap,
       Map<String, List<String>> secondMap, Map<String, List<String>> thirdMap) {
@@ -387,6 +476,106 @@ public final class RecordRedirectsUtil {
     });
   }
 
+  /**
+   * The search criteria for finding the records that a given record should redirect from. Note:
+   * instances use identity semantics for equality.
+   */
+  private static final class RedirectionQuery {
+
+    private final RdfWrapper rdf;
+    private final List<String> datasetIdsToRedirectFrom;
+    private final List<String> datasetIds = new ArrayList<>();
+    private final List<String> concatenatedIds;
+    private final String matchingQuery;
+    private final Map<String, List<String>> firstMapOfLists = new HashMap<>();
+    private final Map<String, List<String>> secondMapOfLists = new HashMap<>();
+    private final Map<String, List<String>> thirdMapOfLists = new HashMap<>();
+
+    RedirectionQuery(RdfWrapper rdf, List<String> datasetIdsToRedirectFrom) {
+      this.rdf = rdf;
+      this.datasetIdsToRedirectFrom = datasetIdsToRedirectFrom;
+
+      //The incoming structure of the identifier is /datasetId/recordId
+      final String[] splitRecordIdentifier = rdf.getAbout().split("/");
+      final String datasetId = splitRecordIdentifier[1];
+      final String recordId = splitRecordIdentifier[2];
+
+      //Create combinations of all rules into one query
+      final Pair<String, List<String>> queryForDatasetIdsAndConcatenatedIds = generateQueryForDatasetIds(
+          datasetIdsToRedirectFrom, recordId);
+      this.concatenatedIds = queryForDatasetIdsAndConcatenatedIds.getRight();
+      final String queryMatchingFields = generateQueryForMatchingFields(rdf, firstMapOfLists,
+          secondMapOfLists, thirdMapOfLists);
+      final List<String> queriesToCombine = Arrays
+          .asList(queryForDatasetIdsAndConcatenatedIds.getLeft(), queryMatchingFields);
+      this.matchingQuery = computeJoiningQuery(getFilteredItems(queriesToCombine),
+          UnaryOperator.identity(), Collectors.joining(" OR ", "(", ")"));
+
+      //Restrict search on specific datasetId subsets
+      datasetIds.add(datasetId);
+      if (!CollectionUtils.isEmpty(datasetIdsToRedirectFrom)) {
+        datasetIdsToRedirectFrom.stream().filter(StringUtils::isNotBlank).forEach(datasetIds::add);
+      }
+    }
+
+    boolean hasMatchingQuery() {
+      return StringUtils.isNotBlank(matchingQuery);
+    }
+
+    /**
+     * Determines whether a candidate is in scope for this record: whether it belongs to one of the
+     * datasets and is not the record itself. These are the same criteria that the individual query
+     * applies (see {@link #generateQueryInDatasetSubsets(List)}): the dataset name of the candidate
+     * should start with one of the dataset IDs followed by an underscore.
+     */
+    boolean isInScope(SolrDocument document) {
+      final String identifier = (String) document.getFieldValue(EdmLabel.EUROPEANA_ID.toString());
+      final Collection<Object> datasetNames = Optional
+          .ofNullable(document.getFieldValues(EdmLabel.EDM_DATASETNAME.toString()))
+          .orElseGet(Collections::emptyList);
+      return identifier != null && !identifier.equals(getAbout()) && datasetNames.stream()
+          .map(String.class::cast).anyMatch(datasetName -> datasetIds.stream()
+              .filter(StringUtils::isNotBlank)
+              .anyMatch(datasetId -> datasetName.startsWith(datasetId + "_")));
+    }
+
+    RdfWrapper getRdf() {
+      return rdf;
+    }
+
+    String getAbout() {
+      return rdf.getAbout();
+    }
+
+    List<String> getDatasetIdsToRedirectFrom() {
+      return datasetIdsToRedirectFrom;
+    }
+
+    List<String> getDatasetIds() {
+      return datasetIds;
+    }
+
+    List<String> getConcatenatedIds() {
+      return concatenatedIds;
+    }
+
+    String getMatchingQuery() {
+      return matchingQuery;
+    }
+
+    Map<String, List<String>> getFirstMapOfLists() {
+      return firstMapOfLists;
+    }
+
+    Map<String, List<String>> getSecondMapOfLists() {
+      return secondMapOfLists;
+    }
+
+    Map<String, List<String>> getThirdMapOfLists() {
+      return thirdMapOfLists;
+    }
+  }
+
   /**
    * Represents a function that accepts one argument and produces a result with the possibility of
    * an {@link IndexingException} thrown.
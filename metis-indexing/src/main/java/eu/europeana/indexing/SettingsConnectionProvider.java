@@ -9,6 +9,7 @@ import eu.europeana.corelib.mongo.server.EdmMongoServer;
 import eu.europeana.corelib.mongo.server.impl.EdmMongoServerImpl;
 import eu.europeana.indexing.exception.IndexerRelatedIndexingException;
 import eu.europeana.indexing.exception.SetupRelatedIndexingException;
+import eu.europeana.indexing.solr.SolrBatchPolicy;
 import eu.europeana.metis.mongo.MongoClientProvider;
 import eu.europeana.metis.mongo.RecordRedirectDao;
 import eu.europeana.metis.solr.CompoundSolrClient;
@@ -37,6 +38,8 @@ public final class SettingsConnectionProvider implements AbstractConnectionProvi
   private final MongoClient mongoClient;
   private final EdmMongoServer edmMongoClient;
   private final RecordRedirectDao recordRedirectDao;
+  private final SolrBatchPolicy solrBatchPolicy;
+  private final IndexingPipelineSettings indexingPipelineSettings;
 
   /**
    * Constructor. Sets up the required connections using the supplied settings.
@@ -55,6 +58,8 @@ public final class SettingsConnectionProvider implements AbstractConnectionProvi
 
     // Create Solr and Zookeeper connections.
     this.solrClient = new SolrClientProvider<>(settings.getSolrProperties()).createSolrClient();
+    this.solrBatchPolicy = settings.getSolrBatchPolicy();
+    this.indexingPipelineSettings = settings.getIndexingPipelineSettings();
 
     // Create mongo connection.
     try {
@@ -125,6 +130,16 @@ public final class SettingsConnectionProvider implements AbstractConnectionProvi
     return recordRedirectDao;
   }
 
+  @Override
+  public SolrBatchPolicy getSolrBatchPolicy() {
+    return solrBatchPolicy;
+  }
+
+  @Override
+  public IndexingPipelineSettings getIndexingPipelineSettings() {
+    return indexingPipelineSettings;
+  }
+
   @Override
   public void close() throws IOException {
     edmMongoClient.close();
@@ -3,6 +3,7 @@ package eu.europeana.indexing.mongo;
 import eu.europeana.corelib.definitions.edm.beans.FullBean;
 import eu.europeana.corelib.definitions.edm.entity.AbstractEdmEntity;
 import eu.europeana.corelib.storage.MongoServer;
+import eu.europeana.indexing.mongo.property.MongoOperationBatch;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdater;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdaterFactory;
 import java.util.Date;
@@ -18,8 +19,9 @@ public abstract class AbstractEdmEntityUpdater<R extends AbstractEdmEntity, A>
 
   @Override
   protected final MongoPropertyUpdater<R> createPropertyUpdater(R newEntity, A ancestorInformation,
-      Date recordDate, Date recordCreationDate, MongoServer mongoServer) {
-    return MongoPropertyUpdaterFactory.createForObjectWithAbout(newEntity, mongoServer,
+      Date recordDate, Date recordCreationDate, MongoServer mongoServer,
+      MongoOperationBatch batch) {
+    return MongoPropertyUpdaterFactory.createForObjectWithAbout(newEntity, mongoServer, batch,
         getObjectClass(), AbstractEdmEntity::getAbout, null, null, null);
   }
 
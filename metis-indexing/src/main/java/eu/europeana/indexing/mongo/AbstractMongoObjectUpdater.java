@@ -2,6 +2,7 @@ package eu.europeana.indexing.mongo;
 
 import eu.europeana.corelib.storage.MongoServer;
 import eu.europeana.indexing.mongo.property.MongoObjectUpdater;
+import eu.europeana.indexing.mongo.property.MongoOperationBatch;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdater;
 import java.util.Date;
 
@@ -15,9 +16,22 @@ public abstract class AbstractMongoObjectUpdater<R, A> implements MongoObjectUpd
 
   @Override
   public final R update(R newEntity, A ancestorInformation, Date recordDate, Date recordCreationDate, MongoServer mongoServer) {
+    return update(newEntity, ancestorInformation, recordDate, recordCreationDate, mongoServer,
+        null);
+  }
+
+  @Override
+  public final R update(R newEntity, A ancestorInformation, Date recordDate,
+      Date recordCreationDate, MongoOperationBatch batch) {
+    return update(newEntity, ancestorInformation, recordDate, recordCreationDate,
+        batch.getMongoServer(), batch);
+  }
+
+  private R update(R newEntity, A ancestorInformation, Date recordDate, Date recordCreationDate,
+      MongoServer mongoServer, MongoOperationBatch batch) {
     preprocessEntity(newEntity, ancestorInformation);
-    final MongoPropertyUpdater<R> propertyUpdater =
-        createPropertyUpdater(newEntity, ancestorInformation, recordDate, recordCreationDate, mongoServer);
+    final MongoPropertyUpdater<R> propertyUpdater = createPropertyUpdater(newEntity,
+        ancestorInformation, recordDate, recordCreationDate, mongoServer, batch);
     update(propertyUpdater, ancestorInformation);
     return propertyUpdater.applyOperations();
   }
@@ -29,11 +43,13 @@ public abstract class AbstractMongoObjectUpdater<R, A> implements MongoObjectUpd
    * @param ancestorInformation The ancestor information for this entity.
    * @param recordCreationDate The date that represents the creation date of the record
    * @param mongoServer The mongo server.
+   * @param batch The batch to which to add the operations. If null, the operations are executed
+   * directly.
    * @return The property updater for the given entity.
    */
   protected abstract MongoPropertyUpdater<R> createPropertyUpdater(R newEntity,
       A ancestorInformation, Date recordDate, Date recordCreationDate,
-      MongoServer mongoServer);
+      MongoServer mongoServer, MongoOperationBatch batch);
 
   /**
    * This method allows subclasses to perform preprocessing on the entity before saving it to the
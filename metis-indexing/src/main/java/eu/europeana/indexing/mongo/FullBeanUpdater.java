@@ -1,18 +1,41 @@
 package eu.europeana.indexing.mongo;
 
 import eu.europeana.corelib.definitions.edm.beans.FullBean;
+import eu.europeana.corelib.definitions.edm.entity.AbstractEdmEntity;
+import eu.europeana.corelib.definitions.edm.entity.Aggregation;
+import eu.europeana.corelib.definitions.edm.entity.EuropeanaAggregation;
 import eu.europeana.corelib.definitions.edm.entity.Proxy;
+import eu.europeana.corelib.definitions.edm.entity.WebResource;
+import eu.europeana.corelib.edm.model.metainfo.WebResourceMetaInfoImpl;
 import eu.europeana.corelib.solr.bean.impl.FullBeanImpl;
+import eu.europeana.corelib.solr.entity.AgentImpl;
+import eu.europeana.corelib.solr.entity.AggregationImpl;
+import eu.europeana.corelib.solr.entity.ConceptImpl;
 import eu.europeana.corelib.solr.entity.EuropeanaAggregationImpl;
+import eu.europeana.corelib.solr.entity.LicenseImpl;
+import eu.europeana.corelib.solr.entity.PlaceImpl;
+import eu.europeana.corelib.solr.entity.ProvidedCHOImpl;
 import eu.europeana.corelib.solr.entity.ProxyImpl;
+import eu.europeana.corelib.solr.entity.ServiceImpl;
+import eu.europeana.corelib.solr.entity.TimespanImpl;
+import eu.europeana.corelib.solr.entity.WebResourceImpl;
 import eu.europeana.corelib.storage.MongoServer;
+import eu.europeana.indexing.mongo.property.MongoOperationBatch;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdater;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdaterFactory;
 import eu.europeana.indexing.mongo.property.RootAboutWrapper;
 import eu.europeana.indexing.utils.TriConsumer;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.tuple.Pair;
 
 /**
@@ -20,6 +43,9 @@ import org.apache.commons.lang3.tuple.Pair;
  */
 public class FullBeanUpdater extends AbstractMongoObjectUpdater<FullBeanImpl, Void> {
 
+  private static final String ABOUT_FIELD = "about";
+  private static final String ID_FIELD = "_id";
+
   private final TriConsumer<FullBeanImpl, FullBeanImpl, Pair<Date, Date>> fullBeanPreprocessor;
 
   /**
@@ -29,7 +55,7 @@ public class FullBeanUpdater extends AbstractMongoObjectUpdater<FullBeanImpl, Vo
    * retrieved the current version of the full bean from the database. It will be called once. It's
    * first parameter is the current full bean (as retrieved from the database) and its second
    * parameter is the updated full bean (as passed to {@link AbstractMongoObjectUpdater#createPropertyUpdater(Object,
-   * Object, Date, Date, MongoServer)}).
+   * Object, Date, Date, MongoServer, MongoOperationBatch)}).
    */
   public FullBeanUpdater(TriConsumer<FullBeanImpl, FullBeanImpl, Pair<Date, Date>> fullBeanPreprocessor) {
     this.fullBeanPreprocessor = fullBeanPreprocessor;
@@ -50,11 +76,90 @@ public class FullBeanUpdater extends AbstractMongoObjectUpdater<FullBeanImpl, Vo
     return update(newEntity, null, recordDate, recordCreationDate, mongoServer);
   }
 
+  /**
+   * Update the full bean as part of a batch. The operations are added to the batch and will only
+   * be sent to the database when the batch is flushed.
+   *
+   * @param newEntity The new entity (to take the new values from).
+   * @param recordDate The date that would represent the created/updated date of a record
+   * @param recordCreationDate The date that would represent the created date if it already existed,
+   * e.g. from a redirected record
+   * @param batch The batch to which to add the operations.
+   * @return The updated entity.
+   * @see #prefetch(Collection, MongoOperationBatch)
+   */
+  public final FullBeanImpl update(FullBeanImpl newEntity, Date recordDate,
+      Date recordCreationDate, MongoOperationBatch batch) {
+    return update(newEntity, null, recordDate, recordCreationDate, batch);
+  }
+
+  /**
+   * Retrieves the current state of the given full beans and all the entities they contain from
+   * the database, so that the batch does not need to query them one by one. This method performs
+   * one query per collection.
+   *
+   * @param fullBeans The full beans that are going to be updated in the batch.
+   * @param batch The batch.
+   */
+  public static void prefetch(Collection<FullBeanImpl> fullBeans, MongoOperationBatch batch) {
+
+    // The full beans themselves.
+    batch.prefetch(FullBeanImpl.class, ABOUT_FIELD,
+        fullBeans.stream().map(FullBeanImpl::getAbout).collect(Collectors.toList()),
+        FullBeanImpl::getAbout);
+
+    // The (contextual) entities.
+    prefetchEntities(fullBeans, FullBeanImpl::getPlaces, PlaceImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getAgents, AgentImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getTimespans, TimespanImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getConcepts, ConceptImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getProvidedCHOs, ProvidedCHOImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getAggregations, AggregationImpl.class, batch);
+    prefetchEntities(fullBeans,
+        fullBean -> Optional.ofNullable(getEuropeanaAggregationFromFullBean(fullBean))
+            .map(List::of).orElseGet(Collections::emptyList), EuropeanaAggregationImpl.class,
+        batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getProxies, ProxyImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getServices, ServiceImpl.class, batch);
+    prefetchEntities(fullBeans, FullBeanImpl::getLicenses, LicenseImpl.class, batch);
+
+    // The web resources and their meta info.
+    final List<Pair<String, WebResource>> webResources = fullBeans.stream()
+        .flatMap(FullBeanUpdater::getWebResources).collect(Collectors.toList());
+    batch.prefetch(WebResourceImpl.class, ABOUT_FIELD,
+        webResources.stream().map(Pair::getValue).map(WebResource::getAbout)
+            .collect(Collectors.toList()), WebResourceImpl::getAbout);
+    batch.prefetch(WebResourceMetaInfoImpl.class, ID_FIELD, webResources.stream()
+            .map(resource -> WebResourceMetaInfoUpdater
+                .generateHashCode(resource.getValue().getAbout(), resource.getKey()))
+            .collect(Collectors.toList()), WebResourceMetaInfoImpl::getId);
+  }
+
+  private static <E extends AbstractEdmEntity> void prefetchEntities(
+      Collection<FullBeanImpl> fullBeans, Function<FullBeanImpl, List<? extends E>> getter,
+      Class<E> objectClass, MongoOperationBatch batch) {
+    final List<String> abouts = fullBeans.stream().map(getter).filter(Objects::nonNull)
+        .flatMap(List::stream).filter(Objects::nonNull).map(AbstractEdmEntity::getAbout)
+        .collect(Collectors.toList());
+    batch.prefetch(objectClass, ABOUT_FIELD, abouts, AbstractEdmEntity::getAbout);
+  }
+
+  private static Stream<Pair<String, WebResource>> getWebResources(FullBeanImpl fullBean) {
+    final Stream<? extends WebResource> fromAggregations = Optional
+        .ofNullable(fullBean.getAggregations()).stream().flatMap(List::stream)
+        .map(Aggregation::getWebResources).filter(Objects::nonNull).flatMap(List::stream);
+    final Stream<? extends WebResource> fromEuropeanaAggregation = Optional
+        .ofNullable(fullBean.getEuropeanaAggregation())
+        .map(EuropeanaAggregation::getWebResources).stream().flatMap(List::stream);
+    return Stream.concat(fromAggregations, fromEuropeanaAggregation).filter(Objects::nonNull)
+        .map(webResource -> Pair.of(fullBean.getAbout(), webResource));
+  }
+
   @Override
   protected MongoPropertyUpdater<FullBeanImpl> createPropertyUpdater(FullBeanImpl newEntity,
       Void ancestorInformation, Date recordDate, Date recordCreationDate,
-      MongoServer mongoServer) {
-    return MongoPropertyUpdaterFactory.createForObjectWithAbout(newEntity, mongoServer,
+      MongoServer mongoServer, MongoOperationBatch batch) {
+    return MongoPropertyUpdaterFactory.createForObjectWithAbout(newEntity, mongoServer, batch,
         FullBeanImpl.class, FullBeanImpl::getAbout, fullBeanPreprocessor, recordDate,
         recordCreationDate);
   }
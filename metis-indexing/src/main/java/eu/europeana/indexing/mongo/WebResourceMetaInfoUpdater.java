@@ -2,21 +2,19 @@ package eu.europeana.indexing.mongo;
 
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
-import dev.morphia.query.Query;
-import dev.morphia.query.experimental.filters.Filters;
 import eu.europeana.corelib.definitions.edm.model.metainfo.AudioMetaInfo;
 import eu.europeana.corelib.definitions.edm.model.metainfo.ImageMetaInfo;
 import eu.europeana.corelib.definitions.edm.model.metainfo.TextMetaInfo;
 import eu.europeana.corelib.definitions.edm.model.metainfo.VideoMetaInfo;
 import eu.europeana.corelib.edm.model.metainfo.WebResourceMetaInfoImpl;
 import eu.europeana.corelib.storage.MongoServer;
+import eu.europeana.indexing.mongo.property.MongoOperationBatch;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdater;
 import eu.europeana.indexing.mongo.property.MongoPropertyUpdaterFactory;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.function.Supplier;
 
 /**
  * Field updater for instances of {@link WebResourceMetaInfoImpl}.
@@ -29,22 +27,17 @@ public class WebResourceMetaInfoUpdater
   @Override
   protected MongoPropertyUpdater<WebResourceMetaInfoImpl> createPropertyUpdater(
       WebResourceMetaInfoImpl newEntity, WebResourceInformation ancestorInformation,
-      Date recordDate, Date recordCreationDate, MongoServer mongoServer) {
+      Date recordDate, Date recordCreationDate, MongoServer mongoServer,
+      MongoOperationBatch batch) {
     final String hashCode = generateHashCode(ancestorInformation.getWebResourceAbout(),
         ancestorInformation.getRootAbout());
-    final Supplier<Query<WebResourceMetaInfoImpl>> querySupplier =
-        () -> createQuery(mongoServer, hashCode);
-    return MongoPropertyUpdaterFactory.createForObjectWithoutAbout(newEntity, mongoServer, querySupplier, null);
-  }
-
-  private static Query<WebResourceMetaInfoImpl> createQuery(MongoServer mongoServer, String id) {
-    return mongoServer.getDatastore().find(WebResourceMetaInfoImpl.class)
-        .filter(Filters.eq("_id", id));
+    return MongoPropertyUpdaterFactory.createForObjectWithId(newEntity, mongoServer, batch,
+        WebResourceMetaInfoImpl.class, hashCode, null);
   }
 
   // TODO This is code from corelib (eu.europeana.corelib.search.impl.WebMetaInfo). This should be
   // in a common library?
-  private static String generateHashCode(String webResourceId, String recordId) {
+  static String generateHashCode(String webResourceId, String recordId) {
     return HASH_FUNCTION.newHasher().putString(webResourceId, StandardCharsets.UTF_8)
         .putString("-", StandardCharsets.UTF_8).putString(recordId, StandardCharsets.UTF_8).hash()
         .toString();
@@ -22,4 +22,20 @@ public interface MongoObjectUpdater<R, A> {
    * @return The updated entity.
    */
   R update(R newEntity, A ancestorInformation, Date recordDate, Date recordCreationDate, MongoServer mongoServer);
+
+  /**
+   * Update a property, adding the required operations to the given batch rather than executing
+   * them directly. Note that in this case the returned entity is not retrieved from the database:
+   * the changes are only visible in the database after {@link MongoOperationBatch#flush()} is
+   * called.
+   *
+   * @param newEntity The new entity (to take the new values from).
+   * @param ancestorInformation The ancestor information for this entity.
+   * @param recordDate The date that would represent the created/updated date of a record
+   * @param recordCreationDate The date that would represent the created date if it already existed,
+   * @param batch The batch to which to add the operations.
+   * @return The updated entity.
+   */
+  R update(R newEntity, A ancestorInformation, Date recordDate, Date recordCreationDate,
+      MongoOperationBatch batch);
 }
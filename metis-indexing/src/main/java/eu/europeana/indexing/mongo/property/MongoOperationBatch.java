@@ -0,0 +1,253 @@
+package eu.europeana.indexing.mongo.property;
+
+import static eu.europeana.metis.utils.ExternalRequestUtil.retryableExternalRequestForNetworkExceptions;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import dev.morphia.mapping.codec.pojo.EntityModel;
+import dev.morphia.query.Query;
+import dev.morphia.query.experimental.filters.Filters;
+import eu.europeana.corelib.storage.MongoServer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * This class collects the Mongo write operations for a batch of records so that they can be sent
+ * to the database in bulk rather than one entity at the time. It serves two purposes:
+ * <ol>
+ * <li>It keeps the current (saved) state of the entities that are to be updated. This state can be
+ * prefetched with one query per collection (see {@link #prefetch(Class, String, Collection,
+ * Function)}). Entities that are not prefetched are retrieved individually upon first request.</li>
+ * <li>It collects the update operations per collection. They are sent to the database as unordered
+ * bulk writes when {@link #flush()} is called.</li>
+ * </ol>
+ * </p>
+ * <p>
+ * Note that the current state that this batch provides is always the state before the batch was
+ * started. If the same entity is updated more than once in a batch (e.g. a contextual entity that
+ * is shared between records), only the last update is kept. As every update is computed against
+ * the same pre-batch state, this results in the same end state as applying the updates in
+ * sequence.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public class MongoOperationBatch {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MongoOperationBatch.class);
+
+  private static final String SET_ON_INSERT_OPERATOR = "$setOnInsert";
+
+  private final MongoServer mongoServer;
+
+  private final Map<Class<?>, Map<Object, Object>> currentObjects = new HashMap<>();
+  private final Map<Class<?>, Map<Object, ObjectId>> assignedIds = new HashMap<>();
+  private final Map<Class<?>, Map<Object, WriteModel<Document>>> pendingUpdates =
+      new LinkedHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param mongoServer The Mongo connection. Is not null.
+   */
+  public MongoOperationBatch(MongoServer mongoServer) {
+    this.mongoServer = Objects.requireNonNull(mongoServer);
+  }
+
+  /**
+   * @return The Mongo connection of this batch.
+   */
+  public MongoServer getMongoServer() {
+    return mongoServer;
+  }
+
+  /**
+   * Retrieves the current state of the objects with the given key values in one query, so that
+   * subsequent calls to {@link #getCurrent(Class, Object, Supplier)} can be served without
+   * accessing the database.
+   *
+   * @param objectClass The class of the objects to retrieve.
+   * @param keyField The name of the (unique) field that identifies the objects.
+   * @param keys The key values to retrieve. Can contain duplicates.
+   * @param keyGetter The function that obtains the key value from a retrieved object.
+   * @param <T> The type of the objects.
+   */
+  public <T> void prefetch(Class<T> objectClass, String keyField, Collection<?> keys,
+      Function<T, ?> keyGetter) {
+    final Map<Object, Object> cache = currentObjects
+        .computeIfAbsent(objectClass, key -> new HashMap<>());
+    final Set<Object> keysToFetch = keys.stream().filter(Objects::nonNull)
+        .filter(key -> !cache.containsKey(key)).collect(Collectors.toSet());
+    if (keysToFetch.isEmpty()) {
+      return;
+    }
+    final List<T> found = retryableExternalRequestForNetworkExceptions(
+        () -> mongoServer.getDatastore().find(objectClass)
+            .filter(Filters.in(keyField, keysToFetch)).iterator().toList());
+    keysToFetch.forEach(key -> cache.put(key, null));
+    found.forEach(object -> cache.put(keyGetter.apply(object), object));
+  }
+
+  /**
+   * Obtains the current (pre-batch) state of an object. If this object was not prefetched, it is
+   * retrieved using the provided query and kept for future reference.
+   *
+   * @param objectClass The class of the object.
+   * @param key The key value of the object.
+   * @param queryCreator The creator of the query that can retrieve the object from Mongo.
+   * @param <T> The type of the object.
+   * @return The current state, or null if the object is not in the database.
+   */
+  <T> T getCurrent(Class<T> objectClass, Object key, Supplier<Query<T>> queryCreator) {
+    final Map<Object, Object> cache = currentObjects
+        .computeIfAbsent(objectClass, clazz -> new HashMap<>());
+    if (!cache.containsKey(key)) {
+      cache.put(key, retryableExternalRequestForNetworkExceptions(
+          () -> queryCreator.get().first()));
+    }
+    return objectClass.cast(cache.get(key));
+  }
+
+  /**
+   * Obtains the object ID that a new object (i.e. one that does not yet exist in the database)
+   * should receive when it is inserted. Repeated calls for the same key value return the same ID,
+   * so that all references to this object that are created in this batch are consistent.
+   *
+   * @param objectClass The class of the object.
+   * @param key The key value of the object.
+   * @return The object ID.
+   */
+  ObjectId getIdForNewObject(Class<?> objectClass, Object key) {
+    return assignedIds.computeIfAbsent(objectClass, clazz -> new HashMap<>())
+        .computeIfAbsent(key, id -> new ObjectId());
+  }
+
+  /**
+   * Adds an update (or upsert) to this batch. If an update for the same object was already added,
+   * it is replaced by this one. As the update is sent to the database without going through
+   * Morphia, the entity discriminator (if the class uses one) is added to the update, so that new
+   * objects are inserted in the same way as Morphia would have done it.
+   *
+   * @param objectClass The class of the object: determines the collection.
+   * @param keyField The name of the (unique) field that identifies the object.
+   * @param key The key value of the object.
+   * @param update The update document (containing the update operators). Note that this document
+   * may be changed by this method.
+   */
+  void addUpdate(Class<?> objectClass, String keyField, Object key, Document update) {
+    addDiscriminator(objectClass, update);
+    final WriteModel<Document> model = new UpdateOneModel<>(new Document(keyField, key), update,
+        new UpdateOptions().upsert(true));
+    pendingUpdates.computeIfAbsent(objectClass, clazz -> new LinkedHashMap<>()).put(key, model);
+  }
+
+  private void addDiscriminator(Class<?> objectClass, Document update) {
+    final EntityModel<?> entityModel = mongoServer.getDatastore().getMapper()
+        .getEntityModel(objectClass);
+    if (entityModel == null || !entityModel.useDiscriminator()) {
+      return;
+    }
+    final Object setOnInsert = update.get(SET_ON_INSERT_OPERATOR);
+    final Document setOnInsertDocument;
+    if (setOnInsert instanceof Document) {
+      setOnInsertDocument = (Document) setOnInsert;
+    } else {
+      setOnInsertDocument = new Document();
+      if (setOnInsert instanceof Map) {
+        ((Map<?, ?>) setOnInsert)
+            .forEach((field, value) -> setOnInsertDocument.put(String.valueOf(field), value));
+      }
+      update.put(SET_ON_INSERT_OPERATOR, setOnInsertDocument);
+    }
+    setOnInsertDocument.put(entityModel.getDiscriminatorKey(), entityModel.getDiscriminator());
+  }
+
+  /**
+   * <p>
+   * Sends all pending updates to the database: one unordered bulk write per collection. After this
+   * call the batch is empty, and the cached pre-batch state is cleared.
+   * </p>
+   * <p>
+   * Objects that did not exist before the batch was started receive an ID that is assigned by this
+   * batch (see {@link #getIdForNewObject(Class, Object)}). If such an object is inserted by another
+   * process in the meantime, our update will be applied to that object instead, and the object will
+   * not have the ID that other objects in this batch use to reference it. This method detects this
+   * situation and reports it by returning false. In that case the caller should repeat the updates
+   * without using a batch.
+   * </p>
+   *
+   * @return Whether all new objects were inserted with the ID that was assigned to them. If false,
+   * references to at least one of them are invalid.
+   */
+  public boolean flush() {
+    boolean allNewObjectsInserted = true;
+    for (Map.Entry<Class<?>, Map<Object, WriteModel<Document>>> entry : pendingUpdates
+        .entrySet()) {
+      final MongoCollection<Document> collection = mongoServer.getDatastore().getMapper()
+          .getCollection(entry.getKey()).withDocumentClass(Document.class);
+      final List<Object> keys = new ArrayList<>(entry.getValue().keySet());
+      final List<WriteModel<Document>> models = new ArrayList<>(entry.getValue().values());
+      final Set<Object> newKeys = assignedIds.getOrDefault(entry.getKey(), Map.of()).keySet();
+      Set<Integer> insertedIndices;
+      try {
+        insertedIndices = getUpsertedIndices(retryableExternalRequestForNetworkExceptions(
+            () -> collection.bulkWrite(models, new BulkWriteOptions().ordered(false))));
+      } catch (MongoBulkWriteException e) {
+        // Concurrent upserts of the same object may yield duplicate keys: we try those once more.
+        final List<WriteModel<Document>> duplicates = getDuplicateKeyFailures(e, models);
+        if (duplicates.isEmpty() || duplicates.size() < e.getWriteErrors().size()) {
+          throw e;
+        }
+        LOGGER.debug("Received duplicate key exception, trying again once more.", e);
+        collection.bulkWrite(duplicates, new BulkWriteOptions().ordered(false));
+        insertedIndices = getUpsertedIndices(e.getWriteResult());
+      }
+      for (int i = 0; i < keys.size(); i++) {
+        if (newKeys.contains(keys.get(i)) && !insertedIndices.contains(i)) {
+          LOGGER.debug("Object {} of type {} was inserted concurrently by another process.",
+              keys.get(i), entry.getKey().getSimpleName());
+          allNewObjectsInserted = false;
+        }
+      }
+    }
+    pendingUpdates.clear();
+    currentObjects.clear();
+    assignedIds.clear();
+    return allNewObjectsInserted;
+  }
+
+  private static Set<Integer> getUpsertedIndices(BulkWriteResult result) {
+    return result.getUpserts().stream().map(BulkWriteUpsert::getIndex).collect(Collectors.toSet());
+  }
+
+  private static List<WriteModel<Document>> getDuplicateKeyFailures(MongoBulkWriteException e,
+      List<WriteModel<Document>> models) {
+    return e.getWriteErrors().stream()
+        .filter(error -> ErrorCategory.fromErrorCode(error.getCode())
+            == ErrorCategory.DUPLICATE_KEY).map(BulkWriteError::getIndex).map(models::get)
+        .collect(Collectors.toList());
+  }
+}
@@ -21,6 +21,7 @@ import org.apache.commons.lang3.tuple.Pair;
 public final class MongoPropertyUpdaterFactory {
 
   private static final String ABOUT_FIELD = "about";
+  private static final String ID_FIELD = "_id";
 
   private MongoPropertyUpdaterFactory() {
   }
@@ -46,6 +47,29 @@ public final class MongoPropertyUpdaterFactory {
         queryCreator);
   }
 
+  private static <T> MongoPropertyUpdater<T> createForBatch(T updated, MongoOperationBatch batch,
+      Class<T> objectClass, String keyField, Object key,
+      TriConsumer<T, T, Pair<Date, Date>> dataPreprocessor, Date recordDate,
+      Date recordCreationDate, List<UpdateOperator> updateOperators) {
+
+    // Sanity checks.
+    if (updated == null || batch == null || objectClass == null || key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    // Obtain the current state from the batch and perform preprocessing on it.
+    final Supplier<Query<T>> queryCreator = () -> batch.getMongoServer().getDatastore()
+        .find(objectClass).filter(Filters.eq(keyField, key));
+    final T current = batch.getCurrent(objectClass, key, queryCreator);
+    if (dataPreprocessor != null) {
+      dataPreprocessor.accept(current, updated, ImmutablePair.of(recordDate, recordCreationDate));
+    }
+
+    // Done
+    return new MongoPropertyUpdaterImpl<>(current, updated, batch, objectClass, keyField, key,
+        updateOperators, queryCreator);
+  }
+
   /**
    * Static constructor for objects that do not have an about field.
    *
@@ -87,25 +111,91 @@ public final class MongoPropertyUpdaterFactory {
   public static <T> MongoPropertyUpdater<T> createForObjectWithAbout(T updated,
       MongoServer mongoServer, Class<T> objectClass, Function<T, String> aboutGetter,
       TriConsumer<T, T, Pair<Date, Date>> preprocessor, Date recordDate, Date recordCreationDate) {
+    return createForObjectWithAbout(updated, mongoServer, null, objectClass, aboutGetter,
+        preprocessor, recordDate, recordCreationDate);
+  }
+
+  /**
+   * Static constructor for objects that have an about field. If a batch is provided, the current
+   * state is obtained from it and the resulting operations are added to it instead of being
+   * executed directly (see {@link MongoOperationBatch}).
+   *
+   * @param updated The updated object (i.e. the object to take the value from). This object will
+   * remain unchanged, except that in batch mode it will receive the ID under which it is saved.
+   * @param mongoServer The Mongo connection. Is ignored if a batch is provided.
+   * @param batch The batch to which to add the operations. Can be null.
+   * @param objectClass The class of the object which is used to create an instance of {@link
+   * Query}.
+   * @param aboutGetter The function that obtains the about value from the object.
+   * @param preprocessor This provides the option of performing some preprocessing on the current
+   * and/or the new object before applying the operations. Its three parameters are first the
+   * current bean (found in the database) and second the updated (as passed to this method) and a
+   * pair of dates, the record date and creation date(e.g. in case of a redirection). Can be null.
+   * @param recordDate The date that would represent the created/updated date of a record
+   * @param recordCreationDate The date that would represent the created date if it already existed,
+   * e.g. from a redirected record
+   * @return The property updater.
+   */
+  public static <T> MongoPropertyUpdater<T> createForObjectWithAbout(T updated,
+      MongoServer mongoServer, MongoOperationBatch batch, Class<T> objectClass,
+      Function<T, String> aboutGetter, TriConsumer<T, T, Pair<Date, Date>> preprocessor,
+      Date recordDate, Date recordCreationDate) {
 
     // Sanity checks.
     if (aboutGetter == null) {
       throw new IllegalArgumentException();
     }
-    if (StringUtils.isBlank(aboutGetter.apply(updated))) {
+    final String about = aboutGetter.apply(updated);
+    if (StringUtils.isBlank(about)) {
       throw new IllegalArgumentException("Object does not have an 'about' value.");
     }
 
-    // Find object with the same about value
-    final Supplier<Query<T>> queryCreator = () -> mongoServer.getDatastore().find(objectClass)
-        .filter(Filters.eq(ABOUT_FIELD, aboutGetter.apply(updated)));
-
     // Set the about.
     final List<UpdateOperator> updateOperators = List.of(UpdateOperators
-        .setOnInsert(Map.of(ABOUT_FIELD, aboutGetter.apply(updated))));
+        .setOnInsert(Map.of(ABOUT_FIELD, about)));
+
+    // In case of a batch, we let the batch handle the current state and the operations.
+    if (batch != null) {
+      return createForBatch(updated, batch, objectClass, ABOUT_FIELD, about, preprocessor,
+          recordDate, recordCreationDate, updateOperators);
+    }
+
+    // Find object with the same about value
+    final Supplier<Query<T>> queryCreator = () -> mongoServer.getDatastore().find(objectClass)
+        .filter(Filters.eq(ABOUT_FIELD, about));
 
     // Done
     return create(updated, mongoServer, queryCreator, preprocessor, recordDate, recordCreationDate,
         updateOperators);
   }
+
+  /**
+   * Static constructor for objects that do not have an about field, but are identified by their
+   * ID. If a batch is provided, the current state is obtained from it and the resulting operations
+   * are added to it instead of being executed directly (see {@link MongoOperationBatch}).
+   *
+   * @param updated The updated object (i.e. the object to take the value from). This object will
+   * remain unchanged.
+   * @param mongoServer The Mongo connection. Is ignored if a batch is provided.
+   * @param batch The batch to which to add the operations. Can be null.
+   * @param objectClass The class of the object which is used to create an instance of {@link
+   * Query}.
+   * @param id The ID of the object.
+   * @param preprocessor This provides the option of performing some preprocessing on the current
+   * and/or the new object before applying the operations. Its three parameters are first the
+   * current bean (found in the database) and second the updated (as passed to this method) and a
+   * pair of dates, the record date and creation date(e.g. in case of a redirection). Can be null.
+   * @return The property updater.
+   */
+  public static <T> MongoPropertyUpdater<T> createForObjectWithId(T updated,
+      MongoServer mongoServer, MongoOperationBatch batch, Class<T> objectClass, Object id,
+      TriConsumer<T, T, Pair<Date, Date>> preprocessor) {
+    if (batch != null) {
+      return createForBatch(updated, batch, objectClass, ID_FIELD, id, preprocessor, null, null,
+          null);
+    }
+    final Supplier<Query<T>> queryCreator = () -> mongoServer.getDatastore().find(objectClass)
+        .filter(Filters.eq(ID_FIELD, id));
+    return create(updated, mongoServer, queryCreator, preprocessor, null, null, null);
+  }
 }
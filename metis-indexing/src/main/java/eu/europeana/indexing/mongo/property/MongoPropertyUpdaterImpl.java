@@ -31,6 +31,7 @@ import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang.StringUtils;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,17 +50,41 @@ class MongoPropertyUpdaterImpl<T> implements MongoPropertyUpdater<T> {
   private static final Comparator<AbstractEdmEntity> ENTITY_COMPARATOR = Comparator
       .comparing(AbstractEdmEntity::getAbout);
 
+  private static final String ID_FIELD = "_id";
+
   private final T current;
   private final T updated;
   private final MongoServer mongoServer;
   private final List<UpdateOperator> updateOperators;
   private final Supplier<Query<T>> queryCreator;
 
+  private final MongoOperationBatch batch;
+  private final Class<T> objectClass;
+  private final String keyField;
+  private final Object key;
+
   MongoPropertyUpdaterImpl(T current, T updated, MongoServer mongoServer,
       List<UpdateOperator> updateOperators, Supplier<Query<T>> queryCreator) {
+    this(current, updated, mongoServer, null, null, null, null, updateOperators, queryCreator);
+  }
+
+  MongoPropertyUpdaterImpl(T current, T updated, MongoOperationBatch batch, Class<T> objectClass,
+      String keyField, Object key, List<UpdateOperator> updateOperators,
+      Supplier<Query<T>> queryCreator) {
+    this(current, updated, batch.getMongoServer(), batch, objectClass, keyField, key,
+        updateOperators, queryCreator);
+  }
+
+  private MongoPropertyUpdaterImpl(T current, T updated, MongoServer mongoServer,
+      MongoOperationBatch batch, Class<T> objectClass, String keyField, Object key,
+      List<UpdateOperator> updateOperators, Supplier<Query<T>> queryCreator) {
     this.current = current;
     this.updated = updated;
     this.mongoServer = mongoServer;
+    this.batch = batch;
+    this.objectClass = objectClass;
+    this.keyField = keyField;
+    this.key = key;
     this.updateOperators = Optional.ofNullable(updateOperators).stream().flatMap(Collection::stream)
         .collect(Collectors.toList());
     this.queryCreator = queryCreator;
@@ -182,11 +207,18 @@ class MongoPropertyUpdaterImpl<T> implements MongoPropertyUpdater<T> {
       Function<T, P> getter, Function<T, A> ancestorInfoGetter,
       MongoObjectUpdater<P, A> objectUpdater) {
     final A ancestorInformation = ancestorInfoGetter.apply(updated);
-    final UnaryOperator<P> preprocessing = entity -> objectUpdater
-        .update(entity, ancestorInformation, null, null, mongoServer);
+    final UnaryOperator<P> preprocessing = entity -> updateChild(objectUpdater, entity,
+        ancestorInformation);
     updateProperty(updateField, getter, MongoPropertyUpdaterImpl::equals, preprocessing);
   }
 
+  private <P, A> P updateChild(MongoObjectUpdater<P, A> objectUpdater, P entity,
+      A ancestorInformation) {
+    return batch == null
+        ? objectUpdater.update(entity, ancestorInformation, null, null, mongoServer)
+        : objectUpdater.update(entity, ancestorInformation, null, null, batch);
+  }
+
   private static boolean equals(AbstractEdmEntity entity1, AbstractEdmEntity entity2) {
     if (entity1 == null || entity2 == null) {
       return entity1 == null && entity2 == null;
@@ -200,7 +232,7 @@ class MongoPropertyUpdaterImpl<T> implements MongoPropertyUpdater<T> {
       MongoObjectUpdater<P, A> objectUpdater) {
     final A ancestorInformation = ancestorInfoGetter.apply(updated);
     final UnaryOperator<List<P>> preprocessing = entities -> new ArrayList<>(entities.stream()
-        .map(entity -> objectUpdater.update(entity, ancestorInformation, null, null, mongoServer))
+        .map(entity -> updateChild(objectUpdater, entity, ancestorInformation))
         .collect(Collectors.toMap(AbstractEdmEntity::getAbout, Function.identity(), (o1, o2) -> o2))
         .values());
     final BiPredicate<List<P>, List<P>> equality = (w1, w2) -> listEquals(w1, w2,
@@ -270,17 +302,16 @@ class MongoPropertyUpdaterImpl<T> implements MongoPropertyUpdater<T> {
     final WebResourceMetaInfo entity = Optional.of(updated).map(getter).orElse(null);
     final WebResourceInformation ancestorInformation = ancestorInfoGetter.apply(updated);
     if (entity != null) {
-      updaterSupplier.get()
-          .update((WebResourceMetaInfoImpl) entity, ancestorInformation, null, null, mongoServer);
+      updateChild(updaterSupplier.get(), (WebResourceMetaInfoImpl) entity, ancestorInformation);
     }
   }
 
   @Override
   public T applyOperations() {
-    final UpdateOperator firstUpdateOperator = updateOperators.get(0);
-    final UpdateOperator[] extraUpdateOperators = this.updateOperators
-        .subList(1, this.updateOperators.size()).toArray(UpdateOperator[]::new);
-    final Update<T> update = queryCreator.get().update(firstUpdateOperator, extraUpdateOperators);
+    if (batch != null) {
+      return addOperationsToBatch();
+    }
+    final Update<T> update = createUpdate();
     final UpdateOptions updateOptions = new UpdateOptions().upsert(true).multi(true);
     try {
       retryableExternalRequestForNetworkExceptions(() -> update.execute(updateOptions));
@@ -290,4 +321,32 @@ class MongoPropertyUpdaterImpl<T> implements MongoPropertyUpdater<T> {
     }
     return queryCreator.get().first();
   }
+
+  /**
+   * Adds the operations to the batch instead of executing them. As the object is not retrieved
+   * from the database after saving, we make sure that the updated object has the ID that it will
+   * be saved under, so that it can be referenced by its parent object.
+   *
+   * @return The updated object.
+   */
+  private T addOperationsToBatch() {
+    if (updated instanceof AbstractEdmEntity) {
+      final ObjectId id = Optional.ofNullable(current).map(AbstractEdmEntity.class::cast)
+          .map(AbstractEdmEntity::getId)
+          .orElseGet(() -> batch.getIdForNewObject(objectClass, key));
+      if (current == null) {
+        updateOperators.add(UpdateOperators.setOnInsert(Map.of(ID_FIELD, id)));
+      }
+      ((AbstractEdmEntity) updated).setId(id);
+    }
+    batch.addUpdate(objectClass, keyField, key, createUpdate().toDocument());
+    return updated;
+  }
+
+  private Update<T> createUpdate() {
+    final UpdateOperator firstUpdateOperator = updateOperators.get(0);
+    final UpdateOperator[] extraUpdateOperators = this.updateOperators
+        .subList(1, this.updateOperators.size()).toArray(UpdateOperator[]::new);
+    return queryCreator.get().update(firstUpdateOperator, extraUpdateOperators);
+  }
 }
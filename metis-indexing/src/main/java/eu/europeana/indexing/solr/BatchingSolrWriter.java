@@ -0,0 +1,300 @@
+package eu.europeana.indexing.solr;
+
+import static eu.europeana.metis.utils.ExternalRequestUtil.retryableExternalRequestForNetworkExceptions;
+
+import eu.europeana.indexing.exception.IndexerRelatedIndexingException;
+import eu.europeana.indexing.exception.IndexingException;
+import eu.europeana.indexing.exception.RecordRelatedIndexingException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * This class accumulates Solr documents and sends them to Solr in batches, using one {@link
+ * SolrClient#add(Collection, int)} call per batch rather than one call per document. When a batch
+ * is sent is determined by a {@link SolrBatchPolicy}: the pending documents are sent as soon as
+ * one of its thresholds is reached while adding a document, when the oldest pending document has
+ * been pending for the maximum delay (this is checked by a timer, which hands the sending to a
+ * separate thread), or when {@link #flush()} or {@link #close()} is called.
+ * </p>
+ * <p>
+ * A writer can be shared between threads (the indexer for instance uses one writer for all threads
+ * that persist the records of one indexing call, but never shares a writer between indexing
+ * calls). In that case, the batch in which a document is sent may also contain documents added by
+ * other threads, and may be sent by another thread. Therefore, the outcome of
+ * sending a document is reported through the future that is returned when adding it (see {@link
+ * #waitFor(Collection)}): a failure is reported only for the documents that were in the failed
+ * batch. A batch that fails because of a network issue is retried as a whole. This class is
+ * thread-safe.
+ * </p>
+ */
+public class BatchingSolrWriter implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchingSolrWriter.class);
+
+  private static final String SOLR_SERVER_PUBLISH_ERROR = "Could not publish to Solr server.";
+
+  private static final ScheduledExecutorService SHARED_FLUSH_TIMER = Executors
+      .newSingleThreadScheduledExecutor(createThreadFactory("solr-batch-flush-timer"));
+  private static final Executor SHARED_FLUSH_EXECUTOR = Executors
+      .newCachedThreadPool(createThreadFactory("solr-batch-flush"));
+
+  private final SolrClient solrClient;
+  private final SolrBatchPolicy policy;
+  private final LongSupplier clock;
+  private final ScheduledExecutorService flushTimer;
+  private final Executor flushExecutor;
+
+  private List<PendingDocument> pendingDocuments = new ArrayList<>();
+  private long pendingBytes;
+  private long oldestPendingTimestamp;
+
+  /**
+   * Constructor.
+   *
+   * @param solrClient The Solr client to send the documents to.
+   * @param policy The policy that determines when batches are sent.
+   */
+  public BatchingSolrWriter(SolrClient solrClient, SolrBatchPolicy policy) {
+    this(solrClient, policy, System::currentTimeMillis, SHARED_FLUSH_TIMER,
+        SHARED_FLUSH_EXECUTOR);
+  }
+
+  /**
+   * Constructor for testing purposes. There is no timer: the maximum delay is only checked when
+   * adding documents.
+   *
+   * @param solrClient The Solr client to send the documents to.
+   * @param policy The policy that determines when batches are sent.
+   * @param clock The clock that provides the current time in milliseconds.
+   */
+  BatchingSolrWriter(SolrClient solrClient, SolrBatchPolicy policy, LongSupplier clock) {
+    this(solrClient, policy, clock, null, null);
+  }
+
+  /**
+   * Constructor for testing purposes.
+   *
+   * @param solrClient The Solr client to send the documents to.
+   * @param policy The policy that determines when batches are sent.
+   * @param clock The clock that provides the current time in milliseconds.
+   * @param flushTimer The timer that triggers the sending of batches that reached the maximum
+   * delay. Can be null, in which case the maximum delay is only checked when adding documents.
+   * @param flushExecutor The executor that sends the batches that reached the maximum delay, so
+   * that a slow Solr server does not hold up the timer. Must be provided if the timer is provided.
+   */
+  BatchingSolrWriter(SolrClient solrClient, SolrBatchPolicy policy, LongSupplier clock,
+      ScheduledExecutorService flushTimer, Executor flushExecutor) {
+    this.solrClient = Objects.requireNonNull(solrClient);
+    this.policy = Objects.requireNonNull(policy);
+    this.clock = clock;
+    this.flushTimer = flushTimer;
+    this.flushExecutor = flushExecutor;
+  }
+
+  /**
+   * Adds a document. If this causes one of the thresholds of the policy to be reached, all pending
+   * documents (including this one) are sent to Solr.
+   *
+   * @param document The document to add.
+   * @return A future that completes when the document is sent to Solr. It completes exceptionally
+   * (with an {@link IndexingException}) if the batch containing the document could not be sent.
+   */
+  public CompletableFuture<Void> add(SolrInputDocument document) {
+    final PendingDocument pendingDocument = new PendingDocument(document);
+    final List<PendingDocument> batch;
+    synchronized (this) {
+      final long now = clock.getAsLong();
+      if (pendingDocuments.isEmpty()) {
+        oldestPendingTimestamp = now;
+        scheduleFlushOfExpiredBatch();
+      }
+      pendingDocuments.add(pendingDocument);
+      pendingBytes += estimateSize(document);
+      batch = policy.isBatchFull(pendingDocuments.size(), pendingBytes, oldestPendingTimestamp, now)
+          ? takePendingDocuments() : Collections.emptyList();
+    }
+    send(batch);
+    return pendingDocument.result;
+  }
+
+  /**
+   * Sends all pending documents to Solr. Note that this does not commit the documents: this is
+   * left to the commitWithin setting of the policy or the Solr configuration. The outcome is
+   * reported through the futures of the documents (see {@link #add(SolrInputDocument)}).
+   */
+  public void flush() {
+    final List<PendingDocument> batch;
+    synchronized (this) {
+      batch = takePendingDocuments();
+    }
+    send(batch);
+  }
+
+  /**
+   * Sends all pending documents to Solr (see {@link #flush()}).
+   */
+  @Override
+  public void close() {
+    flush();
+  }
+
+  /**
+   * Waits until the given documents are sent to Solr.
+   *
+   * @param documents The futures of the documents, as returned by {@link
+   * #add(SolrInputDocument)}. Note that the documents must be sent by some caller: callers should
+   * call {@link #flush()} if they need the documents to be sent right away.
+   * @throws IndexingException In case one of the documents could not be sent to Solr. The first
+   * failure is thrown.
+   */
+  public static void waitFor(Collection<CompletableFuture<Void>> documents)
+      throws IndexingException {
+    for (CompletableFuture<Void> document : documents) {
+      try {
+        document.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IndexerRelatedIndexingException(
+            "Interrupted while waiting for documents to be sent to Solr.", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IndexingException) {
+          throw (IndexingException) e.getCause();
+        }
+        throw new RecordRelatedIndexingException(SOLR_SERVER_PUBLISH_ERROR, e.getCause());
+      }
+    }
+  }
+
+  private void scheduleFlushOfExpiredBatch() {
+    if (flushTimer != null && policy.getMaxDelayInMillis() > 0) {
+      flushTimer.schedule(() -> flushExecutor.execute(this::flushExpiredBatch),
+          policy.getMaxDelayInMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Sends the pending documents if the oldest one reached the maximum delay. Note that if the batch
+   * for which this check was scheduled was already sent, the current batch (if any) was started
+   * later and has its own check scheduled.
+   */
+  void flushExpiredBatch() {
+    final List<PendingDocument> batch;
+    synchronized (this) {
+      final boolean expired = !pendingDocuments.isEmpty()
+          && clock.getAsLong() - oldestPendingTimestamp >= policy.getMaxDelayInMillis();
+      batch = expired ? takePendingDocuments() : Collections.emptyList();
+    }
+    send(batch);
+  }
+
+  private static ThreadFactory createThreadFactory(String name) {
+    return runnable -> {
+      final Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * @return The number of documents that are currently pending.
+   */
+  public synchronized int getPendingDocumentCount() {
+    return pendingDocuments.size();
+  }
+
+  private List<PendingDocument> takePendingDocuments() {
+    final List<PendingDocument> result = pendingDocuments;
+    pendingDocuments = new ArrayList<>();
+    pendingBytes = 0;
+    return result;
+  }
+
+  private void send(List<PendingDocument> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    LOGGER.debug("Sending batch of {} documents to Solr.", batch.size());
+    final List<SolrInputDocument> documents = new ArrayList<>(batch.size());
+    batch.forEach(pendingDocument -> documents.add(pendingDocument.document));
+    try {
+      sendDocuments(documents);
+    } catch (IndexingException e) {
+      LOGGER.debug("Could not send batch of {} documents to Solr.", batch.size(), e);
+      batch.forEach(pendingDocument -> pendingDocument.result.completeExceptionally(e));
+      return;
+    }
+    batch.forEach(pendingDocument -> pendingDocument.result.complete(null));
+  }
+
+  private void sendDocuments(List<SolrInputDocument> documents) throws IndexingException {
+    try {
+      retryableExternalRequestForNetworkExceptions(() -> {
+        try {
+          return solrClient.add(documents, policy.getCommitWithinInMillis());
+        } catch (IOException e) {
+          throw new RuntimeException(new IndexerRelatedIndexingException(
+              SOLR_SERVER_PUBLISH_ERROR, e));
+        } catch (SolrServerException e) {
+          throw new RuntimeException(new RecordRelatedIndexingException(
+              SOLR_SERVER_PUBLISH_ERROR, e));
+        }
+      });
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof IndexingException) {
+        throw (IndexingException) e.getCause();
+      }
+      throw new RecordRelatedIndexingException(SOLR_SERVER_PUBLISH_ERROR, e);
+    }
+  }
+
+  /**
+   * Estimates the size of a document when sent to Solr. This is based on the lengths of the field
+   * names and the string representations of the values.
+   *
+   * @param document The document.
+   * @return The estimated size in bytes.
+   */
+  static long estimateSize(SolrInputDocument document) {
+    long result = 0;
+    for (SolrInputField field : document) {
+      result += field.getName().length();
+      final Collection<Object> values = field.getValues();
+      if (values != null) {
+        for (Object value : values) {
+          result += value == null ? 0 : value.toString().length();
+        }
+      }
+    }
+    return result;
+  }
+
+  private static final class PendingDocument {
+
+    private final SolrInputDocument document;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    PendingDocument(SolrInputDocument document) {
+      this.document = document;
+    }
+  }
+}
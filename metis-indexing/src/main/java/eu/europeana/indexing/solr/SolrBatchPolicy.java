@@ -0,0 +1,67 @@
+package eu.europeana.indexing.solr;
+
+/**
+ * This class determines when a {@link BatchingSolrWriter} sends its pending documents to Solr. A
+ * batch is sent as soon as one of the thresholds (number of documents, estimated size in bytes or
+ * age of the oldest pending document) is reached. Instances of this class are immutable.
+ */
+public final class SolrBatchPolicy {
+
+  /**
+   * The default policy: batches of at most 100 documents or 10MB, sent at least every 10 seconds,
+   * without commitWithin (so leaving the commit to the Solr configuration).
+   */
+  public static final SolrBatchPolicy DEFAULT = new SolrBatchPolicy(100, 10L * 1024 * 1024,
+      10_000L, -1);
+
+  private final int maxDocuments;
+  private final long maxBytes;
+  private final long maxDelayInMillis;
+  private final int commitWithinInMillis;
+
+  /**
+   * Constructor.
+   *
+   * @param maxDocuments The maximum number of documents in a batch. If this number is 1 or lower,
+   * every document is sent to Solr individually.
+   * @param maxBytes The maximum (estimated) size of a batch in bytes. If this number is zero or
+   * negative, there is no size threshold.
+   * @param maxDelayInMillis The maximum time (in milliseconds) that a document may be pending
+   * before the batch is sent. If this number is zero or negative, there is no time threshold.
+   * @param commitWithinInMillis The commitWithin value (in milliseconds) to send along with the
+   * batch. If this number is zero or negative, no commitWithin is sent.
+   */
+  public SolrBatchPolicy(int maxDocuments, long maxBytes, long maxDelayInMillis,
+      int commitWithinInMillis) {
+    this.maxDocuments = Math.max(maxDocuments, 1);
+    this.maxBytes = maxBytes;
+    this.maxDelayInMillis = maxDelayInMillis;
+    this.commitWithinInMillis = commitWithinInMillis > 0 ? commitWithinInMillis : -1;
+  }
+
+  public int getMaxDocuments() {
+    return maxDocuments;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getMaxDelayInMillis() {
+    return maxDelayInMillis;
+  }
+
+  /**
+   * @return The commitWithin value in milliseconds, or -1 if no commitWithin is to be sent.
+   */
+  public int getCommitWithinInMillis() {
+    return commitWithinInMillis;
+  }
+
+  boolean isBatchFull(int documentCount, long byteCount, long oldestDocumentTimestamp,
+      long now) {
+    return documentCount >= maxDocuments || (maxBytes > 0 && byteCount >= maxBytes) || (
+        maxDelayInMillis > 0 && documentCount > 0
+            && now - oldestDocumentTimestamp >= maxDelayInMillis);
+  }
+}
@@ -12,6 +12,7 @@ import eu.europeana.indexing.solr.facet.value.MimeTypeEncoding;
 import eu.europeana.indexing.solr.facet.value.VideoDuration;
 import eu.europeana.indexing.solr.facet.value.VideoQuality;
 import eu.europeana.indexing.utils.WebResourceWrapper;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Optional;
@@ -57,10 +58,13 @@ public final class EncodedFacet<T extends Enum<T> & FacetValue> {
   public static final EncodedFacet<VideoDuration> VIDEO_DURATION = new EncodedFacet<>(10, 3,
       VideoDuration::categorizeVideoDuration, VideoDuration.class);
 
+  private static final int[] EMPTY_CODES = new int[0];
+
   private final int bitPosition;
   private final int numberOfBits;
   private final Function<WebResourceWrapper, Set<T>> resourceCategorizer;
   private final Map<Integer, T> codeToValueMap;
+  private final int[] shiftedCodesByOrdinal;
 
   private EncodedFacet(final int bitPosition, final int numberOfBits, Class<T> valueType,
       Function<WebResourceWrapper, Set<T>> resourceCategorizer) {
@@ -69,6 +73,15 @@ public final class EncodedFacet<T extends Enum<T> & FacetValue> {
     this.resourceCategorizer = resourceCategorizer;
     this.codeToValueMap = EnumSet.allOf(valueType).stream()
         .collect(Collectors.toMap(this::getCodeFromValue, Function.identity()));
+
+    // Precompute the shifted codes, so that they can be looked up by ordinal (-1 if invalid).
+    final T[] values = valueType.getEnumConstants();
+    this.shiftedCodesByOrdinal = new int[values.length];
+    for (T value : values) {
+      final int code = getCodeFromValue(value);
+      this.shiftedCodesByOrdinal[value.ordinal()] =
+          (code < 0 || code > getMaxValue()) ? -1 : (code << bitPosition);
+    }
   }
 
   private EncodedFacet(final int bitPosition, final int numberOfBits,
@@ -124,11 +137,35 @@ public final class EncodedFacet<T extends Enum<T> & FacetValue> {
    * this facet.
    */
   int encodeValue(T value) {
-    final int code = value.getCode();
-    if (code < 0 || code > getMaxValue()) {
+    final int shiftedCode = shiftedCodesByOrdinal[value.ordinal()];
+    if (shiftedCode < 0) {
       throw new IllegalArgumentException("The input does not fit in this facet's interval. ");
     }
-    return code << bitPosition;
+    return shiftedCode;
+  }
+
+  /**
+   * Shift the codes of the given facet values according to the rules of this facet.
+   *
+   * @param values The values to shift. Can be null (which is treated as the empty set) and null
+   * values are ignored.
+   * @return The shifted values. Is not null, but may be empty.
+   * @throws IllegalArgumentException if a value's code falls outside the permitted interval for
+   * this facet.
+   */
+  int[] encodeValues(Set<T> values) {
+    if (values == null || values.isEmpty()) {
+      return EMPTY_CODES;
+    }
+    final int[] result = new int[values.size()];
+    int count = 0;
+    for (T value : values) {
+      if (value != null) {
+        result[count] = encodeValue(value);
+        count++;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
   }
 
   /**
@@ -138,9 +175,8 @@ public final class EncodedFacet<T extends Enum<T> & FacetValue> {
    * @param webResource The web resource to evaluate this facet on.
    * @return The codes. Is not null, but may be empty.
    */
-  Set<Integer> encodeValues(WebResourceWrapper webResource) {
-    return resourceCategorizer.apply(webResource).stream().map(this::encodeValue)
-        .collect(Collectors.toSet());
+  int[] encodeValues(WebResourceWrapper webResource) {
+    return encodeValues(resourceCategorizer.apply(webResource));
   }
 
   /**
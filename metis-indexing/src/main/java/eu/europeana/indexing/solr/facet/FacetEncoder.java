@@ -2,7 +2,6 @@ package eu.europeana.indexing.solr.facet;
 
 import eu.europeana.indexing.solr.facet.value.AudioDuration;
 import eu.europeana.indexing.solr.facet.value.AudioQuality;
-import eu.europeana.indexing.solr.facet.value.FacetValue;
 import eu.europeana.indexing.solr.facet.value.ImageAspectRatio;
 import eu.europeana.indexing.solr.facet.value.ImageColorEncoding;
 import eu.europeana.indexing.solr.facet.value.ImageColorSpace;
@@ -10,14 +9,10 @@ import eu.europeana.indexing.solr.facet.value.ImageSize;
 import eu.europeana.indexing.solr.facet.value.MimeTypeEncoding;
 import eu.europeana.indexing.solr.facet.value.VideoDuration;
 import eu.europeana.indexing.solr.facet.value.VideoQuality;
-import eu.europeana.indexing.utils.SetUtils;
 import eu.europeana.indexing.utils.WebResourceWrapper;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * This class provides functionality to extract the facet values from web resources and combine them
@@ -28,6 +23,8 @@ import java.util.stream.Collectors;
  */
 public class FacetEncoder {
 
+  private static final int[][] NO_CODES = new int[0][];
+
   /**
    * <p>
    * This method returns all possible combinations of the facet value codes: each facet's value(s)
@@ -60,7 +57,7 @@ public class FacetEncoder {
   public final Set<Integer> getFacetFilterCodes(WebResourceWrapper webResource) {
 
     // Get all the individual codes from all the facets.
-    final List<Set<Integer>> codes = compileIntegerSets(webResource);
+    final int[][] codes = compileCodes(webResource);
 
     // Find all the combinations; make sure there is always the media type value 'or'-ed into them.
     return getFacetFilterCodes(EncodedFacetCollection.get(webResource), codes);
@@ -77,7 +74,7 @@ public class FacetEncoder {
    */
   public final Set<Integer> getAudioFacetFilterCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<AudioQuality> audioQualities, Set<AudioDuration> audioDurations) {
-    final List<Set<Integer>> codes = compileAudioIntegerSets(mimeTypes, audioQualities,
+    final int[][] codes = compileAudioCodes(mimeTypes, audioQualities,
         audioDurations);
     return getFacetFilterCodes(EncodedFacetCollection.AUDIO, codes);
   }
@@ -93,7 +90,7 @@ public class FacetEncoder {
    */
   public final Set<Integer> getVideoFacetFilterCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<VideoQuality> videoQualities, Set<VideoDuration> videoDurations) {
-    final List<Set<Integer>> codes = compileVideoIntegerSets(mimeTypes, videoQualities,
+    final int[][] codes = compileVideoCodes(mimeTypes, videoQualities,
         videoDurations);
     return getFacetFilterCodes(EncodedFacetCollection.VIDEO, codes);
   }
@@ -112,7 +109,7 @@ public class FacetEncoder {
   public final Set<Integer> getImageFacetFilterCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<ImageSize> imageSizes, Set<ImageColorSpace> imageColorSpaces,
       Set<ImageAspectRatio> imageAspectRatios, Set<ImageColorEncoding> imageColorEncodings) {
-    final List<Set<Integer>> codes = compileImageIntegerSets(mimeTypes, imageSizes,
+    final int[][] codes = compileImageCodes(mimeTypes, imageSizes,
         imageColorSpaces, imageAspectRatios, imageColorEncodings);
     return getFacetFilterCodes(EncodedFacetCollection.IMAGE, codes);
   }
@@ -125,18 +122,37 @@ public class FacetEncoder {
    * @return The set of facet codes.
    */
   public final Set<Integer> getTextFacetFilterCodes(Set<MimeTypeEncoding> mimeTypes) {
-    final List<Set<Integer>> codes = compileTextIntegerSets(mimeTypes);
+    final int[][] codes = compileTextCodes(mimeTypes);
     return getFacetFilterCodes(EncodedFacetCollection.TEXT, codes);
   }
 
   private static Set<Integer> getFacetFilterCodes(EncodedFacetCollection mediaType,
-      List<Set<Integer>> codes) {
+      int[][] codes) {
     if (mediaType == null) {
       return Collections.emptySet();
     }
-    final int shiftedMediaTypeCode = getShiftedMediaTypeCode(mediaType);
-    return SetUtils.generateCombinations(codes, shiftedMediaTypeCode,
-        (combination, code) -> combination | code);
+
+    // Compute the number of combinations: each facet contributes one of its codes or none.
+    int combinationCount = 1;
+    for (int[] facetCodes : codes) {
+      combinationCount *= facetCodes.length + 1;
+    }
+
+    // Generate the combinations: the first ones are those that have no value for the facet, after
+    // which the combinations that we found so far are extended with each of the facet's codes.
+    final int[] combinations = new int[combinationCount];
+    combinations[0] = getShiftedMediaTypeCode(mediaType);
+    int count = 1;
+    for (int[] facetCodes : codes) {
+      final int combinationsWithoutFacet = count;
+      for (int code : facetCodes) {
+        for (int i = 0; i < combinationsWithoutFacet; i++) {
+          combinations[count] = combinations[i] | code;
+          count++;
+        }
+      }
+    }
+    return toSet(combinations);
   }
 
   /**
@@ -168,7 +184,7 @@ public class FacetEncoder {
   public final Set<Integer> getFacetValueCodes(WebResourceWrapper webResource) {
 
     // Get all the individual codes from all the facets.
-    final List<Set<Integer>> codes = compileIntegerSets(webResource);
+    final int[][] codes = compileCodes(webResource);
 
     // Combine the codes and make sure there is always the media type value 'or'-ed into them.
     return getFacetValueCodes(EncodedFacetCollection.get(webResource), codes);
@@ -185,7 +201,7 @@ public class FacetEncoder {
    */
   public final Set<Integer> getAudioFacetValueCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<AudioQuality> audioQualities, Set<AudioDuration> audioDurations) {
-    final List<Set<Integer>> codes = compileAudioIntegerSets(mimeTypes, audioQualities,
+    final int[][] codes = compileAudioCodes(mimeTypes, audioQualities,
         audioDurations);
     return getFacetValueCodes(EncodedFacetCollection.AUDIO, codes);
   }
@@ -201,7 +217,7 @@ public class FacetEncoder {
    */
   public final Set<Integer> getVideoFacetValueCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<VideoQuality> videoQualities, Set<VideoDuration> videoDurations) {
-    final List<Set<Integer>> codes = compileVideoIntegerSets(mimeTypes, videoQualities,
+    final int[][] codes = compileVideoCodes(mimeTypes, videoQualities,
         videoDurations);
     return getFacetValueCodes(EncodedFacetCollection.VIDEO, codes);
   }
@@ -220,7 +236,7 @@ public class FacetEncoder {
   public final Set<Integer> getImageFacetValueCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<ImageSize> imageSizes, Set<ImageColorSpace> imageColorSpaces,
       Set<ImageAspectRatio> imageAspectRatios, Set<ImageColorEncoding> imageColorEncodings) {
-    final List<Set<Integer>> codes = compileImageIntegerSets(mimeTypes, imageSizes,
+    final int[][] codes = compileImageCodes(mimeTypes, imageSizes,
         imageColorSpaces, imageAspectRatios, imageColorEncodings);
     return getFacetValueCodes(EncodedFacetCollection.IMAGE, codes);
   }
@@ -233,65 +249,69 @@ public class FacetEncoder {
    * @return The set of facet codes.
    */
   public final Set<Integer> getTextFacetValueCodes(Set<MimeTypeEncoding> mimeTypes) {
-    final List<Set<Integer>> codes = compileTextIntegerSets(mimeTypes);
+    final int[][] codes = compileTextCodes(mimeTypes);
     return getFacetValueCodes(EncodedFacetCollection.TEXT, codes);
   }
 
   private static Set<Integer> getFacetValueCodes(EncodedFacetCollection mediaType,
-      List<Set<Integer>> codes) {
+      int[][] codes) {
     if (mediaType == null) {
       return Collections.emptySet();
     }
     final int shiftedMediaTypeCode = getShiftedMediaTypeCode(mediaType);
-    return codes.stream().flatMap(Set::stream)
-        .map(code -> shiftedMediaTypeCode | code).collect(Collectors.toSet());
+    final Set<Integer> result = new HashSet<>();
+    for (int[] facetCodes : codes) {
+      for (int code : facetCodes) {
+        result.add(shiftedMediaTypeCode | code);
+      }
+    }
+    return result;
   }
 
-  private static List<Set<Integer>> compileIntegerSets(WebResourceWrapper webResource) {
+  private static Set<Integer> toSet(int[] codes) {
+    final Set<Integer> result = new HashSet<>(codes.length * 4 / 3 + 1);
+    for (int code : codes) {
+      result.add(code);
+    }
+    return result;
+  }
+
+  private static int[][] compileCodes(WebResourceWrapper webResource) {
     final EncodedFacetCollection facets = EncodedFacetCollection.get(webResource);
     if (facets == null) {
-      return Collections.emptyList();
+      return NO_CODES;
     }
     return facets.getFacets().stream()
         .map(facet -> ((EncodedFacet<?>) facet).encodeValues(webResource))
-        .filter(set -> !set.isEmpty()).collect(Collectors.toList());
+        .filter(codes -> codes.length > 0).toArray(int[][]::new);
   }
 
-  private static List<Set<Integer>> compileAudioIntegerSets(Set<MimeTypeEncoding> mimeTypes,
+  private static int[][] compileAudioCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<AudioQuality> audioQualities, Set<AudioDuration> audioDurations) {
-    return Arrays.asList(compileIntegerSet(EncodedFacet.MIME_TYPE, mimeTypes),
-        compileIntegerSet(EncodedFacet.AUDIO_QUALITY, audioQualities),
-        compileIntegerSet(EncodedFacet.AUDIO_DURATION, audioDurations));
+    return new int[][]{EncodedFacet.MIME_TYPE.encodeValues(mimeTypes),
+        EncodedFacet.AUDIO_QUALITY.encodeValues(audioQualities),
+        EncodedFacet.AUDIO_DURATION.encodeValues(audioDurations)};
   }
 
-  private static List<Set<Integer>> compileVideoIntegerSets(Set<MimeTypeEncoding> mimeTypes,
+  private static int[][] compileVideoCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<VideoQuality> videoQualities, Set<VideoDuration> videoDurations) {
-    return Arrays.asList(compileIntegerSet(EncodedFacet.MIME_TYPE, mimeTypes),
-        compileIntegerSet(EncodedFacet.VIDEO_QUALITY, videoQualities),
-        compileIntegerSet(EncodedFacet.VIDEO_DURATION, videoDurations));
+    return new int[][]{EncodedFacet.MIME_TYPE.encodeValues(mimeTypes),
+        EncodedFacet.VIDEO_QUALITY.encodeValues(videoQualities),
+        EncodedFacet.VIDEO_DURATION.encodeValues(videoDurations)};
   }
 
-  private static List<Set<Integer>> compileImageIntegerSets(Set<MimeTypeEncoding> mimeTypes,
+  private static int[][] compileImageCodes(Set<MimeTypeEncoding> mimeTypes,
       Set<ImageSize> imageSizes, Set<ImageColorSpace> imageColorSpaces,
-      Set<ImageAspectRatio> imageAspectRatios, Set<ImageColorEncoding> imageColorEncodings){
-    return Arrays.asList(compileIntegerSet(EncodedFacet.MIME_TYPE, mimeTypes),
-        compileIntegerSet(EncodedFacet.IMAGE_SIZE, imageSizes),
-        compileIntegerSet(EncodedFacet.IMAGE_COLOR_SPACE, imageColorSpaces),
-        compileIntegerSet(EncodedFacet.IMAGE_ASPECT_RATIO, imageAspectRatios),
-        compileIntegerSet(EncodedFacet.IMAGE_COLOR_ENCODING, imageColorEncodings));
-  }
-
-  private static List<Set<Integer>> compileTextIntegerSets(Set<MimeTypeEncoding> mimeTypes) {
-    return Collections.singletonList(compileIntegerSet(EncodedFacet.MIME_TYPE, mimeTypes));
+      Set<ImageAspectRatio> imageAspectRatios, Set<ImageColorEncoding> imageColorEncodings) {
+    return new int[][]{EncodedFacet.MIME_TYPE.encodeValues(mimeTypes),
+        EncodedFacet.IMAGE_SIZE.encodeValues(imageSizes),
+        EncodedFacet.IMAGE_COLOR_SPACE.encodeValues(imageColorSpaces),
+        EncodedFacet.IMAGE_ASPECT_RATIO.encodeValues(imageAspectRatios),
+        EncodedFacet.IMAGE_COLOR_ENCODING.encodeValues(imageColorEncodings)};
   }
 
-  private static <T extends Enum<T> & FacetValue> Set<Integer> compileIntegerSet(
-      EncodedFacet<T> encodedFacet, Set<T> values) {
-    if (values == null) {
-      return Collections.emptySet();
-    }
-    return values.stream().filter(Objects::nonNull).map(encodedFacet::encodeValue)
-        .collect(Collectors.toSet());
+  private static int[][] compileTextCodes(Set<MimeTypeEncoding> mimeTypes) {
+    return new int[][]{EncodedFacet.MIME_TYPE.encodeValues(mimeTypes)};
   }
 
   private static int getShiftedMediaTypeCode(EncodedFacetCollection encoder) {
@@ -0,0 +1,151 @@
+package eu.europeana.indexing.tiers;
+
+import eu.europeana.corelib.definitions.jibx.AgentType;
+import eu.europeana.corelib.definitions.jibx.Aggregation;
+import eu.europeana.corelib.definitions.jibx.Concept;
+import eu.europeana.corelib.definitions.jibx.EdmType;
+import eu.europeana.corelib.definitions.jibx.PlaceType;
+import eu.europeana.corelib.definitions.jibx.ProxyType;
+import eu.europeana.corelib.definitions.jibx.RDF;
+import eu.europeana.corelib.definitions.jibx.TimeSpanType;
+import eu.europeana.indexing.utils.LicenseType;
+import eu.europeana.indexing.utils.RdfWrapper;
+import eu.europeana.indexing.utils.WebResourceLinkType;
+import eu.europeana.indexing.utils.WebResourceWrapper;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * <p>
+ * This class is a view of an RDF record that computes the information that the tier classifiers
+ * need when the instance is created. The classifiers typically request the same information (like
+ * the provider proxies, the contextual classes or the web resources) many times, and the {@link
+ * RdfWrapper} computes this information again from the record every time. This class computes each
+ * piece of information once, using the methods of the {@link RdfWrapper} (so this still takes a
+ * number of separate passes over the record), and serves the requests from the stored results.
+ * </p>
+ * <p>
+ * The record should not be changed for as long as this instance is in use. Under that condition
+ * this class is immutable and can be shared between threads.
+ * </p>
+ */
+final class RdfSnapshot extends RdfWrapper {
+
+  private final List<ProxyType> proxies;
+  private final List<ProxyType> providerProxies;
+  private final List<Aggregation> aggregations;
+  private final List<AgentType> agents;
+  private final List<Concept> concepts;
+  private final List<PlaceType> places;
+  private final List<TimeSpanType> timeSpans;
+  private final LicenseType licenseType;
+  private final EdmType edmType;
+  private final boolean hasThumbnails;
+  private final List<WebResourceWrapper> webResourceWrappers;
+  private final Map<WebResourceLinkType, Set<String>> urlsByType;
+  private final boolean hasLandingPage;
+
+  /**
+   * Constructor.
+   *
+   * @param record The record to take the snapshot of.
+   */
+  RdfSnapshot(RDF record) {
+    super(record);
+    this.proxies = Collections.unmodifiableList(super.getProxies());
+    this.providerProxies = Collections.unmodifiableList(super.getProviderProxies());
+    this.aggregations = Collections.unmodifiableList(super.getAggregations());
+    this.agents = Collections.unmodifiableList(super.getAgents());
+    this.concepts = Collections.unmodifiableList(super.getConcepts());
+    this.places = Collections.unmodifiableList(super.getPlaces());
+    this.timeSpans = Collections.unmodifiableList(super.getTimeSpans());
+    this.licenseType = super.getLicenseType();
+    this.edmType = super.getEdmType();
+    this.hasThumbnails = super.hasThumbnails();
+    this.webResourceWrappers = Collections.unmodifiableList(super.getWebResourceWrappers());
+    this.urlsByType = new EnumMap<>(WebResourceLinkType.class);
+    for (WebResourceLinkType type : WebResourceLinkType.values()) {
+      urlsByType.put(type, super.getUrlsOfTypes(EnumSet.of(type)));
+    }
+    this.hasLandingPage = getWebResourceWrappers(EnumSet.of(WebResourceLinkType.IS_SHOWN_AT))
+        .stream().map(WebResourceWrapper::getMimeType).anyMatch(StringUtils::isNotBlank);
+  }
+
+  @Override
+  public List<ProxyType> getProxies() {
+    return proxies;
+  }
+
+  @Override
+  public List<ProxyType> getProviderProxies() {
+    return providerProxies;
+  }
+
+  @Override
+  public List<Aggregation> getAggregations() {
+    return aggregations;
+  }
+
+  @Override
+  public LicenseType getLicenseType() {
+    return licenseType;
+  }
+
+  @Override
+  public EdmType getEdmType() {
+    return edmType;
+  }
+
+  @Override
+  public boolean hasLandingPage() {
+    return hasLandingPage;
+  }
+
+  @Override
+  public Set<String> getUrlsOfTypes(Set<WebResourceLinkType> types) {
+    return types.stream().map(urlsByType::get).flatMap(Set::stream).collect(Collectors.toSet());
+  }
+
+  @Override
+  public List<WebResourceWrapper> getWebResourceWrappers(Set<WebResourceLinkType> types) {
+    return webResourceWrappers.stream()
+        .filter(webResource -> !Collections.disjoint(webResource.getLinkTypes(), types))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<WebResourceWrapper> getWebResourceWrappers() {
+    return webResourceWrappers;
+  }
+
+  @Override
+  public boolean hasThumbnails() {
+    return hasThumbnails;
+  }
+
+  @Override
+  public List<AgentType> getAgents() {
+    return agents;
+  }
+
+  @Override
+  public List<Concept> getConcepts() {
+    return concepts;
+  }
+
+  @Override
+  public List<PlaceType> getPlaces() {
+    return places;
+  }
+
+  @Override
+  public List<TimeSpanType> getTimeSpans() {
+    return timeSpans;
+  }
+}
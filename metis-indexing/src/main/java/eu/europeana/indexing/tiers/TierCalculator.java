@@ -0,0 +1,79 @@
+package eu.europeana.indexing.tiers;
+
+import eu.europeana.corelib.definitions.jibx.RDF;
+import eu.europeana.indexing.tiers.model.MediaTier;
+import eu.europeana.indexing.tiers.model.MetadataTier;
+import eu.europeana.indexing.tiers.model.TierClassifier;
+import eu.europeana.indexing.utils.RdfWrapper;
+
+/**
+ * <p>
+ * This class computes both the media tier and the metadata tier of a record. It first computes
+ * the information that the classifiers need once for the record (see {@link RdfSnapshot}), after
+ * which all classifiers evaluate against this snapshot instead of each computing the same
+ * information from the record again.
+ * </p>
+ * <p>
+ * This class is thread-safe: the classifiers are stateless and the snapshot is not shared between
+ * calls, so that multiple records can be classified in parallel using the same instance.
+ * </p>
+ */
+public class TierCalculator {
+
+  private final TierClassifier<MediaTier> mediaClassifier;
+  private final TierClassifier<MetadataTier> metadataClassifier;
+
+  /**
+   * Constructor.
+   */
+  public TierCalculator() {
+    this(ClassifierFactory.getMediaClassifier(), ClassifierFactory.getMetadataClassifier());
+  }
+
+  /**
+   * Constructor for test purposes.
+   *
+   * @param mediaClassifier The classifier for the media tier.
+   * @param metadataClassifier The classifier for the metadata tier.
+   */
+  TierCalculator(TierClassifier<MediaTier> mediaClassifier,
+      TierClassifier<MetadataTier> metadataClassifier) {
+    this.mediaClassifier = mediaClassifier;
+    this.metadataClassifier = metadataClassifier;
+  }
+
+  /**
+   * Computes the tiers of the given record. The record should not be changed while this method is
+   * executing.
+   *
+   * @param record The record to classify.
+   * @return The tiers of the record. Is not null.
+   */
+  public TierResults calculate(RDF record) {
+    final RdfWrapper snapshot = new RdfSnapshot(record);
+    return new TierResults(mediaClassifier.classify(snapshot),
+        metadataClassifier.classify(snapshot));
+  }
+
+  /**
+   * This class contains the tiers of a record.
+   */
+  public static class TierResults {
+
+    private final MediaTier mediaTier;
+    private final MetadataTier metadataTier;
+
+    TierResults(MediaTier mediaTier, MetadataTier metadataTier) {
+      this.mediaTier = mediaTier;
+      this.metadataTier = metadataTier;
+    }
+
+    public MediaTier getMediaTier() {
+      return mediaTier;
+    }
+
+    public MetadataTier getMetadataTier() {
+      return metadataTier;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package eu.europeana.indexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.DBRef;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.DeleteResult;
+import dev.morphia.Datastore;
+import dev.morphia.mapping.Mapper;
+import eu.europeana.corelib.mongo.server.EdmMongoServer;
+import eu.europeana.corelib.solr.bean.impl.FullBeanImpl;
+import eu.europeana.corelib.solr.entity.AggregationImpl;
+import eu.europeana.corelib.solr.entity.EuropeanaAggregationImpl;
+import eu.europeana.corelib.solr.entity.ProvidedCHOImpl;
+import eu.europeana.corelib.solr.entity.ProxyImpl;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.client.solrj.SolrClient;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class IndexedRecordAccessTest {
+
+  private static final List<Class<?>> COLLECTION_TYPES = Arrays
+      .asList(FullBeanImpl.class, AggregationImpl.class, EuropeanaAggregationImpl.class,
+          ProvidedCHOImpl.class, ProxyImpl.class);
+
+  private final Map<Class<?>, MongoCollection<Document>> collections = new HashMap<>();
+  private SolrClient solrClient;
+  private IndexedRecordAccess indexedRecordAccess;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    final Mapper mapper = mock(Mapper.class);
+    for (Class<?> type : COLLECTION_TYPES) {
+      final MongoCollection<Document> collection = mock(MongoCollection.class);
+      doReturn(collection).when(collection).withDocumentClass(Document.class);
+      doReturn(DeleteResult.acknowledged(2)).when(collection).deleteMany(any(Bson.class));
+      doReturn(collection).when(mapper).getCollection(type);
+      collections.put(type, collection);
+    }
+    final Datastore datastore = mock(Datastore.class);
+    doReturn(mapper).when(datastore).getMapper();
+    final EdmMongoServer mongoServer = mock(EdmMongoServer.class);
+    doReturn(datastore).when(mongoServer).getDatastore();
+    solrClient = mock(SolrClient.class);
+    indexedRecordAccess = new IndexedRecordAccess(mongoServer, solrClient);
+  }
+
+  private static String render(Bson filter) {
+    return filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry())
+        .toJson();
+  }
+
+  private String getDeleteFilter(Class<?> type) {
+    final ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+    verify(collections.get(type), times(1)).deleteMany(filter.capture());
+    return render(filter.getValue());
+  }
+
+  private static void assertPrefixRange(String filter, String lowerBound, String upperBound) {
+    assertTrue(filter.contains("\"$gte\": \"" + lowerBound + "\""), filter);
+    assertTrue(filter.contains("\"$lt\": \"" + upperBound + "\""), filter);
+  }
+
+  @Test
+  void testRemoveDataset() throws Exception {
+    assertEquals(2, indexedRecordAccess.removeDataset("12", null));
+
+    // One delete query per collection, selecting on the about prefix, without reading anything.
+    assertPrefixRange(getDeleteFilter(FullBeanImpl.class), "/12/", "/120");
+    assertPrefixRange(getDeleteFilter(ProvidedCHOImpl.class), "/12/", "/120");
+    assertPrefixRange(getDeleteFilter(AggregationImpl.class), "/aggregation/provider/12/",
+        "/aggregation/provider/120");
+    assertPrefixRange(getDeleteFilter(EuropeanaAggregationImpl.class),
+        "/aggregation/europeana/12/", "/aggregation/europeana/120");
+    final String proxyFilter = getDeleteFilter(ProxyImpl.class);
+    assertPrefixRange(proxyFilter, "/proxy/provider/12/", "/proxy/provider/120");
+    assertPrefixRange(proxyFilter, "/proxy/europeana/12/", "/proxy/europeana/120");
+    for (MongoCollection<Document> collection : collections.values()) {
+      verify(collection, never()).find(any(Bson.class));
+    }
+
+    // One delete query for Solr.
+    verify(solrClient, times(1)).deleteByQuery("europeana_id:\\/12\\/*");
+  }
+
+  @Test
+  void testRemoveDatasetWithMaxRecordDate() throws Exception {
+    assertEquals(2, indexedRecordAccess.removeDataset("12", new Date(0)));
+
+    // Only the records themselves are removed.
+    final String filter = getDeleteFilter(FullBeanImpl.class);
+    assertPrefixRange(filter, "/12/", "/120");
+    assertTrue(filter.contains("timestampUpdated"), filter);
+    for (Class<?> type : COLLECTION_TYPES.subList(1, COLLECTION_TYPES.size())) {
+      verify(collections.get(type), never()).deleteMany(any(Bson.class));
+    }
+
+    // The Solr query contains the date.
+    final ArgumentCaptor<String> solrQuery = ArgumentCaptor.forClass(String.class);
+    verify(solrClient, times(1)).deleteByQuery(solrQuery.capture());
+    assertEquals("europeana_id:\\/12\\/* AND timestamp_update:[* TO 1970-01-01T00:00:00.000Z}",
+        solrQuery.getValue());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testRemoveRecords() throws Exception {
+
+    // The record references its dependencies.
+    final Document record = new Document("_id", "record1")
+        .append("aggregations", List.of(new DBRef("Aggregation", "aggregation1")))
+        .append("europeanaAggregation", new DBRef("EuropeanaAggregation", "euAggregation1"))
+        .append("providedCHOs", List.of(new DBRef("ProvidedCHO", "cho1")))
+        .append("proxies", List.of(new DBRef("Proxy", "proxy1"), new DBRef("Proxy", "proxy2")));
+    final FindIterable<Document> findIterable = mock(FindIterable.class);
+    doReturn(findIterable).when(findIterable).projection(any(Bson.class));
+    doAnswer(invocation -> {
+      final Collection<Document> target = invocation.getArgument(0);
+      target.add(record);
+      return target;
+    }).when(findIterable).into(any());
+    doReturn(findIterable).when(collections.get(FullBeanImpl.class)).find(any(Bson.class));
+
+    // Remove the records (with a duplicate).
+    assertEquals(2, indexedRecordAccess.removeRecords(List.of("/12/1", "/12/2", "/12/1")));
+
+    // One delete query per collection.
+    final String recordFilter = getDeleteFilter(FullBeanImpl.class);
+    assertTrue(recordFilter.contains("\"$in\": [\"/12/1\", \"/12/2\"]"), recordFilter);
+    assertTrue(getDeleteFilter(AggregationImpl.class).contains("[\"aggregation1\"]"));
+    assertTrue(getDeleteFilter(EuropeanaAggregationImpl.class).contains("[\"euAggregation1\"]"));
+    assertTrue(getDeleteFilter(ProvidedCHOImpl.class).contains("[\"cho1\"]"));
+    assertTrue(getDeleteFilter(ProxyImpl.class).contains("[\"proxy1\", \"proxy2\"]"));
+
+    // One delete query for Solr.
+    verify(solrClient, times(1)).deleteByQuery(anyString());
+    verify(solrClient, times(1)).deleteByQuery("europeana_id:(\\/12\\/1 OR \\/12\\/2)");
+  }
+}
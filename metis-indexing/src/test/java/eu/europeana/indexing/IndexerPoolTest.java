@@ -0,0 +1,105 @@
+package eu.europeana.indexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import eu.europeana.indexing.exception.IndexerRelatedIndexingException;
+import eu.europeana.indexing.exception.RecordRelatedIndexingException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+
+class IndexerPoolTest {
+
+  @Test
+  void testIndexWithMetrics() throws Exception {
+    final Indexer indexer = mock(Indexer.class);
+    final IndexerFactory indexerFactory = mock(IndexerFactory.class);
+    doReturn(indexer).when(indexerFactory).getIndexer();
+    final IndexerPoolMetrics metrics = mock(IndexerPoolMetrics.class);
+
+    try (IndexerPool pool = new IndexerPool(indexerFactory, 60, 60, 2, 0, metrics)) {
+
+      // Successful indexing: the indexer is reused.
+      pool.index("record", new Date(), false, Collections.emptyList(), false);
+      pool.index("record", new Date(), false, Collections.emptyList(), false);
+      verify(indexerFactory, times(1)).getIndexer();
+      verify(metrics, times(2)).indexerBorrowed(any(Duration.class), eq(1), eq(0));
+      verify(metrics, times(2)).recordsIndexed(eq(1), any(Duration.class), eq(true));
+      assertEquals(0, pool.getActiveCount());
+      assertEquals(1, pool.getIdleCount());
+
+      // Record related failure: the indexer is returned to the pool.
+      doThrow(new RecordRelatedIndexingException("test")).when(indexer)
+          .index(any(String.class), any(), anyBoolean(), any(), anyBoolean());
+      assertThrows(RecordRelatedIndexingException.class,
+          () -> pool.index("record", new Date(), false, Collections.emptyList(), false));
+      verify(metrics, times(1)).recordsIndexed(eq(1), any(Duration.class), eq(false));
+      assertEquals(0, pool.getActiveCount());
+      assertEquals(1, pool.getIdleCount());
+    }
+  }
+
+  @Test
+  void testBoundedPool() throws Exception {
+    final Indexer indexer = mock(Indexer.class);
+    final IndexerFactory indexerFactory = mock(IndexerFactory.class);
+    doReturn(indexer).when(indexerFactory).getIndexer();
+    final IndexerPoolMetrics metrics = mock(IndexerPoolMetrics.class);
+
+    try (IndexerPool pool = new IndexerPool(indexerFactory, 60, 60, 1, 0, metrics)) {
+
+      // While the only indexer is in use, no other indexer can be borrowed.
+      doAnswer(invocation -> {
+        assertEquals(1, pool.getActiveCount());
+        assertThrows(IndexerRelatedIndexingException.class,
+            () -> pool.index("other", new Date(), false, Collections.emptyList(), false));
+        return null;
+      }).when(indexer).index(eq("record"), any(), anyBoolean(), any(), anyBoolean());
+      pool.index("record", new Date(), false, Collections.emptyList(), false);
+
+      verify(indexerFactory, times(1)).getIndexer();
+      verify(metrics, times(1)).indexerBorrowFailed(any(Duration.class));
+      verify(metrics, times(1)).indexerBorrowed(any(Duration.class), anyInt(), anyInt());
+    }
+  }
+
+  @Test
+  void testUnboundedPool() throws Exception {
+    final Indexer indexer = mock(Indexer.class);
+    final IndexerFactory indexerFactory = mock(IndexerFactory.class);
+    doReturn(indexer).when(indexerFactory).getIndexer();
+
+    try (IndexerPool pool = new IndexerPool(indexerFactory, 60, 60)) {
+
+      // While an indexer is in use, another indexer is created for the next request.
+      doAnswer(invocation -> {
+        assertEquals(1, pool.getActiveCount());
+        pool.index("other", new Date(), false, Collections.emptyList(), false);
+        return null;
+      }).when(indexer).index(eq("record"), any(), anyBoolean(), any(), anyBoolean());
+      pool.index("record", new Date(), false, Collections.emptyList(), false);
+
+      verify(indexerFactory, times(2)).getIndexer();
+      verify(indexer, times(1)).index(eq("other"), any(), anyBoolean(), any(), anyBoolean());
+      assertEquals(2, pool.getIdleCount());
+    }
+  }
+
+  @Test
+  void testInvalidMaxTotal() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new IndexerPool(mock(IndexerFactory.class), 60, 60, 0, 0, IndexerPoolMetrics.NO_OP));
+  }
+}
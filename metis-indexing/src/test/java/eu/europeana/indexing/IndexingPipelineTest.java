@@ -0,0 +1,110 @@
+package eu.europeana.indexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.indexing.exception.RecordRelatedIndexingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class IndexingPipelineTest {
+
+  @Test
+  void testRun() throws Exception {
+    final List<Integer> input = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    final List<List<String>> persistedBatches = Collections.synchronizedList(new ArrayList<>());
+    try (IndexingPipeline pipeline = new IndexingPipeline(
+        new IndexingPipelineSettings(2, 2, 2, 1, 3, 3))) {
+      final int count = pipeline.run(input.iterator(), String::valueOf, value -> value + "t",
+          batch -> batch.stream().map(value -> value + "r").collect(Collectors.toList()),
+          persistedBatches::add);
+      assertEquals(10, count);
+    }
+
+    // With one persistence worker, the batches are persisted in order.
+    assertEquals(List.of(3, 3, 3, 1),
+        persistedBatches.stream().map(List::size).collect(Collectors.toList()));
+    assertEquals(input.stream().map(value -> value + "tr").collect(Collectors.toList()),
+        persistedBatches.stream().flatMap(List::stream).collect(Collectors.toList()));
+  }
+
+  @Test
+  void testRunWithFailure() {
+    final RecordRelatedIndexingException exception = new RecordRelatedIndexingException("test");
+    final List<Integer> input = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    final List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+    try (IndexingPipeline pipeline = new IndexingPipeline(
+        new IndexingPipelineSettings(1, 1, 1, 1, 2, 2))) {
+      final RecordRelatedIndexingException result = assertThrows(
+          RecordRelatedIndexingException.class,
+          () -> pipeline.run(input.iterator(), value -> value, value -> {
+            if (value == 5) {
+              throw exception;
+            }
+            return value;
+          }, batch -> batch, persisted::addAll));
+      assertSame(exception, result);
+    }
+
+    // The batch with the failing record should not be persisted, nor should any later batch.
+    assertFalse(persisted.contains(4));
+    assertFalse(persisted.contains(5));
+    assertTrue(persisted.stream().noneMatch(value -> value > 5));
+  }
+
+  @Test
+  void testRunInCallingThread() throws Exception {
+    final Thread callingThread = Thread.currentThread();
+    final List<Thread> usedThreads = new ArrayList<>();
+    final List<String> persisted = new ArrayList<>();
+    try (IndexingPipeline pipeline = new IndexingPipeline(
+        new IndexingPipelineSettings(2, 2, 2, 2, 3, 3))) {
+      pipeline.runInCallingThread(7, value -> {
+        usedThreads.add(Thread.currentThread());
+        return String.valueOf(value);
+      }, value -> value + "t", batch -> {
+        usedThreads.add(Thread.currentThread());
+        return batch.stream().map(value -> value + "r").collect(Collectors.toList());
+      }, batch -> {
+        usedThreads.add(Thread.currentThread());
+        persisted.addAll(batch);
+      });
+    }
+    assertEquals(List.of("7tr"), persisted);
+    assertEquals(3, usedThreads.size());
+    assertTrue(usedThreads.stream().allMatch(thread -> thread == callingThread));
+  }
+
+  @Test
+  void testWorkersAreDaemonThreads() throws Exception {
+    final List<Thread> usedThreads = Collections.synchronizedList(new ArrayList<>());
+    try (IndexingPipeline pipeline = new IndexingPipeline(
+        new IndexingPipelineSettings(1, 1, 1, 1, 2, 2))) {
+      pipeline.run(List.of(1, 2, 3).iterator(), value -> {
+        usedThreads.add(Thread.currentThread());
+        return value;
+      }, value -> value, batch -> batch, batch -> usedThreads.add(Thread.currentThread()));
+    }
+    assertFalse(usedThreads.isEmpty());
+    assertTrue(usedThreads.stream().allMatch(Thread::isDaemon));
+    assertTrue(usedThreads.stream().allMatch(thread -> thread.getName().startsWith("indexing-")));
+  }
+
+  @Test
+  void testSettingsDefaults() {
+    final IndexingPipelineSettings settings = new IndexingPipelineSettings(0, -1, 0, 0, 5, 10);
+    assertEquals(1, settings.getParsingWorkers());
+    assertEquals(1, settings.getTierCalculationWorkers());
+    assertEquals(1, settings.getRedirectResolutionWorkers());
+    assertEquals(1, settings.getPersistenceWorkers());
+    assertEquals(10, settings.getPersistenceBatchSize());
+    assertEquals(10, settings.getQueueCapacity());
+  }
+}
@@ -0,0 +1,152 @@
+package eu.europeana.indexing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import eu.europeana.corelib.definitions.jibx.Identifier;
+import eu.europeana.corelib.definitions.jibx.Title;
+import eu.europeana.indexing.solr.EdmLabel;
+import eu.europeana.indexing.utils.RdfWrapper;
+import eu.europeana.metis.mongo.RecordRedirectDao;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.junit.jupiter.api.Test;
+
+class RecordRedirectsUtilTest {
+
+  private static final Pattern DATASET_SCOPE_PATTERN = Pattern
+      .compile(EdmLabel.EDM_DATASETNAME + ":\\(([^)]*)\\)");
+  private static final Pattern SELF_EXCLUSION_PATTERN = Pattern
+      .compile("-" + EdmLabel.EUROPEANA_ID + ":(\\S+)");
+
+  private static final Date CREATION_DATE = new Date(1000);
+  private static final List<String> DATASETS_TO_REDIRECT_FROM = List.of("34");
+
+  private static RdfWrapper createRdf(String about, String identifier, String title) {
+    final Identifier identifierObject = new Identifier();
+    identifierObject.setString(identifier);
+    final Title titleObject = new Title();
+    titleObject.setString(title);
+    final RdfWrapper rdf = mock(RdfWrapper.class);
+    doReturn(about).when(rdf).getAbout();
+    doReturn(List.of(identifierObject)).when(rdf).getProviderProxyIdentifiers();
+    doReturn(List.of(titleObject)).when(rdf).getProviderProxyTitles();
+    return rdf;
+  }
+
+  private static SolrDocument createCandidate(String about, String datasetName,
+      String identifier, String title) {
+    final SolrDocument document = new SolrDocument();
+    document.setField(EdmLabel.EUROPEANA_ID.toString(), about);
+    document.setField(EdmLabel.TIMESTAMP_CREATED.toString(), CREATION_DATE);
+    document.setField(EdmLabel.EDM_DATASETNAME.toString(), datasetName);
+    document.setField(EdmLabel.PROXY_DC_IDENTIFIER.toString(), List.of(identifier));
+    document.setField(EdmLabel.PROXY_DC_TITLE.toString(), List.of(title));
+    return document;
+  }
+
+  /**
+   * Simulates Solr: it applies the dataset scope and the exclusion of the record itself, and
+   * (conservatively) assumes that all candidates satisfy the matching part of the query.
+   */
+  private static SolrDocumentList retrieve(List<SolrDocument> candidates,
+      Map<String, String> queryParameters) {
+    final String query = queryParameters.get("q");
+    final Matcher scopeMatcher = DATASET_SCOPE_PATTERN.matcher(query);
+    final List<String> datasetIds = scopeMatcher.find() ? Arrays
+        .stream(scopeMatcher.group(1).split(" OR ")).map(item -> item.replace("_*", ""))
+        .collect(Collectors.toList()) : List.of();
+    final Matcher selfMatcher = SELF_EXCLUSION_PATTERN.matcher(query);
+    final String excluded = selfMatcher.find() ? selfMatcher.group(1).replace("\\", "") : null;
+    final List<SolrDocument> found = candidates.stream()
+        .filter(document -> !document.getFieldValue(EdmLabel.EUROPEANA_ID.toString())
+            .equals(excluded))
+        .filter(document -> datasetIds.stream().anyMatch(datasetId -> ((String) document
+            .getFieldValue(EdmLabel.EDM_DATASETNAME.toString())).startsWith(datasetId + "_")))
+        .collect(Collectors.toList());
+    final SolrDocumentList result = new SolrDocumentList();
+    final int rows = queryParameters.containsKey("rows")
+        ? Integer.parseInt(queryParameters.get("rows")) : found.size();
+    result.addAll(found.subList(0, Math.min(rows, found.size())));
+    result.setNumFound(found.size());
+    return result;
+  }
+
+  @Test
+  void testBatchedRedirectsEqualIndividualRedirects() throws Exception {
+
+    // Create the records and the candidates.
+    final List<RdfWrapper> rdfs = List.of(createRdf("/12/rec1", "id1", "title1"),
+        createRdf("/12/rec2", "id2", "title2"), createRdf("/12/rec3", "id3", "title3"));
+    final List<SolrDocument> candidates = List.of(
+        // In a dataset to redirect from: found for the first record.
+        createCandidate("/34/old1", "34_old", "id1", "title1"),
+        // The identifier does not reflect the dataset name: found for the second record.
+        createCandidate("/99/old2", "12_renamed", "id2", "title2"),
+        // The identifier suggests it is in scope, but the dataset name is not.
+        createCandidate("/12/old3", "56_other", "id3", "title3"),
+        // The first record itself: not found.
+        createCandidate("/12/rec1", "12_current", "id1", "title1"));
+
+    // Check the individual results.
+    final RecordRedirectDao recordRedirectDao = mock(RecordRedirectDao.class);
+    final List<List<Pair<String, Date>>> individualResults = new ArrayList<>();
+    for (RdfWrapper rdf : rdfs) {
+      individualResults.add(RecordRedirectsUtil
+          .checkAndApplyRedirects(recordRedirectDao, rdf, new Date(), DATASETS_TO_REDIRECT_FROM,
+              true, parameters -> retrieve(candidates, parameters)));
+    }
+    assertEquals(List.of(List.of(ImmutablePair.of("/34/old1", CREATION_DATE)),
+        List.of(ImmutablePair.of("/99/old2", CREATION_DATE)), List.of()), individualResults);
+
+    // Check that the batch results are the same.
+    final List<Map<String, String>> batchQueries = new ArrayList<>();
+    final List<List<Pair<String, Date>>> batchResults = RecordRedirectsUtil
+        .checkAndApplyRedirects(recordRedirectDao, rdfs, new Date(), DATASETS_TO_REDIRECT_FROM,
+            true, parameters -> {
+              batchQueries.add(parameters);
+              return retrieve(candidates, parameters);
+            });
+    assertEquals(individualResults, batchResults);
+    assertEquals(1, batchQueries.size());
+  }
+
+  @Test
+  void testBatchedRedirectsWithTooManyCandidates() throws Exception {
+
+    // Create more candidates than can be retrieved in one query.
+    final List<RdfWrapper> rdfs = List.of(createRdf("/12/rec1", "id1", "title1"),
+        createRdf("/12/rec2", "id2", "title2"));
+    final List<SolrDocument> candidates = new ArrayList<>();
+    candidates.add(createCandidate("/99/old2", "12_renamed", "id2", "title2"));
+    for (int i = 0; i < 1000; i++) {
+      candidates.add(createCandidate("/34/other" + i, "34_old", "other", "other"));
+    }
+    candidates.add(createCandidate("/34/old1", "34_old", "id1", "title1"));
+
+    // Check that the results are the same as for the individual queries.
+    final RecordRedirectDao recordRedirectDao = mock(RecordRedirectDao.class);
+    final List<List<Pair<String, Date>>> individualResults = new ArrayList<>();
+    for (RdfWrapper rdf : rdfs) {
+      individualResults.add(RecordRedirectsUtil
+          .checkAndApplyRedirects(recordRedirectDao, rdf, new Date(), DATASETS_TO_REDIRECT_FROM,
+              true, parameters -> retrieve(candidates, parameters)));
+    }
+    assertEquals(List.of(List.of(ImmutablePair.of("/34/old1", CREATION_DATE)),
+        List.of(ImmutablePair.of("/99/old2", CREATION_DATE))), individualResults);
+    assertEquals(individualResults, RecordRedirectsUtil
+        .checkAndApplyRedirects(recordRedirectDao, rdfs, new Date(), DATASETS_TO_REDIRECT_FROM,
+            true, parameters -> retrieve(candidates, parameters)));
+  }
+}
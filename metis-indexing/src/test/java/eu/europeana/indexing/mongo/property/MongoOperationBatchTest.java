@@ -0,0 +1,205 @@
+package eu.europeana.indexing.mongo.property;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import dev.morphia.mapping.codec.pojo.EntityModel;
+import eu.europeana.corelib.solr.entity.AgentImpl;
+import eu.europeana.corelib.solr.entity.PlaceImpl;
+import eu.europeana.corelib.storage.MongoServer;
+import java.util.Collections;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class MongoOperationBatchTest {
+
+  @Test
+  void testGetIdForNewObject() {
+    final MongoOperationBatch batch = new MongoOperationBatch(mock(MongoServer.class));
+    final ObjectId id = batch.getIdForNewObject(PlaceImpl.class, "about1");
+    assertEquals(id, batch.getIdForNewObject(PlaceImpl.class, "about1"));
+    assertNotEquals(id, batch.getIdForNewObject(PlaceImpl.class, "about2"));
+    assertNotEquals(id, batch.getIdForNewObject(AgentImpl.class, "about1"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testFlush() {
+
+    // Set up the mocks
+    final MongoServer mongoServer = mock(MongoServer.class, RETURNS_DEEP_STUBS);
+    final MongoCollection<Document> placeCollection = mock(MongoCollection.class);
+    final MongoCollection<Document> agentCollection = mock(MongoCollection.class);
+    when(mongoServer.getDatastore().getMapper().getCollection(PlaceImpl.class)
+        .withDocumentClass(Document.class)).thenReturn(placeCollection);
+    when(mongoServer.getDatastore().getMapper().getCollection(AgentImpl.class)
+        .withDocumentClass(Document.class)).thenReturn(agentCollection);
+    when(placeCollection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(BulkWriteResult.acknowledged(0, 2, 0, 2, Collections.emptyList()));
+    when(agentCollection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, Collections.emptyList()));
+
+    // Add updates: the second update for the same place should replace the first.
+    final MongoOperationBatch batch = new MongoOperationBatch(mongoServer);
+    final Document firstPlaceUpdate = new Document("$set", new Document("note", "first"));
+    final Document secondPlaceUpdate = new Document("$set", new Document("note", "second"));
+    final Document otherPlaceUpdate = new Document("$set", new Document("note", "other"));
+    final Document agentUpdate = new Document("$set", new Document("note", "agent"));
+    batch.addUpdate(PlaceImpl.class, "about", "place1", firstPlaceUpdate);
+    batch.addUpdate(PlaceImpl.class, "about", "place2", otherPlaceUpdate);
+    batch.addUpdate(PlaceImpl.class, "about", "place1", secondPlaceUpdate);
+    batch.addUpdate(AgentImpl.class, "about", "agent1", agentUpdate);
+
+    // Flush and verify: one bulk write per collection.
+    assertTrue(batch.flush());
+    final ArgumentCaptor<List<WriteModel<Document>>> placeModels = ArgumentCaptor
+        .forClass(List.class);
+    verify(placeCollection, times(1)).bulkWrite(placeModels.capture(), any(BulkWriteOptions.class));
+    assertEquals(2, placeModels.getValue().size());
+    assertSame(secondPlaceUpdate,
+        ((UpdateOneModel<Document>) placeModels.getValue().get(0)).getUpdate());
+    assertEquals(new Document("about", "place1"),
+        ((UpdateOneModel<Document>) placeModels.getValue().get(0)).getFilter());
+    assertSame(otherPlaceUpdate,
+        ((UpdateOneModel<Document>) placeModels.getValue().get(1)).getUpdate());
+    final ArgumentCaptor<List<WriteModel<Document>>> agentModels = ArgumentCaptor
+        .forClass(List.class);
+    verify(agentCollection, times(1)).bulkWrite(agentModels.capture(), any(BulkWriteOptions.class));
+    assertEquals(1, agentModels.getValue().size());
+    verifyNoMoreInteractions(placeCollection, agentCollection);
+
+    // A second flush should not do anything.
+    assertTrue(batch.flush());
+    verifyNoMoreInteractions(placeCollection, agentCollection);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testFlushWithConcurrentInsert() {
+
+    // Set up the mocks: only the first of the two new places is actually inserted.
+    final MongoServer mongoServer = mock(MongoServer.class, RETURNS_DEEP_STUBS);
+    final MongoCollection<Document> placeCollection = mock(MongoCollection.class);
+    when(mongoServer.getDatastore().getMapper().getCollection(PlaceImpl.class)
+        .withDocumentClass(Document.class)).thenReturn(placeCollection);
+    when(placeCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(
+        BulkWriteResult.acknowledged(0, 1, 0, 1,
+            Collections.singletonList(new BulkWriteUpsert(0, new BsonObjectId()))));
+
+    // Add updates for two new places.
+    final MongoOperationBatch batch = new MongoOperationBatch(mongoServer);
+    batch.getIdForNewObject(PlaceImpl.class, "place1");
+    batch.getIdForNewObject(PlaceImpl.class, "place2");
+    batch.addUpdate(PlaceImpl.class, "about", "place1", new Document());
+    batch.addUpdate(PlaceImpl.class, "about", "place2", new Document());
+
+    // The second place was not inserted by us: flush should report this.
+    assertFalse(batch.flush());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testFlushWithConcurrentInsertCausingDuplicateKey() {
+
+    // Set up the mocks: the second new place is inserted concurrently by another process, so that
+    // our upsert fails with a duplicate key error and is then applied to the other document.
+    final MongoServer mongoServer = mock(MongoServer.class, RETURNS_DEEP_STUBS);
+    final MongoCollection<Document> placeCollection = mock(MongoCollection.class);
+    when(mongoServer.getDatastore().getMapper().getCollection(PlaceImpl.class)
+        .withDocumentClass(Document.class)).thenReturn(placeCollection);
+    final MongoBulkWriteException duplicateKeyException = new MongoBulkWriteException(
+        BulkWriteResult.acknowledged(0, 1, 0, 1,
+            Collections.singletonList(new BulkWriteUpsert(0, new BsonObjectId()))),
+        Collections.singletonList(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+        null, new ServerAddress());
+    when(placeCollection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenThrow(duplicateKeyException)
+        .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, Collections.emptyList()));
+
+    // Add updates for two new places.
+    final MongoOperationBatch batch = new MongoOperationBatch(mongoServer);
+    batch.getIdForNewObject(PlaceImpl.class, "place1");
+    batch.getIdForNewObject(PlaceImpl.class, "place2");
+    final Document secondPlaceUpdate = new Document("$set", new Document("note", "second"));
+    batch.addUpdate(PlaceImpl.class, "about", "place1", new Document());
+    batch.addUpdate(PlaceImpl.class, "about", "place2", secondPlaceUpdate);
+
+    // The failed update should be tried again, and flush should report the conflict.
+    assertFalse(batch.flush());
+    final ArgumentCaptor<List<WriteModel<Document>>> placeModels = ArgumentCaptor
+        .forClass(List.class);
+    verify(placeCollection, times(2)).bulkWrite(placeModels.capture(), any(BulkWriteOptions.class));
+    final List<WriteModel<Document>> retriedModels = placeModels.getAllValues().get(1);
+    assertEquals(1, retriedModels.size());
+    assertSame(secondPlaceUpdate, ((UpdateOneModel<Document>) retriedModels.get(0)).getUpdate());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testAddUpdateAddsDiscriminator() {
+
+    // Set up the mocks: the place class uses a discriminator.
+    final MongoServer mongoServer = mock(MongoServer.class, RETURNS_DEEP_STUBS);
+    final EntityModel<PlaceImpl> entityModel = mock(EntityModel.class);
+    when(entityModel.useDiscriminator()).thenReturn(true);
+    when(entityModel.getDiscriminatorKey()).thenReturn("className");
+    when(entityModel.getDiscriminator()).thenReturn(PlaceImpl.class.getName());
+    when(mongoServer.getDatastore().getMapper().getEntityModel(PlaceImpl.class))
+        .thenReturn(entityModel);
+    final MongoCollection<Document> placeCollection = mock(MongoCollection.class);
+    when(mongoServer.getDatastore().getMapper().getCollection(PlaceImpl.class)
+        .withDocumentClass(Document.class)).thenReturn(placeCollection);
+    when(placeCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(
+        BulkWriteResult.acknowledged(0, 0, 0, 0,
+            List.of(new BulkWriteUpsert(0, new BsonObjectId()),
+                new BulkWriteUpsert(1, new BsonObjectId()))));
+
+    // Add upserts for two new places, one of which already has an insert operator.
+    final MongoOperationBatch batch = new MongoOperationBatch(mongoServer);
+    final ObjectId id = batch.getIdForNewObject(PlaceImpl.class, "place1");
+    batch.addUpdate(PlaceImpl.class, "about", "place1",
+        new Document("$setOnInsert", new Document("_id", id)));
+    batch.addUpdate(PlaceImpl.class, "about", "place2",
+        new Document("$set", new Document("note", "second")));
+    assertTrue(batch.flush());
+
+    // Check that the discriminator is inserted with both places.
+    final ArgumentCaptor<List<WriteModel<Document>>> placeModels = ArgumentCaptor
+        .forClass(List.class);
+    verify(placeCollection, times(1)).bulkWrite(placeModels.capture(), any(BulkWriteOptions.class));
+    final Document firstUpdate = (Document) ((UpdateOneModel<Document>) placeModels.getValue()
+        .get(0)).getUpdate();
+    assertEquals(new Document("_id", id).append("className", PlaceImpl.class.getName()),
+        firstUpdate.get("$setOnInsert"));
+    final Document secondUpdate = (Document) ((UpdateOneModel<Document>) placeModels.getValue()
+        .get(1)).getUpdate();
+    assertEquals(new Document("className", PlaceImpl.class.getName()),
+        secondUpdate.get("$setOnInsert"));
+    assertEquals(new Document("note", "second"), secondUpdate.get("$set"));
+  }
+}
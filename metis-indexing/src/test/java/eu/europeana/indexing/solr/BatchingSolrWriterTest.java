@@ -0,0 +1,193 @@
+package eu.europeana.indexing.solr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import eu.europeana.indexing.exception.RecordRelatedIndexingException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class BatchingSolrWriterTest {
+
+  private static SolrInputDocument createDocument(String id) {
+    final SolrInputDocument document = new SolrInputDocument();
+    document.addField("europeana_id", id);
+    return document;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testSizeThreshold() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(2, -1, -1, 500), () -> 0L);
+
+    writer.add(createDocument("1"));
+    verify(solrClient, never()).add(anyCollection(), anyInt());
+    writer.add(createDocument("2"));
+    final ArgumentCaptor<Collection<SolrInputDocument>> batch = ArgumentCaptor
+        .forClass(Collection.class);
+    verify(solrClient, times(1)).add(batch.capture(), eq(500));
+    assertEquals(2, batch.getValue().size());
+
+    writer.add(createDocument("3"));
+    assertEquals(1, writer.getPendingDocumentCount());
+    writer.flush();
+    assertEquals(0, writer.getPendingDocumentCount());
+    verify(solrClient, times(2)).add(anyCollection(), eq(500));
+
+    // Flushing an empty writer should not call Solr.
+    writer.flush();
+    verify(solrClient, times(2)).add(anyCollection(), anyInt());
+  }
+
+  @Test
+  void testByteThreshold() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    final SolrInputDocument document = createDocument("1");
+    final long size = BatchingSolrWriter.estimateSize(document);
+    assertTrue(size > 0);
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(100, size * 2, -1, -1), () -> 0L);
+    writer.add(document);
+    verify(solrClient, never()).add(anyCollection(), anyInt());
+    writer.add(createDocument("2"));
+    verify(solrClient, times(1)).add(anyCollection(), eq(-1));
+  }
+
+  @Test
+  void testTimeThreshold() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    final AtomicLong clock = new AtomicLong(1000);
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(100, -1, 50, -1), clock::get);
+    writer.add(createDocument("1"));
+    clock.addAndGet(20);
+    writer.add(createDocument("2"));
+    verify(solrClient, never()).add(anyCollection(), anyInt());
+    clock.addAndGet(30);
+    writer.add(createDocument("3"));
+    verify(solrClient, times(1)).add(anyCollection(), anyInt());
+    assertEquals(0, writer.getPendingDocumentCount());
+  }
+
+  @Test
+  void testTimeThresholdWithoutFurtherDocuments() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    final ScheduledExecutorService flushTimer = mock(ScheduledExecutorService.class);
+    final Executor flushExecutor = mock(Executor.class);
+    final AtomicLong clock = new AtomicLong(1000);
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(100, -1, 50, -1), clock::get, flushTimer, flushExecutor);
+
+    // Adding the first document of a batch should schedule a check.
+    final CompletableFuture<Void> document = writer.add(createDocument("1"));
+    writer.add(createDocument("2"));
+    final ArgumentCaptor<Runnable> timerTask = ArgumentCaptor.forClass(Runnable.class);
+    verify(flushTimer, times(1)).schedule(timerTask.capture(), eq(50L),
+        eq(TimeUnit.MILLISECONDS));
+
+    // The timer should only hand the check to the executor.
+    timerTask.getValue().run();
+    verify(flushExecutor, times(1)).execute(any(Runnable.class));
+    verify(solrClient, never()).add(anyCollection(), anyInt());
+
+    // The check should not send the batch before the maximum delay.
+    clock.addAndGet(20);
+    writer.flushExpiredBatch();
+    verify(solrClient, never()).add(anyCollection(), anyInt());
+    assertFalse(document.isDone());
+
+    // The check should send the batch after the maximum delay.
+    clock.addAndGet(30);
+    writer.flushExpiredBatch();
+    verify(solrClient, times(1)).add(anyCollection(), anyInt());
+    assertEquals(0, writer.getPendingDocumentCount());
+    assertTrue(document.isDone());
+    BatchingSolrWriter.waitFor(Collections.singletonList(document));
+  }
+
+  @Test
+  void testClose() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(100, -1, -1, -1), () -> 0L);
+    writer.add(createDocument("1"));
+    writer.close();
+    verify(solrClient, times(1)).add(anyCollection(), anyInt());
+    assertEquals(0, writer.getPendingDocumentCount());
+  }
+
+  @Test
+  void testFailure() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    doThrow(new SolrServerException("test")).when(solrClient).add(anyCollection(), anyInt());
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(100, -1, -1, -1), () -> 0L);
+    final CompletableFuture<Void> document = writer.add(createDocument("1"));
+    writer.flush();
+    verify(solrClient, times(1)).add(anyCollection(), anyInt());
+    assertThrows(RecordRelatedIndexingException.class,
+        () -> BatchingSolrWriter.waitFor(Collections.singletonList(document)));
+  }
+
+  @Test
+  void testFailureIsReportedForDocumentsInFailedBatch() throws Exception {
+    final SolrClient solrClient = mock(SolrClient.class);
+    final SolrInputDocument failingDocument = createDocument("1");
+    doThrow(new SolrServerException("test")).when(solrClient)
+        .add(argThat((Collection<SolrInputDocument> batch) -> batch.contains(failingDocument)),
+            anyInt());
+    final BatchingSolrWriter writer = new BatchingSolrWriter(solrClient,
+        new SolrBatchPolicy(2, -1, -1, -1), () -> 0L);
+
+    // The second caller triggers the sending of the failing batch, but should not get the failure.
+    final CompletableFuture<Void> first = writer.add(failingDocument);
+    final CompletableFuture<Void> second = writer.add(createDocument("2"));
+    final CompletableFuture<Void> third = writer.add(createDocument("3"));
+    writer.flush();
+    verify(solrClient, times(2)).add(anyCollection(), anyInt());
+
+    // Only the documents in the failed batch should report the failure.
+    assertThrows(RecordRelatedIndexingException.class,
+        () -> BatchingSolrWriter.waitFor(Collections.singletonList(first)));
+    assertThrows(RecordRelatedIndexingException.class,
+        () -> BatchingSolrWriter.waitFor(Collections.singletonList(second)));
+    BatchingSolrWriter.waitFor(Collections.singletonList(third));
+  }
+
+  @Test
+  void testPolicyDefaults() {
+    final SolrBatchPolicy policy = new SolrBatchPolicy(0, 0, 0, 0);
+    assertEquals(1, policy.getMaxDocuments());
+    assertEquals(-1, policy.getCommitWithinInMillis());
+    assertTrue(policy.isBatchFull(1, 0, 0, 0));
+  }
+
+  @Test
+  void testEstimateSizeWithoutFields() {
+    assertEquals(0, BatchingSolrWriter.estimateSize(new SolrInputDocument()));
+  }
+}
@@ -0,0 +1,93 @@
+package eu.europeana.indexing.solr.facet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.indexing.solr.facet.value.AudioDuration;
+import eu.europeana.indexing.solr.facet.value.AudioQuality;
+import eu.europeana.indexing.solr.facet.value.ImageAspectRatio;
+import eu.europeana.indexing.solr.facet.value.ImageColorEncoding;
+import eu.europeana.indexing.solr.facet.value.ImageColorSpace;
+import eu.europeana.indexing.solr.facet.value.ImageSize;
+import eu.europeana.indexing.solr.facet.value.MediaTypeEncoding;
+import eu.europeana.indexing.solr.facet.value.MimeTypeEncoding;
+import eu.europeana.indexing.utils.SetUtils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class FacetEncoderTest {
+
+  private static final FacetEncoder ENCODER = new FacetEncoder();
+
+  private static Set<Integer> encode(EncodedFacet<?> facet, Set<?> values) {
+    return values.stream().map(value -> encodeValue(facet, value)).collect(Collectors.toSet());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int encodeValue(EncodedFacet<?> facet, Object value) {
+    return ((EncodedFacet) facet).encodeValue((Enum) value);
+  }
+
+  @Test
+  void testImageFacetFilterCodes() {
+    final Set<MimeTypeEncoding> mimeTypes = EnumSet.of(MimeTypeEncoding.TYPE_1);
+    final Set<ImageSize> sizes = EnumSet.of(ImageSize.LARGE);
+    final Set<ImageColorSpace> colorSpaces = EnumSet.of(ImageColorSpace.COLOR);
+    final Set<ImageAspectRatio> aspectRatios = EnumSet.noneOf(ImageAspectRatio.class);
+    final Set<ImageColorEncoding> colors = EnumSet.range(ImageColorEncoding.values()[0],
+        ImageColorEncoding.values()[5]);
+
+    // Compute the expected result with the generic combination algorithm.
+    final List<Set<Integer>> codes = Arrays.asList(encode(EncodedFacet.MIME_TYPE, mimeTypes),
+        encode(EncodedFacet.IMAGE_SIZE, sizes), encode(EncodedFacet.IMAGE_COLOR_SPACE, colorSpaces),
+        encode(EncodedFacet.IMAGE_ASPECT_RATIO, aspectRatios),
+        encode(EncodedFacet.IMAGE_COLOR_ENCODING, colors));
+    final int mediaTypeCode = EncodedFacet.MEDIA_TYPE.encodeValue(MediaTypeEncoding.IMAGE);
+    final Set<Integer> expected = SetUtils
+        .generateCombinations(codes, mediaTypeCode, (combination, code) -> combination | code);
+
+    // Compare.
+    final Set<Integer> result = ENCODER
+        .getImageFacetFilterCodes(mimeTypes, sizes, colorSpaces, aspectRatios, colors);
+    assertEquals(2 * 2 * 2 * 7, result.size());
+    assertEquals(expected, result);
+  }
+
+  @Test
+  void testAudioFacetCodes() {
+    final Set<MimeTypeEncoding> mimeTypes = EnumSet.of(MimeTypeEncoding.TYPE_2);
+    final Set<AudioQuality> qualities = EnumSet.of(AudioQuality.HIGH);
+    final Set<AudioDuration> durations = EnumSet.of(AudioDuration.SHORT, AudioDuration.LONG);
+    final int mediaTypeCode = EncodedFacet.MEDIA_TYPE.encodeValue(MediaTypeEncoding.AUDIO);
+    final int mimeTypeCode = EncodedFacet.MIME_TYPE.encodeValue(MimeTypeEncoding.TYPE_2);
+    final int qualityCode = EncodedFacet.AUDIO_QUALITY.encodeValue(AudioQuality.HIGH);
+
+    // Filter codes: all combinations, always including the media type.
+    final Set<Integer> filterCodes = ENCODER
+        .getAudioFacetFilterCodes(mimeTypes, qualities, durations);
+    assertEquals(2 * 2 * 3, filterCodes.size());
+    assertTrue(filterCodes.contains(mediaTypeCode));
+    assertTrue(filterCodes.contains(mediaTypeCode | mimeTypeCode | qualityCode
+        | EncodedFacet.AUDIO_DURATION.encodeValue(AudioDuration.LONG)));
+    assertTrue(filterCodes.stream().allMatch(code -> (code & mediaTypeCode) == mediaTypeCode));
+
+    // Value codes: only the individual values.
+    final Set<Integer> valueCodes = ENCODER
+        .getAudioFacetValueCodes(mimeTypes, qualities, durations);
+    assertEquals(4, valueCodes.size());
+    assertTrue(valueCodes.contains(mediaTypeCode | qualityCode));
+  }
+
+  @Test
+  void testEmptyAndNullInput() {
+    final int mediaTypeCode = EncodedFacet.MEDIA_TYPE.encodeValue(MediaTypeEncoding.TEXT);
+    assertEquals(Collections.singleton(mediaTypeCode), ENCODER.getTextFacetFilterCodes(null));
+    assertEquals(Collections.emptySet(), ENCODER.getTextFacetValueCodes(Collections.emptySet()));
+    assertEquals(0, EncodedFacet.MIME_TYPE.encodeValues(Collections.singleton(null)).length);
+  }
+}
@@ -0,0 +1,148 @@
+package eu.europeana.indexing.tiers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import eu.europeana.corelib.definitions.jibx.AgentType;
+import eu.europeana.corelib.definitions.jibx.Aggregation;
+import eu.europeana.corelib.definitions.jibx.HasMimeType;
+import eu.europeana.corelib.definitions.jibx.HasView;
+import eu.europeana.corelib.definitions.jibx.IsShownAt;
+import eu.europeana.corelib.definitions.jibx.IsShownBy;
+import eu.europeana.corelib.definitions.jibx.ProxyType;
+import eu.europeana.corelib.definitions.jibx.RDF;
+import eu.europeana.corelib.definitions.jibx.WebResourceType;
+import eu.europeana.indexing.utils.RdfWrapper;
+import eu.europeana.indexing.utils.WebResourceLinkType;
+import eu.europeana.indexing.utils.WebResourceWrapper;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class RdfSnapshotTest {
+
+  private static WebResourceType createWebResource(String about, String mimeType) {
+    final WebResourceType webResource = mock(WebResourceType.class);
+    doReturn(about).when(webResource).getAbout();
+    final HasMimeType hasMimeType = mock(HasMimeType.class);
+    doReturn(mimeType).when(hasMimeType).getHasMimeType();
+    doReturn(hasMimeType).when(webResource).getHasMimeType();
+    return webResource;
+  }
+
+  private static RDF createRecord() {
+
+    // Create the links
+    final HasView hasView1 = mock(HasView.class);
+    doReturn("view1").when(hasView1).getResource();
+    final HasView hasView2 = mock(HasView.class);
+    doReturn("shared").when(hasView2).getResource();
+    final IsShownBy isShownBy = mock(IsShownBy.class);
+    doReturn("shared").when(isShownBy).getResource();
+    final IsShownAt isShownAt = mock(IsShownAt.class);
+    doReturn("landing").when(isShownAt).getResource();
+    final Aggregation aggregation = mock(Aggregation.class);
+    doReturn(Arrays.asList(hasView1, hasView2)).when(aggregation).getHasViewList();
+    doReturn(isShownBy).when(aggregation).getIsShownBy();
+    doReturn(isShownAt).when(aggregation).getIsShownAt();
+
+    // Create the record
+    final RDF rdf = mock(RDF.class);
+    doReturn(Collections.singletonList(aggregation)).when(rdf).getAggregationList();
+    doReturn(Arrays.asList(createWebResource("view1", "image/jpeg"),
+        createWebResource("shared", "video/mp4"), createWebResource("landing", "text/html"),
+        createWebResource("unlinked", "image/png"))).when(rdf).getWebResourceList();
+    doReturn(Arrays.asList(mock(ProxyType.class), mock(ProxyType.class))).when(rdf)
+        .getProxyList();
+    final AgentType agent = mock(AgentType.class);
+    doReturn("agent").when(agent).getAbout();
+    doReturn(Collections.singletonList(agent)).when(rdf).getAgentList();
+    return rdf;
+  }
+
+  private static Set<String> getAbouts(List<WebResourceWrapper> webResources) {
+    return webResources.stream().map(WebResourceWrapper::getAbout).collect(Collectors.toSet());
+  }
+
+  @Test
+  void testSameAsWrapper() {
+    final RDF rdf = createRecord();
+    final RdfWrapper wrapper = new RdfWrapper(rdf);
+    final RdfSnapshot snapshot = new RdfSnapshot(rdf);
+
+    // Check the simple properties
+    assertEquals(wrapper.getProxies(), snapshot.getProxies());
+    assertEquals(wrapper.getProviderProxies(), snapshot.getProviderProxies());
+    assertEquals(wrapper.getAggregations(), snapshot.getAggregations());
+    assertEquals(wrapper.getAgents(), snapshot.getAgents());
+    assertEquals(wrapper.getConcepts(), snapshot.getConcepts());
+    assertEquals(wrapper.getPlaces(), snapshot.getPlaces());
+    assertEquals(wrapper.getTimeSpans(), snapshot.getTimeSpans());
+    assertEquals(wrapper.getLicenseType(), snapshot.getLicenseType());
+    assertEquals(wrapper.getEdmType(), snapshot.getEdmType());
+    assertEquals(wrapper.hasThumbnails(), snapshot.hasThumbnails());
+    assertTrue(snapshot.hasLandingPage());
+    assertEquals(wrapper.hasLandingPage(), snapshot.hasLandingPage());
+
+    // Check the web resources for all combinations of link types
+    final Function<Set<WebResourceLinkType>, Set<String>> wrapperResources = types -> getAbouts(
+        wrapper.getWebResourceWrappers(types));
+    final Function<Set<WebResourceLinkType>, Set<String>> snapshotResources = types -> getAbouts(
+        snapshot.getWebResourceWrappers(types));
+    assertEquals(Set.of("view1", "shared"),
+        snapshotResources.apply(EnumSet.of(WebResourceLinkType.HAS_VIEW)));
+    for (WebResourceLinkType type1 : WebResourceLinkType.values()) {
+      for (WebResourceLinkType type2 : WebResourceLinkType.values()) {
+        final Set<WebResourceLinkType> types = EnumSet.of(type1, type2);
+        assertEquals(wrapperResources.apply(types), snapshotResources.apply(types));
+        assertEquals(wrapper.getUrlsOfTypes(types), snapshot.getUrlsOfTypes(types));
+      }
+    }
+    assertEquals(getAbouts(wrapper.getWebResourceWrappers()),
+        getAbouts(snapshot.getWebResourceWrappers()));
+    assertEquals(EnumSet.of(WebResourceLinkType.HAS_VIEW, WebResourceLinkType.IS_SHOWN_BY),
+        snapshot.getWebResourceWrappers(EnumSet.of(WebResourceLinkType.IS_SHOWN_BY)).get(0)
+            .getLinkTypes());
+  }
+
+  @Test
+  void testSingleTraversal() {
+    final RDF rdf = createRecord();
+    final RdfSnapshot snapshot = new RdfSnapshot(rdf);
+
+    // Request the information many times.
+    for (int i = 0; i < 3; i++) {
+      snapshot.getProviderProxies();
+      snapshot.getEdmType();
+      snapshot.getAgents();
+      snapshot.hasLandingPage();
+      snapshot.getWebResourceWrappers(EnumSet.of(WebResourceLinkType.HAS_VIEW));
+    }
+
+    // The record is only accessed during construction.
+    verify(rdf, times(1)).getProxyList();
+    verify(rdf, times(1)).getAgentList();
+    verify(rdf, times(1)).getWebResourceList();
+  }
+
+  @Test
+  void testImmutable() {
+    final RdfSnapshot snapshot = new RdfSnapshot(createRecord());
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.getProxies().clear());
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.getAgents().clear());
+    assertThrows(UnsupportedOperationException.class,
+        () -> snapshot.getWebResourceWrappers().clear());
+    assertFalse(snapshot.getWebResourceWrappers().isEmpty());
+  }
+}
@@ -12,6 +12,7 @@ import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
 /**
  * <p>
@@ -25,6 +26,12 @@ import org.apache.commons.pool2.impl.GenericObjectPool;
  * the automatic destruction of idle indexers, given a certain permissible idle time.
  * </p>
  * <p>
+ * Alternatively, the number of processors can be bounded. In that case, tasks for which no
+ * processor is available wait for one to be returned to the pool. Waiting tasks are served in the
+ * order in which they arrived, and the number of waiting tasks can be monitored (see {@link
+ * #getQueueLength()}).
+ * </p>
+ * <p>
  * This class is used through one of the inner subclasses that this class provides.
  * </p>
  * <p>
@@ -44,16 +51,19 @@ public abstract class AbstractMediaProcessorPool<I, O, E extends Exception, T ex
 
   private final GenericObjectPool<T> pool;
 
-  private AbstractMediaProcessorPool(MediaProcessorFactory processorFactory) {
+  private AbstractMediaProcessorPool(MediaProcessorFactory processorFactory, int maxProcessors) {
 
-    // Create indexer pool with default options.
+    // Create indexer pool with default options, except that waiting tasks are served in order.
+    final GenericObjectPoolConfig<T> config = new GenericObjectPoolConfig<>();
+    config.setFairness(true);
     pool = new GenericObjectPool<>(
-        new PooledProcessorFactory<>(processorFactory, this::createProcessor));
+        new PooledProcessorFactory<>(processorFactory, this::createProcessor), config);
 
-    // Set custom options for the size of the pool: no max or min number of processor objects.
+    // Set custom options for the size of the pool: no min number of processor objects, and no max
+    // number unless one is given.
     pool.setMaxIdle(-1);
     pool.setMinIdle(-1);
-    pool.setMaxTotal(-1);
+    pool.setMaxTotal(maxProcessors < 1 ? -1 : maxProcessors);
 
     // Set custom options for pool regarding eviction (when processor has been idle for some time).
     pool.setSoftMinEvictableIdleTimeMillis(-1);
@@ -92,6 +102,21 @@ public abstract class AbstractMediaProcessorPool<I, O, E extends Exception, T ex
     }
   }
 
+  /**
+   * @return The number of tasks currently waiting for a processor to become available (the queue
+   * depth). This can only be positive if the number of processors is bounded.
+   */
+  public int getQueueLength() {
+    return pool.getNumWaiters();
+  }
+
+  /**
+   * @return The number of processors currently processing a task.
+   */
+  public int getActiveCount() {
+    return pool.getNumActive();
+  }
+
   abstract T createProcessor(MediaProcessorFactory processorFactory) throws MediaProcessorException;
 
   @Override
@@ -145,7 +170,18 @@ public abstract class AbstractMediaProcessorPool<I, O, E extends Exception, T ex
      * @param processorFactory The processor factory with which to create the media extractor.
      */
     public MediaExtractorPool(MediaProcessorFactory processorFactory) {
-      super(processorFactory);
+      this(processorFactory, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param processorFactory The processor factory with which to create the media extractor.
+     * @param maxExtractors The maximum number of media extractors in the pool. If this is zero or
+     * negative, the number of media extractors is not limited.
+     */
+    public MediaExtractorPool(MediaProcessorFactory processorFactory, int maxExtractors) {
+      super(processorFactory, maxExtractors);
     }
 
     @Override
@@ -202,7 +238,18 @@ public abstract class AbstractMediaProcessorPool<I, O, E extends Exception, T ex
      * @param processorFactory The processor factory with which to create the link checker.
      */
     public LinkCheckerPool(MediaProcessorFactory processorFactory) {
-      super(processorFactory);
+      this(processorFactory, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param processorFactory The processor factory with which to create the link checker.
+     * @param maxLinkCheckers The maximum number of link checkers in the pool. If this is zero or
+     * negative, the number of link checkers is not limited.
+     */
+    public LinkCheckerPool(MediaProcessorFactory processorFactory, int maxLinkCheckers) {
+      super(processorFactory, maxLinkCheckers);
     }
 
     @Override
@@ -1,6 +1,9 @@
 package eu.europeana.metis.mediaprocessing;
 
 import eu.europeana.metis.mediaprocessing.exception.LinkCheckingException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Implementations of this interface provide the link checking functionality. This object can be
@@ -18,6 +21,27 @@ public interface LinkChecker extends PoolableProcessor<String, Void, LinkCheckin
    */
   void performLinkChecking(String resourceEntry) throws LinkCheckingException;
 
+  /**
+   * Perform link checking on the given resource links. Implementations may check the links
+   * concurrently. The default implementation checks them one by one.
+   *
+   * @param resourceEntries The resource entries (obtained from one or more RDFs).
+   * @return The links that failed the check, mapped to the issue that occurred. Links that passed
+   * the check are not included: an empty map means that all links passed.
+   */
+  default Map<String, LinkCheckingException> performLinkChecking(
+      Collection<String> resourceEntries) {
+    final Map<String, LinkCheckingException> failures = new HashMap<>();
+    for (String resourceEntry : resourceEntries) {
+      try {
+        performLinkChecking(resourceEntry);
+      } catch (LinkCheckingException e) {
+        failures.put(resourceEntry, e);
+      }
+    }
+    return failures;
+  }
+
   @Override
   default Void processTask(String input) throws LinkCheckingException {
     performLinkChecking(input);
@@ -1,8 +1,19 @@
 package eu.europeana.metis.mediaprocessing;
 
 import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
+import eu.europeana.metis.mediaprocessing.extraction.ExtractionResultCache;
 import eu.europeana.metis.mediaprocessing.extraction.MediaExtractorImpl;
+import eu.europeana.metis.mediaprocessing.extraction.MpdManifestCache;
+import eu.europeana.metis.mediaprocessing.extraction.ResourceGovernor;
+import eu.europeana.metis.mediaprocessing.extraction.ResourceGovernor.Stage;
+import eu.europeana.metis.mediaprocessing.linkchecking.HostThrottle;
+import eu.europeana.metis.mediaprocessing.linkchecking.LinkCheckCache;
 import eu.europeana.metis.mediaprocessing.linkchecking.LinkCheckerImpl;
+import eu.europeana.metis.mediaprocessing.model.ContentStorage;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * This factory creates objects for media extraction and link checking. This object is thread-safe.
@@ -51,12 +62,57 @@ public class MediaProcessorFactory {
    */
   public static final int DEFAULT_RESOURCE_DOWNLOAD_TIMEOUT = 600_000;
 
+  /**
+   * The default value of the maximum number of links that are checked concurrently for any one
+   * host. It's currently set to {@value MediaProcessorFactory#DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST}.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST = 4;
+
+  /**
+   * The default value of the amount of time, in seconds, for which the result of a link check is
+   * kept. It's currently set to {@value MediaProcessorFactory#DEFAULT_LINK_CHECK_CACHE_TIME_TO_LIVE}
+   * seconds.
+   */
+  public static final int DEFAULT_LINK_CHECK_CACHE_TIME_TO_LIVE = 3_600;
+
+  /**
+   * The default value of the amount of time, in seconds, for which a parsed DASH manifest is kept.
+   * It's currently set to {@value MediaProcessorFactory#DEFAULT_MPD_MANIFEST_CACHE_TIME_TO_LIVE}
+   * seconds.
+   */
+  public static final int DEFAULT_MPD_MANIFEST_CACHE_TIME_TO_LIVE = 3_600;
+
+  /**
+   * The default value of the maximum size, in bytes, of resource content that is kept in memory
+   * instead of in a temporary file. It's currently set to {@value MediaProcessorFactory#DEFAULT_IN_MEMORY_CONTENT_THRESHOLD},
+   * meaning that all content is kept in temporary files.
+   */
+  public static final int DEFAULT_IN_MEMORY_CONTENT_THRESHOLD = 0;
+
+  private static final int LINK_CHECK_CACHE_MAX_SIZE = 100_000;
+  private static final int MPD_MANIFEST_CACHE_MAX_SIZE = 1_000;
+
   private int maxRedirectCount = DEFAULT_MAX_REDIRECT_COUNT;
   private int thumbnailGenerateTimeout = DEFAULT_THUMBNAIL_GENERATE_TIMEOUT;
   private int audioVideoProbeTimeout = DEFAULT_AUDIO_VIDEO_PROBE_TIMEOUT;
   private int resourceConnectTimeout = DEFAULT_RESOURCE_CONNECT_TIMEOUT;
   private int resourceResponseTimeout = DEFAULT_RESOURCE_RESPONSE_TIMEOUT;
   private int resourceDownloadTimeout = DEFAULT_RESOURCE_DOWNLOAD_TIMEOUT;
+  private int maxConcurrentLinkChecksPerHost = DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST;
+  private int linkCheckCacheTimeToLive = DEFAULT_LINK_CHECK_CACHE_TIME_TO_LIVE;
+  private int mpdManifestCacheTimeToLive = DEFAULT_MPD_MANIFEST_CACHE_TIME_TO_LIVE;
+  private ExtractionResultCache extractionResultCache;
+  private int inMemoryContentThreshold = DEFAULT_IN_MEMORY_CONTENT_THRESHOLD;
+  private Path temporaryFileArenaDirectory;
+  private final Map<Stage, Integer> maxConcurrentTasks = new EnumMap<>(Stage.class);
+
+  // Shared by all media extractors created by this factory. Created when first needed.
+  private ResourceGovernor resourceGovernor;
+  private MpdManifestCache mpdManifestCache;
+
+  // Shared by all link checkers created by this factory. Created when first needed.
+  private HostThrottle linkCheckHostThrottle;
+  private LinkCheckCache linkCheckCache;
 
   /**
    * Set the maximum number of times we will follow a redirect. The default (when not calling this
@@ -146,16 +202,131 @@ public class MediaProcessorFactory {
         resourceDownloadTimeout < 1 ? DEFAULT_RESOURCE_DOWNLOAD_TIMEOUT : resourceDownloadTimeout;
   }
 
+  /**
+   * Set the cache in which media extraction results are stored, so that resources that have not
+   * changed since they were last processed are not downloaded and processed again. In that case the
+   * stored result is returned, which does not contain any thumbnails (they are assumed to have been
+   * stored when the resource was first processed). The cache is shared by all media extractors
+   * created by this factory. The default (when not calling this method) is not to use a cache.
+   *
+   * @param extractionResultCache The cache for extraction results. Can be null.
+   */
+  public void setExtractionResultCache(ExtractionResultCache extractionResultCache) {
+    this.extractionResultCache = extractionResultCache;
+  }
+
+  /**
+   * Set the maximum size, in bytes, of resource content that is kept in memory instead of in a
+   * temporary file. Such content is only written to a file if a file is needed for processing it.
+   * The default (when not calling this method or calling it with a negative number) is {@value
+   * MediaProcessorFactory#DEFAULT_IN_MEMORY_CONTENT_THRESHOLD}.
+   *
+   * @param inMemoryContentThreshold The maximum size of content that is kept in memory.
+   */
+  public void setInMemoryContentThreshold(int inMemoryContentThreshold) {
+    this.inMemoryContentThreshold = inMemoryContentThreshold < 0
+        ? DEFAULT_IN_MEMORY_CONTENT_THRESHOLD : inMemoryContentThreshold;
+  }
+
+  /**
+   * Set the directory in which each media extractor creates its arena of temporary files. These
+   * files are reused for subsequent resources instead of being created and deleted for every
+   * resource. This directory can for instance be on a memory-backed file system (such as tmpfs).
+   * The default (when not calling this method or calling it with null) is not to use an arena, in
+   * which case a new temporary file is created in the default temporary directory for every
+   * resource.
+   *
+   * @param temporaryFileArenaDirectory The directory in which to create the arenas. Can be null.
+   */
+  public void setTemporaryFileArenaDirectory(Path temporaryFileArenaDirectory) {
+    this.temporaryFileArenaDirectory = temporaryFileArenaDirectory;
+  }
+
+  /**
+   * Set the maximum number of tasks that can run concurrently in the given stage of media
+   * extraction. This limit applies to all media extractors created by this factory together: tasks
+   * that exceed it wait their turn (in order of arrival). The default (when not calling this method
+   * or calling it with zero or a negative number) is not to limit the number of concurrent tasks.
+   *
+   * @param stage The stage for which to set the limit.
+   * @param maxConcurrentTasks The maximum number of concurrent tasks in the stage.
+   */
+  public synchronized void setMaxConcurrentTasks(Stage stage, int maxConcurrentTasks) {
+    this.maxConcurrentTasks.put(stage, Math.max(maxConcurrentTasks, 0));
+    this.resourceGovernor = null;
+  }
+
+  /**
+   * Set the maximum number of links that are checked concurrently for any one host. This limit
+   * applies to all link checkers created by this factory together. The default (when not calling
+   * this method or calling it with zero or a negative number) is {@value
+   * MediaProcessorFactory#DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST}.
+   *
+   * @param maxConcurrentLinkChecksPerHost The maximum number of concurrent link checks per host.
+   */
+  public synchronized void setMaxConcurrentLinkChecksPerHost(int maxConcurrentLinkChecksPerHost) {
+    this.maxConcurrentLinkChecksPerHost = maxConcurrentLinkChecksPerHost < 1
+        ? DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST : maxConcurrentLinkChecksPerHost;
+    this.linkCheckHostThrottle = null;
+  }
+
+  /**
+   * Set the amount of time, in seconds, for which the result of a link check is kept (and reused
+   * for subsequent checks of the same link). The results are shared by all link checkers created
+   * by this factory. The default (when not calling this method or calling it with a negative
+   * number) is {@value MediaProcessorFactory#DEFAULT_LINK_CHECK_CACHE_TIME_TO_LIVE} seconds. A value
+   * of zero disables the caching.
+   *
+   * @param linkCheckCacheTimeToLive The amount of time, in seconds, a link check result is kept.
+   */
+  public synchronized void setLinkCheckCacheTimeToLive(int linkCheckCacheTimeToLive) {
+    this.linkCheckCacheTimeToLive = linkCheckCacheTimeToLive < 0
+        ? DEFAULT_LINK_CHECK_CACHE_TIME_TO_LIVE : linkCheckCacheTimeToLive;
+    this.linkCheckCache = null;
+  }
+
+  /**
+   * Set the amount of time, in seconds, for which a parsed DASH manifest is kept (and reused for
+   * subsequent resources referring to the same manifest). The manifests are shared by all media
+   * extractors created by this factory. The default (when not calling this method or calling it
+   * with a negative number) is {@value MediaProcessorFactory#DEFAULT_MPD_MANIFEST_CACHE_TIME_TO_LIVE}
+   * seconds. A value of zero disables the caching.
+   *
+   * @param mpdManifestCacheTimeToLive The amount of time, in seconds, a DASH manifest is kept.
+   */
+  public synchronized void setMpdManifestCacheTimeToLive(int mpdManifestCacheTimeToLive) {
+    this.mpdManifestCacheTimeToLive = mpdManifestCacheTimeToLive < 0
+        ? DEFAULT_MPD_MANIFEST_CACHE_TIME_TO_LIVE : mpdManifestCacheTimeToLive;
+    this.mpdManifestCache = null;
+  }
+
   /**
    * Create a media extractor object that can be used to extract media metadata and thumbnails.
    *
    * @return A media extractor.
    * @throws MediaProcessorException In case there was a problem creating the media extractor.
    */
-  public MediaExtractor createMediaExtractor() throws MediaProcessorException {
+  public synchronized MediaExtractor createMediaExtractor() throws MediaProcessorException {
+    if (mpdManifestCache == null) {
+      mpdManifestCache = new MpdManifestCache(Duration.ofSeconds(mpdManifestCacheTimeToLive),
+          MPD_MANIFEST_CACHE_MAX_SIZE);
+    }
     return new MediaExtractorImpl(maxRedirectCount, thumbnailGenerateTimeout,
         audioVideoProbeTimeout, resourceConnectTimeout, resourceResponseTimeout,
-        resourceDownloadTimeout);
+        resourceDownloadTimeout, extractionResultCache,
+        new ContentStorage(temporaryFileArenaDirectory, inMemoryContentThreshold),
+        getResourceGovernor(), mpdManifestCache);
+  }
+
+  /**
+   * @return The resource governor shared by the media extractors created by this factory, which
+   * can be used to monitor the number of running and waiting tasks in each stage.
+   */
+  public synchronized ResourceGovernor getResourceGovernor() {
+    if (resourceGovernor == null) {
+      resourceGovernor = new ResourceGovernor(maxConcurrentTasks);
+    }
+    return resourceGovernor;
   }
 
   /**
@@ -164,7 +335,14 @@ public class MediaProcessorFactory {
    * @return A link checker.
    * @throws MediaProcessorException In case there was a problem creating the link checker.
    */
-  public LinkChecker createLinkChecker() throws MediaProcessorException {
-    return new LinkCheckerImpl(maxRedirectCount);
+  public synchronized LinkChecker createLinkChecker() throws MediaProcessorException {
+    if (linkCheckHostThrottle == null) {
+      linkCheckHostThrottle = new HostThrottle(maxConcurrentLinkChecksPerHost);
+    }
+    if (linkCheckCache == null) {
+      linkCheckCache = new LinkCheckCache(Duration.ofSeconds(linkCheckCacheTimeToLive),
+          LINK_CHECK_CACHE_MAX_SIZE);
+    }
+    return new LinkCheckerImpl(maxRedirectCount, linkCheckHostThrottle, linkCheckCache);
   }
 }
@@ -12,76 +12,70 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.jibx.runtime.IUnmarshallingContext;
 import org.jibx.runtime.JiBXException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * This implements RDF deserialization functionality. The code that obtains the individual resources
  * does not assume that we can convert the record to an EDM internal format. Link checking must also
- * run on EDM external. We therefore use XPath expressions to obtain the required data.
+ * run on EDM external. We therefore use a streaming (StAX) parser to obtain the required data: all
+ * resources and their URL types are collected in one pass over the record, without building a
+ * document in memory and without any shared locks.
  */
 class RdfDeserializerImpl implements RdfDeserializer {
 
-  private final UnmarshallingContextWrapper unmarshallingContext = new UnmarshallingContextWrapper();
+  private static final QName RDF_ELEMENT = createQName(RdfNamespaceContext.RDF_NAMESPACE_PREFIX,
+          "RDF");
+  private static final QName AGGREGATION_ELEMENT = createQName(
+          RdfNamespaceContext.ORE_NAMESPACE_PREFIX, "Aggregation");
+  private static final QName RESOURCE_ATTRIBUTE = createQName(
+          RdfNamespaceContext.RDF_NAMESPACE_PREFIX, "resource");
+  private static final Map<QName, UrlType> URL_TYPE_ELEMENTS = createUrlTypeElements();
 
-  private final XPathExpressionWrapper getObjectExpression = new XPathExpressionWrapper(
-          xPath -> xPath.compile("/rdf:RDF/ore:Aggregation/edm:object/@rdf:resource"));
-  private final XPathExpressionWrapper getHasViewExpression = new XPathExpressionWrapper(
-          xPath -> xPath.compile("/rdf:RDF/ore:Aggregation/edm:hasView/@rdf:resource"));
-  private final XPathExpressionWrapper getIsShownAtExpression = new XPathExpressionWrapper(
-          xPath -> xPath.compile("/rdf:RDF/ore:Aggregation/edm:isShownAt/@rdf:resource"));
-  private final XPathExpressionWrapper getIsShownByExpression = new XPathExpressionWrapper(
-          xPath -> xPath.compile("/rdf:RDF/ore:Aggregation/edm:isShownBy/@rdf:resource"));
+  private static final int RDF_ELEMENT_DEPTH = 1;
+  private static final int AGGREGATION_ELEMENT_DEPTH = 2;
+  private static final int URL_TYPE_ELEMENT_DEPTH = 3;
 
-  private static class XPathExpressionWrapper extends
-          AbstractThreadSafeWrapper<XPathExpression, RdfDeserializationException> {
+  // The XML input factory is not guaranteed to be thread-safe: each thread gets its own.
+  private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = ThreadLocal
+          .withInitial(RdfDeserializerImpl::createXmlInputFactory);
 
-    XPathExpressionWrapper(
-            ThrowingFunction<XPath, XPathExpression, XPathExpressionException> expressionCreator) {
-      super(() -> {
-        final XPathFactory factory;
-        synchronized (XPathFactory.class) {
-          factory = XPathFactory.newInstance();
-        }
-        final XPath xPath = factory.newXPath();
-        xPath.setNamespaceContext(new RdfNamespaceContext());
-        try {
-          return expressionCreator.apply(xPath);
-        } catch (XPathExpressionException e) {
-          throw new RdfDeserializationException("Could not initialize xpath expression.", e);
-        }
-      });
-    }
+  private final UnmarshallingContextWrapper unmarshallingContext = new UnmarshallingContextWrapper();
 
-    NodeList evaluate(Document document) throws RdfDeserializationException {
-      return process(compiledExpression -> {
-        try {
-          return (NodeList) compiledExpression.evaluate(document, XPathConstants.NODESET);
-        } catch (XPathExpressionException e) {
-          throw new RdfDeserializationException("Problem with deserializing RDF.", e);
-        }
-      });
-    }
+  private static QName createQName(String prefix, String localName) {
+    return new QName(new RdfNamespaceContext().getNamespaceURI(prefix), localName);
+  }
+
+  private static Map<QName, UrlType> createUrlTypeElements() {
+    final Map<QName, UrlType> result = new LinkedHashMap<>();
+    result.put(createQName(RdfNamespaceContext.EDM_NAMESPACE_PREFIX, "object"), UrlType.OBJECT);
+    result.put(createQName(RdfNamespaceContext.EDM_NAMESPACE_PREFIX, "hasView"),
+            UrlType.HAS_VIEW);
+    result.put(createQName(RdfNamespaceContext.EDM_NAMESPACE_PREFIX, "isShownAt"),
+            UrlType.IS_SHOWN_AT);
+    result.put(createQName(RdfNamespaceContext.EDM_NAMESPACE_PREFIX, "isShownBy"),
+            UrlType.IS_SHOWN_BY);
+    return Collections.unmodifiableMap(result);
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    return factory;
   }
 
   private static class UnmarshallingContextWrapper extends
@@ -117,15 +111,15 @@ class RdfDeserializerImpl implements RdfDeserializer {
   @Override
   public RdfResourceEntry getMainThumbnailResourceForMediaExtraction(InputStream inputStream)
           throws RdfDeserializationException {
-    return getMainThumbnailResourceForMediaExtraction(deserializeToDocument(inputStream))
+    return getMainThumbnailResourceForMediaExtraction(getAllResourceEntries(inputStream))
             .orElse(null);
   }
 
-  private Optional<RdfResourceEntry> getMainThumbnailResourceForMediaExtraction(Document record)
-          throws RdfDeserializationException {
+  private static Optional<RdfResourceEntry> getMainThumbnailResourceForMediaExtraction(
+          Map<String, Set<UrlType>> allResources) {
 
     // Get the entries of the required types.
-    final Map<String, Set<UrlType>> resourceEntries = getResourceEntries(record,
+    final Map<String, Set<UrlType>> resourceEntries = filterResourceEntries(allResources,
             Collections.singleton(UrlType.URL_TYPE_FOR_MAIN_THUMBNAIL_RESOURCE));
 
     // If there is not exactly one, we return an empty optional.
@@ -148,16 +142,16 @@ class RdfDeserializerImpl implements RdfDeserializer {
           throws RdfDeserializationException {
 
     // Get all the resource entries.
-    final Document record = deserializeToDocument(inputStream);
-    final Map<String, Set<UrlType>> allResources = getResourceEntries(record,
-            UrlType.URL_TYPES_FOR_MEDIA_EXTRACTION);
+    final Map<String, Set<UrlType>> allResources = getAllResourceEntries(inputStream);
+    final Map<String, Set<UrlType>> resourcesForMediaExtraction = filterResourceEntries(
+            allResources, UrlType.URL_TYPES_FOR_MEDIA_EXTRACTION);
 
     // Find the main thumbnail resource if it exists and remove it from the result.
-    getMainThumbnailResourceForMediaExtraction(record).map(RdfResourceEntry::getResourceUrl)
-            .ifPresent(allResources::remove);
+    getMainThumbnailResourceForMediaExtraction(allResources).map(RdfResourceEntry::getResourceUrl)
+            .ifPresent(resourcesForMediaExtraction::remove);
 
     // Done.
-    return convertToResourceEntries(allResources);
+    return convertToResourceEntries(resourcesForMediaExtraction);
   }
 
   @Override
@@ -169,8 +163,8 @@ class RdfDeserializerImpl implements RdfDeserializer {
   @Override
   public List<RdfResourceEntry> getResourceEntriesForLinkChecking(InputStream inputStream)
       throws RdfDeserializationException {
-    return convertToResourceEntries(getResourceEntries(deserializeToDocument(inputStream),
-            UrlType.URL_TYPES_FOR_LINK_CHECKING));
+    return convertToResourceEntries(
+            getResourceEntries(inputStream, UrlType.URL_TYPES_FOR_LINK_CHECKING));
   }
 
   private static List<RdfResourceEntry> convertToResourceEntries(
@@ -183,58 +177,86 @@ class RdfDeserializerImpl implements RdfDeserializer {
     return new RdfResourceEntry(entry.getKey(), entry.getValue());
   }
 
-  Map<String, Set<UrlType>> getResourceEntries(Document document,
+  Map<String, Set<UrlType>> getResourceEntries(InputStream inputStream,
           Set<UrlType> allowedUrlTypes) throws RdfDeserializationException {
-    final Map<String, Set<UrlType>> urls = new HashMap<>();
-    for (UrlType type : allowedUrlTypes) {
-      final Set<String> urlsForType = getUrls(document, type);
-      for (String url : urlsForType) {
-        urls.computeIfAbsent(url, k -> new HashSet<>()).add(type);
+    return filterResourceEntries(getAllResourceEntries(inputStream), allowedUrlTypes);
+  }
+
+  private static Map<String, Set<UrlType>> filterResourceEntries(
+          Map<String, Set<UrlType>> resourceEntries, Set<UrlType> allowedUrlTypes) {
+    final Map<String, Set<UrlType>> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Set<UrlType>> entry : resourceEntries.entrySet()) {
+      final Set<UrlType> types = EnumSet.noneOf(UrlType.class);
+      entry.getValue().stream().filter(allowedUrlTypes::contains).forEach(types::add);
+      if (!types.isEmpty()) {
+        result.put(entry.getKey(), types);
       }
     }
-    return urls;
+    return result;
   }
 
-  private Set<String> getUrls(Document document, UrlType type) throws RdfDeserializationException {
-
-    // Determine the right expression to apply.
-    final XPathExpressionWrapper expression;
-    switch (type) {
-      case OBJECT:
-        expression = getObjectExpression;
-        break;
-      case HAS_VIEW:
-        expression = getHasViewExpression;
-        break;
-      case IS_SHOWN_AT:
-        expression = getIsShownAtExpression;
-        break;
-      case IS_SHOWN_BY:
-        expression = getIsShownByExpression;
-        break;
-      default:
-        return Collections.emptySet();
+  /**
+   * Obtains all resources (i.e. the values of the rdf:resource attribute of the edm:object,
+   * edm:hasView, edm:isShownAt and edm:isShownBy elements of the aggregations) in one pass.
+   *
+   * @param inputStream The record.
+   * @return The resources, mapped to the URL types under which they occur, in document order.
+   * @throws RdfDeserializationException In case the record could not be parsed.
+   */
+  private static Map<String, Set<UrlType>> getAllResourceEntries(InputStream inputStream)
+          throws RdfDeserializationException {
+    try {
+      final XMLStreamReader reader = XML_INPUT_FACTORY.get().createXMLStreamReader(inputStream);
+      try {
+        return getAllResourceEntries(reader);
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new RdfDeserializationException("Problem with deserializing record to XML document.", e);
     }
-
-    // Evaluate the expression and convert the node list to a set of attribute values.
-    final NodeList nodes = expression.evaluate(document);
-    return IntStream.range(0, nodes.getLength()).mapToObj(nodes::item).map(Node::getNodeValue)
-            .collect(Collectors.toSet());
   }
 
-  private Document deserializeToDocument(InputStream inputStream) throws RdfDeserializationException {
+  private static Map<String, Set<UrlType>> getAllResourceEntries(XMLStreamReader reader)
+          throws XMLStreamException {
+    final Map<String, Set<UrlType>> result = new LinkedHashMap<>();
+    int depth = 0;
+
+    // The depth up to which the element path matches the path we are interested in.
+    int matchingDepth = 0;
+    while (reader.hasNext()) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (matchingDepth == depth - 1 && isOnResourcePath(reader.getName(), depth)) {
+          matchingDepth = depth;
+          if (depth == URL_TYPE_ELEMENT_DEPTH) {
+            final String resource = reader.getAttributeValue(RESOURCE_ATTRIBUTE.getNamespaceURI(),
+                    RESOURCE_ATTRIBUTE.getLocalPart());
+            if (resource != null) {
+              result.computeIfAbsent(resource, key -> EnumSet.noneOf(UrlType.class))
+                      .add(URL_TYPE_ELEMENTS.get(reader.getName()));
+            }
+          }
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        matchingDepth = Math.min(matchingDepth, depth - 1);
+        depth--;
+      }
+    }
+    return result;
+  }
 
-    // Parse document to schema-agnostic XML document (but make parsing namespace-aware).
-    try {
-      // False positive. The parser has all security settings applied (see below).
-      @SuppressWarnings("squid:S2755")
-      final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-      factory.setNamespaceAware(true);
-      return factory.newDocumentBuilder().parse(inputStream);
-    } catch (SAXException | IOException | ParserConfigurationException e) {
-      throw new RdfDeserializationException("Problem with deserializing record to XML document.", e);
+  private static boolean isOnResourcePath(QName elementName, int depth) {
+    switch (depth) {
+      case RDF_ELEMENT_DEPTH:
+        return RDF_ELEMENT.equals(elementName);
+      case AGGREGATION_ELEMENT_DEPTH:
+        return AGGREGATION_ELEMENT.equals(elementName);
+      case URL_TYPE_ELEMENT_DEPTH:
+        return URL_TYPE_ELEMENTS.containsKey(elementName);
+      default:
+        return false;
     }
   }
 
@@ -2,6 +2,9 @@ package eu.europeana.metis.mediaprocessing.extraction;
 
 import eu.europeana.metis.mediaprocessing.exception.MediaExtractionException;
 import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.ByteRange;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.RangeContent;
 import eu.europeana.metis.mediaprocessing.model.AbstractResourceMetadata;
 import eu.europeana.metis.mediaprocessing.model.AudioResourceMetadata;
 import eu.europeana.metis.mediaprocessing.model.Resource;
@@ -14,11 +17,14 @@ import io.lindstrom.mpd.data.FrameRate;
 import io.lindstrom.mpd.data.MPD;
 import io.lindstrom.mpd.data.Period;
 import io.lindstrom.mpd.data.Representation;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -43,26 +49,44 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Note: No thumbnails are created for audio or video files.
  * </p>
+ * <p>
+ * Resources are not downloaded for processing. If possible, only the parts of a resource that are
+ * needed for probing are read (see {@link RemoteMediaProbe}). Otherwise, ffprobe reads the
+ * resource from its location. DASH manifests are parsed directly and cached (see {@link
+ * MpdManifestCache}).
+ * </p>
  */
 class AudioVideoProcessor implements MediaProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AudioVideoProcessor.class);
 
+  private static final String MPD_MIME_TYPE = "application/dash+xml";
+  private static final int MAX_MPD_MANIFEST_SIZE = 4 * 1024 * 1024;
+
   private static String globalFfprobeCommand;
 
   private final CommandExecutor commandExecutor;
   private final String ffprobeCommand;
+  private final RangeReadHttpClient rangeReadHttpClient;
+  private final RemoteMediaProbe remoteMediaProbe;
+  private final MpdManifestCache mpdManifestCache;
 
   /**
    * Constructor. This is a wrapper for {@link AudioVideoProcessor#AudioVideoProcessor(CommandExecutor,
-   * String)} where the property is detected. It is advisable to use this constructor for
-   * non-testing purposes.
+   * String, RangeReadHttpClient, MpdManifestCache)} where the properties are detected. It is
+   * advisable to use this constructor for non-testing purposes.
    *
    * @param commandExecutor A command executor.
+   * @param rangeReadHttpClient The client with which to read (parts of) remote resources. The
+   * calling class is responsible for closing this object.
+   * @param mpdManifestCache The cache for DASH manifests. It is typically shared between
+   * processors.
    * @throws MediaProcessorException In case the properties could not be initialized.
    */
-  AudioVideoProcessor(CommandExecutor commandExecutor) throws MediaProcessorException {
-    this(commandExecutor, getGlobalFfprobeCommand(commandExecutor));
+  AudioVideoProcessor(CommandExecutor commandExecutor, RangeReadHttpClient rangeReadHttpClient,
+      MpdManifestCache mpdManifestCache) throws MediaProcessorException {
+    this(commandExecutor, getGlobalFfprobeCommand(commandExecutor), rangeReadHttpClient,
+        mpdManifestCache);
   }
 
   /**
@@ -72,8 +96,27 @@ class AudioVideoProcessor implements MediaProcessor {
    * @param ffprobeCommand The ffprobe command (how to trigger ffprobe).
    */
   AudioVideoProcessor(CommandExecutor commandExecutor, String ffprobeCommand) {
+    this(commandExecutor, ffprobeCommand, null, new MpdManifestCache(Duration.ZERO, 0));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param commandExecutor A command executor.
+   * @param ffprobeCommand The ffprobe command (how to trigger ffprobe).
+   * @param rangeReadHttpClient The client with which to read (parts of) remote resources. Can be
+   * null, in which case ffprobe always reads remote resources itself.
+   * @param mpdManifestCache The cache for DASH manifests.
+   */
+  AudioVideoProcessor(CommandExecutor commandExecutor, String ffprobeCommand,
+      RangeReadHttpClient rangeReadHttpClient, MpdManifestCache mpdManifestCache) {
     this.commandExecutor = commandExecutor;
     this.ffprobeCommand = ffprobeCommand;
+    this.rangeReadHttpClient = rangeReadHttpClient;
+    this.remoteMediaProbe = rangeReadHttpClient == null ? null : new RemoteMediaProbe(
+        rangeReadHttpClient, RemoteMediaProbe.DEFAULT_HEAD_LENGTH,
+        RemoteMediaProbe.DEFAULT_BYTE_BUDGET);
+    this.mpdManifestCache = mpdManifestCache;
   }
 
   private static String getGlobalFfprobeCommand(CommandExecutor commandExecutor)
@@ -121,6 +164,10 @@ class AudioVideoProcessor implements MediaProcessor {
   List<String> createAudioVideoAnalysisCommand(Resource resource) throws MediaExtractionException {
     final String resourceLocation = resourceHasContent(resource) ?
         resource.getContentPath().toString() : validateUrl(resource.getResourceUrl());
+    return createAudioVideoAnalysisCommand(resourceLocation);
+  }
+
+  List<String> createAudioVideoAnalysisCommand(String resourceLocation) {
     return Arrays.asList(ffprobeCommand, "-v", "quiet", "-print_format",
         "json", "-show_format", "-show_streams", "-hide_banner", resourceLocation);
   }
@@ -155,22 +202,67 @@ class AudioVideoProcessor implements MediaProcessor {
 
     AbstractResourceMetadata metadata;
     //Check if it's an mpd mimetype
-    if ("application/dash+xml".equals(detectedMimeType)) {
+    if (MPD_MIME_TYPE.equals(detectedMimeType)) {
       metadata = parseMpdResource(resource, detectedMimeType);
     } else {
-      // Execute command
-      final Function<String, MediaExtractionException> exceptionProducer = message ->
-              new MediaExtractionException("Problem while analyzing audio/video file: " + message);
-      final String response = commandExecutor
-              .execute(createAudioVideoAnalysisCommand(resource), false, exceptionProducer);
-
-      // Parse command result.
-      metadata = parseCommandResponse(resource, detectedMimeType, response);
+      // Try to probe only the parts of the resource that we need.
+      metadata = remoteMediaProbe == null || resourceHasContent(resource) ? null
+          : probePartialCopy(resource, detectedMimeType);
+
+      // Otherwise, probe the resource itself.
+      if (metadata == null) {
+        final String response = commandExecutor.execute(createAudioVideoAnalysisCommand(resource),
+            false, AudioVideoProcessor::createAnalysisException);
+        metadata = parseCommandResponse(resource, detectedMimeType, response);
+      }
     }
     return new ResourceExtractionResultImpl(metadata, null);
 
   }
 
+  private static MediaExtractionException createAnalysisException(String message) {
+    return new MediaExtractionException("Problem while analyzing audio/video file: " + message);
+  }
+
+  private static URI getLocation(Resource resource) throws MediaExtractionException {
+    if (resource.getActualLocation() != null) {
+      return resource.getActualLocation();
+    }
+    try {
+      return new URI(validateUrl(resource.getResourceUrl()));
+    } catch (URISyntaxException e) {
+      throw new MediaExtractionException("Could not validate URL: " + resource.getResourceUrl(), e);
+    }
+  }
+
+  AbstractResourceMetadata probePartialCopy(Resource resource, String detectedMimeType)
+      throws MediaExtractionException {
+    final URI location = getLocation(resource);
+    Path partialCopy = null;
+    try {
+      partialCopy = remoteMediaProbe.createPartialCopy(location);
+      if (partialCopy == null) {
+        return null;
+      }
+      final String response = commandExecutor.execute(
+          createAudioVideoAnalysisCommand(partialCopy.toString()), false,
+          AudioVideoProcessor::createAnalysisException);
+      return parseCommandResponse(resource, detectedMimeType, response);
+    } catch (IOException | MediaExtractionException e) {
+      LOGGER.debug("Could not probe partial copy of {}: probing the resource instead.", location,
+          e);
+      return null;
+    } finally {
+      if (partialCopy != null) {
+        try {
+          Files.deleteIfExists(partialCopy);
+        } catch (IOException e) {
+          LOGGER.warn("Could not remove partial copy {}.", partialCopy, e);
+        }
+      }
+    }
+  }
+
   private Representation getRepresentationFromMpd(AdaptationSet videoAdaptationSet)
           throws MediaExtractionException {
     // If only one representation available, get that one, otherwise get the first of type video
@@ -199,16 +291,12 @@ class AudioVideoProcessor implements MediaProcessor {
   AbstractResourceMetadata parseMpdResource(Resource resource, String detectedMimeType)
       throws MediaExtractionException {
 
-    // Parse the result.
-    final MPDParser parser = new MPDParser();
-    final MPD mpd;
-    // We know where the URL comes from: from the apache library.
-    try (@SuppressWarnings("findsecbugs:URLCONNECTION_SSRF_FD") InputStream inputStream = resource
-            .getActualLocation().toURL().openStream()) {
-      mpd = parser.parse(inputStream);
-
-    } catch (IOException e) {
-      throw new MediaExtractionException("Problem while analyzing audio/video file.", e);
+    // Parse the result (or get it from the cache).
+    final String location = resource.getActualLocation().toString();
+    MPD mpd = mpdManifestCache.get(location).orElse(null);
+    if (mpd == null) {
+      mpd = readMpdManifest(resource.getActualLocation());
+      mpdManifestCache.put(location, mpd);
     }
 
     // Analyze the result - get some data structures we will need.
@@ -248,6 +336,33 @@ class AudioVideoProcessor implements MediaProcessor {
             bitRate, width, height, codecNames, frameRate);
   }
 
+  private MPD readMpdManifest(URI location) throws MediaExtractionException {
+    final MPDParser parser = new MPDParser();
+    try {
+
+      // If we can, read the manifest with a limit on its size.
+      if (rangeReadHttpClient != null) {
+        final RangeContent content = rangeReadHttpClient
+            .download(new ByteRange(location.toString(), 0, MAX_MPD_MANIFEST_SIZE));
+        if (content.getContent().length >= MAX_MPD_MANIFEST_SIZE) {
+          throw new MediaExtractionException(
+              "Manifest is larger than " + MAX_MPD_MANIFEST_SIZE + " bytes.");
+        }
+        try (InputStream inputStream = new ByteArrayInputStream(content.getContent())) {
+          return parser.parse(inputStream);
+        }
+      }
+
+      // We know where the URL comes from: from the apache library.
+      try (@SuppressWarnings("findsecbugs:URLCONNECTION_SSRF_FD") InputStream inputStream = location
+          .toURL().openStream()) {
+        return parser.parse(inputStream);
+      }
+    } catch (IOException e) {
+      throw new MediaExtractionException("Problem while analyzing audio/video file.", e);
+    }
+  }
+
   JSONObject readCommandResponseToJson(String response) {
     return new JSONObject(new JSONTokener(response));
   }
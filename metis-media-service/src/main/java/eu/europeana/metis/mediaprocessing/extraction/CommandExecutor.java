@@ -1,12 +1,18 @@
 package eu.europeana.metis.mediaprocessing.extraction;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,14 +22,35 @@ import org.slf4j.LoggerFactory;
  * processes that can perform command-line IO at any given time.
  * <p>The command provided is sanitized before executed based on a predefined regex, for safety. In
  * case of an invalid command an exception will be thrown.</p>
+ * <p>The output and error streams of the process are read while the process is running, so that a
+ * process with a lot of output does not block on a full pipe. The amount of output that is
+ * accepted is limited: a process that exceeds the limit is killed.</p>
  */
 class CommandExecutor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CommandExecutor.class);
 
+  /**
+   * The default maximum number of bytes accepted from each of the output and error streams.
+   */
+  static final int DEFAULT_MAX_OUTPUT_SIZE = 32 * 1024 * 1024;
+
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+  private static final int KILL_GRACE_PERIOD_IN_SECONDS = 2;
+  private static final int STREAM_DRAIN_TIMEOUT_IN_SECONDS = 10;
+
+  // Daemon threads that read the output of the processes (two threads per running process).
+  private static final ExecutorService STREAM_READER_EXECUTOR = Executors.newCachedThreadPool(
+      runnable -> {
+        final Thread thread = new Thread(runnable, "command-output-reader");
+        thread.setDaemon(true);
+        return thread;
+      });
+
   private final ProcessFactory processFactory;
 
   private final int commandTimeout;
+  private final int maxOutputSize;
 
   /**
    * Constructor.
@@ -45,7 +72,22 @@ class CommandExecutor {
    * stream, creates a {@link Process} for executing that command.
    */
   CommandExecutor(int commandTimeout, ProcessFactory processFactory) {
+    this(commandTimeout, DEFAULT_MAX_OUTPUT_SIZE, processFactory);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param commandTimeout The maximum amount of time, in seconds, a command is allowed to take
+   * before it is forcibly destroyed (i.e. cancelled).
+   * @param maxOutputSize The maximum number of bytes a command is allowed to write to its output
+   * stream (and to its error stream) before it is forcibly destroyed.
+   * @param processFactory A function that, given a command and whether to redirect the error
+   * stream, creates a {@link Process} for executing that command.
+   */
+  CommandExecutor(int commandTimeout, int maxOutputSize, ProcessFactory processFactory) {
     this.commandTimeout = commandTimeout;
+    this.maxOutputSize = maxOutputSize;
     this.processFactory = processFactory;
   }
 
@@ -80,31 +122,37 @@ class CommandExecutor {
     // Create process and start it.
     final Process process = processFactory.createProcess(command, redirectErrorStream);
 
+    // Start reading the output (and error) stream while the process runs.
+    final AtomicBoolean outputLimitExceeded = new AtomicBoolean(false);
+    final CompletableFuture<String> output = readStream(process, process.getInputStream(),
+        outputLimitExceeded);
+    final CompletableFuture<String> errorOutput = redirectErrorStream ? null
+        : readStream(process, process.getErrorStream(), outputLimitExceeded);
+
     // Wait for the process to finish (or the time-out to elapse).
     try {
       if (!process.waitFor(commandTimeout, TimeUnit.SECONDS)) {
-        process.destroyForcibly();
+        killProcess(process);
         throw exceptionProducer.apply("The process did not terminate within the timeout of " +
                 commandTimeout + " seconds. It was forcibly destroyed.");
       }
     } catch (InterruptedException e) {
-      process.destroyForcibly();
+      destroyForcibly(process);
       Thread.currentThread().interrupt();
       final E exceptionToThrow = exceptionProducer.apply("Process was interrupted.");
       exceptionToThrow.initCause(e);
       throw exceptionToThrow;
     }
 
-    // Open error stream and read it.
-    final String error;
-    if (redirectErrorStream) {
-      error = null;
-    } else {
-      try (InputStream errorStream = process.getErrorStream()) {
-        final String errorStreamContents = IOUtils.toString(errorStream, Charset.defaultCharset());
-        error = StringUtils.isBlank(errorStreamContents) ? null : errorStreamContents;
-      }
+    // Obtain the contents of the error stream.
+    final String errorStreamContents = errorOutput == null ? null
+        : getStreamContents(errorOutput, exceptionProducer);
+    final String outputStreamContents = getStreamContents(output, exceptionProducer);
+    if (outputLimitExceeded.get()) {
+      throw exceptionProducer.apply("The process exceeded the maximum output size of " +
+          maxOutputSize + " bytes. It was forcibly destroyed.");
     }
+    final String error = StringUtils.isBlank(errorStreamContents) ? null : errorStreamContents;
 
     // If there is error output, throw an exception.
     if (error != null) {
@@ -115,10 +163,72 @@ class CommandExecutor {
       throw exceptionProducer.apply("External process returned error content:\n" + error);
     }
 
-    // Read process output into lines.
-    try (InputStream in = process.getInputStream()) {
-      return IOUtils.toString(in, Charset.defaultCharset());
+    // Return the process output.
+    return outputStreamContents;
+  }
+
+  private CompletableFuture<String> readStream(Process process, InputStream stream,
+      AtomicBoolean outputLimitExceeded) {
+    return CompletableFuture.supplyAsync(() -> {
+      final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+      try (InputStream in = stream) {
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+          if (contents.size() + count > maxOutputSize) {
+            outputLimitExceeded.set(true);
+            destroyForcibly(process);
+            break;
+          }
+          contents.write(buffer, 0, count);
+        }
+      } catch (IOException e) {
+        // The stream is closed when the process is destroyed: we return what we have read so far.
+        LOGGER.debug("Could not read the process output to the end.", e);
+      }
+      return contents.toString(Charset.defaultCharset());
+    }, STREAM_READER_EXECUTOR);
+  }
+
+  private <E extends Exception> String getStreamContents(CompletableFuture<String> contents,
+      Function<String, E> exceptionProducer) throws E {
+    try {
+      return contents.get(STREAM_DRAIN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      final E exceptionToThrow = exceptionProducer.apply("Process was interrupted.");
+      exceptionToThrow.initCause(e);
+      throw exceptionToThrow;
+    } catch (ExecutionException | TimeoutException e) {
+      final E exceptionToThrow = exceptionProducer.apply("Could not read the process output.");
+      exceptionToThrow.initCause(e);
+      throw exceptionToThrow;
+    }
+  }
+
+  /**
+   * Kills the process: it is first asked to terminate, and if it hasn't done so after a grace
+   * period, it is forcibly destroyed.
+   */
+  private static void killProcess(Process process) {
+    process.destroy();
+    try {
+      if (process.waitFor(KILL_GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    destroyForcibly(process);
+  }
+
+  private static void destroyForcibly(Process process) {
+    try {
+      process.descendants().forEach(ProcessHandle::destroyForcibly);
+    } catch (UnsupportedOperationException e) {
+      LOGGER.debug("Could not destroy the descendants of the process.", e);
     }
+    process.destroyForcibly();
   }
 
   /**
@@ -0,0 +1,31 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import eu.europeana.metis.mediaprocessing.model.CachedExtractionResult;
+import java.util.Optional;
+
+/**
+ * Implementations of this interface store media extraction results, so that a resource that has
+ * not changed since it was last processed (e.g. when a dataset is reprocessed) does not need to be
+ * downloaded and processed again. A stored result is reused if the source server indicates that
+ * the resource has not changed (based on the stored validators), or if the downloaded content has
+ * the same hash as the stored content hash. Implementations are free to decide which results to
+ * keep, and for how long. They must be thread-safe if they are shared between media extractors.
+ */
+public interface ExtractionResultCache {
+
+  /**
+   * Obtain the stored result for the given resource.
+   *
+   * @param resourceUrl The URL of the resource.
+   * @return The stored result, or an empty optional if there is no result for the resource.
+   */
+  Optional<CachedExtractionResult> get(String resourceUrl);
+
+  /**
+   * Store the result for the given resource, replacing any previously stored result.
+   *
+   * @param resourceUrl The URL of the resource.
+   * @param result The result to store.
+   */
+  void put(String resourceUrl, CachedExtractionResult result);
+}
@@ -0,0 +1,228 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import eu.europeana.metis.mediaprocessing.exception.MediaExtractionException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * This class parses the response of the ImageMagick command that generates the thumbnails (see
+ * {@link ThumbnailGenerator#createThumbnailGenerationCommand(List, boolean, java.io.File,
+ * String)}). The response consists of two sections, each enclosed by content markers: the first
+ * section contains the width, height and color space of the image on one line (separated by
+ * spaces), the second contains the color histogram of the image (one color per line).
+ * </p>
+ * <p>
+ * The response is processed in a single pass without splitting it into lines or applying regular
+ * expressions: only the values that are needed are extracted. This matters for images with a large
+ * histogram. Objects of this class should be used only once.
+ * </p>
+ */
+final class ImageMagickResponseParser {
+
+  private static final int MARKER_COUNT = 4;
+  private static final int COLOR_HEX_LENGTH = 6;
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private final String response;
+  private final String contentMarker;
+  private final int maxColors;
+
+  private int width;
+  private int height;
+  private String colorSpace;
+
+  // The dominant colors found so far, ordered by decreasing frequency.
+  private final long[] colorFrequencies;
+  private final int[] colors;
+  private int colorCount;
+
+  private ImageMagickResponseParser(String response, String contentMarker, int maxColors) {
+    this.response = response;
+    this.contentMarker = contentMarker;
+    this.maxColors = maxColors;
+    this.colorFrequencies = new long[maxColors];
+    this.colors = new int[maxColors];
+  }
+
+  /**
+   * Parses the response.
+   *
+   * @param response The response of the ImageMagick command.
+   * @param contentMarker The content marker that encloses the sections of the response.
+   * @param maxColors The maximum number of dominant colors to return.
+   * @return The image metadata.
+   * @throws MediaExtractionException In case the response could not be parsed.
+   */
+  static ImageMetadata parse(String response, String contentMarker, int maxColors)
+      throws MediaExtractionException {
+    if (response == null) {
+      throw new MediaExtractionException("Could not parse ImageMagick response: it is null.");
+    }
+    return new ImageMagickResponseParser(response, contentMarker, maxColors).parse();
+  }
+
+  private ImageMetadata parse() throws MediaExtractionException {
+
+    // Find the content markers and check their number.
+    final int[] markers = new int[MARKER_COUNT];
+    int markerCount = 0;
+    int position = response.indexOf(contentMarker);
+    while (position >= 0) {
+      if (markerCount == MARKER_COUNT) {
+        throw new MediaExtractionException(String
+            .format("Could not parse ImageMagick response(there are too many content markers):%s%s",
+                System.lineSeparator(), response));
+      }
+      markers[markerCount] = position;
+      markerCount++;
+      position = response.indexOf(contentMarker, position + contentMarker.length());
+    }
+    if (markerCount < MARKER_COUNT) {
+      throw new MediaExtractionException(String.format(
+          "Could not parse ImageMagick response(there are not enough content markers):%s%s",
+          System.lineSeparator(), response));
+    }
+
+    // Check that what's returned before, between and after the sections is empty. If there is any
+    // unexpected content, this could be an error message.
+    final int markerLength = contentMarker.length();
+    if (!isBlank(0, markers[0]) || !isBlank(markers[1] + markerLength, markers[2])
+        || !isBlank(markers[3] + markerLength, response.length())) {
+      throw new MediaExtractionException(String
+          .format("Unexpected content found in ImageMagick response: %s%s",
+              System.lineSeparator(), response.trim()));
+    }
+
+    // Parse the sections.
+    try {
+      parseMetadata(markers[0] + markerLength, markers[1]);
+      parseHistogram(markers[2] + markerLength, markers[3]);
+      return new ImageMetadata(width, height, colorSpace, getDominantColors());
+    } catch (RuntimeException e) {
+      throw new MediaExtractionException(String
+          .format("Could not parse ImageMagick response:%s%s", System.lineSeparator(), response),
+          e);
+    }
+  }
+
+  private void parseMetadata(int start, int end) {
+    final int widthStart = skipWhitespace(start, end);
+    final int widthEnd = skipToken(widthStart, end);
+    final int heightStart = skipWhitespace(widthEnd, end);
+    final int heightEnd = skipToken(heightStart, end);
+    final int colorSpaceStart = skipWhitespace(heightEnd, end);
+    final int colorSpaceEnd = skipToken(colorSpaceStart, end);
+    if (colorSpaceStart == colorSpaceEnd || !isBlank(colorSpaceEnd, end)) {
+      throw new IllegalStateException("Invalid metadata found.");
+    }
+    width = Integer.parseInt(response, widthStart, widthEnd, 10);
+    height = Integer.parseInt(response, heightStart, heightEnd, 10);
+    colorSpace = response.substring(colorSpaceStart, colorSpaceEnd);
+  }
+
+  private void parseHistogram(int start, int end) {
+    int lineStart = start;
+    while (lineStart < end) {
+      int lineEnd = response.indexOf('\n', lineStart);
+      if (lineEnd < 0 || lineEnd > end) {
+        lineEnd = end;
+      }
+      if (!isBlank(lineStart, lineEnd)) {
+        parseHistogramLine(lineStart, lineEnd);
+      }
+      lineStart = lineEnd + 1;
+    }
+  }
+
+  /**
+   * Parses a histogram line of the form "<code>    2995: ( 47, 79, 79,255) #2F4F4F
+   * DarkSlateGray</code>": the frequency followed by a colon, and the color in hexadecimal notation.
+   */
+  private void parseHistogramLine(int start, int end) {
+
+    // Parse the frequency.
+    final int frequencyStart = skipWhitespace(start, end);
+    final int colon = response.indexOf(':', frequencyStart);
+    if (colon < 0 || colon >= end) {
+      throw new IllegalStateException("Invalid color line found.");
+    }
+    final long frequency = Long.parseLong(response, frequencyStart, colon, 10);
+
+    // Parse the color.
+    final int hash = response.indexOf('#', colon);
+    if (hash < 0 || hash + COLOR_HEX_LENGTH >= end) {
+      throw new IllegalStateException("Invalid color line found.");
+    }
+    int color = 0;
+    for (int i = hash + 1; i <= hash + COLOR_HEX_LENGTH; i++) {
+      final char character = response.charAt(i);
+      final int digit;
+      if (character >= '0' && character <= '9') {
+        digit = character - '0';
+      } else if (character >= 'A' && character <= 'F') {
+        digit = character - 'A' + 10;
+      } else {
+        throw new IllegalStateException("Invalid color line found.");
+      }
+      color = (color << 4) | digit;
+    }
+
+    addColor(frequency, color);
+  }
+
+  private void addColor(long frequency, int color) {
+
+    // Find the position of the color: by decreasing frequency, ties broken by decreasing color.
+    int position = colorCount;
+    while (position > 0 && (colorFrequencies[position - 1] < frequency
+        || (colorFrequencies[position - 1] == frequency && colors[position - 1] < color))) {
+      position--;
+    }
+    if (position >= maxColors) {
+      return;
+    }
+
+    // Insert the color, dropping the least frequent one if needed.
+    final int moveCount = Math.min(colorCount, maxColors - 1) - position;
+    System.arraycopy(colorFrequencies, position, colorFrequencies, position + 1, moveCount);
+    System.arraycopy(colors, position, colors, position + 1, moveCount);
+    colorFrequencies[position] = frequency;
+    colors[position] = color;
+    colorCount = Math.min(colorCount + 1, maxColors);
+  }
+
+  private List<String> getDominantColors() {
+    final List<String> result = new ArrayList<>(colorCount);
+    final char[] hex = new char[COLOR_HEX_LENGTH];
+    for (int index = 0; index < colorCount; index++) {
+      int color = colors[index];
+      for (int i = COLOR_HEX_LENGTH - 1; i >= 0; i--) {
+        hex[i] = HEX_DIGITS[color & 0xF];
+        color >>>= 4;
+      }
+      result.add(new String(hex));
+    }
+    return result;
+  }
+
+  private int skipWhitespace(int start, int end) {
+    int result = start;
+    while (result < end && Character.isWhitespace(response.charAt(result))) {
+      result++;
+    }
+    return result;
+  }
+
+  private int skipToken(int start, int end) {
+    int result = start;
+    while (result < end && !Character.isWhitespace(response.charAt(result))) {
+      result++;
+    }
+    return result;
+  }
+
+  private boolean isBlank(int start, int end) {
+    return skipWhitespace(start, end) == end;
+  }
+}
@@ -0,0 +1,320 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
+import eu.europeana.metis.mediaprocessing.extraction.ThumbnailGenerator.ThumbnailWithSize;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * <p>
+ * This class generates thumbnails for common raster formats (JPEG, PNG and GIF) within the JVM,
+ * avoiding the cost of starting an ImageMagick process and of the temporary files that this
+ * requires. It mimics the ImageMagick command issued by {@link ThumbnailGenerator}: the thumbnails
+ * are scaled to the required width, and the dominant colors are computed by mapping the pixels of
+ * the last thumbnail to the colors of the color map and counting them.
+ * </p>
+ * <p>
+ * Images in an RGB color space other than sRGB are converted to sRGB (the JPEG reader already
+ * does this for an embedded ICC profile). Images that cannot be processed (e.g. images in the CMYK
+ * color space, or PNG images with an embedded ICC profile, which the PNG reader ignores) cause an
+ * {@link IOException}, in which case the caller is expected to fall back to ImageMagick. This
+ * class is thread-safe.
+ * </p>
+ */
+class InProcessThumbnailGenerator {
+
+  private static final Set<String> SUPPORTED_MIME_TYPES = Set
+      .of("image/jpeg", "image/png", "image/gif");
+
+  private static final String PNG_MIME_TYPE = "image/png";
+  private static final String PNG_METADATA_FORMAT = "javax_imageio_png_1.0";
+  private static final String PNG_ICC_PROFILE_CHUNK = "iCCP";
+  private static final float JPEG_QUALITY = 0.9F;
+  private static final int MAX_COLORS = 6;
+
+  private static final String COLOR_SPACE_SRGB = "sRGB";
+  private static final String COLOR_SPACE_GRAY = "Gray";
+
+  private final int[] colorMap;
+
+  /**
+   * Constructor.
+   *
+   * @param colorMapFile The location of the color map file.
+   * @throws MediaProcessorException In case the color map could not be read.
+   */
+  InProcessThumbnailGenerator(File colorMapFile) throws MediaProcessorException {
+    try {
+      this.colorMap = readColorMap(colorMapFile);
+    } catch (IOException e) {
+      throw new MediaProcessorException("Could not read color map file: " + colorMapFile, e);
+    }
+  }
+
+  private static int[] readColorMap(File colorMapFile) throws IOException {
+    final BufferedImage image = ImageIO.read(colorMapFile);
+    if (image == null) {
+      throw new IOException("Color map file is not a supported image.");
+    }
+    final Set<Integer> colors = new LinkedHashSet<>();
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        colors.add(image.getRGB(x, y) & 0xFFFFFF);
+      }
+    }
+    return colors.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Determines whether this generator can (potentially) process content of the given type.
+   *
+   * @param detectedMimeType The detected mime type of the content.
+   * @return Whether this generator supports the mime type.
+   */
+  static boolean supportsMimeType(String detectedMimeType) {
+    return SUPPORTED_MIME_TYPES.contains(detectedMimeType);
+  }
+
+  /**
+   * Generates the thumbnails and computes the image metadata. The content of the thumbnails is set
+   * (the thumbnails' temporary files are not used).
+   *
+   * @param thumbnails The thumbnails to generate.
+   * @param thumbnailMimeType The mime type of the thumbnails (either PNG or JPEG).
+   * @param removeAlpha Whether any alpha should be removed and replaced with a white background.
+   * @param content The content for which to generate thumbnails.
+   * @return The image metadata.
+   * @throws IOException In case the content could not be processed.
+   */
+  ImageMetadata generateThumbnails(List<ThumbnailWithSize> thumbnails, String thumbnailMimeType,
+      boolean removeAlpha, File content) throws IOException {
+
+    // Read the image: only the first frame, and no larger than we need.
+    final int maxThumbnailSize = thumbnails.stream().mapToInt(ThumbnailWithSize::getImageSize)
+        .max().orElse(0);
+    final ImageWithSize original = readImage(content, maxThumbnailSize);
+    final BufferedImage image = convertToSrgb(original.image);
+    final String colorSpace = getColorSpace(image);
+
+    // Create the thumbnails. Don't make a thumbnail larger than the original: use the original.
+    final boolean isPng = PNG_MIME_TYPE.equals(thumbnailMimeType);
+    BufferedImage lastThumbnail = null;
+    for (ThumbnailWithSize thumbnail : thumbnails) {
+      final BufferedImage scaled = scale(image, thumbnail.getImageSize(),
+          isPng && !removeAlpha);
+      if (original.width < thumbnail.getImageSize()) {
+        thumbnail.getThumbnail().markAsWithContent(Files.readAllBytes(content.toPath()));
+      } else {
+        final byte[] encoded = isPng ? encodePng(scaled) : encodeJpeg(scaled);
+        thumbnail.getThumbnail().markAsWithContent(encoded);
+      }
+      lastThumbnail = scaled;
+    }
+
+    // Compute the dominant colors.
+    final List<String> dominantColors = lastThumbnail == null ? List.of()
+        : computeDominantColors(lastThumbnail);
+    return new ImageMetadata(original.width, original.height, colorSpace, dominantColors);
+  }
+
+  private static ImageWithSize readImage(File content, int maxThumbnailSize) throws IOException {
+    try (ImageInputStream inputStream = ImageIO.createImageInputStream(content)) {
+      if (inputStream == null) {
+        throw new IOException("Could not open image file.");
+      }
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(inputStream);
+      if (!readers.hasNext()) {
+        throw new IOException("No image reader found for the content.");
+      }
+      final ImageReader reader = readers.next();
+      try {
+        reader.setInput(inputStream, true, false);
+        if (hasIgnoredColorProfile(reader.getImageMetadata(0))) {
+          throw new IOException("Image has an embedded color profile that cannot be applied.");
+        }
+        final int width = reader.getWidth(0);
+        final int height = reader.getHeight(0);
+
+        // Skip pixels while decoding if the image is much larger than the thumbnails.
+        final ImageReadParam param = reader.getDefaultReadParam();
+        final int subsampling =
+            maxThumbnailSize < 1 ? 1 : Math.max(1, width / (2 * maxThumbnailSize));
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return new ImageWithSize(reader.read(0, param), width, height);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private static boolean hasIgnoredColorProfile(IIOMetadata metadata) {
+    if (metadata == null || !PNG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+      return false;
+    }
+    final IIOMetadataNode tree = (IIOMetadataNode) metadata.getAsTree(PNG_METADATA_FORMAT);
+    return tree.getElementsByTagName(PNG_ICC_PROFILE_CHUNK).getLength() > 0;
+  }
+
+  private static BufferedImage convertToSrgb(BufferedImage image) {
+    final ColorSpace colorSpace = image.getColorModel().getColorSpace();
+    if (colorSpace.getType() != ColorSpace.TYPE_RGB || colorSpace.isCS_sRGB()) {
+      return image;
+    }
+    final BufferedImage target = new BufferedImage(image.getWidth(), image.getHeight(),
+        image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+            : BufferedImage.TYPE_INT_RGB);
+    return new ColorConvertOp(null).filter(image, target);
+  }
+
+  private static String getColorSpace(BufferedImage image) throws IOException {
+    final ColorSpace colorSpace = image.getColorModel().getColorSpace();
+    if (colorSpace.isCS_sRGB()) {
+      return COLOR_SPACE_SRGB;
+    }
+    if (colorSpace.getType() == ColorSpace.TYPE_GRAY) {
+      return COLOR_SPACE_GRAY;
+    }
+    throw new IOException("Unsupported color space type: " + colorSpace.getType());
+  }
+
+  private static BufferedImage scale(BufferedImage source, int targetWidth, boolean keepAlpha) {
+    final int targetHeight = Math
+        .max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+    // Halve the image until we are close to the target size (for better quality), then scale.
+    BufferedImage current = source;
+    int width = source.getWidth();
+    int height = source.getHeight();
+    do {
+      width = width / 2 >= targetWidth ? width / 2 : targetWidth;
+      height = width == targetWidth ? targetHeight : Math.max(1, height / 2);
+      current = draw(current, width, height, keepAlpha);
+    } while (width != targetWidth);
+    return current;
+  }
+
+  private static BufferedImage draw(BufferedImage source, int width, int height,
+      boolean keepAlpha) {
+    final BufferedImage target = new BufferedImage(width, height,
+        keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    final Graphics2D graphics = target.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      if (!keepAlpha) {
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+      }
+      graphics.drawImage(source, 0, 0, width, height, null);
+    } finally {
+      graphics.dispose();
+    }
+    return target;
+  }
+
+  private static byte[] encodePng(BufferedImage image) throws IOException {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    if (!ImageIO.write(image, "png", result)) {
+      throw new IOException("No PNG writer available.");
+    }
+    return result.toByteArray();
+  }
+
+  private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+    final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+    if (!writers.hasNext()) {
+      throw new IOException("No JPEG writer available.");
+    }
+    final ImageWriter writer = writers.next();
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (ImageOutputStream outputStream = ImageIO.createImageOutputStream(result)) {
+      writer.setOutput(outputStream);
+      final ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(JPEG_QUALITY);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return result.toByteArray();
+  }
+
+  List<String> computeDominantColors(BufferedImage image) {
+
+    // Map every (visible) pixel to the nearest color in the color map and count them.
+    final Map<Integer, Integer> nearestColors = new HashMap<>();
+    final int[] counts = new int[colorMap.length];
+    final int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+        image.getWidth());
+    for (int pixel : pixels) {
+      if ((pixel >>> 24) != 0) {
+        counts[nearestColors.computeIfAbsent(pixel & 0xFFFFFF, this::findNearestColor)]++;
+      }
+    }
+
+    // Return the most frequent colors.
+    final Integer[] indices = new Integer[colorMap.length];
+    Arrays.setAll(indices, index -> index);
+    return Arrays.stream(indices).filter(index -> counts[index] > 0)
+        .sorted(Comparator.comparingInt((Integer index) -> counts[index]).reversed())
+        .limit(MAX_COLORS).map(index -> String.format("%06X", colorMap[index]))
+        .collect(Collectors.toList());
+  }
+
+  private int findNearestColor(int rgb) {
+    int nearestIndex = 0;
+    long nearestDistance = Long.MAX_VALUE;
+    for (int index = 0; index < colorMap.length; index++) {
+      final int red = ((rgb >> 16) & 0xFF) - ((colorMap[index] >> 16) & 0xFF);
+      final int green = ((rgb >> 8) & 0xFF) - ((colorMap[index] >> 8) & 0xFF);
+      final int blue = (rgb & 0xFF) - (colorMap[index] & 0xFF);
+      final long distance = (long) red * red + green * green + blue * blue;
+      if (distance < nearestDistance) {
+        nearestDistance = distance;
+        nearestIndex = index;
+      }
+    }
+    return nearestIndex;
+  }
+
+  private static final class ImageWithSize {
+
+    private final BufferedImage image;
+    private final int width;
+    private final int height;
+
+    ImageWithSize(BufferedImage image, int width, int height) {
+      this.image = image;
+      this.width = width;
+      this.height = height;
+    }
+  }
+}
@@ -6,7 +6,12 @@ import eu.europeana.metis.mediaprocessing.MediaExtractor;
 import eu.europeana.metis.mediaprocessing.exception.MediaExtractionException;
 import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
 import eu.europeana.metis.mediaprocessing.http.MimeTypeDetectHttpClient;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient;
 import eu.europeana.metis.mediaprocessing.http.ResourceDownloadClient;
+import eu.europeana.metis.mediaprocessing.extraction.ResourceGovernor.Stage;
+import eu.europeana.metis.mediaprocessing.http.ResourceDownloadClient.DownloadMode;
+import eu.europeana.metis.mediaprocessing.model.CachedExtractionResult;
+import eu.europeana.metis.mediaprocessing.model.ContentStorage;
 import eu.europeana.metis.mediaprocessing.model.RdfResourceEntry;
 import eu.europeana.metis.mediaprocessing.model.Resource;
 import eu.europeana.metis.mediaprocessing.model.ResourceExtractionResult;
@@ -15,10 +20,17 @@ import eu.europeana.metis.utils.MediaType;
 import eu.europeana.metis.utils.SonarqubeNullcheckAvoidanceUtils.ThrowingConsumer;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.apache.tika.Tika;
@@ -42,13 +54,21 @@ public class MediaExtractorImpl implements MediaExtractor {
   private static final Set<UrlType> URL_TYPES_FOR_REDUCED_PROCESSING = Collections
       .singleton(UrlType.IS_SHOWN_AT);
 
+  private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+  private static final ResourceGovernor UNLIMITED_GOVERNOR = new ResourceGovernor(Map.of());
+
   private final ResourceDownloadClient resourceDownloadClient;
   private final MimeTypeDetectHttpClient mimeTypeDetectHttpClient;
+  private final RangeReadHttpClient rangeReadHttpClient;
   private final Tika tika;
 
   private final ImageProcessor imageProcessor;
   private final AudioVideoProcessor audioVideoProcessor;
   private final TextProcessor textProcessor;
+  private final ExtractionResultCache extractionResultCache;
+  private final ContentStorage contentStorage;
+  private final ResourceGovernor resourceGovernor;
 
   /**
    * Constructor meant for testing purposes.
@@ -63,12 +83,55 @@ public class MediaExtractorImpl implements MediaExtractor {
   MediaExtractorImpl(ResourceDownloadClient resourceDownloadClient,
       MimeTypeDetectHttpClient mimeTypeDetectHttpClient, Tika tika, ImageProcessor imageProcessor,
       AudioVideoProcessor audioVideoProcessor, TextProcessor textProcessor) {
+    this(resourceDownloadClient, mimeTypeDetectHttpClient, tika, imageProcessor,
+        audioVideoProcessor, textProcessor, null);
+  }
+
+  /**
+   * Constructor meant for testing purposes.
+   *
+   * @param resourceDownloadClient The download client for resources.
+   * @param mimeTypeDetectHttpClient The mime type detector for URLs.
+   * @param tika A tika instance.
+   * @param imageProcessor An image processor.
+   * @param audioVideoProcessor An audio/video processor.
+   * @param textProcessor A text processor.
+   * @param extractionResultCache The cache for extraction results. Can be null.
+   */
+  MediaExtractorImpl(ResourceDownloadClient resourceDownloadClient,
+      MimeTypeDetectHttpClient mimeTypeDetectHttpClient, Tika tika, ImageProcessor imageProcessor,
+      AudioVideoProcessor audioVideoProcessor, TextProcessor textProcessor,
+      ExtractionResultCache extractionResultCache) {
+    this(resourceDownloadClient, mimeTypeDetectHttpClient, tika, imageProcessor,
+        audioVideoProcessor, textProcessor, extractionResultCache, null);
+  }
+
+  /**
+   * Constructor meant for testing purposes.
+   *
+   * @param resourceDownloadClient The download client for resources.
+   * @param mimeTypeDetectHttpClient The mime type detector for URLs.
+   * @param tika A tika instance.
+   * @param imageProcessor An image processor.
+   * @param audioVideoProcessor An audio/video processor.
+   * @param textProcessor A text processor.
+   * @param extractionResultCache The cache for extraction results. Can be null.
+   * @param resourceGovernor The governor that limits the number of concurrent tasks. Can be null.
+   */
+  MediaExtractorImpl(ResourceDownloadClient resourceDownloadClient,
+      MimeTypeDetectHttpClient mimeTypeDetectHttpClient, Tika tika, ImageProcessor imageProcessor,
+      AudioVideoProcessor audioVideoProcessor, TextProcessor textProcessor,
+      ExtractionResultCache extractionResultCache, ResourceGovernor resourceGovernor) {
     this.resourceDownloadClient = resourceDownloadClient;
     this.mimeTypeDetectHttpClient = mimeTypeDetectHttpClient;
+    this.rangeReadHttpClient = null;
     this.tika = tika;
     this.imageProcessor = imageProcessor;
     this.audioVideoProcessor = audioVideoProcessor;
     this.textProcessor = textProcessor;
+    this.extractionResultCache = extractionResultCache;
+    this.contentStorage = ContentStorage.DEFAULT;
+    this.resourceGovernor = Optional.ofNullable(resourceGovernor).orElse(UNLIMITED_GOVERNOR);
   }
 
   /**
@@ -87,15 +150,54 @@ public class MediaExtractorImpl implements MediaExtractor {
   public MediaExtractorImpl(int redirectCount, int thumbnailGenerateTimeout,
       int audioVideoProbeTimeout, int connectTimeout, int responseTimeout, int downloadTimeout)
       throws MediaProcessorException {
+    this(redirectCount, thumbnailGenerateTimeout, audioVideoProbeTimeout, connectTimeout,
+        responseTimeout, downloadTimeout, null, ContentStorage.DEFAULT, null,
+        new MpdManifestCache(Duration.ZERO, 0));
+  }
+
+  /**
+   * Constructor for non-testing purposes.
+   *
+   * @param redirectCount The maximum number of times we will follow a redirect.
+   * @param thumbnailGenerateTimeout The maximum amount of time, in seconds, a thumbnail generation
+   * command is allowed to take before it is forcibly destroyed (i.e. cancelled).
+   * @param audioVideoProbeTimeout The maximum amount of time, in seconds, a audio/video probe
+   * command is allowed to take before it is forcibly destroyed (i.e. cancelled).
+   * @param connectTimeout The connection timeout in milliseconds for downloading resources.
+   * @param responseTimeout The response timeout in milliseconds for downloading resources.
+   * @param downloadTimeout The download timeout in milliseconds for downloading resources.
+   * @param extractionResultCache The cache in which extraction results are stored, so that they can
+   * be reused if a resource has not changed. Can be null, in which case no results are reused.
+   * @param contentStorage The storage that determines where the content of resources is kept. It
+   * will be closed when this extractor is closed.
+   * @param resourceGovernor The governor that limits the number of concurrent tasks in each stage
+   * of the processing. It is typically shared between extractors. Can be null, in which case the
+   * number of concurrent tasks is not limited.
+   * @param mpdManifestCache The cache for DASH manifests. It is typically shared between
+   * extractors.
+   * @throws MediaProcessorException In case something went wrong while initializing the extractor.
+   */
+  public MediaExtractorImpl(int redirectCount, int thumbnailGenerateTimeout,
+      int audioVideoProbeTimeout, int connectTimeout, int responseTimeout, int downloadTimeout,
+      ExtractionResultCache extractionResultCache, ContentStorage contentStorage,
+      ResourceGovernor resourceGovernor, MpdManifestCache mpdManifestCache)
+      throws MediaProcessorException {
+    this.extractionResultCache = extractionResultCache;
+    this.contentStorage = contentStorage;
+    this.resourceGovernor = Optional.ofNullable(resourceGovernor).orElse(UNLIMITED_GOVERNOR);
     final ThumbnailGenerator thumbnailGenerator = new ThumbnailGenerator(
         new CommandExecutor(thumbnailGenerateTimeout));
     this.resourceDownloadClient = new ResourceDownloadClient(redirectCount,
-        this::shouldDownloadForFullProcessing, connectTimeout, responseTimeout, downloadTimeout);
+        this::shouldDownloadForFullProcessing, connectTimeout, responseTimeout, downloadTimeout,
+        contentStorage);
     this.mimeTypeDetectHttpClient = new MimeTypeDetectHttpClient(connectTimeout, responseTimeout,
         downloadTimeout);
     this.tika = new Tika();
     this.imageProcessor = new ImageProcessor(thumbnailGenerator);
-    this.audioVideoProcessor = new AudioVideoProcessor(new CommandExecutor(audioVideoProbeTimeout));
+    this.rangeReadHttpClient = new RangeReadHttpClient(redirectCount, connectTimeout,
+        responseTimeout, downloadTimeout);
+    this.audioVideoProcessor = new AudioVideoProcessor(
+        new CommandExecutor(audioVideoProbeTimeout), rangeReadHttpClient, mpdManifestCache);
     this.textProcessor = new TextProcessor(thumbnailGenerator,
         new PdfToImageConverter(new CommandExecutor(thumbnailGenerateTimeout)));
   }
@@ -110,9 +212,24 @@ public class MediaExtractorImpl implements MediaExtractor {
       return null;
     }
 
-    // Download resource and then perform media extraction on it.
-    try (Resource resource = downloadBasedOnProcessingMode(resourceEntry, mode)) {
-      return performProcessing(resource, mode, mainThumbnailAvailable);
+    // Find a previous result that we may be able to reuse.
+    final CachedExtractionResult cachedResult = getCachedResult(resourceEntry,
+        mainThumbnailAvailable);
+
+    // Download resource and then perform media extraction on it (unless it has not changed).
+    try (Resource resource = downloadBasedOnProcessingMode(resourceEntry, mode, cachedResult)) {
+      if (cachedResult != null && resource.isNotModified()) {
+        return cachedResult.toExtractionResult();
+      }
+      final String contentHash = extractionResultCache == null ? null : computeContentHash(resource);
+      if (cachedResult != null && contentHash != null && contentHash
+          .equals(cachedResult.getContentHash())) {
+        return cachedResult.toExtractionResult();
+      }
+      final ResourceExtractionResult result = performProcessing(resource, mode,
+          mainThumbnailAvailable);
+      cacheResult(resource, contentHash, mainThumbnailAvailable, result);
+      return result;
     } catch (IOException | RuntimeException e) {
       throw new MediaExtractionException(
           String.format("Problem while processing %s", resourceEntry.getResourceUrl()), e);
@@ -120,12 +237,94 @@ public class MediaExtractorImpl implements MediaExtractor {
   }
 
   private Resource downloadBasedOnProcessingMode(RdfResourceEntry resourceEntry,
-      ProcessingMode mode) throws IOException {
+      ProcessingMode mode, CachedExtractionResult cachedResult)
+      throws IOException, MediaExtractionException {
 
     // Determine the download method to use (full download vs. quick ping)
-    return (mode == ProcessingMode.FULL)
-        ? this.resourceDownloadClient.downloadBasedOnMimeType(resourceEntry)
-        : this.resourceDownloadClient.downloadWithoutContent(resourceEntry);
+    final DownloadMode downloadMode =
+        (mode == ProcessingMode.FULL) ? DownloadMode.MIME_TYPE : DownloadMode.NEVER;
+
+    // If there is a previous result, only download the resource if it changed.
+    try (ResourceGovernor.Permit permit = acquirePermit(Stage.DOWNLOAD)) {
+      if (cachedResult != null) {
+        return this.resourceDownloadClient
+            .downloadIfModified(resourceEntry, downloadMode, cachedResult.getValidators());
+      }
+      return (downloadMode == DownloadMode.MIME_TYPE)
+          ? this.resourceDownloadClient.downloadBasedOnMimeType(resourceEntry)
+          : this.resourceDownloadClient.downloadWithoutContent(resourceEntry);
+    }
+  }
+
+  private ResourceGovernor.Permit acquirePermit(Stage stage) throws MediaExtractionException {
+    try {
+      return resourceGovernor.acquire(stage);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MediaExtractionException("Interrupted while waiting for stage " + stage + ".", e);
+    }
+  }
+
+  Stage getProcessingStage(MediaProcessor processor, String detectedMimeType) {
+    final Stage result;
+    if (processor == imageProcessor) {
+      result = Stage.IMAGE;
+    } else if (processor == audioVideoProcessor) {
+      result = Stage.AUDIO_VIDEO;
+    } else if (processor == textProcessor && TextProcessor.PDF_MIME_TYPE.equals(detectedMimeType)) {
+      result = Stage.PDF;
+    } else {
+      result = null;
+    }
+    return result;
+  }
+
+  private CachedExtractionResult getCachedResult(RdfResourceEntry resourceEntry,
+      boolean mainThumbnailAvailable) {
+    if (extractionResultCache == null) {
+      return null;
+    }
+    try {
+      return extractionResultCache.get(resourceEntry.getResourceUrl())
+          .filter(result -> result.isExtractedWith(resourceEntry.getUrlTypes(),
+              mainThumbnailAvailable)).orElse(null);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not obtain the cached extraction result for {}.",
+          resourceEntry.getResourceUrl(), e);
+      return null;
+    }
+  }
+
+  private void cacheResult(Resource resource, String contentHash, boolean mainThumbnailAvailable,
+      ResourceExtractionResult result) {
+    if (extractionResultCache == null
+        || (!resource.getValidators().canValidate() && contentHash == null)) {
+      return;
+    }
+    final CachedExtractionResult cachedResult = new CachedExtractionResult(
+        resource.getValidators(), contentHash, resource.getUrlTypes(), mainThumbnailAvailable,
+        result == null ? null : result.getMetadata());
+    try {
+      extractionResultCache.put(resource.getResourceUrl(), cachedResult);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not cache the extraction result for {}.", resource.getResourceUrl(), e);
+    }
+  }
+
+  private static String computeContentHash(Resource resource) throws IOException {
+    if (!resource.hasContent()) {
+      return null;
+    }
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    try (InputStream inputStream = new DigestInputStream(resource.getContentStream(), digest)) {
+      inputStream.transferTo(OutputStream.nullOutputStream());
+    }
+    return String.format("%064x", new BigInteger(1, digest.digest()));
   }
 
   ProcessingMode getMode(RdfResourceEntry resourceEntry) {
@@ -155,8 +354,15 @@ public class MediaExtractorImpl implements MediaExtractor {
     final boolean hasContent;
     try {
       hasContent = resource.hasContent();
-      detectedMimeType = hasContent ? detectType(resource.getContentPath(), providedMimeType)
-          : mimeTypeDetectHttpClient.download(resource.getActualLocation().toURL());
+      if (hasContent) {
+        resource.moveContentToFile();
+        detectedMimeType = detectType(resource.getContentPath(), providedMimeType);
+      } else if (resource.getDetectedMimeType() != null) {
+        // The mime type was already detected from the first part of the content while downloading.
+        detectedMimeType = resource.getDetectedMimeType();
+      } else {
+        detectedMimeType = mimeTypeDetectHttpClient.download(resource.getActualLocation().toURL());
+      }
     } catch (IOException e) {
       throw new MediaExtractionException("Mime type checking error", e);
     }
@@ -214,7 +420,8 @@ public class MediaExtractorImpl implements MediaExtractor {
 
     // If the mime type changed and we need the content after all, we download it.
     if (mode == ProcessingMode.FULL && shouldDownloadForFullProcessing(detectedMimeType)
-        && !shouldDownloadForFullProcessing(resource.getProvidedMimeType())) {
+        && !shouldDownloadForFullProcessing(resource.getProvidedMimeType())
+        && !resource.hasContent()) {
       final RdfResourceEntry downloadInput =
           new RdfResourceEntry(resource.getResourceUrl(), new ArrayList<>(resource.getUrlTypes()));
 
@@ -225,7 +432,8 @@ public class MediaExtractorImpl implements MediaExtractor {
           }
         }
       };
-      try (final Resource resourceWithContent = this.resourceDownloadClient
+      try (ResourceGovernor.Permit permit = acquirePermit(Stage.DOWNLOAD);
+          final Resource resourceWithContent = this.resourceDownloadClient
               .downloadWithContent(downloadInput)) {
         performThrowingAction(resourceWithContent, action);
       }
@@ -254,6 +462,7 @@ public class MediaExtractorImpl implements MediaExtractor {
     // with the correct mime type. We correct this here.
     try {
       verifyAndCorrectContentAvailability(resource, mode, detectedMimeType);
+      resource.moveContentToFile();
     } catch (IOException e) {
       throw new MediaExtractionException("Content availability verification error.", e);
     }
@@ -266,7 +475,10 @@ public class MediaExtractorImpl implements MediaExtractor {
     if (processor == null) {
       result = null;
     } else if (mode == ProcessingMode.FULL) {
-      result = processor.extractMetadata(resource, detectedMimeType, mainThumbnailAvailable);
+      try (ResourceGovernor.Permit permit = acquirePermit(
+          getProcessingStage(processor, detectedMimeType))) {
+        result = processor.extractMetadata(resource, detectedMimeType, mainThumbnailAvailable);
+      }
     } else {
       result = processor.copyMetadata(resource, detectedMimeType);
     }
@@ -278,6 +490,11 @@ public class MediaExtractorImpl implements MediaExtractor {
   @Override
   public void close() throws IOException {
     resourceDownloadClient.close();
+    mimeTypeDetectHttpClient.close();
+    if (rangeReadHttpClient != null) {
+      rangeReadHttpClient.close();
+    }
+    contentStorage.close();
   }
 
   /**
@@ -0,0 +1,90 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import io.lindstrom.mpd.data.MPD;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * This class caches parsed DASH manifests (MPD files) for a limited time, so that manifests that
+ * are referenced many times are not downloaded and parsed over and over again. The cache has a
+ * maximum size: when it is full, the least recently used entry is evicted. The cache is typically
+ * shared by all media extractors (see {@link
+ * eu.europeana.metis.mediaprocessing.MediaProcessorFactory}). This class is thread-safe.
+ */
+public class MpdManifestCache {
+
+  private final Duration timeToLive;
+  private final Clock clock;
+  private final Map<String, CachedManifest> manifests;
+
+  /**
+   * Constructor.
+   *
+   * @param timeToLive The time for which a manifest is kept. If this is zero or negative, no
+   * manifests are kept.
+   * @param maxSize The maximum number of manifests that are kept.
+   */
+  public MpdManifestCache(Duration timeToLive, int maxSize) {
+    this(timeToLive, maxSize, Clock.systemUTC());
+  }
+
+  MpdManifestCache(Duration timeToLive, int maxSize, Clock clock) {
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+    this.manifests = new LinkedHashMap<>(16, 0.75F, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedManifest> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Obtain the cached manifest for the given URL.
+   *
+   * @param url The URL of the manifest.
+   * @return The cached manifest, or an empty optional if there is no (unexpired) manifest for the
+   * URL.
+   */
+  synchronized Optional<MPD> get(String url) {
+    final CachedManifest manifest = manifests.get(url);
+    if (manifest == null) {
+      return Optional.empty();
+    }
+    if (!clock.instant().isBefore(manifest.expiryTime)) {
+      manifests.remove(url);
+      return Optional.empty();
+    }
+    return Optional.of(manifest.manifest);
+  }
+
+  /**
+   * Cache the manifest for the given URL.
+   *
+   * @param url The URL of the manifest.
+   * @param manifest The parsed manifest.
+   */
+  synchronized void put(String url, MPD manifest) {
+    if (!timeToLive.isNegative() && !timeToLive.isZero()) {
+      manifests.put(url, new CachedManifest(manifest, clock.instant().plus(timeToLive)));
+    }
+  }
+
+  private static final class CachedManifest {
+
+    private final MPD manifest;
+    private final Instant expiryTime;
+
+    CachedManifest(MPD manifest, Instant expiryTime) {
+      this.manifest = manifest;
+      this.expiryTime = expiryTime;
+    }
+  }
+}
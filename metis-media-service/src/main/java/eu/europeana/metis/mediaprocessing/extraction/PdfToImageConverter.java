@@ -2,9 +2,11 @@ package eu.europeana.metis.mediaprocessing.extraction;
 
 import eu.europeana.metis.mediaprocessing.exception.MediaExtractionException;
 import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
+import java.awt.Dimension;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.slf4j.Logger;
@@ -74,13 +76,16 @@ class PdfToImageConverter {
 
   /**
    * The main method of this class. It takes a PDF input file and converts the frist page of it to a
-   * PNG image. It saves it as a file and returns the reference to it.
+   * PNG image of the given size (fitting the page in it). It saves it as a file and returns the
+   * reference to it.
    *
    * @param content the PDF input.
+   * @param imageSize The size of the image. Can be null, in which case the image has the size of
+   * the page (at 72 DPI).
    * @return The PNG output.
    * @throws MediaExtractionException In case something went wrong during the conversion.
    */
-  Path convertToPdf(Path content) throws MediaExtractionException {
+  Path convertToPdf(Path content, Dimension imageSize) throws MediaExtractionException {
 
     // Sanity checking
     if (content == null) {
@@ -92,7 +97,7 @@ class PdfToImageConverter {
 
     // Execute the command
     try {
-      final List<String> command = createPdfConversionCommand(content, pdfImage);
+      final List<String> command = createPdfConversionCommand(content, pdfImage, imageSize);
       this.commandExecutor.execute(command, false, MediaExtractionException::new);
     } catch (MediaExtractionException | RuntimeException e) {
       removePdfImageFileSilently(pdfImage);
@@ -119,8 +124,8 @@ class PdfToImageConverter {
     }
   }
 
-  List<String> createPdfConversionCommand(Path inputFile, Path outputFile) {
-    return Arrays.asList(ghostScriptCmd,
+  List<String> createPdfConversionCommand(Path inputFile, Path outputFile, Dimension imageSize) {
+    final List<String> command = new ArrayList<>(Arrays.asList(ghostScriptCmd,
             "-q",
             "-dQUIET",
             "-dSAFER",
@@ -133,11 +138,16 @@ class PdfToImageConverter {
             "-sDEVICE=pngalpha",
             "-dTextAlphaBits=4",
             "-dGraphicsAlphaBits=4",
-            "-r72x72",
+            "-r72x72"));
+    if (imageSize != null) {
+      command.add("-g" + imageSize.width + "x" + imageSize.height);
+      command.add("-dPDFFitPage");
+    }
+    command.addAll(Arrays.asList(
             "-dFirstPage=1",
             "-dLastPage=1",
             "-sOutputFile=" + outputFile.toAbsolutePath().toString(),
-            "-f" + inputFile.toAbsolutePath().toString()
-    );
+            "-f" + inputFile.toAbsolutePath().toString()));
+    return command;
   }
 }
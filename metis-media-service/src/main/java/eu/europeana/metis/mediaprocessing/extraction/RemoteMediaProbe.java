@@ -0,0 +1,244 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.ByteRange;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.RangeContent;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * This class reads the parts of a remote audio/video file that are needed for probing it (i.e. the
+ * container headers), using HTTP range requests. It first reads the start of the file. Depending on
+ * the container format, it then reads the parts that are needed in addition to that:
+ * <ul>
+ * <li>For ISO base media files (MP4, QuickTime and the like), the movie box ('moov') if it is not
+ * at the start of the file.</li>
+ * <li>For Ogg and MPEG transport streams, the end of the file (from which the duration is
+ * determined).</li>
+ * </ul>
+ * These parts are written, at their original position, into a (sparse) local file of the same size
+ * as the remote file, which can then be probed instead of the remote file. For other container
+ * formats (e.g. Matroska/WebM, AVI or MP3), the metadata can be anywhere in the file, so no local
+ * file is created (unless the start of the file is the whole file) and the remote file needs to be
+ * probed directly. The same happens if the total number of bytes to read exceeds a strict budget.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+class RemoteMediaProbe {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RemoteMediaProbe.class);
+
+  static final int DEFAULT_HEAD_LENGTH = 512 * 1024;
+  static final int DEFAULT_BYTE_BUDGET = 4 * 1024 * 1024;
+  static final int TAIL_LENGTH = 256 * 1024;
+
+  private static final int BOX_HEADER_LENGTH = 8;
+  private static final int LARGE_BOX_HEADER_LENGTH = 16;
+  private static final int TS_PACKET_LENGTH = 188;
+  private static final byte TS_SYNC_BYTE = 0x47;
+
+  private final RangeReadHttpClient rangeReadHttpClient;
+  private final int headLength;
+  private final int byteBudget;
+
+  /**
+   * Constructor.
+   *
+   * @param rangeReadHttpClient The client with which to read the parts of the remote file.
+   * @param headLength The number of bytes to read from the start of the file.
+   * @param byteBudget The maximum number of bytes to read for one file (including the start).
+   */
+  RemoteMediaProbe(RangeReadHttpClient rangeReadHttpClient, int headLength, int byteBudget) {
+    this.rangeReadHttpClient = rangeReadHttpClient;
+    this.headLength = headLength;
+    this.byteBudget = byteBudget;
+  }
+
+  /**
+   * Creates a local copy of the given remote file that contains the parts needed for probing. The
+   * rest of the local file is empty (zeros). The caller is responsible for removing the file.
+   *
+   * @param location The location of the remote file.
+   * @return The local copy, or null if it could not be created within the byte budget (for
+   * instance because the server does not support range requests or does not report the size) or
+   * if the container format is not one for which we know which parts are needed.
+   * @throws IOException In case a connection or other IO problem occurred.
+   */
+  Path createPartialCopy(URI location) throws IOException {
+
+    // Read the start of the file.
+    final RangeContent head = rangeReadHttpClient
+        .download(new ByteRange(location.toString(), 0, headLength));
+    final Long totalSize = head.getTotalSize();
+    if (totalSize == null) {
+      LOGGER.debug("Cannot probe {} partially: the size is not known.", location);
+      return null;
+    }
+
+    // Determine what else to read and check the budget.
+    final String actualLocation = head.getActualUri().toString();
+    final List<ByteRange> ranges = findAdditionalRanges(actualLocation, head.getContent(),
+        totalSize);
+    if (ranges == null) {
+      LOGGER.debug("Cannot probe {} partially: the layout of the container is not known.",
+          location);
+      return null;
+    }
+    if (!ranges.isEmpty() && !head.isPartial()) {
+      LOGGER.debug("Cannot probe {} partially: the server does not support range requests.",
+          location);
+      return null;
+    }
+    long bytesToRead = head.getContent().length;
+    for (ByteRange range : ranges) {
+      bytesToRead += range.getLength();
+    }
+    if (bytesToRead > byteBudget) {
+      LOGGER.debug("Cannot probe {} partially: more than {} bytes are needed.", location,
+          byteBudget);
+      return null;
+    }
+
+    // Read the additional ranges.
+    final List<RangeContent> contents = new ArrayList<>(ranges.size() + 1);
+    contents.add(head);
+    for (ByteRange range : ranges) {
+      final RangeContent content = rangeReadHttpClient.download(range);
+      if (content.getContent().length < range.getLength()) {
+        LOGGER.debug("Cannot probe {} partially: range {} is incomplete.", location,
+            range.getOffset());
+        return null;
+      }
+      contents.add(content);
+    }
+
+    // Write the local copy.
+    final Path result = Files.createTempFile("media_probe_", null);
+    try (RandomAccessFile file = new RandomAccessFile(result.toFile(), "rw")) {
+      file.setLength(totalSize);
+      for (RangeContent content : contents) {
+        file.seek(content.getOffset());
+        file.write(content.getContent());
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(result);
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Determines which parts of the file, in addition to the start of the file, are needed. This is
+   * only known for the container formats listed in the class documentation.
+   *
+   * @param url The URL of the file.
+   * @param head The start of the file.
+   * @param totalSize The size of the file.
+   * @return The ranges to read. Is empty if the start of the file contains all that is needed. Is
+   * null if it is not known which parts are needed, in which case the file should be probed
+   * directly.
+   */
+  static List<ByteRange> findAdditionalRanges(String url, byte[] head, long totalSize) {
+    if (head.length >= totalSize) {
+      return Collections.emptyList();
+    }
+    if (isIsoBaseMediaFile(head)) {
+      final long[] movieBox = findMovieBox(head, totalSize);
+      if (movieBox == null) {
+        return null;
+      }
+      return movieBox[1] == 0 ? Collections.emptyList()
+          : Collections.singletonList(createRange(url, movieBox[0], movieBox[1]));
+    }
+    if (isOggFile(head) || isTransportStream(head)) {
+      final long tailOffset = Math.max(head.length, totalSize - TAIL_LENGTH);
+      return Collections.singletonList(createRange(url, tailOffset, totalSize - tailOffset));
+    }
+    return null;
+  }
+
+  private static ByteRange createRange(String url, long offset, long length) {
+    return new ByteRange(url, offset, (int) Math.min(length, Integer.MAX_VALUE));
+  }
+
+  private static boolean isIsoBaseMediaFile(byte[] head) {
+    return head.length >= BOX_HEADER_LENGTH && "ftyp".equals(readBoxType(head, 0));
+  }
+
+  private static boolean isOggFile(byte[] head) {
+    return head.length >= 4 && head[0] == 'O' && head[1] == 'g' && head[2] == 'g'
+        && head[3] == 'S';
+  }
+
+  private static boolean isTransportStream(byte[] head) {
+    return head.length > 2 * TS_PACKET_LENGTH && head[0] == TS_SYNC_BYTE
+        && head[TS_PACKET_LENGTH] == TS_SYNC_BYTE && head[2 * TS_PACKET_LENGTH] == TS_SYNC_BYTE;
+  }
+
+  /**
+   * Finds the part of an ISO base media file that contains the movie box and that is not in the
+   * start of the file. This is done by following the top-level boxes from the start of the file.
+   *
+   * @param head The start of the file.
+   * @param totalSize The size of the file.
+   * @return An array with two elements: the offset and the length of the part to read. The length
+   * is zero if the movie box is in the start of the file. Is null if the movie box could not be
+   * found.
+   */
+  static long[] findMovieBox(byte[] head, long totalSize) {
+    long position = 0;
+    while (position + BOX_HEADER_LENGTH <= totalSize) {
+
+      // If the box header is not in the start of the file, we read the rest of the file.
+      if (position + LARGE_BOX_HEADER_LENGTH > head.length) {
+        return new long[]{position, totalSize - position};
+      }
+
+      // Read the box header.
+      final int index = (int) position;
+      final long size32 = readUnsignedInt(head, index);
+      final String type = readBoxType(head, index);
+      final long size;
+      if (size32 == 1) {
+        size = readUnsignedInt(head, index + 8) << 32 | readUnsignedInt(head, index + 12);
+      } else if (size32 == 0) {
+        size = totalSize - position;
+      } else {
+        size = size32;
+      }
+      if (size < BOX_HEADER_LENGTH) {
+        return null;
+      }
+
+      // If this is the movie box, read the part that is not in the start of the file.
+      final long end = Math.min(position + size, totalSize);
+      if ("moov".equals(type)) {
+        return end <= head.length ? new long[]{head.length, 0}
+            : new long[]{head.length, end - head.length};
+      }
+      position = end;
+    }
+    return null;
+  }
+
+  private static long readUnsignedInt(byte[] data, int index) {
+    return (data[index] & 0xFFL) << 24 | (data[index + 1] & 0xFFL) << 16
+        | (data[index + 2] & 0xFFL) << 8 | (data[index + 3] & 0xFFL);
+  }
+
+  private static String readBoxType(byte[] data, int boxIndex) {
+    return new String(data, boxIndex + 4, 4, StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,122 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>
+ * This class limits the number of tasks that run concurrently in each stage of media processing
+ * (see {@link Stage}), so that a burst of resources of one type (e.g. videos) cannot use up the
+ * resources (e.g. CPU) needed for other types. Each stage has its own quota. Tasks that exceed the
+ * quota wait (blocking the calling thread) until a running task in the same stage is done. Waiting
+ * tasks are admitted in the order in which they arrived.
+ * </p>
+ * <p>
+ * This class is thread-safe and is meant to be shared by all media extractors on the same host.
+ * </p>
+ */
+public class ResourceGovernor {
+
+  /**
+   * The stages of media processing for which the number of concurrent tasks can be limited.
+   */
+  public enum Stage {
+
+    /**
+     * The download of the resource content.
+     */
+    DOWNLOAD,
+
+    /**
+     * The processing of images (thumbnail generation and metadata extraction).
+     */
+    IMAGE,
+
+    /**
+     * The processing of audio and video (probing with ffprobe).
+     */
+    AUDIO_VIDEO,
+
+    /**
+     * The processing of PDF files (rendering and analysis).
+     */
+    PDF
+  }
+
+  private final Map<Stage, Semaphore> quotas = new EnumMap<>(Stage.class);
+  private final Map<Stage, Integer> maxConcurrentTasks;
+
+  /**
+   * Constructor.
+   *
+   * @param maxConcurrentTasks The maximum number of concurrent tasks for each stage. Stages that are
+   * not in the map, or for which the value is zero or negative, are not limited.
+   */
+  public ResourceGovernor(Map<Stage, Integer> maxConcurrentTasks) {
+    final Map<Stage, Integer> limits = new EnumMap<>(Stage.class);
+    maxConcurrentTasks.forEach((stage, max) -> {
+      if (max != null && max > 0) {
+        limits.put(stage, max);
+        quotas.put(stage, new Semaphore(max, true));
+      }
+    });
+    this.maxConcurrentTasks = Collections.unmodifiableMap(limits);
+  }
+
+  /**
+   * Obtains permission to run a task in the given stage, waiting until the quota for the stage
+   * allows it. The returned permit must be closed when the task is done.
+   *
+   * @param stage The stage. Can be null, in which case the task is not limited.
+   * @return The permit.
+   * @throws InterruptedException In case the thread was interrupted while waiting.
+   */
+  public Permit acquire(Stage stage) throws InterruptedException {
+    final Semaphore quota = stage == null ? null : quotas.get(stage);
+    if (quota == null) {
+      return () -> {
+      };
+    }
+    quota.acquire();
+    return quota::release;
+  }
+
+  /**
+   * @param stage The stage.
+   * @return The maximum number of concurrent tasks in the given stage, or 0 if it is not limited.
+   */
+  public int getMaxConcurrentTasks(Stage stage) {
+    return maxConcurrentTasks.getOrDefault(stage, 0);
+  }
+
+  /**
+   * @param stage The stage.
+   * @return The number of tasks currently running in the given stage. Is 0 if the stage is not
+   * limited (running tasks are not counted in that case).
+   */
+  public int getRunningCount(Stage stage) {
+    final Semaphore quota = quotas.get(stage);
+    return quota == null ? 0 : (maxConcurrentTasks.get(stage) - quota.availablePermits());
+  }
+
+  /**
+   * @param stage The stage.
+   * @return An estimate of the number of tasks waiting to run in the given stage (the queue depth).
+   */
+  public int getQueueLength(Stage stage) {
+    final Semaphore quota = quotas.get(stage);
+    return quota == null ? 0 : quota.getQueueLength();
+  }
+
+  /**
+   * A permission to run a task in a stage. It must be closed (exactly once) when the task is done.
+   */
+  @FunctionalInterface
+  public interface Permit extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
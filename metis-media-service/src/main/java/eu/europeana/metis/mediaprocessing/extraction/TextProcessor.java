@@ -1,6 +1,9 @@
 package eu.europeana.metis.mediaprocessing.extraction;
 
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
 import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
 import com.itextpdf.text.pdf.parser.ImageRenderInfo;
 import com.itextpdf.text.pdf.parser.Matrix;
 import com.itextpdf.text.pdf.parser.PdfReaderContentParser;
@@ -11,13 +14,17 @@ import eu.europeana.metis.mediaprocessing.model.Resource;
 import eu.europeana.metis.mediaprocessing.model.ResourceExtractionResultImpl;
 import eu.europeana.metis.mediaprocessing.model.TextResourceMetadata;
 import eu.europeana.metis.mediaprocessing.model.Thumbnail;
+import eu.europeana.metis.mediaprocessing.model.ThumbnailKind;
 import eu.europeana.metis.mediaprocessing.model.UrlType;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,11 +41,20 @@ class TextProcessor implements MediaProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TextProcessor.class);
 
-  private static final String PDF_MIME_TYPE = "application/pdf";
+  static final String PDF_MIME_TYPE = "application/pdf";
   private static final String PNG_MIME_TYPE = "image/png";
 
   protected static final int DISPLAY_DPI = 72;
 
+  /**
+   * The maximum number of pages of a PDF that are analyzed to find its characteristics.
+   */
+  static final int MAX_SAMPLED_PAGES = 10;
+
+  // The size of the largest thumbnail: there is no need to render a PDF page larger than this.
+  private static final int MAX_THUMBNAIL_SIZE = Arrays.stream(ThumbnailKind.values())
+      .mapToInt(ThumbnailKind::getImageSize).max().orElseThrow();
+
   private final ThumbnailGenerator thumbnailGenerator;
   private final PdfToImageConverter pdfToImageConverter;
 
@@ -81,26 +97,24 @@ class TextProcessor implements MediaProcessor {
       throw new MediaExtractionException("Could not determine whether resource has content.", e);
     }
 
-    // Create thumbnails in case of PDF file.
+    // In case of a PDF file, open it (once) to create thumbnails and find the characteristics.
     final List<Thumbnail> thumbnails;
-    if (PDF_MIME_TYPE.equals(detectedMimeType) && generateThumbnailForPdf(resource,
-            mainThumbnailAvailable)) {
-      final Path pdfImage = pdfToImageConverter.convertToPdf(resource.getContentPath());
-      try {
-        thumbnails = thumbnailGenerator.generateThumbnails(resource.getResourceUrl(),
-                PNG_MIME_TYPE, pdfImage.toFile(), true).getRight();
-      } finally {
-        pdfToImageConverter.removePdfImageFileSilently(pdfImage);
-      }
-    } else {
-      thumbnails = null;
-    }
-
-    // Set the resource properties relating to content.
     final PdfCharacteristics characteristics;
     if (PDF_MIME_TYPE.equals(detectedMimeType)) {
-      characteristics = findPdfCharacteristics(resource.getContentFile());
+      try (OpenPdfFile openPdf = openPdfFile(resource.getContentFile())) {
+        thumbnails = generateThumbnailForPdf(resource, mainThumbnailAvailable)
+            ? generatePdfThumbnails(resource, openPdf) : null;
+        try {
+          characteristics = findPdfCharacteristics(openPdf);
+        } catch (IOException | RuntimeException e) {
+          closeAllThumbnailsSilently(thumbnails);
+          throw e;
+        }
+      } catch (IOException e) {
+        throw new MediaExtractionException("Problem while reading PDF file.", e);
+      }
     } else {
+      thumbnails = null;
       final boolean hasText = detectedMimeType.startsWith("text/")
           || "application/xhtml+xml".equals(detectedMimeType);
       characteristics = new PdfCharacteristics(hasText, null);
@@ -135,23 +149,64 @@ class TextProcessor implements MediaProcessor {
     }
   }
 
-  PdfCharacteristics findPdfCharacteristics(File content) throws MediaExtractionException {
-    try (OpenPdfFile openPdf = openPdfFile(content)) {
+  List<Thumbnail> generatePdfThumbnails(Resource resource, OpenPdfFile openPdf)
+      throws MediaExtractionException {
+    final Path pdfImage = pdfToImageConverter.convertToPdf(resource.getContentPath(),
+        computePdfImageSize(openPdf.getPageSize(1)));
+    try {
+      return thumbnailGenerator.generateThumbnails(resource.getResourceUrl(), PNG_MIME_TYPE,
+          pdfImage.toFile(), true).getRight();
+    } finally {
+      pdfToImageConverter.removePdfImageFileSilently(pdfImage);
+    }
+  }
 
-      // Go by each page: if we find the data we need, we can stop.
-      for (int i = 1; i <= openPdf.getNumberOfPages(); i++) {
-        openPdf.getPdfParser().processContent(i, openPdf.getPdfListener());
-        if (openPdf.getPdfListener().getDpi() != null && openPdf.getPdfListener().hasText()) {
-          break;
-        }
+  /**
+   * Computes the size of the image to render from a PDF page so that it is not (much) larger than
+   * the largest thumbnail. Pages that are not wider than the largest thumbnail are rendered at their
+   * own size.
+   *
+   * @param pageSize The size of the page at {@link #DISPLAY_DPI}. Can be null if not known.
+   * @return The size of the image, or null if the page should be rendered at its own size.
+   */
+  static Dimension computePdfImageSize(Dimension pageSize) {
+    if (pageSize == null || pageSize.width <= MAX_THUMBNAIL_SIZE || pageSize.height <= 0) {
+      return null;
+    }
+    final int height = (int) Math.round((double) pageSize.height * MAX_THUMBNAIL_SIZE
+        / pageSize.width);
+    return new Dimension(MAX_THUMBNAIL_SIZE, Math.max(height, 1));
+  }
+
+  PdfCharacteristics findPdfCharacteristics(OpenPdfFile openPdf) throws IOException {
+
+    // Go by the sampled pages: if we find the data we need, we can stop.
+    for (int page : selectPagesToSample(openPdf.getNumberOfPages())) {
+      openPdf.getPdfParser().processContent(page, openPdf.getPdfListener());
+      if (openPdf.getPdfListener().getDpi() != null && openPdf.getPdfListener().hasText()) {
+        break;
       }
+    }
 
-      // Done.
-      return new PdfCharacteristics(openPdf.getPdfListener().hasText(),
-          openPdf.getPdfListener().getDpi());
-    } catch (IOException e) {
-      throw new MediaExtractionException("Problem while reading PDF file.", e);
+    // Done.
+    return new PdfCharacteristics(openPdf.getPdfListener().hasText(),
+        openPdf.getPdfListener().getDpi());
+  }
+
+  /**
+   * Selects the pages to analyze. If there are more than {@link #MAX_SAMPLED_PAGES} pages, the
+   * selected pages are spread evenly over the document (always including the first and last page).
+   *
+   * @param numberOfPages The number of pages in the document.
+   * @return The (1-based) page numbers, in ascending order.
+   */
+  static int[] selectPagesToSample(int numberOfPages) {
+    if (numberOfPages <= MAX_SAMPLED_PAGES) {
+      return IntStream.rangeClosed(1, numberOfPages).toArray();
     }
+    return IntStream.range(0, MAX_SAMPLED_PAGES)
+        .map(index -> 1 + (int) ((long) index * (numberOfPages - 1) / (MAX_SAMPLED_PAGES - 1)))
+        .toArray();
   }
 
   OpenPdfFile openPdfFile(File content) throws IOException {
@@ -165,13 +220,21 @@ class TextProcessor implements MediaProcessor {
     private PdfReaderContentParser pdfParser;
 
     OpenPdfFile(File content) throws IOException {
-      pdfReader = new PdfReader(content.getAbsolutePath());
+      // Read the file partially: only the objects that are needed are parsed.
+      pdfReader = new PdfReader(new RandomAccessFileOrArray(
+          new RandomAccessSourceFactory().createBestSource(content.getAbsolutePath())), null);
     }
 
     int getNumberOfPages() {
       return pdfReader.getNumberOfPages();
     }
 
+    Dimension getPageSize(int page) {
+      final Rectangle pageSize = pdfReader.getPageSizeWithRotation(page);
+      return pageSize == null ? null : new Dimension(Math.round(pageSize.getWidth()),
+          Math.round(pageSize.getHeight()));
+    }
+
     PdfListener getPdfListener() {
       pdfListener = pdfListener == null ? new PdfListener() : pdfListener;
       return pdfListener;
@@ -9,8 +9,6 @@ import eu.europeana.metis.utils.MediaType;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -23,11 +21,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
-import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -36,7 +30,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class performs thumbnail generation for images and PDF files using ImageMagick.
+ * This class performs thumbnail generation for images and PDF files using ImageMagick. Common raster
+ * formats are processed within the JVM if possible (see {@link InProcessThumbnailGenerator}), in
+ * which case ImageMagick is only used as a fallback.
  */
 class ThumbnailGenerator {
 
@@ -45,11 +41,9 @@ class ThumbnailGenerator {
   private static final String PNG_MIME_TYPE = "image/png";
   private static final String JPEG_MIME_TYPE = "image/jpeg";
 
-  private static final String COMMAND_RESULT_FORMAT = "\n%w\n%h\n%[colorspace]\n";
-  private static final int COMMAND_RESULT_WIDTH_LINE = 0;
-  private static final int COMMAND_RESULT_HEIGHT_LINE = 1;
-  private static final int COMMAND_RESULT_COLORSPACE_LINE = 2;
+  private static final String COMMAND_RESULT_FORMAT = "\n%w %h %[colorspace]\n";
   private static final int COMMAND_RESULT_MAX_COLORS = 6;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
   public static final String COLORMAP_PNG = "colormap.png";
 
   private static String globalMagickCommand;
@@ -59,6 +53,7 @@ class ThumbnailGenerator {
   private final String colormapFile;
 
   private final CommandExecutor commandExecutor;
+  private final InProcessThumbnailGenerator inProcessThumbnailGenerator;
 
   /**
    * Constructor. This is a wrapper for {@link ThumbnailGenerator#ThumbnailGenerator(CommandExecutor,
@@ -70,7 +65,8 @@ class ThumbnailGenerator {
    * @throws MediaProcessorException In case the properties could not be initialized.
    */
   ThumbnailGenerator(CommandExecutor commandExecutor) throws MediaProcessorException {
-    this(commandExecutor, getGlobalImageMagickCommand(commandExecutor), initColorMap().toString());
+    this(commandExecutor, getGlobalImageMagickCommand(commandExecutor), initColorMap().toString(),
+        new InProcessThumbnailGenerator(initColorMap().toFile()));
   }
 
   /**
@@ -82,9 +78,25 @@ class ThumbnailGenerator {
    * @param colorMapFile The location of the color map file.
    */
   ThumbnailGenerator(CommandExecutor commandExecutor, String magickCommand, String colorMapFile) {
+    this(commandExecutor, magickCommand, colorMapFile, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param commandExecutor A command executor.The calling class is responsible for closing this
+   * object
+   * @param magickCommand The magick command (how to trigger imageMagick).
+   * @param colorMapFile The location of the color map file.
+   * @param inProcessThumbnailGenerator The generator to try before using ImageMagick. Can be null,
+   * in which case ImageMagick is always used.
+   */
+  ThumbnailGenerator(CommandExecutor commandExecutor, String magickCommand, String colorMapFile,
+      InProcessThumbnailGenerator inProcessThumbnailGenerator) {
     this.commandExecutor = commandExecutor;
     this.magickCmd = magickCommand;
     this.colormapFile = colorMapFile;
+    this.inProcessThumbnailGenerator = inProcessThumbnailGenerator;
   }
 
   private static Path initColorMap() throws MediaProcessorException {
@@ -219,7 +231,7 @@ class ThumbnailGenerator {
     // Load the thumbnails: delete the temporary files, and the thumbnails in case of exceptions.
     final ImageMetadata image;
     try {
-      image = generateThumbnailsInternal(thumbnails, removeAlpha, content);
+      image = generateThumbnailsInternal(thumbnails, detectedMimeType, removeAlpha, content);
     } catch (RuntimeException e) {
       closeAllThumbnailsSilently(thumbnails);
       throw new MediaExtractionException("Unexpected error during processing", e);
@@ -274,7 +286,29 @@ class ThumbnailGenerator {
   }
 
   private ImageMetadata generateThumbnailsInternal(List<ThumbnailWithSize> thumbnails,
-      boolean removeAlpha, File content) throws MediaExtractionException {
+      String detectedMimeType, boolean removeAlpha, File content) throws MediaExtractionException {
+
+    // Try to generate the thumbnails in process. If that fails, fall back to ImageMagick. Note
+    // that image decoding and color management may also throw runtime exceptions for corrupt or
+    // unusual images, which ImageMagick may still be able to handle.
+    if (inProcessThumbnailGenerator != null && !thumbnails.isEmpty()
+        && InProcessThumbnailGenerator.supportsMimeType(detectedMimeType)) {
+      try {
+        return inProcessThumbnailGenerator.generateThumbnails(thumbnails,
+            thumbnails.get(0).getThumbnail().getMimeType(), removeAlpha, content);
+      } catch (IOException | RuntimeException e) {
+        LOGGER.debug("Could not generate thumbnails in process, using ImageMagick instead.", e);
+      }
+    }
+
+    // Create the temporary files for ImageMagick to write the thumbnails to.
+    try {
+      for (ThumbnailWithSize thumbnail : thumbnails) {
+        thumbnail.createTempFileForThumbnail();
+      }
+    } catch (IOException e) {
+      throw new MediaExtractionException("Could not create temporary thumbnail files.", e);
+    }
 
     // Generate the thumbnails and read image properties.
     final String contentMarker = UUID.randomUUID().toString();
@@ -317,9 +351,7 @@ class ThumbnailGenerator {
   }
 
   void copyFile(Path source, ThumbnailWithSize destination) throws IOException {
-    try (final InputStream thumbnailStream = Files.newInputStream(source)) {
-      destination.getThumbnail().markAsWithContent(thumbnailStream);
-    }
+    destination.getThumbnail().markAsWithContent(Files.readAllBytes(source));
   }
 
   void copyFile(File source, ThumbnailWithSize destination) throws IOException {
@@ -340,7 +372,7 @@ class ThumbnailGenerator {
       thumbnailMimeType = JPEG_MIME_TYPE;
     }
 
-    // Create the thumbnails: one for each kind
+    // Create the thumbnails: one for each kind (the hash is computed once for all kinds)
     final String md5 = md5Hex(url);
     final List<ThumbnailWithSize> result = new ArrayList<>(ThumbnailKind.values().length);
     try {
@@ -352,9 +384,9 @@ class ThumbnailGenerator {
         result.add(new ThumbnailWithSize(thumbnail, thumbnailKind.getImageSize(),
             imageMagickThumbnailTypePrefix));
       }
-    } catch (RuntimeException | IOException e) {
+    } catch (RuntimeException e) {
       closeAllThumbnailsSilently(result);
-      throw new MediaExtractionException("Could not create temporary thumbnail files.", e);
+      throw new MediaExtractionException("Could not create thumbnails.", e);
     }
 
     // Done.
@@ -362,77 +394,30 @@ class ThumbnailGenerator {
   }
 
   private static String md5Hex(String s) throws MediaExtractionException {
+    final byte[] md5bytes;
     try {
-      byte[] bytes = s.getBytes(StandardCharsets.UTF_8.name());
-      byte[] md5bytes = MessageDigest.getInstance("MD5").digest(bytes);
-      return String.format("%032x", new BigInteger(1, md5bytes));
-    } catch (UnsupportedEncodingException | NoSuchAlgorithmException e) {
+      md5bytes = MessageDigest.getInstance("MD5").digest(s.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
       throw new MediaExtractionException("Could not compute md5 hash", e);
     }
+    final char[] result = new char[md5bytes.length * 2];
+    for (int i = 0; i < md5bytes.length; i++) {
+      result[2 * i] = HEX_DIGITS[(md5bytes[i] >> 4) & 0xF];
+      result[2 * i + 1] = HEX_DIGITS[md5bytes[i] & 0xF];
+    }
+    return new String(result);
   }
 
   ImageMetadata parseCommandResponse(String response, String contentMarker)
       throws MediaExtractionException {
-    try {
-
-      // Divide in segments and check their number.
-      final String[] segments = response.split(Pattern.quote(contentMarker), 6);
-      if (segments.length < 5) {
-        throw new MediaExtractionException(String.format(
-            "Could not parse ImageMagick response(there are not enough content markers):%s%s",
-            System.lineSeparator(), response));
-      }
-      if (segments.length > 5) {
-        throw new MediaExtractionException(String
-            .format("Could not parse ImageMagick response(there are too many content markers):%s%s",
-                System.lineSeparator(), response));
-      }
-
-      // Check that what's returned before, between and after the pairs is empty. I.e. that the even
-      // segments are empty. If there is any unexpected content, this could be an error message.
-      final String unexpectedContent =
-          IntStream.range(0, segments.length).filter(index -> index % 2 == 0)
-              .mapToObj(index -> segments[index])
-              .collect(Collectors.joining(System.lineSeparator()));
-      if (StringUtils.isNotBlank(unexpectedContent)) {
-        throw new MediaExtractionException(String
-            .format("Unexpected content found in ImageMagick response: %s%s",
-                System.lineSeparator(), unexpectedContent.trim()));
-      }
-
-      // Get the dominant colors - sort them by frequency (' ' comes before any number).
-      final Pattern pattern = Pattern.compile("#([0-9A-F]{6})");
-      final List<String> colorStrings =
-          splitByNewLine(segments[3]).stream().sorted(Collections.reverseOrder())
-              .limit(COMMAND_RESULT_MAX_COLORS).collect(Collectors.toList());
-      final Supplier<Stream<Matcher>> streamMatcherSupplier = () -> colorStrings.stream()
-          .map(pattern::matcher);
-      if (!streamMatcherSupplier.get().allMatch(Matcher::find)) {
-        throw new IllegalStateException("Invalid color line found.");
-      }
-      final List<String> dominantColors = streamMatcherSupplier.get().filter(Matcher::find)
-          .map(matcher -> matcher.group(1)).collect(Collectors.toList());
-
-      // Get width, height and color space
-      final List<String> metadata = splitByNewLine(segments[1]);
-      final int width = Integer.parseInt(metadata.get(COMMAND_RESULT_WIDTH_LINE));
-      final int height = Integer.parseInt(metadata.get(COMMAND_RESULT_HEIGHT_LINE));
-      final String colorSpace = metadata.get(COMMAND_RESULT_COLORSPACE_LINE);
-
-      // Done.
-      return new ImageMetadata(width, height, colorSpace, dominantColors);
-    } catch (RuntimeException e) {
-      throw new MediaExtractionException(String
-          .format("Could not parse ImageMagick response:%s%s", System.lineSeparator(), response),
-          e);
-    }
+    return ImageMagickResponseParser.parse(response, contentMarker, COMMAND_RESULT_MAX_COLORS);
   }
 
   static class ThumbnailWithSize {
 
     private final ThumbnailImpl thumbnail;
     private final int imageSize;
-    private final Path tempFileForThumbnail;
+    private Path tempFileForThumbnail;
     private final String imageMagickTypePrefix;
 
     ThumbnailWithSize(ThumbnailImpl thumbnail, int imageSize, Path tempFileForThumbnail,
@@ -443,9 +428,8 @@ class ThumbnailGenerator {
       this.imageMagickTypePrefix = imageMagickTypePrefix;
     }
 
-    ThumbnailWithSize(ThumbnailImpl thumbnail, int imageSize, String imageMagickTypePrefix)
-        throws IOException {
-      this(thumbnail, imageSize, Files.createTempFile("thumbnail_", null), imageMagickTypePrefix);
+    ThumbnailWithSize(ThumbnailImpl thumbnail, int imageSize, String imageMagickTypePrefix) {
+      this(thumbnail, imageSize, null, imageMagickTypePrefix);
     }
 
     ThumbnailImpl getThumbnail() {
@@ -460,11 +444,20 @@ class ThumbnailGenerator {
       return tempFileForThumbnail;
     }
 
+    void createTempFileForThumbnail() throws IOException {
+      if (tempFileForThumbnail == null) {
+        tempFileForThumbnail = Files.createTempFile("thumbnail_", null);
+      }
+    }
+
     String getImageMagickTypePrefix() {
       return imageMagickTypePrefix;
     }
 
     void deleteTempFileSilently() {
+      if (getTempFileForThumbnail() == null) {
+        return;
+      }
       try {
         Files.delete(getTempFileForThumbnail());
       } catch (IOException e) {
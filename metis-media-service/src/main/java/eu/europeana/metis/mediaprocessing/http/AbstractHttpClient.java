@@ -2,21 +2,38 @@ package eu.europeana.metis.mediaprocessing.http;
 
 
 import eu.europeana.metis.mediaprocessing.http.wrappers.CancelableBodyWrapper;
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandler;
-import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.Response.Status.Family;
@@ -25,8 +42,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * <p>
  * This class represents an HTTP request client that can be used to resolve a resource link. This
- * client is thread-safe, but the connection settings are tuned for use by one thread only.
+ * client is thread-safe and can be used for many concurrent requests.
+ * </p>
+ * <p>
+ * Requests are executed asynchronously (see {@link #downloadAsync(Object)}): no thread is blocked
+ * while waiting for the server to respond or while following redirects. Subclasses decide, based on
+ * the response headers, how the content is to be handled (see {@link ContentHandling}): it can be
+ * ignored, collected in memory or written directly to a file as it arrives, or only its first part
+ * can be inspected. No thread is blocked while waiting for the content either: the results are
+ * created (once the content is in) by a small, bounded pool of threads.
+ * </p>
  *
  * @param <I> The type of the resource entry (the input object defining the request).
  * @param <R> The type of the resulting/downloaded object (the result of the request).
@@ -35,14 +62,17 @@ abstract class AbstractHttpClient<I, R> implements Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractHttpClient.class);
 
-  private final ScheduledExecutorService connectionCleaningSchedule = Executors
-      .newScheduledThreadPool(1);
+  private static final int RESULT_THREAD_COUNT = Math
+      .max(2, Runtime.getRuntime().availableProcessors());
+  private static final long RESULT_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private final ScheduledThreadPoolExecutor abortScheduler;
+  private final ExecutorService resultExecutor;
 
   private final int responseTimeout;
   private final int requestTimeout;
   private final HttpClient httpClient;
   private final int maxNumberOfRedirects;
-  private HttpResponse<InputStream> httpResponse;
 
   /**
    * Constructor.
@@ -66,172 +96,213 @@ abstract class AbstractHttpClient<I, R> implements Closeable {
     this.responseTimeout = responseTimeout;
     this.requestTimeout = requestTimeout;
 
+    // One (daemon) thread for all the abort triggers of this client. Cancelled triggers are removed
+    // immediately so that finished downloads don't linger in the queue until their deadline.
+    this.abortScheduler = new ScheduledThreadPoolExecutor(1,
+        createThreadFactory("http-client-abort-scheduler"));
+    this.abortScheduler.setRemoveOnCancelPolicy(true);
+
+    // The threads for creating the results once the content is available. Creating a result does
+    // not wait for the network, so the number of threads can be bounded. Idle threads time out.
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(RESULT_THREAD_COUNT,
+        RESULT_THREAD_COUNT, RESULT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), createThreadFactory("http-client-result"));
+    executor.allowCoreThreadTimeOut(true);
+    this.resultExecutor = executor;
+  }
+
+  private static ThreadFactory createThreadFactory(String name) {
+    return runnable -> {
+      final Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
   }
 
   /**
-   * This method resolves a resource link and returns the result. Note: this method is not meant to
-   * be overridden/extended by subclasses.
+   * This method resolves a resource link and returns the result. It blocks until the result is
+   * available. Note: this method is not meant to be overridden/extended by subclasses.
    *
    * @param resourceEntry The entry (resource link) to resolve.
    * @return The resulting/downloaded object.
    * @throws IOException In case a connection or other IO problem occurred (including an HTTP status
-   * other than 2xx).
+   * other than 2xx, in which case a {@link HttpStatusException} is thrown).
    */
   public R download(I resourceEntry) throws IOException {
+    final CompletableFuture<R> result = downloadAsync(resourceEntry);
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the request to complete.", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * This method resolves a resource link asynchronously. Note: this method is not meant to be
+   * overridden/extended by subclasses.
+   *
+   * @param resourceEntry The entry (resource link) to resolve.
+   * @return A future for the resulting/downloaded object. The future completes exceptionally with
+   * an {@link IOException} in case a connection or other IO problem occurred (including an HTTP
+   * status other than 2xx) or when the request exceeded the time limit. Cancelling the future
+   * aborts the request.
+   */
+  public CompletableFuture<R> downloadAsync(I resourceEntry) {
 
     // Set up the connection.
     final URI resourceUri = URI.create(getResourceUrl(resourceEntry));
-
-    BodyHandler<InputStream> handler = BodyHandlers.ofInputStream();
-    CancelableBodyWrapper<InputStream> bodyWrapper = new CancelableBodyWrapper<>(handler);
-
-    httpResponse = makeHttpRequest(resourceUri, bodyWrapper);
+    final CompletableFuture<R> result = new CompletableFuture<>();
+    final AtomicReference<CancelableBodyWrapper<?>> currentBody = new AtomicReference<>();
 
     // Set up the abort trigger
-    final TimerTask abortTask = new TimerTask() {
-      @Override
-      public void run() {
+    final ScheduledFuture<?> abortTrigger = abortScheduler.schedule(() -> {
+      if (result.completeExceptionally(
+          new IOException("The request was aborted: it exceeded the time limit."))) {
         LOGGER.info("Aborting request due to time limit: {}.", resourceUri.getPath());
-        bodyWrapper.cancel();
-        if (httpResponse.body() != null) {
-          try {
-            httpResponse.body().close();
-          } catch (IOException e) {
-            LOGGER.warn(
-                    "Something went wrong while trying to close the input stream after cancelling the http request.",
-                    e);
-          }
-        }
       }
-    };
-    final Timer timer = new Timer(true);
-    timer.schedule(abortTask, requestTimeout);
+    }, requestTimeout, TimeUnit.MILLISECONDS);
 
-    final int statusCode;
+    // When done, cancel the abort trigger and, in case of failure, the transfer of the content.
+    result.whenComplete((value, exception) -> {
+      abortTrigger.cancel(false);
+      if (exception != null) {
+        Optional.ofNullable(currentBody.get()).ifPresent(CancelableBodyWrapper::cancel);
+      }
+    });
+
+    // Send the request (following redirects) and create the result when the content is in.
+    sendRequest(resourceEntry, resourceUri, maxNumberOfRedirects, result, currentBody)
+        .thenApplyAsync(response -> createResult(response.body()), resultExecutor)
+        .whenComplete((value, exception) -> {
+          if (exception != null) {
+            result.completeExceptionally(unwrap(exception));
+          } else if (!result.complete(value)) {
+            // The request was aborted or cancelled in the meantime: the result is not used.
+            closeUnusedResult(value);
+          }
+        });
+    return result;
+  }
 
-    if (httpResponse != null) {
-      statusCode = httpResponse.statusCode();
-    } else {
-      throw new IOException("A problem occurred when sending the request");
-    }
+  private CompletableFuture<HttpResponse<ResultCreator<R>>> sendRequest(I resourceEntry, URI uri,
+      int redirectsLeft, CompletableFuture<R> result,
+      AtomicReference<CancelableBodyWrapper<?>> currentBody) {
 
-    final URI actualUri;
+    // Don't start a new request if we are already done.
+    if (result.isDone()) {
+      return CompletableFuture.failedFuture(new IOException("The request was aborted."));
+    }
 
-    // Do first check redirection and analysis
-    if (Family.familyOf(statusCode) == Family.REDIRECTION) {
-      final String redirectUris = httpResponse.headers().firstValue(HttpHeaders.LOCATION)
-          .filter(StringUtils::isNotBlank)
-          .orElseThrow(() -> new IOException("There was problems retrieving the Location value"));
-      httpResponse = performRedirect(statusCode, resourceUri.resolve(redirectUris),
-          maxNumberOfRedirects, bodyWrapper);
+    // Create the request. Note that if we are aborted at this point, the body is cancelled anyway.
+    final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+        .timeout(Duration.ofMillis(responseTimeout))
+        .uri(uri);
+    configureRequest(resourceEntry, requestBuilder);
+    final HttpRequest httpRequest = requestBuilder.build();
+    final CancelableBodyWrapper<ResultCreator<R>> bodyWrapper = new CancelableBodyWrapper<>(
+        responseInfo -> createBodySubscriber(resourceEntry, uri, responseInfo));
+    currentBody.set(bodyWrapper);
+    if (result.isDone()) {
+      bodyWrapper.cancel();
+    }
 
-      actualUri = httpResponse.uri();
-      if (actualUri == null) {
-        throw new IOException("There was some trouble retrieving the uri");
+    // Execute the request and follow the redirect if needed.
+    final CompletableFuture<HttpResponse<ResultCreator<R>>> pendingResponse;
+    try {
+      pendingResponse = httpClient.sendAsync(httpRequest, bodyWrapper);
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.failedFuture(new IOException("Could not send the request.", e));
+    }
+    return pendingResponse.thenCompose(response -> {
+      if (Family.familyOf(response.statusCode()) != Family.REDIRECTION
+          || Status.fromStatusCode(response.statusCode()) == Status.NOT_MODIFIED) {
+        return CompletableFuture.completedFuture(response);
       }
-
-    } else if (Status.fromStatusCode(statusCode) != Status.OK) {
-      throw new IOException(
-          String.format("Download failed of resource %s. Status code %s", resourceUri, statusCode));
-    } else {
-      actualUri = httpResponse.uri();
-
-      if (actualUri == null) {
-        throw new IOException("There was some trouble retrieving the uri");
+      if (redirectsLeft <= 0) {
+        throw new CompletionException(
+            new IOException("Could not retrieve the entity: too many redirects."));
       }
+      final URI location = response.headers().firstValue(HttpHeaders.LOCATION)
+          .filter(StringUtils::isNotBlank).map(uri::resolve)
+          .orElseThrow(() -> new CompletionException(
+              new IOException("There was problems retrieving the Location value")));
+      return sendRequest(resourceEntry, location, redirectsLeft - 1, result, currentBody);
+    });
+  }
+
+  private BodySubscriber<ResultCreator<R>> createBodySubscriber(I resourceEntry, URI uri,
+      ResponseInfo responseInfo) {
+
+    // In case of redirection or failure, we don't need the content.
+    final int statusCode = responseInfo.statusCode();
+    final Status status = Status.fromStatusCode(statusCode);
+    if (Family.familyOf(statusCode) == Family.REDIRECTION && status != Status.NOT_MODIFIED) {
+      return ContentHandling.<R>withoutContent(null).createSubscriber(resultExecutor);
+    } else if (status != Status.OK && status != Status.PARTIAL_CONTENT
+        && status != Status.NOT_MODIFIED) {
+      return ContentHandling.<R>withoutContent(() -> {
+        throw new HttpStatusException(
+            String.format("Download failed of resource %s. Status code %s", uri, statusCode),
+            statusCode);
+      }).createSubscriber(resultExecutor);
     }
 
     // Obtain header information.
-    final String mimeType = httpResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+    final String mimeType = responseInfo.headers().firstValue(HttpHeaders.CONTENT_TYPE)
         .filter(StringUtils::isNotBlank)
         .orElse(null);
-    final long fileSize = httpResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH)
+    final long fileSize = responseInfo.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH)
         .orElse(0);
 
-    // Process the result.
-    final ContentRetriever content = httpResponse.body() == null ?
-        ContentRetriever.forEmptyContent() : httpResponse::body;
-    final R result;
+    // Let the subclass decide what to do with the content.
     try {
-      result = createResult(resourceEntry, actualUri, mimeType,
-          fileSize <= 0 ? null : fileSize, content);
+      return handleContent(resourceEntry, uri, mimeType, fileSize <= 0 ? null : fileSize,
+          responseInfo).createSubscriber(resultExecutor);
     } catch (IOException | RuntimeException e) {
-      if (bodyWrapper.isCancelled()) {
-        throw new IOException("The request was aborted: it exceeded the time limit.");
-      } else {
+      return ContentHandling.<R>withoutContent(() -> {
         throw e;
-      }
+      }).createSubscriber(resultExecutor);
     }
-
-    // If aborted (and createResult did not throw an exception) throw exception anyway.
-    if (bodyWrapper.isCancelled()) {
-      throw new IOException("The request was aborted: it exceeded the time limit.");
-    }
-
-    // Cancel abort trigger
-    timer.cancel();
-    abortTask.cancel();
-
-    return result;
   }
 
-  private HttpResponse<InputStream> performRedirect(int statusCode, URI location, int redirectsLeft,
-      CancelableBodyWrapper<InputStream> bodyWrapper)
-      throws IOException {
-
-    HttpResponse<InputStream> response = null;
-
-    while (Status.Family.familyOf(statusCode) == Family.REDIRECTION) {
-      if (redirectsLeft > 0 && location != null) {
-        response = makeHttpRequest(location, bodyWrapper);
-
-        if (response != null) {
-          statusCode = response.statusCode();
-          location = response.headers().firstValue(HttpHeaders.LOCATION).map(location::resolve)
-              .orElse(location);
-        } else {
-          statusCode = 0;
-          location = null;
-        }
-
-        redirectsLeft--;
-
-
-      } else {
-        throw new IOException("Could not retrieve the entity: too many redirects.");
-      }
+  private static <R> R createResult(ResultCreator<R> resultCreator) {
+    try {
+      return resultCreator.createResult();
+    } catch (IOException e) {
+      throw new CompletionException(e);
     }
+  }
 
-    if (response != null) {
-      return response;
-    } else {
-      throw new IOException("There was trouble retrieving the response from the redirect request");
+  private static Throwable unwrap(Throwable exception) {
+    Throwable result = exception;
+    while (result instanceof CompletionException && result.getCause() != null) {
+      result = result.getCause();
     }
-
+    return result;
   }
 
-  private HttpResponse<InputStream> makeHttpRequest(URI uri,
-      CancelableBodyWrapper<InputStream> bodyWrapper) {
-
-    HttpResponse<InputStream> response = null;
-
-    HttpRequest httpRequest = HttpRequest.newBuilder()
-        .GET()
-        .timeout(Duration.ofMillis(responseTimeout))
-        .uri(uri)
-        .build();
-
-    // Execute the request.
-    try {
-      response = httpClient.send(httpRequest, bodyWrapper);
-    } catch (InterruptedException interruptedException) {
-      LOGGER.info("The thread was interrupted");
-      Thread.currentThread().interrupt();
-    } catch (IOException e) {
-      LOGGER.info("A problem occurred while sending a request");
+  private static void closeUnusedResult(Object result) {
+    if (result instanceof Closeable) {
+      try {
+        ((Closeable) result).close();
+      } catch (IOException e) {
+        LOGGER.warn("Something went wrong while trying to close an unused result.", e);
+      }
     }
-
-    return response;
   }
 
   /**
@@ -243,8 +314,23 @@ abstract class AbstractHttpClient<I, R> implements Closeable {
   protected abstract String getResourceUrl(I resourceEntry);
 
   /**
-   * This method creates the resulting object from the downloaded data. Subclasses must implement
-   * this method.
+   * This method configures the request that is sent for the given resource entry (and for every
+   * redirect that is followed). Subclasses can override this method to change the request method or
+   * to add headers. The default implementation sends a plain GET request. Note: a partial content
+   * status (206) is accepted as a successful response, so that subclasses can request a range.
+   *
+   * @param resourceEntry The resource for which the request is sent.
+   * @param requestBuilder The builder of the request, with the URI and timeout already set.
+   */
+  protected void configureRequest(I resourceEntry, HttpRequest.Builder requestBuilder) {
+    requestBuilder.GET();
+  }
+
+  /**
+   * This method decides how to handle the content of a response, and how to create the resulting
+   * object from it. Subclasses must implement this method. It is called as soon as the response
+   * headers are received (so before the content is transferred) from a thread of the HTTP client:
+   * it should therefore not block.
    *
    * @param resourceEntry The resource for which the request was sent.
    * @param actualUri The actual URI where the resource was found (could be different from the
@@ -253,41 +339,435 @@ abstract class AbstractHttpClient<I, R> implements Closeable {
    * mime type was provided.
    * @param fileSize The file size of the resulting object, as returned by the response. Is null if
    * no file size was provided.
-   * @param contentRetriever Object that allows access to the resulting data. Note that if this
-   * object is not used, the data is not transferred (or the transfer is cancelled). Note that this
-   * stream cannot be used after this method returns, as the connection will be closed immediately.
-   * Also, the stream could be closed at any time (e.g. when the request times out), at which point
-   * an exception should be thrown.
-   * @return The resulting object.
+   * @return The way the content is to be handled.
    * @throws IOException In case a connection or other IO problem occurred.
    */
-  protected abstract R createResult(I resourceEntry, URI actualUri, String mimeType, Long fileSize,
-      ContentRetriever contentRetriever) throws IOException;
+  protected abstract ContentHandling<R> handleContent(I resourceEntry, URI actualUri,
+      String mimeType, Long fileSize) throws IOException;
+
+  /**
+   * This method decides how to handle the content of a response, given the full response
+   * information. Subclasses can override this method if they need more information than what is
+   * provided to {@link #handleContent(Object, URI, String, Long)}. This is also the only method
+   * that will be called for a not modified status (304), which subclasses can only receive if they
+   * send a conditional request (see {@link #configureRequest(Object, HttpRequest.Builder)}). The
+   * default implementation rejects a not modified status and otherwise delegates to {@link
+   * #handleContent(Object, URI, String, Long)}.
+   *
+   * @param resourceEntry The resource for which the request was sent.
+   * @param actualUri The actual URI where the resource was found (could be different from the
+   * resource link after redirections).
+   * @param mimeType The type of the resulting object, as returned by the response. Is null if no
+   * mime type was provided.
+   * @param fileSize The file size of the resulting object, as returned by the response. Is null if
+   * no file size was provided.
+   * @param responseInfo The status code and headers of the response.
+   * @return The way the content is to be handled.
+   * @throws IOException In case a connection or other IO problem occurred.
+   */
+  protected ContentHandling<R> handleContent(I resourceEntry, URI actualUri, String mimeType,
+      Long fileSize, ResponseInfo responseInfo) throws IOException {
+    if (Status.fromStatusCode(responseInfo.statusCode()) == Status.NOT_MODIFIED) {
+      throw new IOException(String.format("Download failed of resource %s. Status code %s",
+          actualUri, responseInfo.statusCode()));
+    }
+    return handleContent(resourceEntry, actualUri, mimeType, fileSize);
+  }
 
   @Override
   public void close() throws IOException {
-    connectionCleaningSchedule.shutdown();
+    abortScheduler.shutdown();
+    resultExecutor.shutdown();
+  }
+
+  /**
+   * Objects of this type create the result of a request once the content has been handled.
+   *
+   * @param <R> The type of the result.
+   */
+  @FunctionalInterface
+  protected interface ResultCreator<R> {
+
+    /**
+     * @return The result.
+     * @throws IOException In case a connection or other IO problem occurred.
+     */
+    R createResult() throws IOException;
+  }
+
+  /**
+   * Objects of this type create the result of a request from the content in memory.
+   *
+   * @param <R> The type of the result.
+   */
+  @FunctionalInterface
+  protected interface InMemoryResultCreator<R> {
+
+    /**
+     * @param content The content of the response.
+     * @return The result.
+     * @throws IOException In case a connection or other IO problem occurred.
+     */
+    R createResult(byte[] content) throws IOException;
   }
 
   /**
-   * Objects of this type can supply an input stream for the result content of a request. If (and
-   * ONLY if) this object is used to obtain an input stream, the caller must also close that
-   * stream.
+   * Objects of this type decide, based on the first part of the content, whether the rest of the
+   * content is needed. They are not called from a thread of the HTTP client, so they may block.
    */
   @FunctionalInterface
-  protected interface ContentRetriever {
+  protected interface PrefixHandler {
 
     /**
-     * @return An input stream for the result content.
+     * @param prefix The first part of the content. This is all the content if the content is
+     * shorter than the requested prefix length.
+     * @return The file to which the complete content is to be written, or null if the content is
+     * not needed.
      * @throws IOException In case a connection or other IO problem occurred.
      */
-    InputStream getContent() throws IOException;
+    Path handlePrefix(byte[] prefix) throws IOException;
+  }
+
+  /**
+   * This class describes how the content of a response is to be handled. Instances can be obtained
+   * using the static methods.
+   *
+   * @param <R> The type of the result.
+   */
+  protected static final class ContentHandling<R> {
+
+    private final Function<Executor, BodySubscriber<ResultCreator<R>>> subscriberFactory;
+
+    private ContentHandling(BodySubscriber<ResultCreator<R>> subscriber) {
+      this(executor -> subscriber);
+    }
+
+    private ContentHandling(
+        Function<Executor, BodySubscriber<ResultCreator<R>>> subscriberFactory) {
+      this.subscriberFactory = subscriberFactory;
+    }
+
+    private BodySubscriber<ResultCreator<R>> createSubscriber(Executor executor) {
+      return subscriberFactory.apply(executor);
+    }
+
+    /**
+     * The content is not transferred: the connection is closed right away.
+     *
+     * @param resultCreator The creator of the result.
+     * @param <R> The type of the result.
+     * @return The content handling.
+     */
+    static <R> ContentHandling<R> withoutContent(ResultCreator<R> resultCreator) {
+      return new ContentHandling<>(new ContentlessSubscriber<>(resultCreator));
+    }
+
+    /**
+     * The content is transferred, but discarded as it arrives. This allows the connection to be
+     * reused for subsequent requests, so it is only suitable for small content.
+     *
+     * @param resultCreator The creator of the result.
+     * @param <R> The type of the result.
+     * @return The content handling.
+     */
+    static <R> ContentHandling<R> discarding(ResultCreator<R> resultCreator) {
+      return new ContentHandling<>(BodySubscribers.replacing(resultCreator));
+    }
+
+    /**
+     * The content is written to the given file as it arrives, without blocking a thread while
+     * waiting for the content. Only after the transfer is complete, the result is created.
+     *
+     * @param file The file to write the content to. It is assumed to be empty.
+     * @param resultCreator The creator of the result.
+     * @param cleanup The action to perform when the transfer fails (for instance to remove the
+     * file). Can be null.
+     * @param <R> The type of the result.
+     * @return The content handling.
+     */
+    static <R> ContentHandling<R> toFile(Path file, ResultCreator<R> resultCreator,
+        Closeable cleanup) {
+      return withCleanup(
+          BodySubscribers.mapping(BodySubscribers.ofFile(file), path -> resultCreator), cleanup);
+    }
+
+    private static <R> ContentHandling<R> withCleanup(
+        BodySubscriber<ResultCreator<R>> subscriber, Closeable cleanup) {
+      if (cleanup != null) {
+        subscriber.getBody().whenComplete((creator, exception) -> {
+          if (exception != null) {
+            closeUnusedResult(cleanup);
+          }
+        });
+      }
+      return new ContentHandling<>(subscriber);
+    }
+
+    /**
+     * The content is collected in memory as it arrives, without blocking a thread while waiting
+     * for the content. Only after the transfer is complete, the result is created from the
+     * content. This is only suitable for small content.
+     *
+     * @param resultCreator The creator of the result.
+     * @param cleanup The action to perform when the transfer fails. Can be null.
+     * @param <R> The type of the result.
+     * @return The content handling.
+     */
+    static <R> ContentHandling<R> toMemory(InMemoryResultCreator<R> resultCreator,
+        Closeable cleanup) {
+      return withCleanup(BodySubscribers.mapping(BodySubscribers.ofByteArray(),
+          content -> () -> resultCreator.createResult(content)), cleanup);
+    }
 
     /**
-     * @return A content retriever for empty content.
+     * The first part of the content (the prefix) is collected and offered to the prefix handler,
+     * which decides whether the content is needed. If so, the complete content (including the
+     * prefix) is written to the file returned by the prefix handler as it arrives, without blocking
+     * a thread while waiting for the content. Otherwise, the transfer is stopped right away. Only
+     * after that, the result is created. This allows the content to be inspected and, if needed,
+     * downloaded in one request. The prefix handler is not called from a thread of the HTTP client,
+     * so it may block (e.g. to inspect the prefix or to create the file). The transfer is paused
+     * while it runs.
+     *
+     * @param prefixLength The length of the prefix.
+     * @param prefixHandler The handler of the prefix.
+     * @param resultCreator The creator of the result.
+     * @param cleanup The action to perform when the transfer fails (for instance to remove the
+     * file). Can be null.
+     * @param <R> The type of the result.
+     * @return The content handling.
      */
-    static ContentRetriever forEmptyContent() {
-      return () -> new ByteArrayInputStream(new byte[0]);
+    static <R> ContentHandling<R> withPrefix(int prefixLength, PrefixHandler prefixHandler,
+        ResultCreator<R> resultCreator, Closeable cleanup) {
+      return new ContentHandling<R>(executor -> new PrefixSubscriber<>(prefixLength,
+          prefixHandler, resultCreator, cleanup, executor));
+    }
+
+    /**
+     * Only the first part of the content (the prefix) is collected in memory as it arrives,
+     * without blocking a thread while waiting for the content. The transfer is stopped as soon as
+     * the prefix is in, after which the result is created from the prefix.
+     *
+     * @param prefixLength The length of the prefix.
+     * @param resultCreator The creator of the result. It receives the prefix, which can be longer
+     * than the requested prefix length, or shorter if that is all the content there is.
+     * @param <R> The type of the result.
+     * @return The content handling.
+     */
+    static <R> ContentHandling<R> prefixOnly(int prefixLength,
+        InMemoryResultCreator<R> resultCreator) {
+      final AtomicReference<byte[]> content = new AtomicReference<>();
+      return withPrefix(prefixLength, prefix -> {
+        content.set(prefix);
+        return null;
+      }, () -> resultCreator.createResult(content.get()), null);
+    }
+  }
+
+  /**
+   * A body subscriber that cancels the transfer of the content as soon as it is subscribed.
+   *
+   * @param <T> The type of the body.
+   */
+  private static final class ContentlessSubscriber<T> implements BodySubscriber<T> {
+
+    private final T body;
+
+    ContentlessSubscriber(T body) {
+      this.body = body;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+      return CompletableFuture.completedStage(body);
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      subscription.cancel();
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+      // Nothing to do: we don't need the content.
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      // Nothing to do: we don't need the content.
+    }
+
+    @Override
+    public void onComplete() {
+      // Nothing to do: we don't need the content.
+    }
+  }
+
+  /**
+   * A body subscriber that collects the first part of the content, and then (depending on the
+   * prefix handler) either cancels the transfer or writes the complete content to a file. The
+   * prefix handler is called using the given executor: no more content is requested until it has
+   * finished.
+   *
+   * @param <R> The type of the result.
+   */
+  private static final class PrefixSubscriber<R> implements BodySubscriber<ResultCreator<R>> {
+
+    private final int prefixLength;
+    private final PrefixHandler prefixHandler;
+    private final ResultCreator<R> resultCreator;
+    private final Closeable cleanup;
+    private final Executor executor;
+    private final CompletableFuture<ResultCreator<R>> body = new CompletableFuture<>();
+
+    private final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+    private Subscription subscription;
+    private FileChannel file;
+    private boolean isPrefixHandlingStarted;
+    private boolean isPrefixHandled;
+    private boolean isTransferComplete;
+
+    PrefixSubscriber(int prefixLength, PrefixHandler prefixHandler,
+        ResultCreator<R> resultCreator, Closeable cleanup, Executor executor) {
+      this.prefixLength = prefixLength;
+      this.prefixHandler = prefixHandler;
+      this.resultCreator = resultCreator;
+      this.cleanup = cleanup;
+      this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<ResultCreator<R>> getBody() {
+      return body;
+    }
+
+    @Override
+    public synchronized void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> item) {
+      if (body.isDone()) {
+        return;
+      }
+      try {
+        if (isPrefixHandled) {
+          writeToFile(item);
+          subscription.request(1);
+        } else {
+          for (ByteBuffer buffer : item) {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            prefix.write(bytes, 0, bytes.length);
+          }
+          if (prefix.size() >= prefixLength) {
+            startPrefixHandling();
+          } else {
+            subscription.request(1);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        subscription.cancel();
+        fail(e);
+      }
+    }
+
+    private void startPrefixHandling() {
+      isPrefixHandlingStarted = true;
+      final byte[] prefixBytes = prefix.toByteArray();
+      CompletableFuture.supplyAsync(() -> {
+        try {
+          return Optional.ofNullable(prefixHandler.handlePrefix(prefixBytes));
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }, executor).whenComplete((path, exception) -> finishPrefixHandling(prefixBytes,
+          path == null ? null : path.orElse(null), exception));
+    }
+
+    private synchronized void finishPrefixHandling(byte[] prefixBytes, Path path,
+        Throwable exception) {
+      if (body.isDone()) {
+        return;
+      }
+      isPrefixHandled = true;
+      try {
+        if (exception != null) {
+          subscription.cancel();
+          fail(unwrap(exception));
+        } else if (path == null) {
+          subscription.cancel();
+          body.complete(resultCreator);
+        } else {
+          file = FileChannel.open(path, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+          writeToFile(List.of(ByteBuffer.wrap(prefixBytes)));
+          if (isTransferComplete) {
+            completeTransfer();
+          } else {
+            subscription.request(1);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        subscription.cancel();
+        fail(e);
+      }
+    }
+
+    private void writeToFile(List<ByteBuffer> item) throws IOException {
+      for (ByteBuffer buffer : item) {
+        while (buffer.hasRemaining()) {
+          file.write(buffer);
+        }
+      }
+    }
+
+    private void completeTransfer() throws IOException {
+      if (file != null) {
+        file.close();
+      }
+      body.complete(resultCreator);
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+      if (!body.isDone()) {
+        fail(throwable);
+      }
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      if (body.isDone()) {
+        return;
+      }
+      isTransferComplete = true;
+      try {
+        if (!isPrefixHandlingStarted) {
+          startPrefixHandling();
+        } else if (isPrefixHandled) {
+          completeTransfer();
+        }
+        // Otherwise, the prefix handling will complete the transfer when it is done.
+      } catch (IOException | RuntimeException e) {
+        fail(e);
+      }
+    }
+
+    private void fail(Throwable throwable) {
+      if (file != null) {
+        try {
+          file.close();
+        } catch (IOException e) {
+          LOGGER.warn("Could not close the content file.", e);
+        }
+      }
+      if (cleanup != null) {
+        closeUnusedResult(cleanup);
+      }
+      body.completeExceptionally(throwable);
     }
   }
 }
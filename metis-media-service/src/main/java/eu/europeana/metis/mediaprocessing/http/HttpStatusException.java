@@ -0,0 +1,33 @@
+package eu.europeana.metis.mediaprocessing.http;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown by the HTTP clients when the server responded with a status code that
+ * indicates that the request failed (i.e. a status other than 2xx or a redirect).
+ */
+public class HttpStatusException extends IOException {
+
+  /** This class implements {@link java.io.Serializable}. **/
+  private static final long serialVersionUID = -3176414390718412506L;
+
+  private final int statusCode;
+
+  /**
+   * Constructor.
+   *
+   * @param message The exception message.
+   * @param statusCode The status code that the server responded with.
+   */
+  public HttpStatusException(String message, int statusCode) {
+    super(message);
+    this.statusCode = statusCode;
+  }
+
+  /**
+   * @return The status code that the server responded with.
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+}
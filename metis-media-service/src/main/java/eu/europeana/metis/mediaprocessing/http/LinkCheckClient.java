@@ -1,11 +1,14 @@
 package eu.europeana.metis.mediaprocessing.http;
 
 import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
 
 /**
  * An {@link AbstractHttpClient} that checks whether a given resource link actually points to
  * content. It doesn't download the content, but just checks whether the link resolves. It expects
- * the URL itself as resource entry input.
+ * the URL itself as resource entry input. Depending on the {@link CheckMethod}, it sends a HEAD
+ * request or a GET request for only the first few bytes of the content.
  */
 public class LinkCheckClient extends AbstractHttpClient<String, Void> {
 
@@ -13,13 +16,35 @@ public class LinkCheckClient extends AbstractHttpClient<String, Void> {
   private static final int RESPONSE_TIMEOUT = 5_000;
   private static final int REQUEST_TIMEOUT = 20_000;
 
+  private static final int RANGE_LENGTH = 16;
+
+  private final CheckMethod checkMethod;
+
+  /**
+   * The way in which links are checked.
+   */
+  public enum CheckMethod {
+
+    /** Send a HEAD request: no content is sent by the server. **/
+    HEAD,
+
+    /**
+     * Send a GET request for the first few bytes of the content. This is for servers that don't
+     * support HEAD requests properly. Servers that ignore the range will still send the full
+     * content: in that case the connection is closed as soon as the response is received.
+     **/
+    RANGED_GET
+  }
+
   /**
    * Constructor.
    *
    * @param maxRedirectCount The maximum number of times we follow a redirect status (status 3xx).
+   * @param checkMethod The way in which links are checked.
    */
-  public LinkCheckClient(int maxRedirectCount) {
+  public LinkCheckClient(int maxRedirectCount, CheckMethod checkMethod) {
     super(maxRedirectCount, CONNECT_TIMEOUT, RESPONSE_TIMEOUT, REQUEST_TIMEOUT);
+    this.checkMethod = checkMethod;
   }
 
   @Override
@@ -28,8 +53,22 @@ public class LinkCheckClient extends AbstractHttpClient<String, Void> {
   }
 
   @Override
-  protected Void createResult(String resourceEntry, URI actualUri, String mimeType, Long fileSize,
-      ContentRetriever contentRetriever) {
-    return null;
+  protected void configureRequest(String resourceEntry, HttpRequest.Builder requestBuilder) {
+    if (checkMethod == CheckMethod.HEAD) {
+      requestBuilder.method("HEAD", BodyPublishers.noBody());
+    } else {
+      requestBuilder.GET().header("Range", "bytes=0-" + (RANGE_LENGTH - 1));
+    }
+  }
+
+  @Override
+  protected ContentHandling<Void> handleContent(String resourceEntry, URI actualUri,
+      String mimeType, Long fileSize) {
+
+    // HEAD responses have no content. If the server honoured the range, we read the few bytes. In
+    // both cases this allows the connection to be reused.
+    final boolean isSmallContent = fileSize != null && fileSize <= RANGE_LENGTH;
+    return checkMethod == CheckMethod.HEAD || isSmallContent
+        ? ContentHandling.discarding(() -> null) : ContentHandling.withoutContent(() -> null);
   }
 }
@@ -1,5 +1,6 @@
 package eu.europeana.metis.mediaprocessing.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -20,6 +21,9 @@ import org.apache.tika.metadata.Metadata;
  */
 public class MimeTypeDetectHttpClient extends AbstractHttpClient<URL, String> {
 
+  // The number of bytes that Tika needs to detect the mime type.
+  static final int MIME_TYPE_DETECTION_LENGTH = 64 * 1024;
+
   private final Tika tika = new Tika();
 
   /**
@@ -39,26 +43,43 @@ public class MimeTypeDetectHttpClient extends AbstractHttpClient<URL, String> {
   }
 
   @Override
-  protected String createResult(URL resourceEntry, URI actualUri, String mimeType, Long fileSize,
-          ContentRetriever contentRetriever) throws IOException {
-    try (final InputStream inputStream = contentRetriever.getContent()) {
-      final Metadata metadata = new Metadata();
-      final String resourceName = getResourceNameFromUrl(actualUri);
-      if (resourceName != null) {
-        metadata.set(Metadata.RESOURCE_NAME_KEY, resourceName);
-      }
-      if (mimeType != null) {
-        final int separatorIndex = mimeType.indexOf(';');
-        final String adjustedMimeType =
-                separatorIndex < 0 ? mimeType : mimeType.substring(0, separatorIndex);
-        metadata.set(Metadata.CONTENT_TYPE, adjustedMimeType);
-      }
-      if (fileSize != null) {
-        metadata.set(Metadata.CONTENT_LENGTH, fileSize.toString());
-      }
+  protected ContentHandling<String> handleContent(URL resourceEntry, URI actualUri,
+      String mimeType, Long fileSize) {
+
+    // Tika only needs the first part of the content: the rest is not transferred.
+    return ContentHandling.prefixOnly(MIME_TYPE_DETECTION_LENGTH,
+        prefix -> detectMimeType(tika, new ByteArrayInputStream(prefix), actualUri, mimeType,
+            fileSize));
+  }
 
-      return tika.detect(inputStream, metadata);
+  /**
+   * Determines the mime type of content obtained from a link, in the way this client does it.
+   *
+   * @param tika The tika instance to use.
+   * @param content The content (or the first part of it).
+   * @param actualUri The actual URI where the content was found.
+   * @param mimeType The mime type as returned by the response. Can be null.
+   * @param fileSize The file size as returned by the response. Can be null.
+   * @return The detected mime type.
+   * @throws IOException In case the content could not be read.
+   */
+  static String detectMimeType(Tika tika, InputStream content, URI actualUri, String mimeType,
+      Long fileSize) throws IOException {
+    final Metadata metadata = new Metadata();
+    final String resourceName = getResourceNameFromUrl(actualUri);
+    if (resourceName != null) {
+      metadata.set(Metadata.RESOURCE_NAME_KEY, resourceName);
+    }
+    if (mimeType != null) {
+      final int separatorIndex = mimeType.indexOf(';');
+      final String adjustedMimeType =
+              separatorIndex < 0 ? mimeType : mimeType.substring(0, separatorIndex);
+      metadata.set(Metadata.CONTENT_TYPE, adjustedMimeType);
+    }
+    if (fileSize != null) {
+      metadata.set(Metadata.CONTENT_LENGTH, fileSize.toString());
     }
+    return tika.detect(content, metadata);
   }
 
   private static String getResourceNameFromUrl(URI url) {
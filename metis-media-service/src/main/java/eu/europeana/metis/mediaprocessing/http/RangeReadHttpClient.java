@@ -0,0 +1,204 @@
+package eu.europeana.metis.mediaprocessing.http;
+
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.ByteRange;
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.RangeContent;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.util.Arrays;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * An {@link AbstractHttpClient} that reads a part (a byte range) of the content of a resource link.
+ * It expects a {@link ByteRange} as resource entry input. Servers that ignore the range request
+ * send the full content: in that case, only the start of the content is read (if that is what was
+ * requested) and the connection is closed as soon as the requested number of bytes is in. So no
+ * more than the requested number of bytes is ever kept.
+ */
+public class RangeReadHttpClient extends AbstractHttpClient<ByteRange, RangeContent> {
+
+  private static final String CONTENT_RANGE_HEADER = "Content-Range";
+  private static final String BYTES_UNIT = "bytes ";
+
+  /**
+   * Constructor.
+   *
+   * @param maxRedirectCount The maximum number of times we follow a redirect status (status 3xx).
+   * @param connectTimeout The connection timeout in milliseconds.
+   * @param responseTimeout The response timeout in milliseconds.
+   * @param requestTimeout The time after which the request will be aborted (if it hasn't finished
+   * by then). In milliseconds.
+   */
+  public RangeReadHttpClient(int maxRedirectCount, int connectTimeout, int responseTimeout,
+      int requestTimeout) {
+    super(maxRedirectCount, connectTimeout, responseTimeout, requestTimeout);
+  }
+
+  @Override
+  protected String getResourceUrl(ByteRange resourceEntry) {
+    return resourceEntry.getUrl();
+  }
+
+  @Override
+  protected void configureRequest(ByteRange resourceEntry, HttpRequest.Builder requestBuilder) {
+    requestBuilder.GET().header("Range", String.format("bytes=%d-%d", resourceEntry.getOffset(),
+        resourceEntry.getOffset() + resourceEntry.getLength() - 1));
+  }
+
+  @Override
+  protected ContentHandling<RangeContent> handleContent(ByteRange resourceEntry, URI actualUri,
+      String mimeType, Long fileSize, ResponseInfo responseInfo) throws IOException {
+
+    // If the server did not honour the range, we receive the full content.
+    if (Status.fromStatusCode(responseInfo.statusCode()) != Status.PARTIAL_CONTENT) {
+      return super.handleContent(resourceEntry, actualUri, mimeType, fileSize, responseInfo);
+    }
+
+    // Check that we received the range we asked for.
+    final String contentRange = responseInfo.headers().firstValue(CONTENT_RANGE_HEADER)
+        .orElseThrow(() -> new IOException("Partial content received without content range."));
+    final long[] parsedRange = parseContentRange(contentRange);
+    if (parsedRange[0] != resourceEntry.getOffset()) {
+      throw new IOException(String.format("Received range %s while requesting offset %d.",
+          contentRange, resourceEntry.getOffset()));
+    }
+    final Long totalSize = parsedRange[1] < 0 ? null : parsedRange[1];
+    return readContent(resourceEntry, actualUri, totalSize, true);
+  }
+
+  @Override
+  protected ContentHandling<RangeContent> handleContent(ByteRange resourceEntry, URI actualUri,
+      String mimeType, Long fileSize) throws IOException {
+
+    // This is the full content: we can only use it if we need the start of the content.
+    if (resourceEntry.getOffset() != 0) {
+      throw new IOException("The server does not support range requests: " + actualUri);
+    }
+    return readContent(resourceEntry, actualUri, fileSize, false);
+  }
+
+  private static ContentHandling<RangeContent> readContent(ByteRange resourceEntry,
+      URI actualUri, Long totalSize, boolean isPartial) {
+    return ContentHandling.prefixOnly(resourceEntry.getLength(), prefix -> new RangeContent(
+        actualUri, resourceEntry.getOffset(), prefix.length > resourceEntry.getLength()
+        ? Arrays.copyOf(prefix, resourceEntry.getLength()) : prefix, totalSize, isPartial));
+  }
+
+  /**
+   * Parses the value of a content range header (e.g. "bytes 0-1023/146515").
+   *
+   * @param contentRange The header value.
+   * @return An array with two elements: the offset of the range and the total size of the content
+   * (or -1 if the total size is unknown).
+   * @throws IOException In case the header value could not be parsed.
+   */
+  static long[] parseContentRange(String contentRange) throws IOException {
+    final int dashIndex = contentRange.indexOf('-');
+    final int slashIndex = contentRange.indexOf('/');
+    if (!contentRange.startsWith(BYTES_UNIT) || dashIndex < 0 || slashIndex < dashIndex) {
+      throw new IOException("Could not parse content range: " + contentRange);
+    }
+    try {
+      final long offset = Long.parseLong(contentRange.substring(BYTES_UNIT.length(), dashIndex)
+          .trim());
+      final String totalSize = contentRange.substring(slashIndex + 1).trim();
+      return new long[]{offset, "*".equals(totalSize) ? -1 : Long.parseLong(totalSize)};
+    } catch (NumberFormatException e) {
+      throw new IOException("Could not parse content range: " + contentRange, e);
+    }
+  }
+
+  /**
+   * A range of bytes in the content of a resource link.
+   */
+  public static final class ByteRange {
+
+    private final String url;
+    private final long offset;
+    private final int length;
+
+    /**
+     * Constructor.
+     *
+     * @param url The resource link.
+     * @param offset The offset of the range in the content.
+     * @param length The length of the range. Must be positive.
+     */
+    public ByteRange(String url, long offset, int length) {
+      this.url = url;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public int getLength() {
+      return length;
+    }
+  }
+
+  /**
+   * The content read for a {@link ByteRange}.
+   */
+  public static final class RangeContent {
+
+    private final URI actualUri;
+    private final long offset;
+    private final byte[] content;
+    private final Long totalSize;
+    private final boolean isPartial;
+
+    RangeContent(URI actualUri, long offset, byte[] content, Long totalSize, boolean isPartial) {
+      this.actualUri = actualUri;
+      this.offset = offset;
+      this.content = content;
+      this.totalSize = totalSize;
+      this.isPartial = isPartial;
+    }
+
+    /**
+     * @return The actual URI where the content was found (could be different from the resource
+     * link after redirections).
+     */
+    public URI getActualUri() {
+      return actualUri;
+    }
+
+    /**
+     * @return The offset of the content.
+     */
+    public long getOffset() {
+      return offset;
+    }
+
+    /**
+     * @return The content. This is shorter than the requested length if the content ends before
+     * the end of the requested range.
+     */
+    public byte[] getContent() {
+      return content;
+    }
+
+    /**
+     * @return The total size of the content of the resource link, or null if it is not known.
+     */
+    public Long getTotalSize() {
+      return totalSize;
+    }
+
+    /**
+     * @return Whether the server honoured the range request. If not, the server sent the full
+     * content (of which only the start was read), and will likely do the same for other ranges.
+     */
+    public boolean isPartial() {
+      return isPartial;
+    }
+  }
+}
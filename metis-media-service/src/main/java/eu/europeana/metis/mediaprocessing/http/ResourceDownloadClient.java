@@ -1,22 +1,34 @@
 package eu.europeana.metis.mediaprocessing.http;
 
+import eu.europeana.metis.mediaprocessing.model.ContentStorage;
 import eu.europeana.metis.mediaprocessing.model.RdfResourceEntry;
 import eu.europeana.metis.mediaprocessing.model.Resource;
 import eu.europeana.metis.mediaprocessing.model.ResourceImpl;
+import eu.europeana.metis.mediaprocessing.model.ResourceValidators;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.file.Path;
+import java.util.Optional;
 import java.util.function.Predicate;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.Status;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.apache.tika.Tika;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * An {@link AbstractHttpClient} that obtains the actual content of a resource link.
+ * An {@link AbstractHttpClient} that obtains the actual content of a resource link. The input
+ * consists of the resource entry, the download mode and the validators of the version of the
+ * resource that is already known (if any, otherwise null).
  */
-public class ResourceDownloadClient extends
-    AbstractHttpClient<Pair<RdfResourceEntry, ResourceDownloadClient.DownloadMode>, Resource> {
+public class ResourceDownloadClient extends AbstractHttpClient<Triple<RdfResourceEntry,
+    ResourceDownloadClient.DownloadMode, ResourceValidators>, Resource> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ResourceDownloadClient.class);
 
@@ -42,6 +54,8 @@ public class ResourceDownloadClient extends
   }
 
   private final Predicate<String> shouldDownloadMimetype;
+  private final ContentStorage contentStorage;
+  private final Tika tika = new Tika();
 
   /**
    * Constructor.
@@ -56,8 +70,29 @@ public class ResourceDownloadClient extends
    */
   public ResourceDownloadClient(int maxRedirectCount, Predicate<String> shouldDownloadMimetype,
       int connectTimeout, int responseTimeout, int downloadTimeout) {
+    this(maxRedirectCount, shouldDownloadMimetype, connectTimeout, responseTimeout,
+        downloadTimeout, ContentStorage.DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxRedirectCount The maximum number of times we follow a redirect status (status 3xx).
+   * @param shouldDownloadMimetype A predicate that, based on the mime type, can decide whether or
+   * not to proceed with the download. This will be used for a download with {@link DownloadMode#MIME_TYPE}.
+   * @param connectTimeout The connection timeout in milliseconds.
+   * @param responseTimeout The response timeout in milliseconds.
+   * @param downloadTimeout The time after which the download will be aborted (if it hasn't finished
+   * by then). In milliseconds.
+   * @param contentStorage The storage that determines where the content of the downloaded resources
+   * is kept.
+   */
+  public ResourceDownloadClient(int maxRedirectCount, Predicate<String> shouldDownloadMimetype,
+      int connectTimeout, int responseTimeout, int downloadTimeout,
+      ContentStorage contentStorage) {
     super(maxRedirectCount, connectTimeout, responseTimeout, downloadTimeout);
     this.shouldDownloadMimetype = shouldDownloadMimetype;
+    this.contentStorage = contentStorage;
   }
 
   /**
@@ -70,7 +105,7 @@ public class ResourceDownloadClient extends
    *         other than 2xx).
    */
   public Resource downloadWithContent(RdfResourceEntry resourceEntry) throws IOException {
-    return download(new ImmutablePair<>(resourceEntry, DownloadMode.ALWAYS));
+    return download(new ImmutableTriple<>(resourceEntry, DownloadMode.ALWAYS, null));
   }
 
   /**
@@ -83,7 +118,7 @@ public class ResourceDownloadClient extends
    *         other than 2xx).
    */
   public Resource downloadWithoutContent(RdfResourceEntry resourceEntry) throws IOException {
-    return download(new ImmutablePair<>(resourceEntry, DownloadMode.NEVER));
+    return download(new ImmutableTriple<>(resourceEntry, DownloadMode.NEVER, null));
   }
 
   /**
@@ -96,34 +131,120 @@ public class ResourceDownloadClient extends
    *         other than 2xx).
    */
   public Resource downloadBasedOnMimeType(RdfResourceEntry resourceEntry) throws IOException {
-    return download(new ImmutablePair<>(resourceEntry, DownloadMode.MIME_TYPE));
+    return download(new ImmutableTriple<>(resourceEntry, DownloadMode.MIME_TYPE, null));
+  }
+
+  /**
+   * Triggers a download with the given mode, unless the resource has not changed since it was last
+   * obtained. The request is sent as a conditional request. If the source server indicates that the
+   * resource has not changed (or if it sends the same validators), the content is not downloaded
+   * and the resulting resource is marked as not modified (see {@link Resource#isNotModified()}).
+   *
+   * @param resourceEntry The resource entry.
+   * @param downloadMode The download mode.
+   * @param knownValidators The validators of the version of the resource that was last obtained.
+   * @return The resulting/downloaded object.
+   * @throws IOException In case a connection or other IO problem occurred (including an HTTP status
+   *         other than 2xx or 304).
+   */
+  public Resource downloadIfModified(RdfResourceEntry resourceEntry, DownloadMode downloadMode,
+      ResourceValidators knownValidators) throws IOException {
+    return download(new ImmutableTriple<>(resourceEntry, downloadMode, knownValidators));
   }
 
   @Override
-  protected String getResourceUrl(Pair<RdfResourceEntry, DownloadMode> resourceEntry) {
+  protected String getResourceUrl(
+      Triple<RdfResourceEntry, DownloadMode, ResourceValidators> resourceEntry) {
     return resourceEntry.getLeft().getResourceUrl();
   }
 
   @Override
-  protected Resource createResult(Pair<RdfResourceEntry, DownloadMode> input, URI actualUri,
-      String mimeType, Long fileSize, ContentRetriever contentRetriever) throws IOException {
+  protected void configureRequest(
+      Triple<RdfResourceEntry, DownloadMode, ResourceValidators> resourceEntry,
+      HttpRequest.Builder requestBuilder) {
+    super.configureRequest(resourceEntry, requestBuilder);
+    final ResourceValidators knownValidators = resourceEntry.getRight();
+    if (knownValidators != null && knownValidators.getEntityTag() != null) {
+      requestBuilder.header(HttpHeaders.IF_NONE_MATCH, knownValidators.getEntityTag());
+    }
+    if (knownValidators != null && knownValidators.getLastModified() != null) {
+      requestBuilder.header(HttpHeaders.IF_MODIFIED_SINCE, knownValidators.getLastModified());
+    }
+  }
+
+  @Override
+  protected ContentHandling<Resource> handleContent(
+      Triple<RdfResourceEntry, DownloadMode, ResourceValidators> input, URI actualUri,
+      String mimeType, Long fileSize, ResponseInfo responseInfo) throws IOException {
+
+    // Obtain the validators and determine whether the resource was modified.
+    final ResourceValidators validators = getValidators(responseInfo, fileSize);
+    final ResourceValidators knownValidators = input.getRight();
+    final boolean notModified =
+        Status.fromStatusCode(responseInfo.statusCode()) == Status.NOT_MODIFIED
+            || (knownValidators != null && knownValidators.matches(validators));
+
+    // If it was not modified, we don't download it (we keep the known validators if needed).
+    if (notModified) {
+      LOGGER.debug("Resource not modified - choosing not to download resource: {}",
+          input.getLeft().getResourceUrl());
+      final Resource resource = new ResourceImpl(input.getLeft(), mimeType, fileSize, actualUri,
+          validators.canValidate() ? validators : knownValidators, true, contentStorage);
+      resource.markAsNoContent();
+      return ContentHandling.withoutContent(() -> resource);
+    }
+    return createContentHandling(input, actualUri, mimeType, fileSize, validators);
+  }
+
+  @Override
+  protected ContentHandling<Resource> handleContent(
+      Triple<RdfResourceEntry, DownloadMode, ResourceValidators> input, URI actualUri,
+      String mimeType, Long fileSize) throws IOException {
+    return createContentHandling(input, actualUri, mimeType, fileSize, ResourceValidators.NONE);
+  }
+
+  private static ResourceValidators getValidators(ResponseInfo responseInfo, Long fileSize) {
+    final Optional<String> entityTag = responseInfo.headers().firstValue(HttpHeaders.ETAG)
+        .filter(StringUtils::isNotBlank);
+    final Optional<String> lastModified = responseInfo.headers()
+        .firstValue(HttpHeaders.LAST_MODIFIED).filter(StringUtils::isNotBlank);
+    return new ResourceValidators(entityTag.orElse(null), lastModified.orElse(null), fileSize);
+  }
+
+  private ContentHandling<Resource> createContentHandling(
+      Triple<RdfResourceEntry, DownloadMode, ResourceValidators> input, URI actualUri,
+      String mimeType, Long fileSize, ResourceValidators validators) throws IOException {
 
     // Create resource
     final RdfResourceEntry resourceEntry = input.getLeft();
-    final Resource resource = new ResourceImpl(resourceEntry, mimeType, fileSize, actualUri);
+    final ResourceImpl resource = new ResourceImpl(resourceEntry, mimeType, fileSize, actualUri,
+        validators, false, contentStorage);
 
-    // In case we are expecting a file, we download it.
-    final boolean fullDownload = input.getRight() == DownloadMode.ALWAYS
-        || (input.getRight() == DownloadMode.MIME_TYPE && shouldDownloadMimetype.test(mimeType));
+    // In case we are expecting a file, we download it (directly into the resource's file).
+    // Otherwise, we detect the mime type from the first part of the content, so that no separate
+    // request is needed for that. If the detected mime type requires it, we download it after all.
+    final boolean fullDownload = input.getMiddle() == DownloadMode.ALWAYS
+        || (input.getMiddle() == DownloadMode.MIME_TYPE && shouldDownloadMimetype.test(mimeType));
+    final ContentHandling<Resource> result;
     try {
-      if (fullDownload) {
+      if (fullDownload && fileSize != null
+          && fileSize <= contentStorage.getInMemoryThreshold()) {
+        LOGGER.debug("Starting download of resource into memory: {}",
+            resourceEntry.getResourceUrl());
+        result = ContentHandling.toMemory(content -> {
+          resource.markAsWithContent(content);
+          return verifyDownload(resourceEntry.getResourceUrl(), resource);
+        }, resource);
+      } else if (fullDownload) {
         LOGGER.debug("Starting download of resource: {}", resourceEntry.getResourceUrl());
-        downloadResource(resourceEntry.getResourceUrl(), resource, contentRetriever);
-        LOGGER.debug("Finished download of resource: {}", resourceEntry.getResourceUrl());
+        result = ContentHandling.toFile(resource.createContentFile(),
+            () -> verifyDownload(resourceEntry.getResourceUrl(), resource), resource);
       } else {
-        LOGGER.debug("Download mode {} and media type {} - choosing not to download resource: {}",
-            input.getRight(), mimeType, resourceEntry.getResourceUrl());
         resource.markAsNoContent();
+        result = ContentHandling.withPrefix(MimeTypeDetectHttpClient.MIME_TYPE_DETECTION_LENGTH,
+            prefix -> handlePrefix(input.getMiddle(), resource, prefix),
+            () -> resource.hasContent() ? verifyDownload(resourceEntry.getResourceUrl(), resource)
+                : resource, resource);
       }
     } catch (IOException | RuntimeException e) {
       // Close the resource if a problem occurs.
@@ -131,17 +252,43 @@ public class ResourceDownloadClient extends
       throw e;
     }
 
-    // Done: return the resource.
-    return resource;
+    // Done: return the content handling.
+    return result;
   }
 
-  private static void downloadResource(String resourceUrl, Resource resource,
-      ContentRetriever contentRetriever) throws IOException {
-    try (final InputStream inputStream = contentRetriever.getContent()) {
-      resource.markAsWithContent(inputStream);
+  private Path handlePrefix(DownloadMode downloadMode, ResourceImpl resource, byte[] prefix)
+      throws IOException {
+    final String detectedMimeType = MimeTypeDetectHttpClient.detectMimeType(tika,
+        new ByteArrayInputStream(prefix), resource.getActualLocation(),
+        resource.getProvidedMimeType(), resource.getProvidedFileSize());
+    resource.setDetectedMimeType(detectedMimeType);
+    if (downloadMode == DownloadMode.MIME_TYPE && shouldDownloadMimetype.test(detectedMimeType)) {
+      LOGGER.debug("Detected media type {} - starting download of resource: {}", detectedMimeType,
+          resource.getResourceUrl());
+      // If the prefix is the complete content, we don't need to continue the download.
+      if (prefix.length < MimeTypeDetectHttpClient.MIME_TYPE_DETECTION_LENGTH) {
+        resource.markAsWithContent(prefix);
+        return null;
+      }
+      return resource.createContentFile();
     }
-    if (resource.getContentSize() == 0) {
-      throw new IOException("Download failed of resource " + resourceUrl + ": no content found.");
+    LOGGER.debug("Download mode {} and media type {} - choosing not to download resource: {}",
+        downloadMode, detectedMimeType, resource.getResourceUrl());
+    return null;
+  }
+
+  private static Resource verifyDownload(String resourceUrl, Resource resource)
+      throws IOException {
+    try {
+      if (resource.getContentSize() == 0) {
+        throw new IOException("Download failed of resource " + resourceUrl + ": no content found.");
+      }
+    } catch (IOException | RuntimeException e) {
+      // Close the resource if a problem occurs.
+      resource.close();
+      throw e;
     }
+    LOGGER.debug("Finished download of resource: {}", resourceUrl);
+    return resource;
   }
 }
@@ -3,18 +3,19 @@ package eu.europeana.metis.mediaprocessing.http.wrappers;
 import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodySubscriber;
 import java.net.http.HttpResponse.ResponseInfo;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * A body handler that wraps another body handler and whose body can be cancelled at any time. If
+ * this handler is cancelled before the response is received, the body is cancelled as soon as it
+ * is received. Cancelling never blocks.
+ *
+ * @param <T> The type of the body.
+ */
 public class CancelableBodyWrapper<T> implements BodyHandler<T> {
 
-  private static final Logger LOG = LoggerFactory.getLogger(CancelableBodyWrapper.class);
-
-  private final CountDownLatch latch = new CountDownLatch(1);
   private final BodyHandler<T> handler;
   private CancelableSubscriber<T> cancelableSubscriber;
+  private boolean isCancelled;
 
   public CancelableBodyWrapper(BodyHandler<T> handler) {
     this.handler = handler;
@@ -22,22 +23,28 @@ public class CancelableBodyWrapper<T> implements BodyHandler<T> {
 
   @Override
   public BodySubscriber<T> apply(ResponseInfo responseInfo) {
-    cancelableSubscriber = new CancelableSubscriber<>(handler.apply(responseInfo), latch);
-    return cancelableSubscriber;
+    final CancelableSubscriber<T> subscriber = new CancelableSubscriber<>(
+        handler.apply(responseInfo));
+    synchronized (this) {
+      cancelableSubscriber = subscriber;
+      if (isCancelled) {
+        subscriber.cancel();
+      }
+    }
+    return subscriber;
   }
 
-  public void cancel() {
-    CompletableFuture.runAsync(() -> {
-      try {
-        latch.await();
-        cancelableSubscriber.cancel();
-      } catch (InterruptedException e) {
-        LOG.info("There was some problem interrupting the connection");
-      }
-    });
+  /**
+   * Cancels the body. Calling this method more than once has no effect.
+   */
+  public synchronized void cancel() {
+    isCancelled = true;
+    if (cancelableSubscriber != null) {
+      cancelableSubscriber.cancel();
+    }
   }
 
-  public boolean isCancelled(){
-    return cancelableSubscriber.isCancelled();
+  public synchronized boolean isCancelled() {
+    return isCancelled;
   }
-}
\ No newline at end of file
+}
@@ -1,27 +1,34 @@
 package eu.europeana.metis.mediaprocessing.http.wrappers;
 
+import java.io.IOException;
 import java.net.http.HttpResponse.BodySubscriber;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Flow.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A body subscriber that wraps another body subscriber and that can be cancelled. Upon cancelling,
+ * the subscription is cancelled (stopping the transfer of the body) and the wrapped subscriber
+ * receives an error, so that its body completes exceptionally (and any threads reading from it are
+ * released). This subscriber can be cancelled before it has been subscribed, in which case the
+ * subscription is cancelled as soon as it is received.
+ *
+ * @param <T> The type of the body.
+ */
 class CancelableSubscriber<T> implements BodySubscriber<T> {
 
   private static final Logger LOG = LoggerFactory.getLogger(CancelableSubscriber.class);
 
-  private final CountDownLatch latch;
   private final BodySubscriber<T> subscriber;
   private Subscription subscription;
   private boolean isCancelled;
+  private boolean isDone;
 
-  CancelableSubscriber(BodySubscriber<T> subscriber, CountDownLatch latch) {
+  CancelableSubscriber(BodySubscriber<T> subscriber) {
     this.subscriber = subscriber;
-    this.latch = latch;
-    isCancelled = false;
   }
 
   @Override
@@ -32,34 +39,60 @@ class CancelableSubscriber<T> implements BodySubscriber<T> {
   @Override
   public void onSubscribe(Subscription subscription) {
     subscriber.onSubscribe(subscription);
-    this.subscription = subscription;
-    latch.countDown();
+    synchronized (this) {
+      this.subscription = subscription;
+      if (isCancelled) {
+        cancelSubscription();
+      }
+    }
   }
 
   @Override
-  public void onNext(List<ByteBuffer> item) {
-    subscriber.onNext(item);
+  public synchronized void onNext(List<ByteBuffer> item) {
+    if (!isDone) {
+      subscriber.onNext(item);
+    }
   }
 
   @Override
-  public void onError(Throwable throwable) {
-    subscriber.onError(throwable);
+  public synchronized void onError(Throwable throwable) {
+    if (!isDone) {
+      isDone = true;
+      subscriber.onError(throwable);
+    }
   }
 
   @Override
-  public void onComplete() {
-    subscriber.onComplete();
+  public synchronized void onComplete() {
+    if (!isDone) {
+      isDone = true;
+      subscriber.onComplete();
+    }
   }
 
-  public void cancel() {
-    subscription.cancel();
+  /**
+   * Cancels this subscriber. Calling this method more than once has no effect.
+   */
+  public synchronized void cancel() {
+    if (isCancelled) {
+      return;
+    }
     isCancelled = true;
+    if (subscription != null) {
+      cancelSubscription();
+    }
+  }
+
+  private void cancelSubscription() {
+    subscription.cancel();
+    if (!isDone) {
+      isDone = true;
+      subscriber.onError(new IOException("The transfer of the response body was cancelled."));
+    }
     LOG.debug("Subscription got cancelled");
   }
 
-  public boolean isCancelled(){
+  public synchronized boolean isCancelled() {
     return isCancelled;
   }
 }
-
-
@@ -0,0 +1,113 @@
+package eu.europeana.metis.mediaprocessing.linkchecking;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * This class limits the number of concurrent asynchronous tasks per host. Tasks that exceed the
+ * limit are queued (without blocking the caller) and are started as soon as an earlier task for the
+ * same host completes. This class is thread-safe and can be shared between link checkers.
+ */
+public class HostThrottle {
+
+  private final int maxConcurrentTasksPerHost;
+  private final Map<String, HostState> hostStates = new HashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param maxConcurrentTasksPerHost The maximum number of tasks that can run concurrently for any
+   * one host. Must be positive.
+   */
+  public HostThrottle(int maxConcurrentTasksPerHost) {
+    if (maxConcurrentTasksPerHost < 1) {
+      throw new IllegalArgumentException("The maximum number of tasks must be positive.");
+    }
+    this.maxConcurrentTasksPerHost = maxConcurrentTasksPerHost;
+  }
+
+  /**
+   * Submits a task for the given host. The task is started right away if the limit for the host
+   * has not been reached, and otherwise as soon as a task for this host completes.
+   *
+   * @param host The host. Can be null (in which case all tasks without host share one limit).
+   * @param task The task. It is expected to return a future that completes when the task is done.
+   * @param <T> The type of the result of the task.
+   * @return A future that completes with the result of the task.
+   */
+  public <T> CompletableFuture<T> submit(String host, Supplier<CompletableFuture<T>> task) {
+    final String hostKey = host == null ? "" : host;
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final Runnable startTask = () -> startTask(hostKey, task, result);
+    final boolean startNow;
+    synchronized (this) {
+      final HostState state = hostStates.computeIfAbsent(hostKey, key -> new HostState());
+      startNow = state.runningCount < maxConcurrentTasksPerHost;
+      if (startNow) {
+        state.runningCount++;
+      } else {
+        state.waitingTasks.add(startTask);
+      }
+    }
+    if (startNow) {
+      startTask.run();
+    }
+    return result;
+  }
+
+  private <T> void startTask(String hostKey, Supplier<CompletableFuture<T>> task,
+      CompletableFuture<T> result) {
+    CompletableFuture<T> taskResult;
+    try {
+      taskResult = task.get();
+    } catch (RuntimeException e) {
+      taskResult = CompletableFuture.failedFuture(e);
+    }
+    // Complete asynchronously: tasks that fail immediately would otherwise start the next task
+    // recursively (possibly exhausting the stack when many tasks are waiting).
+    taskResult.whenCompleteAsync((value, exception) -> {
+      taskDone(hostKey);
+      if (exception == null) {
+        result.complete(value);
+      } else {
+        result.completeExceptionally(exception);
+      }
+    });
+  }
+
+  private void taskDone(String hostKey) {
+    final Runnable nextTask;
+    synchronized (this) {
+      final HostState state = hostStates.get(hostKey);
+      nextTask = state.waitingTasks.poll();
+      if (nextTask == null) {
+        state.runningCount--;
+        if (state.runningCount == 0) {
+          hostStates.remove(hostKey);
+        }
+      }
+    }
+    if (nextTask != null) {
+      nextTask.run();
+    }
+  }
+
+  /**
+   * @param host The host.
+   * @return The number of tasks that are currently running for the given host.
+   */
+  synchronized int getRunningCount(String host) {
+    final HostState state = hostStates.get(host == null ? "" : host);
+    return state == null ? 0 : state.runningCount;
+  }
+
+  private static class HostState {
+
+    private int runningCount;
+    private final Queue<Runnable> waitingTasks = new ArrayDeque<>();
+  }
+}
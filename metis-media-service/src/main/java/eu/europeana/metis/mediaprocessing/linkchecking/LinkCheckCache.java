@@ -0,0 +1,100 @@
+package eu.europeana.metis.mediaprocessing.linkchecking;
+
+import eu.europeana.metis.mediaprocessing.exception.LinkCheckingException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * This class caches the results of link checks for a limited time, so that links that occur many
+ * times (in one or more datasets) are not checked over and over again. The cache has a maximum
+ * size: when it is full, the least recently used entry is evicted. This class is thread-safe and
+ * can be shared between link checkers.
+ */
+public class LinkCheckCache {
+
+  private final Duration timeToLive;
+  private final Clock clock;
+  private final Map<String, CachedResult> results;
+
+  /**
+   * Constructor.
+   *
+   * @param timeToLive The time for which a result is kept. If this is zero or negative, no results
+   * are kept.
+   * @param maxSize The maximum number of results that are kept.
+   */
+  public LinkCheckCache(Duration timeToLive, int maxSize) {
+    this(timeToLive, maxSize, Clock.systemUTC());
+  }
+
+  LinkCheckCache(Duration timeToLive, int maxSize, Clock clock) {
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+    this.results = new LinkedHashMap<>(16, 0.75F, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Obtain the cached result for the given link.
+   *
+   * @param link The link.
+   * @return The cached result, or an empty optional if there is no (unexpired) result for the link.
+   */
+  public synchronized Optional<CachedResult> get(String link) {
+    final CachedResult result = results.get(link);
+    if (result == null) {
+      return Optional.empty();
+    }
+    if (!clock.instant().isBefore(result.expiryTime)) {
+      results.remove(link);
+      return Optional.empty();
+    }
+    return Optional.of(result);
+  }
+
+  /**
+   * Cache the result of checking the given link.
+   *
+   * @param link The link.
+   * @param failure The failure that occurred when checking the link, or null if the check was
+   * successful.
+   */
+  public synchronized void put(String link, LinkCheckingException failure) {
+    if (!timeToLive.isNegative() && !timeToLive.isZero()) {
+      results.put(link, new CachedResult(failure, clock.instant().plus(timeToLive)));
+    }
+  }
+
+  /**
+   * The cached result of a link check.
+   */
+  public static final class CachedResult {
+
+    private final LinkCheckingException failure;
+    private final Instant expiryTime;
+
+    private CachedResult(LinkCheckingException failure, Instant expiryTime) {
+      this.failure = failure;
+      this.expiryTime = expiryTime;
+    }
+
+    /**
+     * @return The failure that occurred when checking the link, or null if the check was
+     * successful.
+     */
+    public LinkCheckingException getFailure() {
+      return failure;
+    }
+  }
+}
@@ -1,44 +1,178 @@
 package eu.europeana.metis.mediaprocessing.linkchecking;
 
 import eu.europeana.metis.mediaprocessing.LinkChecker;
+import eu.europeana.metis.mediaprocessing.MediaProcessorFactory;
 import eu.europeana.metis.mediaprocessing.exception.LinkCheckingException;
+import eu.europeana.metis.mediaprocessing.http.HttpStatusException;
 import eu.europeana.metis.mediaprocessing.http.LinkCheckClient;
+import eu.europeana.metis.mediaprocessing.http.LinkCheckClient.CheckMethod;
+import eu.europeana.metis.mediaprocessing.linkchecking.LinkCheckCache.CachedResult;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.Response.Status.Family;
 
 /**
+ * <p>
  * This class performs link checking.
- * 
- * Note: previously it was implemented by first trying a HEAD request, and only if that fails do we
- * do a GET. The thinking was probably that a HEAD is typically faster than a GET. However, since we
- * are not downloading any content it may be more accurate (at the cost of probably only a small
- * delay) to do the GET request right away: this is after all what the link represents. In case we
- * wish to introduce the HEAD request again, the solution would be to maintain two versions of the
- * LinkCheckClient: one that does HEAD requests, and one that does GET requests.
+ * </p>
+ * <p>
+ * A link is checked by first doing a HEAD request. Only if that fails (some servers don't support
+ * HEAD requests properly) do we do a GET request for the first few bytes of the content. This way
+ * we never transfer the full content just to check that it exists. The number of concurrent checks
+ * for any one host is limited (so that we don't overload the servers of a provider), and the
+ * results are cached for a limited time (so that links that occur often are checked only once).
+ * Only results that are not likely to change soon are cached: successes and client errors (status
+ * 4xx, except for those that indicate a temporary problem). Other failures, such as timeouts or
+ * server errors, may be transient and are not cached.
+ * </p>
  */
 public class LinkCheckerImpl implements LinkChecker {
 
-  private final LinkCheckClient linkCheckClient;
+  private final LinkCheckClient headClient;
+  private final LinkCheckClient rangedGetClient;
+  private final HostThrottle hostThrottle;
+  private final LinkCheckCache cache;
 
   /**
-   * Constructor.
-   * 
+   * Constructor. The results are not cached, and the number of concurrent checks per host is
+   * limited to {@value MediaProcessorFactory#DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST}.
+   *
    * @param maxRedirectCount The maximum number of times we follow a redirect status (status 3xx).
+   * @deprecated Use {@link #LinkCheckerImpl(int, HostThrottle, LinkCheckCache)} instead, so that
+   * the throttle and the cache can be shared between link checkers.
    */
+  @Deprecated
   public LinkCheckerImpl(int maxRedirectCount) {
-    linkCheckClient = new LinkCheckClient(maxRedirectCount);
+    this(maxRedirectCount,
+        new HostThrottle(MediaProcessorFactory.DEFAULT_MAX_CONCURRENT_LINK_CHECKS_PER_HOST),
+        new LinkCheckCache(Duration.ZERO, 0));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxRedirectCount The maximum number of times we follow a redirect status (status 3xx).
+   * @param hostThrottle The throttle that limits the number of concurrent checks per host. Can be
+   * shared between link checkers.
+   * @param cache The cache for the results of the checks. Can be shared between link checkers.
+   */
+  public LinkCheckerImpl(int maxRedirectCount, HostThrottle hostThrottle, LinkCheckCache cache) {
+    this(new LinkCheckClient(maxRedirectCount, CheckMethod.HEAD),
+        new LinkCheckClient(maxRedirectCount, CheckMethod.RANGED_GET), hostThrottle, cache);
+  }
+
+  LinkCheckerImpl(LinkCheckClient headClient, LinkCheckClient rangedGetClient,
+      HostThrottle hostThrottle, LinkCheckCache cache) {
+    this.headClient = headClient;
+    this.rangedGetClient = rangedGetClient;
+    this.hostThrottle = hostThrottle;
+    this.cache = cache;
   }
 
   @Override
   public void performLinkChecking(String resourceEntry) throws LinkCheckingException {
+    final LinkCheckingException failure = performLinkChecking(Collections.singleton(resourceEntry))
+        .get(resourceEntry);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public Map<String, LinkCheckingException> performLinkChecking(
+      Collection<String> resourceEntries) {
+
+    // Start all checks that are not cached (checking each distinct link only once).
+    final Map<String, CompletableFuture<LinkCheckingException>> checks = new HashMap<>();
+    for (String resourceEntry : new LinkedHashSet<>(resourceEntries)) {
+      final Optional<CachedResult> cachedResult = cache.get(resourceEntry);
+      checks.put(resourceEntry, cachedResult.isPresent()
+          ? CompletableFuture.completedFuture(copyFailure(cachedResult.get().getFailure()))
+          : checkLink(resourceEntry));
+    }
+
+    // Wait for the checks to finish and collect the failures.
+    final Map<String, LinkCheckingException> failures = new HashMap<>();
+    checks.forEach((resourceEntry, check) -> {
+      final LinkCheckingException failure = check.join();
+      if (failure != null) {
+        failures.put(resourceEntry, failure);
+      }
+    });
+    return failures;
+  }
+
+  private CompletableFuture<LinkCheckingException> checkLink(String resourceEntry) {
+
+    // Links that are not valid HTTP links fail right away.
+    final String host;
     try {
-      linkCheckClient.download(resourceEntry);
-    } catch (IOException | RuntimeException e) {
-      throw new LinkCheckingException("Problem while processing " + resourceEntry, e);
+      final URI uri = new URI(resourceEntry);
+      if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(
+          uri.getScheme())) {
+        throw new IOException("Not an HTTP link.");
+      }
+      host = uri.getHost();
+    } catch (URISyntaxException | IOException e) {
+      return CompletableFuture.completedFuture(createException(resourceEntry, e));
+    }
+
+    // Try HEAD, and if that fails, try a ranged GET. Cache the result if it is definitive.
+    return hostThrottle.submit(host, () -> headClient.downloadAsync(resourceEntry)
+        .handle((result, exception) -> exception == null ? CompletableFuture.<Void>completedFuture(
+            null) : rangedGetClient.downloadAsync(resourceEntry))
+        .thenCompose(Function.identity()))
+        .handle((result, exception) -> exception == null ? null
+            : createException(resourceEntry, exception))
+        .whenComplete((failure, exception) -> {
+          if (failure == null || isDefinitiveFailure(failure)) {
+            cache.put(resourceEntry, failure);
+          }
+        });
+  }
+
+  private static boolean isDefinitiveFailure(LinkCheckingException failure) {
+    if (!(failure.getCause() instanceof HttpStatusException)) {
+      return false;
+    }
+    final int statusCode = ((HttpStatusException) failure.getCause()).getStatusCode();
+    final Status status = Status.fromStatusCode(statusCode);
+    return Family.familyOf(statusCode) == Family.CLIENT_ERROR
+        && status != Status.REQUEST_TIMEOUT && status != Status.TOO_MANY_REQUESTS;
+  }
+
+  /**
+   * Cached failures are shared between callers, so each caller receives its own exception (with
+   * the same message and cause).
+   */
+  private static LinkCheckingException copyFailure(LinkCheckingException failure) {
+    return failure == null ? null : new LinkCheckingException(failure.getMessage(),
+        failure.getCause());
+  }
+
+  private static LinkCheckingException createException(String resourceEntry, Throwable exception) {
+    Throwable cause = exception;
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
     }
+    return new LinkCheckingException("Problem while processing " + resourceEntry, cause);
   }
 
   @Override
   public void close() throws IOException {
-    linkCheckClient.close();
+    headClient.close();
+    rangedGetClient.close();
   }
 }
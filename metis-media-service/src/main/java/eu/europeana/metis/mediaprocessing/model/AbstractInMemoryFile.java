@@ -3,7 +3,7 @@ package eu.europeana.metis.mediaprocessing.model;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import org.apache.commons.io.IOUtils;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a file in memory that's associated with a resource. Please see {@link
@@ -38,6 +38,13 @@ abstract class AbstractInMemoryFile implements ResourceRelatedFile {
     return new ByteArrayInputStream(content);
   }
 
+  /**
+   * @return The content as a read-only buffer (without copying it). Is not null.
+   */
+  public ByteBuffer getContentBuffer() {
+    return ByteBuffer.wrap(content).asReadOnlyBuffer();
+  }
+
   @Override
   public Long getContentSize() {
     return (long) content.length;
@@ -50,7 +57,17 @@ abstract class AbstractInMemoryFile implements ResourceRelatedFile {
 
   @Override
   public void markAsWithContent(InputStream newContent) throws IOException {
-    content = IOUtils.toByteArray(newContent);
+    content = newContent.readAllBytes();
+  }
+
+  /**
+   * Add the given content and make this file one with content. The array is used directly (without
+   * copying it), so it should not be modified afterwards.
+   *
+   * @param newContent The new content.
+   */
+  public void markAsWithContent(byte[] newContent) {
+    content = newContent;
   }
 
   @Override
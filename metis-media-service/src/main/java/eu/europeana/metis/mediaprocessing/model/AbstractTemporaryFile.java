@@ -1,14 +1,18 @@
 package eu.europeana.metis.mediaprocessing.model;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * This class represents a file in the temporary folder that's associated with a resource. Please
- * see {@link ResourceRelatedFile} for more information.
+ * see {@link ResourceRelatedFile} for more information. Depending on the {@link ContentStorage},
+ * small content may be kept in memory instead: it is only written to a file when a file is needed
+ * (see {@link #moveContentToFile()}).
  */
 abstract class AbstractTemporaryFile implements ResourceRelatedFile {
 
@@ -23,9 +27,17 @@ abstract class AbstractTemporaryFile implements ResourceRelatedFile {
   private Path contentPath;
 
   /**
-   * Action that creates the content file.
+   * The content, if it is kept in memory (in which case there is no content path).
    */
-  private final ContentFileCreator contentFileCreator;
+  private byte[] inMemoryContent;
+
+  /**
+   * The storage that provides the content files.
+   */
+  private final ContentStorage contentStorage;
+
+  private final String prefix;
+  private final String suffix;
 
   /**
    * Constructor.
@@ -33,10 +45,14 @@ abstract class AbstractTemporaryFile implements ResourceRelatedFile {
    * @param resourceUrl The URL of the resource with which this file is associated.
    * @param prefix The prefix used for generating the file.
    * @param suffix The suffix used for generating the file.
+   * @param contentStorage The storage that determines where the content is kept.
    */
-  AbstractTemporaryFile(String resourceUrl, String prefix, String suffix) {
+  AbstractTemporaryFile(String resourceUrl, String prefix, String suffix,
+      ContentStorage contentStorage) {
     this.resourceUrl = resourceUrl;
-    this.contentFileCreator = () -> Files.createTempFile(prefix, suffix);
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.contentStorage = contentStorage;
   }
 
   @Override
@@ -48,16 +64,75 @@ abstract class AbstractTemporaryFile implements ResourceRelatedFile {
     return this.contentPath;
   }
 
+  /**
+   * Makes this file one with content by creating an empty content file (or emptying the existing
+   * content file). The content can then be written to this file directly.
+   *
+   * @return The path of the (empty) content file.
+   * @throws IOException In case there was a problem creating the content file.
+   */
+  Path createContentFile() throws IOException {
+    this.inMemoryContent = null;
+    if (contentPath == null) {
+      this.contentPath = contentStorage.acquireFile(prefix, suffix);
+    } else {
+      Files.write(this.contentPath, new byte[0]);
+    }
+    return this.contentPath;
+  }
+
+  /**
+   * Makes sure that the content, if it is kept in memory, is written to the content file. After
+   * this, {@link #getContentPath()} returns the file if there is content.
+   *
+   * @throws IOException In case there was a problem writing the content file.
+   */
+  void moveContentToFile() throws IOException {
+    if (inMemoryContent != null) {
+      final byte[] content = inMemoryContent;
+      Files.write(createContentFile(), content);
+    }
+  }
+
+  /**
+   * Add the given content and make this resource one with content. The content is kept in memory
+   * if the content storage allows it, in which case the array is used directly (and should not be
+   * modified afterwards). Otherwise, it is written to the content file.
+   *
+   * @param newContent The new content.
+   * @throws IOException In case there was a problem adding the content.
+   */
+  void markAsWithContent(byte[] newContent) throws IOException {
+    if (newContent.length <= contentStorage.getInMemoryThreshold()) {
+      releaseContentFile();
+      this.inMemoryContent = newContent;
+    } else {
+      Files.write(createContentFile(), newContent);
+    }
+  }
+
   @Override
   public void markAsWithContent(InputStream newContent) throws IOException {
-    if (contentPath == null) {
-      this.contentPath = contentFileCreator.createFile();
+    final int threshold = contentStorage.getInMemoryThreshold();
+    final byte[] start = threshold > 0 ? newContent.readNBytes(threshold + 1) : new byte[0];
+    if (start.length <= threshold && threshold > 0) {
+      markAsWithContent(start);
+      return;
+    }
+    try (OutputStream outputStream = Files.newOutputStream(createContentFile(),
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      outputStream.write(start);
+      newContent.transferTo(outputStream);
     }
-    Files.copy(newContent, this.contentPath, StandardCopyOption.REPLACE_EXISTING);
   }
 
   private Long computeContentSizeInternal() throws IOException {
 
+    // If the content is in memory, return its size.
+    if (this.inMemoryContent != null) {
+      return (long) this.inMemoryContent.length;
+    }
+
     // If the content path does not exist, remove the reference.
     // Note: should use Files.exists instead when migrating away from Java 8.
     if (this.contentPath != null && !this.contentPath.toFile().exists()) {
@@ -79,7 +154,8 @@ abstract class AbstractTemporaryFile implements ResourceRelatedFile {
     if (!hasContent()) {
       throw new IOException("Cannot get the file content: file does not exist or is empty.");
     }
-    return Files.newInputStream(this.contentPath);
+    return this.inMemoryContent == null ? Files.newInputStream(this.contentPath)
+        : new ByteArrayInputStream(this.inMemoryContent);
   }
 
   @Override
@@ -91,12 +167,10 @@ abstract class AbstractTemporaryFile implements ResourceRelatedFile {
     return result;
   }
 
-  @Override
-  public void markAsNoContent() throws IOException {
+  private void releaseContentFile() throws IOException {
     try {
-      // Note: should use Files.exists instead when migrating away from Java 8.
-      if (this.contentPath != null && this.contentPath.toFile().exists()) {
-        Files.delete(this.contentPath);
+      if (this.contentPath != null) {
+        contentStorage.releaseFile(this.contentPath);
       }
     } finally {
       this.contentPath = null;
@@ -104,13 +178,13 @@ abstract class AbstractTemporaryFile implements ResourceRelatedFile {
   }
 
   @Override
-  public void close() throws IOException {
-    this.markAsNoContent();
+  public void markAsNoContent() throws IOException {
+    this.inMemoryContent = null;
+    releaseContentFile();
   }
 
-  @FunctionalInterface
-  private interface ContentFileCreator {
-
-    Path createFile() throws IOException;
+  @Override
+  public void close() throws IOException {
+    this.markAsNoContent();
   }
 }
@@ -0,0 +1,95 @@
+package eu.europeana.metis.mediaprocessing.model;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * This object represents a stored media extraction result for a resource, together with the
+ * information needed to decide whether it can be reused: the validators and content hash of the
+ * version of the resource from which it was extracted, and the input of the extraction. It only
+ * contains the (serializable) metadata of the result, not the content of the thumbnails: these are
+ * assumed to have been stored under their target names (see {@link
+ * ResourceMetadata#getThumbnailTargetNames()}) when the result was first extracted.
+ */
+public class CachedExtractionResult implements Serializable {
+
+  /**
+   * Implements {@link java.io.Serializable}
+   **/
+  private static final long serialVersionUID = -2471095187716624410L;
+
+  private ResourceValidators validators;
+  private String contentHash;
+  private Set<UrlType> urlTypes;
+  private boolean mainThumbnailAvailable;
+  private ResourceMetadata metadata;
+
+  /**
+   * Constructor.
+   *
+   * @param validators The validators of the version of the resource. Is not null.
+   * @param contentHash The hash of the content of the resource. Can be null if the content was not
+   * downloaded.
+   * @param urlTypes The URL types with which the resource was referenced during extraction.
+   * @param mainThumbnailAvailable Whether the main thumbnail was available during extraction.
+   * @param metadata The extracted metadata. Can be null if there was nothing to extract.
+   */
+  public CachedExtractionResult(ResourceValidators validators, String contentHash,
+      Collection<UrlType> urlTypes, boolean mainThumbnailAvailable, ResourceMetadata metadata) {
+    this.validators = validators;
+    this.contentHash = contentHash;
+    this.urlTypes = urlTypes.isEmpty() ? EnumSet.noneOf(UrlType.class) : EnumSet.copyOf(urlTypes);
+    this.mainThumbnailAvailable = mainThumbnailAvailable;
+    this.metadata = metadata;
+  }
+
+  /**
+   * Constructor. Don't use this: it's required for deserialization.
+   */
+  CachedExtractionResult() {
+  }
+
+  public ResourceValidators getValidators() {
+    return validators;
+  }
+
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public Set<UrlType> getUrlTypes() {
+    return Collections.unmodifiableSet(urlTypes);
+  }
+
+  public boolean isMainThumbnailAvailable() {
+    return mainThumbnailAvailable;
+  }
+
+  public ResourceMetadata getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * Determines whether this result was extracted with the given input (and can therefore be reused
+   * for this input if the resource has not changed).
+   *
+   * @param urlTypes The URL types with which the resource is referenced.
+   * @param mainThumbnailAvailable Whether the main thumbnail is available.
+   * @return Whether this result was extracted with the given input.
+   */
+  public boolean isExtractedWith(Set<UrlType> urlTypes, boolean mainThumbnailAvailable) {
+    return this.urlTypes.equals(urlTypes) && this.mainThumbnailAvailable == mainThumbnailAvailable;
+  }
+
+  /**
+   * @return The extraction result (without thumbnails). Is null if there was nothing to extract.
+   */
+  public ResourceExtractionResult toExtractionResult() {
+    return Optional.ofNullable(metadata).map(ResourceMetadata::getMetaData)
+        .map(ResourceExtractionResultImpl::new).orElse(null);
+  }
+}
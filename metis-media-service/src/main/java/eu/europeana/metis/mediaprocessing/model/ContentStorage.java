@@ -0,0 +1,166 @@
+package eu.europeana.metis.mediaprocessing.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * This class determines where the content of resources is stored. Content that is not larger than
+ * the in-memory threshold is kept in memory. Other content is stored in files. If an arena
+ * directory is configured, these files are created in a (private) subdirectory of it and are
+ * reused after they are released: this saves the file system operations needed to create and
+ * delete a file for every resource. The arena directory can for instance be on a memory-backed file
+ * system (such as tmpfs). If no arena directory is configured, a new temporary file is created (in
+ * the default temporary directory) for every resource and deleted after use.
+ * </p>
+ * <p>
+ * This class is thread-safe. It needs to be closed when no longer needed, after which no new files
+ * are handed out and released files are deleted.
+ * </p>
+ */
+public class ContentStorage implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ContentStorage.class);
+
+  /**
+   * Content storage without an in-memory threshold and without an arena directory: all content is
+   * stored in new temporary files.
+   */
+  public static final ContentStorage DEFAULT = new ContentStorage(null, 0);
+
+  private static final int MAX_POOLED_FILES = 64;
+
+  private final Path arenaParentDirectory;
+  private final int inMemoryThreshold;
+
+  private final AtomicLong fileCounter = new AtomicLong();
+  private final Deque<Path> releasedFiles = new ArrayDeque<>();
+  private Path arenaDirectory;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param arenaParentDirectory The directory in which the arena directory is to be created. Can be
+   * null, in which case no arena is used.
+   * @param inMemoryThreshold The maximum size, in bytes, of content that is kept in memory. If this
+   * is zero or negative, no content is kept in memory.
+   */
+  public ContentStorage(Path arenaParentDirectory, int inMemoryThreshold) {
+    this.arenaParentDirectory = arenaParentDirectory;
+    this.inMemoryThreshold = Math.max(inMemoryThreshold, 0);
+  }
+
+  /**
+   * @return The maximum size, in bytes, of content that is kept in memory. Is zero if no content is
+   * to be kept in memory.
+   */
+  public int getInMemoryThreshold() {
+    return inMemoryThreshold;
+  }
+
+  /**
+   * Obtains an empty file to store content in. The file should be released (see {@link
+   * #releaseFile(Path)}) when it is no longer needed.
+   *
+   * @param prefix The prefix used for generating the file name.
+   * @param suffix The suffix used for generating the file name. Can be null.
+   * @return The file.
+   * @throws IOException In case the file could not be created.
+   */
+  Path acquireFile(String prefix, String suffix) throws IOException {
+    if (arenaParentDirectory == null) {
+      return Files.createTempFile(prefix, suffix);
+    }
+    final Path directory;
+    synchronized (this) {
+      if (closed) {
+        throw new IOException("Content storage is closed.");
+      }
+      final Path releasedFile = releasedFiles.pollFirst();
+      if (releasedFile != null) {
+        return releasedFile;
+      }
+      if (arenaDirectory == null) {
+        arenaDirectory = Files.createTempDirectory(arenaParentDirectory, "metis_media_");
+      }
+      directory = arenaDirectory;
+    }
+    return Files.createFile(directory.resolve(prefix + fileCounter.incrementAndGet()
+        + (suffix == null ? "" : suffix)));
+  }
+
+  /**
+   * Releases a file that was obtained through {@link #acquireFile(String, String)}. The file is
+   * either deleted or emptied and kept for reuse. The caller should no longer use the file after
+   * calling this method.
+   *
+   * @param file The file.
+   * @throws IOException In case the file could not be deleted or emptied.
+   */
+  void releaseFile(Path file) throws IOException {
+    final boolean keep;
+    synchronized (this) {
+      keep = arenaDirectory != null && !closed && releasedFiles.size() < MAX_POOLED_FILES
+          && arenaDirectory.equals(file.getParent());
+    }
+    if (!keep) {
+      Files.deleteIfExists(file);
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(0);
+    } catch (NoSuchFileException e) {
+      // Nothing to do: the file was removed by someone else.
+      return;
+    }
+    synchronized (this) {
+      if (closed) {
+        Files.deleteIfExists(file);
+      } else {
+        releasedFiles.addFirst(file);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    final Path directory;
+    synchronized (this) {
+      closed = true;
+      for (Path file : releasedFiles) {
+        deleteQuietly(file);
+      }
+      releasedFiles.clear();
+      directory = arenaDirectory;
+    }
+    if (directory != null) {
+      try {
+        Files.deleteIfExists(directory);
+      } catch (DirectoryNotEmptyException e) {
+        LOGGER.info("Arena directory {} is still in use: it will not be removed.", directory);
+      } catch (IOException e) {
+        LOGGER.warn("Could not remove arena directory {}.", directory, e);
+      }
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOGGER.warn("Could not remove file {}.", file, e);
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package eu.europeana.metis.mediaprocessing.model;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.Set;
@@ -34,13 +36,78 @@ public interface Resource extends ResourceRelatedFile {
   URI getActualLocation();
 
   /**
-   * @return A reference to the file containing this resource. Can be null.
+   * @return The validators that have been provided for this resource by the source server. Is not
+   * null, but may not contain any values. The default implementation returns {@link
+   * ResourceValidators#NONE}.
+   */
+  default ResourceValidators getValidators() {
+    return ResourceValidators.NONE;
+  }
+
+  /**
+   * @return Whether the source server indicated that this resource has not changed since it was
+   * last obtained (i.e. it matches the validators with which it was requested). If so, the content
+   * is not downloaded. The default implementation returns false.
+   */
+  default boolean isNotModified() {
+    return false;
+  }
+
+  /**
+   * @return The mime type that was detected from (the first part of) the content while obtaining
+   * this resource, taking into account the provided mime type and the location. Can be null if the
+   * mime type was not detected while obtaining the resource (for instance because the content was
+   * downloaded in full, in which case the mime type can be detected from the content file). The
+   * default implementation returns null.
+   */
+  default String getDetectedMimeType() {
+    return null;
+  }
+
+  /**
+   * @return A reference to the file containing this resource. Can be null (also if the content is
+   * kept in memory: see {@link #moveContentToFile()}).
    */
   Path getContentPath();
 
   /**
-   * @return A reference to the file containing this resource. Can be null.
+   * @return A reference to the file containing this resource. Can be null (also if the content is
+   * kept in memory: see {@link #moveContentToFile()}).
    */
   File getContentFile();
 
+  /**
+   * Makes sure that the content, if it is kept in memory, is written to a file, so that it can be
+   * accessed through {@link #getContentPath()} and {@link #getContentFile()}. This method has no
+   * effect if there is no content or if the content is already in a file. The default
+   * implementation is meant for implementations that always keep their content in a file (i.e.
+   * that have a content path whenever they have content).
+   *
+   * @throws IOException In case there was a problem writing the file, or (in the case of the
+   * default implementation) if there is content but it is not in a file.
+   */
+  default void moveContentToFile() throws IOException {
+    if (getContentPath() == null && hasContent()) {
+      throw new IOException("The content of this resource can not be moved to a file.");
+    }
+  }
+
+  /**
+   * Makes this resource one with content by creating an empty content file (or emptying the
+   * existing content file), so that the content can be written to the file directly (instead of
+   * through {@link #markAsWithContent(java.io.InputStream)}). The default implementation marks
+   * this resource as having empty content and returns the resulting content path.
+   *
+   * @return The path of the (empty) content file.
+   * @throws IOException In case there was a problem creating the content file.
+   */
+  default Path createContentFile() throws IOException {
+    markAsWithContent(InputStream.nullInputStream());
+    final Path contentPath = getContentPath();
+    if (contentPath == null) {
+      throw new IOException("Could not create a content file for this resource.");
+    }
+    return contentPath;
+  }
+
 }
@@ -1,6 +1,7 @@
 package eu.europeana.metis.mediaprocessing.model;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.Collections;
@@ -19,6 +20,9 @@ public class ResourceImpl extends AbstractTemporaryFile implements Resource {
   private final Long providedFileSize;
   private final Set<UrlType> urlTypes;
   private final URI actualLocation;
+  private final ResourceValidators validators;
+  private final boolean notModified;
+  private String detectedMimeType;
 
   /**
    * Constructor.
@@ -33,12 +37,37 @@ public class ResourceImpl extends AbstractTemporaryFile implements Resource {
    */
   public ResourceImpl(RdfResourceEntry rdfResourceEntry, String providedMimeType,
       Long providedFileSize, URI actualLocation) {
-    super(rdfResourceEntry.getResourceUrl(), "media_resource_", null);
+    this(rdfResourceEntry, providedMimeType, providedFileSize, actualLocation,
+        ResourceValidators.NONE, false, ContentStorage.DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param rdfResourceEntry The resource entry for which this file contains the content.
+   * @param providedMimeType The mime type of this content, as provided by the source. Can be null
+   * if the source didn't specify a mime type.
+   * @param providedFileSize The file size of this content, as provided by the source. Can be null
+   * if the source didn't specify a file size.
+   * @param actualLocation The actual location where the resource was obtained (as opposed from the
+   * resource URL given by {@link ResourceImpl#getResourceUrl()}).
+   * @param validators The validators of this content, as provided by the source. Can be null if
+   * the source didn't specify any validators.
+   * @param notModified Whether the source indicated that the resource has not changed since it was
+   * last obtained.
+   * @param contentStorage The storage that determines where the content of this resource is kept.
+   */
+  public ResourceImpl(RdfResourceEntry rdfResourceEntry, String providedMimeType,
+      Long providedFileSize, URI actualLocation, ResourceValidators validators,
+      boolean notModified, ContentStorage contentStorage) {
+    super(rdfResourceEntry.getResourceUrl(), "media_resource_", null, contentStorage);
     this.providedMimeType = Optional.ofNullable(providedMimeType)
         .filter(type -> !type.startsWith(DEFAULT_MIME_TYPE)).orElse(null);
     this.providedFileSize = Optional.ofNullable(providedFileSize).orElse(DEFAULT_FILE_SIZE);
     this.urlTypes = new HashSet<>(rdfResourceEntry.getUrlTypes());
     this.actualLocation = actualLocation;
+    this.validators = Optional.ofNullable(validators).orElse(ResourceValidators.NONE);
+    this.notModified = notModified;
   }
 
   @Override
@@ -46,6 +75,21 @@ public class ResourceImpl extends AbstractTemporaryFile implements Resource {
     return super.getContentPath();
   }
 
+  @Override
+  public Path createContentFile() throws IOException {
+    return super.createContentFile();
+  }
+
+  @Override
+  public void moveContentToFile() throws IOException {
+    super.moveContentToFile();
+  }
+
+  @Override
+  public void markAsWithContent(byte[] content) throws IOException {
+    super.markAsWithContent(content);
+  }
+
   @Override
   public Set<UrlType> getUrlTypes() {
     return Collections.unmodifiableSet(urlTypes);
@@ -66,6 +110,28 @@ public class ResourceImpl extends AbstractTemporaryFile implements Resource {
     return actualLocation;
   }
 
+  @Override
+  public ResourceValidators getValidators() {
+    return validators;
+  }
+
+  @Override
+  public boolean isNotModified() {
+    return notModified;
+  }
+
+  @Override
+  public String getDetectedMimeType() {
+    return detectedMimeType;
+  }
+
+  /**
+   * @param detectedMimeType The mime type that was detected while obtaining this resource.
+   */
+  public void setDetectedMimeType(String detectedMimeType) {
+    this.detectedMimeType = detectedMimeType;
+  }
+
   @Override
   public File getContentFile() {
     return Optional.ofNullable(getContentPath()).map(Path::toFile).orElse(null);
@@ -0,0 +1,85 @@
+package eu.europeana.metis.mediaprocessing.model;
+
+import java.io.Serializable;
+
+/**
+ * This object contains the validators of a resource as provided by the source server: the entity
+ * tag, the last modification date and the content length. They can be used to determine whether a
+ * resource has changed since it was last obtained.
+ */
+public class ResourceValidators implements Serializable {
+
+  /**
+   * Implements {@link java.io.Serializable}
+   **/
+  private static final long serialVersionUID = 4392217338573904761L;
+
+  /**
+   * Validators that don't contain any information.
+   */
+  public static final ResourceValidators NONE = new ResourceValidators(null, null, null);
+
+  private String entityTag;
+  private String lastModified;
+  private Long contentLength;
+
+  /**
+   * Constructor.
+   *
+   * @param entityTag The entity tag (value of the ETag header). Can be null.
+   * @param lastModified The last modification date (value of the Last-Modified header). Can be
+   * null.
+   * @param contentLength The content length (value of the Content-Length header). Can be null.
+   */
+  public ResourceValidators(String entityTag, String lastModified, Long contentLength) {
+    this.entityTag = entityTag;
+    this.lastModified = lastModified;
+    this.contentLength = contentLength;
+  }
+
+  /**
+   * Constructor. Don't use this: it's required for deserialization.
+   */
+  ResourceValidators() {
+  }
+
+  public String getEntityTag() {
+    return entityTag;
+  }
+
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  public Long getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * @return Whether these validators can be used to determine whether a resource has changed (i.e.
+   * whether there is an entity tag or a last modification date).
+   */
+  public boolean canValidate() {
+    return entityTag != null || lastModified != null;
+  }
+
+  /**
+   * Determines whether the given validators identify the same version of the resource as these
+   * validators. The entity tags are compared if both are available, otherwise the last modification
+   * dates are compared. In both cases the content lengths (if both available) need to be equal too.
+   *
+   * @param other The other validators.
+   * @return Whether the validators identify the same version of the resource.
+   */
+  public boolean matches(ResourceValidators other) {
+    final boolean contentLengthMatches = contentLength == null || other.contentLength == null
+        || contentLength.equals(other.contentLength);
+    if (!contentLengthMatches) {
+      return false;
+    }
+    if (entityTag != null && other.entityTag != null) {
+      return entityTag.equals(other.entityTag);
+    }
+    return lastModified != null && lastModified.equals(other.lastModified);
+  }
+}
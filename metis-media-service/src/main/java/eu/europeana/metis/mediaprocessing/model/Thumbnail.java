@@ -1,5 +1,9 @@
 package eu.europeana.metis.mediaprocessing.model;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 /**
  * This interface contains a representation of a thumbnail generated for a given resource. Please
  * see {@link ResourceRelatedFile} for more information.
@@ -16,4 +20,16 @@ public interface Thumbnail extends ResourceRelatedFile {
    */
   String getTargetName();
 
+  /**
+   * @return The content of the thumbnail as a read-only buffer. Implementations that keep the
+   * content in memory return it without copying it. The default implementation reads the content
+   * from {@link #getContentStream()}. Is not null.
+   * @throws IOException In case there was a problem reading the content.
+   */
+  default ByteBuffer getContentBuffer() throws IOException {
+    try (InputStream contentStream = getContentStream()) {
+      return ByteBuffer.wrap(contentStream.readAllBytes()).asReadOnlyBuffer();
+    }
+  }
+
 }
@@ -1,15 +1,25 @@
 package eu.europeana.metis.mediaprocessing;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import eu.europeana.metis.mediaprocessing.exception.RdfDeserializationException;
+import eu.europeana.metis.mediaprocessing.model.RdfResourceEntry;
 import eu.europeana.metis.mediaprocessing.model.UrlType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -47,9 +57,18 @@ class RdfDeserializerImplTest {
     return addEdmResourceType(document, aggregation, "isShownAt", resourceValue);
   }
 
+  private static Map<String, Set<UrlType>> getResourceEntries(Document document,
+          Set<UrlType> allowedUrlTypes) throws RdfDeserializationException, TransformerException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TransformerFactory.newInstance().newTransformer()
+            .transform(new DOMSource(document), new StreamResult(output));
+    return new RdfDeserializerImpl()
+            .getResourceEntries(new ByteArrayInputStream(output.toByteArray()), allowedUrlTypes);
+  }
+
   @Test
   void testGetResourceUrlsWithDifferentResources()
-          throws RdfDeserializationException, ParserConfigurationException {
+          throws RdfDeserializationException, ParserConfigurationException, TransformerException {
 
     // Create document with root rdf
     final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
@@ -72,8 +91,8 @@ class RdfDeserializerImplTest {
     final String isShownAt = addEdmIsShownAt(document, aggregation2, "is shown at resource");
 
     // Test method for all url types
-    final Map<String, Set<UrlType>> resultAllTypes = new RdfDeserializerImpl()
-            .getResourceEntries(document, Set.of(UrlType.values()));
+    final Map<String, Set<UrlType>> resultAllTypes = getResourceEntries(document,
+            Set.of(UrlType.values()));
     assertEquals(6, resultAllTypes.size());
     assertEquals(Collections.singleton(UrlType.OBJECT), resultAllTypes.get(object));
     assertEquals(Collections.singleton(UrlType.HAS_VIEW), resultAllTypes.get(hasView1));
@@ -83,22 +102,20 @@ class RdfDeserializerImplTest {
     assertEquals(Collections.singleton(UrlType.IS_SHOWN_AT), resultAllTypes.get(isShownAt));
 
     // Test method for selection of url types
-    final Map<String, Set<UrlType>> resultSelectedTypes = new RdfDeserializerImpl()
-            .getResourceEntries(document, Set.of(UrlType.IS_SHOWN_AT, UrlType.HAS_VIEW));
+    final Map<String, Set<UrlType>> resultSelectedTypes = getResourceEntries(document,
+            Set.of(UrlType.IS_SHOWN_AT, UrlType.HAS_VIEW));
     assertEquals(3, resultSelectedTypes.size());
     assertEquals(Collections.singleton(UrlType.HAS_VIEW), resultSelectedTypes.get(hasView1));
     assertEquals(Collections.singleton(UrlType.HAS_VIEW), resultSelectedTypes.get(hasView2));
     assertEquals(Collections.singleton(UrlType.IS_SHOWN_AT), resultSelectedTypes.get(isShownAt));
 
     // Test method for no url types
-    assertTrue(
-            new RdfDeserializerImpl().getResourceEntries(document, Collections.emptySet())
-                    .isEmpty());
+    assertTrue(getResourceEntries(document, Collections.emptySet()).isEmpty());
   }
 
   @Test
   void testGetResourceUrlsWithSameResources()
-          throws RdfDeserializationException, ParserConfigurationException {
+          throws RdfDeserializationException, ParserConfigurationException, TransformerException {
 
     // Create document with root rdf
     final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
@@ -120,27 +137,67 @@ class RdfDeserializerImplTest {
     addEdmIsShownAt(document, aggregation2, commonResource);
 
     // Test method for all url types
-    final Map<String, Set<UrlType>> resultAllTypes = new RdfDeserializerImpl()
-            .getResourceEntries(document, Set.of(UrlType.values()));
+    final Map<String, Set<UrlType>> resultAllTypes = getResourceEntries(document,
+            Set.of(UrlType.values()));
     assertEquals(1, resultAllTypes.size());
     assertEquals(Set.of(UrlType.values()), resultAllTypes.get(commonResource));
 
     // Test method for selected url types
     final Set<UrlType> selectedTypes = Set.of(UrlType.IS_SHOWN_BY, UrlType.OBJECT);
-    final Map<String, Set<UrlType>> resultSelectedTypes = new RdfDeserializerImpl()
-            .getResourceEntries(document, selectedTypes);
+    final Map<String, Set<UrlType>> resultSelectedTypes = getResourceEntries(document,
+            selectedTypes);
     assertEquals(1, resultSelectedTypes.size());
     assertEquals(selectedTypes, resultSelectedTypes.get(commonResource));
   }
 
   @Test
   void testGetResourceUrlsWithoutData()
-          throws RdfDeserializationException, ParserConfigurationException {
+          throws RdfDeserializationException, ParserConfigurationException, TransformerException {
     final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
             .newDocument();
     final Element rdf = document.createElementNS(RDF_NAMESPACE, "RDF");
     document.appendChild(rdf);
-    assertTrue(new RdfDeserializerImpl().getResourceEntries(document, Collections.emptySet())
-            .isEmpty());
+    assertTrue(getResourceEntries(document, Collections.emptySet()).isEmpty());
+  }
+
+  @Test
+  void testGetResourcesForMediaExtraction() throws RdfDeserializationException {
+    final String record = "<rdf:RDF xmlns:rdf=\"" + RDF_NAMESPACE + "\" xmlns:ore=\""
+            + ORE_NAMESPACE + "\" xmlns:edm=\"" + EDM_NAMESPACE + "\">"
+            + "<edm:WebResource rdf:about=\"web resource\">"
+            + "<edm:isShownBy rdf:resource=\"not in an aggregation\"/></edm:WebResource>"
+            + "<ore:Aggregation><edm:object rdf:resource=\"object resource\"/>"
+            + "<edm:hasView rdf:resource=\"object resource\"/>"
+            + "<edm:isShownBy rdf:resource=\"is shown by resource\"/>"
+            + "<edm:isShownAt><edm:object rdf:resource=\"nested resource\"/></edm:isShownAt>"
+            + "</ore:Aggregation></rdf:RDF>";
+    final byte[] input = record.getBytes(StandardCharsets.UTF_8);
+    final RdfDeserializerImpl deserializer = new RdfDeserializerImpl();
+
+    // The main thumbnail resource only has the object type.
+    final RdfResourceEntry mainThumbnail = deserializer
+            .getMainThumbnailResourceForMediaExtraction(input);
+    assertEquals("object resource", mainThumbnail.getResourceUrl());
+    assertEquals(Set.of(UrlType.OBJECT), mainThumbnail.getUrlTypes());
+
+    // The remaining resources don't include the main thumbnail resource.
+    final List<RdfResourceEntry> remaining = deserializer
+            .getRemainingResourcesForMediaExtraction(input);
+    assertEquals(1, remaining.size());
+    assertEquals("is shown by resource", remaining.get(0).getResourceUrl());
+    assertEquals(Set.of(UrlType.IS_SHOWN_BY), remaining.get(0).getUrlTypes());
+
+    // Link checking includes all resources.
+    assertEquals(2, deserializer.getResourceEntriesForLinkChecking(input).size());
+  }
+
+  @Test
+  void testGetResourcesFromInvalidRecord() {
+    final RdfDeserializerImpl deserializer = new RdfDeserializerImpl();
+    assertThrows(RdfDeserializationException.class, () -> deserializer
+            .getResourceEntriesForLinkChecking("<rdf:RDF>".getBytes(StandardCharsets.UTF_8)));
+    final String recordWithDoctype = "<!DOCTYPE foo [<!ENTITY bar \"baz\">]><foo>&bar;</foo>";
+    assertThrows(RdfDeserializationException.class, () -> deserializer
+            .getResourceEntriesForLinkChecking(recordWithDoctype.getBytes(StandardCharsets.UTF_8)));
   }
 }
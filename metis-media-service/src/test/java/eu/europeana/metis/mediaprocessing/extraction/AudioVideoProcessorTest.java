@@ -3,6 +3,7 @@ package eu.europeana.metis.mediaprocessing.extraction;
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -450,11 +452,19 @@ class AudioVideoProcessorTest {
             .withHeader("Content-Type", "application/xml")
             .withBodyFile("example.mpd")));
 
-    final AbstractResourceMetadata metadata = audioVideoProcessor
+    final AudioVideoProcessor cachingProcessor = new AudioVideoProcessor(commandExecutor,
+        FF_PROBE_COMMAND, null, new MpdManifestCache(Duration.ofHours(1), 10));
+    final AbstractResourceMetadata metadata = cachingProcessor
         .parseMpdResource(resource, "application/xml");
 
     assertEquals(480, ((VideoResourceMetadata)metadata).getWidth().intValue());
     assertEquals(360, ((VideoResourceMetadata)metadata).getHeight().intValue());
+
+    // The second time, the manifest should be obtained from the cache.
+    final AbstractResourceMetadata cachedMetadata = cachingProcessor
+        .parseMpdResource(resource, "application/xml");
+    assertEquals(480, ((VideoResourceMetadata)cachedMetadata).getWidth().intValue());
+    wireMockServer.verify(1, getRequestedFor(urlEqualTo("/test-url.mpd")));
   }
 
   @Test
@@ -150,6 +150,36 @@ class CommandExecutorTest {
     verify(process, times(1)).destroyForcibly();
   }
 
+  @Test
+  void testCommandWithOutputExceedingLimit() throws IOException {
+
+    // Set up a command with more output than allowed
+    final CommandExecutor limitedCommandExecutor = new CommandExecutor(TIMEOUT,
+        COMMAND_OUTPUT.length() - 1, processFactory);
+    doReturn(COMMAND_OUTPUT_STREAM.get()).when(process).getInputStream();
+    doReturn(EMPTY_STREAM.get()).when(process).getErrorStream();
+
+    // Perform call
+    assertThrows(MediaExtractionException.class, () -> limitedCommandExecutor
+        .executeInternal(COMMAND_INPUT, false, MediaExtractionException::new));
+
+    // Verify
+    verify(process, times(1)).destroyForcibly();
+  }
+
+  @Test
+  void testCommandWithOutputWithinLimit() throws IOException, MediaExtractionException {
+
+    // Set up a command with exactly the allowed output
+    final CommandExecutor limitedCommandExecutor = new CommandExecutor(TIMEOUT,
+        COMMAND_OUTPUT.length(), processFactory);
+    doReturn(COMMAND_OUTPUT_STREAM.get()).when(process).getInputStream();
+
+    // Perform call
+    assertEquals(COMMAND_OUTPUT, limitedCommandExecutor
+        .executeInternal(COMMAND_INPUT, true, MediaExtractionException::new));
+  }
+
   @Test
   void testExecuteMethodHappyFlow() throws IOException, MediaExtractionException {
 
@@ -0,0 +1,243 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
+import eu.europeana.metis.mediaprocessing.extraction.ThumbnailGenerator.ThumbnailWithSize;
+import eu.europeana.metis.mediaprocessing.model.ThumbnailImpl;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class InProcessThumbnailGeneratorTest {
+
+  private static final int GRAY = 0x808080;
+  private static final int GRAY_FROM_LINEAR_RGB = 0xBCBCBC;
+
+  private static Path colorMapFile;
+  private static InProcessThumbnailGenerator generator;
+
+  @BeforeAll
+  static void createGenerator() throws IOException, MediaProcessorException {
+    colorMapFile = Files.createTempFile("colormap", ".png");
+    try (InputStream colorMap = InProcessThumbnailGeneratorTest.class.getClassLoader()
+        .getResourceAsStream(ThumbnailGenerator.COLORMAP_PNG)) {
+      Files.copy(colorMap, colorMapFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+    generator = new InProcessThumbnailGenerator(colorMapFile.toFile());
+  }
+
+  @AfterAll
+  static void removeColorMap() throws IOException {
+    Files.deleteIfExists(colorMapFile);
+  }
+
+  private static File createImage(int width, int height, String format) throws IOException {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setColor(Color.RED);
+    graphics.fillRect(0, 0, width, height);
+    graphics.setColor(Color.BLUE);
+    graphics.fillRect(0, 0, width / 4, height);
+    graphics.dispose();
+    final File file = Files.createTempFile("image", "." + format).toFile();
+    ImageIO.write(image, format, file);
+    return file;
+  }
+
+  private static BufferedImage createGrayImage() {
+    final BufferedImage image = new BufferedImage(500, 100, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setColor(new Color(GRAY));
+    graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+    graphics.dispose();
+    return image;
+  }
+
+  private static byte[] getLinearRgbProfile() {
+    return ICC_Profile.getInstance(ColorSpace.CS_LINEAR_RGB).getData();
+  }
+
+  private static File createJpegWithLinearRgbProfile() throws IOException {
+
+    // Write the image, and insert the profile as an APP2 marker after the JFIF (APP0) marker.
+    final ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    ImageIO.write(createGrayImage(), "jpeg", jpeg);
+    final byte[] original = jpeg.toByteArray();
+    final int headerLength = 4 + (((original[4] & 0xFF) << 8) | (original[5] & 0xFF));
+    final byte[] markerName = "ICC_PROFILE\0".getBytes(StandardCharsets.ISO_8859_1);
+    final byte[] profile = getLinearRgbProfile();
+    final int markerLength = 2 + markerName.length + 2 + profile.length;
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    result.write(original, 0, headerLength);
+    result.write(new byte[]{(byte) 0xFF, (byte) 0xE2, (byte) (markerLength >> 8),
+        (byte) markerLength});
+    result.write(markerName);
+    result.write(new byte[]{1, 1});
+    result.write(profile);
+    result.write(original, headerLength, original.length - headerLength);
+
+    final File file = Files.createTempFile("image", ".jpg").toFile();
+    Files.write(file.toPath(), result.toByteArray());
+    return file;
+  }
+
+  private static File createPngWithLinearRgbProfile() throws IOException {
+    final BufferedImage image = createGrayImage();
+    final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+    final File file = Files.createTempFile("image", ".png").toFile();
+    try (ImageOutputStream outputStream = ImageIO.createImageOutputStream(file)) {
+      final IIOMetadata metadata = writer
+          .getDefaultImageMetadata(new ImageTypeSpecifier(image), null);
+      final String format = metadata.getNativeMetadataFormatName();
+      final ByteArrayOutputStream profile = new ByteArrayOutputStream();
+      try (DeflaterOutputStream deflater = new DeflaterOutputStream(profile)) {
+        deflater.write(getLinearRgbProfile());
+      }
+      final IIOMetadataNode profileNode = new IIOMetadataNode("iCCP");
+      profileNode.setAttribute("profileName", "Linear RGB");
+      profileNode.setAttribute("compressionMethod", "deflate");
+      profileNode.setUserObject(profile.toByteArray());
+      final IIOMetadataNode root = new IIOMetadataNode(format);
+      root.appendChild(profileNode);
+      metadata.mergeTree(format, root);
+      writer.setOutput(outputStream);
+      writer.write(null, new IIOImage(image, null, metadata), null);
+    } finally {
+      writer.dispose();
+    }
+    return file;
+  }
+
+  private static List<ThumbnailWithSize> createThumbnails(String mimeType) {
+    return Arrays.asList(
+        new ThumbnailWithSize(new ThumbnailImpl("url", mimeType, "medium"), 200, "prefix"),
+        new ThumbnailWithSize(new ThumbnailImpl("url", mimeType, "large"), 400, "prefix"));
+  }
+
+  private static int getWidth(ThumbnailWithSize thumbnail) throws IOException {
+    try (InputStream content = thumbnail.getThumbnail().getContentStream()) {
+      return ImageIO.read(content).getWidth();
+    }
+  }
+
+  @Test
+  void testSupportsMimeType() {
+    assertTrue(InProcessThumbnailGenerator.supportsMimeType("image/jpeg"));
+    assertTrue(InProcessThumbnailGenerator.supportsMimeType("image/png"));
+    assertTrue(InProcessThumbnailGenerator.supportsMimeType("image/gif"));
+    assertFalse(InProcessThumbnailGenerator.supportsMimeType("image/tiff"));
+  }
+
+  @Test
+  void testGenerateThumbnailsForLargeImage() throws IOException {
+    final File content = createImage(1000, 500, "jpg");
+    final List<ThumbnailWithSize> thumbnails = createThumbnails("image/jpeg");
+    try {
+      final ImageMetadata metadata = generator
+          .generateThumbnails(thumbnails, "image/jpeg", false, content);
+      assertEquals(1000, metadata.getWidth());
+      assertEquals(500, metadata.getHeight());
+      assertEquals("sRGB", metadata.getColorSpace());
+      assertEquals(Arrays.asList("FF0000", "0000FF"), metadata.getDominantColors().subList(0, 2));
+      assertEquals(200, getWidth(thumbnails.get(0)));
+      assertEquals(400, getWidth(thumbnails.get(1)));
+      assertTrue(thumbnails.stream().map(ThumbnailWithSize::getTempFileForThumbnail)
+          .allMatch(file -> file == null));
+    } finally {
+      Files.delete(content.toPath());
+    }
+  }
+
+  @Test
+  void testGenerateThumbnailsForSmallImage() throws IOException {
+    final File content = createImage(300, 100, "png");
+    final List<ThumbnailWithSize> thumbnails = createThumbnails("image/png");
+    try {
+      final ImageMetadata metadata = generator
+          .generateThumbnails(thumbnails, "image/png", true, content);
+      assertEquals(300, metadata.getWidth());
+      assertEquals(100, metadata.getHeight());
+      assertEquals(200, getWidth(thumbnails.get(0)));
+
+      // The large thumbnail is the original.
+      assertEquals(Files.size(content.toPath()),
+          thumbnails.get(1).getThumbnail().getContentSize().longValue());
+    } finally {
+      Files.delete(content.toPath());
+    }
+  }
+
+  @Test
+  void testGenerateThumbnailsForJpegWithColorProfile() throws IOException {
+    final File content = createJpegWithLinearRgbProfile();
+    final List<ThumbnailWithSize> thumbnails = createThumbnails("image/jpeg");
+    try {
+      final ImageMetadata metadata = generator
+          .generateThumbnails(thumbnails, "image/jpeg", false, content);
+      assertEquals("sRGB", metadata.getColorSpace());
+
+      // The pixels are converted from the embedded profile to sRGB.
+      try (InputStream thumbnail = thumbnails.get(0).getThumbnail().getContentStream()) {
+        final int pixel = ImageIO.read(thumbnail).getRGB(100, 25);
+        for (int shift = 0; shift <= 16; shift += 8) {
+          assertTrue(Math.abs(((pixel >> shift) & 0xFF)
+              - ((GRAY_FROM_LINEAR_RGB >> shift) & 0xFF)) <= 4, Integer.toHexString(pixel));
+        }
+      }
+    } finally {
+      Files.delete(content.toPath());
+    }
+  }
+
+  @Test
+  void testGenerateThumbnailsForPngWithColorProfile() throws IOException {
+
+    // The PNG reader ignores the profile: the caller should fall back to ImageMagick.
+    final File content = createPngWithLinearRgbProfile();
+    try {
+      assertThrows(IOException.class, () -> generator
+          .generateThumbnails(createThumbnails("image/png"), "image/png", false, content));
+    } finally {
+      Files.delete(content.toPath());
+    }
+  }
+
+  @Test
+  void testGenerateThumbnailsForInvalidImage() throws IOException {
+    final File content = Files.createTempFile("image", ".jpg").toFile();
+    try {
+      Files.write(content.toPath(), new byte[]{1, 2, 3});
+      assertThrows(IOException.class, () -> generator
+          .generateThumbnails(createThumbnails("image/jpeg"), "image/jpeg", false, content));
+    } finally {
+      Files.delete(content.toPath());
+    }
+  }
+}
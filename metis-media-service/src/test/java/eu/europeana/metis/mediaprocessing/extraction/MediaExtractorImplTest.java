@@ -7,6 +7,7 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
@@ -21,22 +22,32 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import eu.europeana.metis.mediaprocessing.exception.MediaExtractionException;
 import eu.europeana.metis.mediaprocessing.extraction.MediaExtractorImpl.ProcessingMode;
+import eu.europeana.metis.mediaprocessing.extraction.ResourceGovernor.Stage;
 import eu.europeana.metis.mediaprocessing.http.MimeTypeDetectHttpClient;
 import eu.europeana.metis.mediaprocessing.http.ResourceDownloadClient;
+import eu.europeana.metis.mediaprocessing.http.ResourceDownloadClient.DownloadMode;
+import eu.europeana.metis.mediaprocessing.model.CachedExtractionResult;
 import eu.europeana.metis.mediaprocessing.model.RdfResourceEntry;
 import eu.europeana.metis.mediaprocessing.model.Resource;
 import eu.europeana.metis.mediaprocessing.model.ResourceExtractionResultImpl;
+import eu.europeana.metis.mediaprocessing.model.ResourceValidators;
 import eu.europeana.metis.mediaprocessing.model.UrlType;
 import eu.europeana.metis.utils.MediaType;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.tika.Tika;
@@ -121,6 +132,28 @@ class MediaExtractorImplTest {
     // Check what happens if we are not supposed to process
     assertThrows(IllegalStateException.class, () -> mediaExtractor.detectAndVerifyMimeType(resource, ProcessingMode.NONE));
   }
+
+  @Test
+  void testDetectAndVerifyMimeTypeDetectedWhileDownloading()
+      throws IOException, MediaExtractionException, URISyntaxException {
+
+    // Create resource for which the mime type was detected while downloading
+    final Resource resource = mock(Resource.class);
+    doReturn("resource url").when(resource).getResourceUrl();
+    doReturn(new URI("http://resource.actual.location.test.com")).when(resource)
+        .getActualLocation();
+    doReturn("text/html").when(resource).getProvidedMimeType();
+    doReturn(false).when(resource).hasContent();
+    final String detectedMimeType = "detected mime type";
+    doReturn(detectedMimeType).when(resource).getDetectedMimeType();
+    doReturn(false).when(mediaExtractor).shouldDownloadForFullProcessing(detectedMimeType);
+
+    // Check that the detected mime type is used and that no separate request is made.
+    assertEquals(detectedMimeType,
+        mediaExtractor.detectAndVerifyMimeType(resource, ProcessingMode.FULL));
+    verify(mimeTypeDetectHttpClient, never()).download(any());
+    verify(mediaExtractor, never()).detectType(any(), any());
+  }
   
   @Test 
   void testVerifyAndCorrectContentAvailability () throws MediaExtractionException, IOException {
@@ -205,6 +238,17 @@ class MediaExtractorImplTest {
     assertNull(mediaExtractor.chooseMediaProcessor(MediaType.OTHER));
   }
 
+  @Test
+  void testGetProcessingStage() {
+    assertSame(Stage.IMAGE, mediaExtractor.getProcessingStage(imageProcessor, "image/jpeg"));
+    assertSame(Stage.AUDIO_VIDEO,
+        mediaExtractor.getProcessingStage(audioVideoProcessor, "video/mp4"));
+    assertSame(Stage.PDF,
+        mediaExtractor.getProcessingStage(textProcessor, TextProcessor.PDF_MIME_TYPE));
+    assertNull(mediaExtractor.getProcessingStage(textProcessor, "text/plain"));
+    assertNull(mediaExtractor.getProcessingStage(null, "image/jpeg"));
+  }
+
   @Test
   void testProcessResource() throws MediaExtractionException, IOException {
 
@@ -287,6 +331,70 @@ class MediaExtractorImplTest {
     assertNull(mediaExtractor.performMediaExtraction(entry3, hasMainThumbnail ));
   }
 
+  @Test
+  void testPerformMediaExtractionWithCache()
+      throws IOException, MediaExtractionException, NoSuchAlgorithmException {
+
+    // Create extractor with cache.
+    final ExtractionResultCache cache = mock(ExtractionResultCache.class);
+    final MediaExtractorImpl cachingExtractor = spy(new MediaExtractorImpl(resourceDownloadClient,
+        mimeTypeDetectHttpClient, tika, imageProcessor, audioVideoProcessor, textProcessor, cache));
+    final String url = "resource url";
+    final RdfResourceEntry entry = new RdfResourceEntry(url, List.of(UrlType.IS_SHOWN_BY));
+    doReturn(ProcessingMode.FULL).when(cachingExtractor).getMode(entry);
+
+    // Test without cached result: the result should be cached.
+    final ResourceValidators validators = new ResourceValidators("tag", null, 3L);
+    final Resource resource1 = mock(Resource.class);
+    doReturn(url).when(resource1).getResourceUrl();
+    doReturn(Set.of(UrlType.IS_SHOWN_BY)).when(resource1).getUrlTypes();
+    doReturn(validators).when(resource1).getValidators();
+    doReturn(Optional.empty()).when(cache).get(url);
+    doReturn(resource1).when(resourceDownloadClient).downloadBasedOnMimeType(entry);
+    final ResourceExtractionResultImpl result = new ResourceExtractionResultImpl(null, null);
+    doReturn(result).when(cachingExtractor).performProcessing(resource1, ProcessingMode.FULL, true);
+    assertSame(result, cachingExtractor.performMediaExtraction(entry, true));
+    final ArgumentCaptor<CachedExtractionResult> cachedCaptor = ArgumentCaptor
+        .forClass(CachedExtractionResult.class);
+    verify(cache).put(eq(url), cachedCaptor.capture());
+    assertSame(validators, cachedCaptor.getValue().getValidators());
+    assertNull(cachedCaptor.getValue().getContentHash());
+    assertTrue(cachedCaptor.getValue().isExtractedWith(Set.of(UrlType.IS_SHOWN_BY), true));
+    assertFalse(cachedCaptor.getValue().isExtractedWith(Set.of(UrlType.IS_SHOWN_BY), false));
+
+    // Test with cached result for which the resource is not modified.
+    final byte[] content = {1, 2, 3};
+    final String contentHash = String.format("%064x",
+        new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+    final CachedExtractionResult cachedResult = new CachedExtractionResult(validators,
+        contentHash, Set.of(UrlType.IS_SHOWN_BY), true, null);
+    doReturn(Optional.of(cachedResult)).when(cache).get(url);
+    final Resource resource2 = mock(Resource.class);
+    doReturn(true).when(resource2).isNotModified();
+    doReturn(resource2).when(resourceDownloadClient)
+        .downloadIfModified(entry, DownloadMode.MIME_TYPE, validators);
+    assertNull(cachingExtractor.performMediaExtraction(entry, true));
+    verify(cachingExtractor, never()).performProcessing(eq(resource2), any(), anyBoolean());
+    verify(resource2).close();
+
+    // Test with cached result for which the resource has the same content.
+    final Resource resource3 = mock(Resource.class);
+    doReturn(true).when(resource3).hasContent();
+    doReturn(new ByteArrayInputStream(content)).when(resource3).getContentStream();
+    doReturn(resource3).when(resourceDownloadClient)
+        .downloadIfModified(entry, DownloadMode.MIME_TYPE, validators);
+    assertNull(cachingExtractor.performMediaExtraction(entry, true));
+    verify(cachingExtractor, never()).performProcessing(eq(resource3), any(), anyBoolean());
+    verify(resource3).close();
+
+    // Test with cached result that was extracted with different input: it should be ignored.
+    reset(resourceDownloadClient);
+    doReturn(resource1).when(resourceDownloadClient).downloadBasedOnMimeType(entry);
+    doReturn(result).when(cachingExtractor).performProcessing(resource1, ProcessingMode.FULL, false);
+    assertSame(result, cachingExtractor.performMediaExtraction(entry, false));
+    verify(resourceDownloadClient, never()).downloadIfModified(any(), any(), any());
+  }
+
   @Test
   void testClose() throws IOException {
     mediaExtractor.close();
@@ -15,7 +15,9 @@ import static org.mockito.Mockito.verify;
 
 import eu.europeana.metis.mediaprocessing.exception.MediaExtractionException;
 import eu.europeana.metis.mediaprocessing.exception.MediaProcessorException;
+import java.awt.Dimension;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -104,7 +106,14 @@ public class PdfToImageConverterTest {
 
     // Execute the command
     assertEquals(expectedCommand,
-            pdfToImageConverter.createPdfConversionCommand(inputFile, outputFile));
+            pdfToImageConverter.createPdfConversionCommand(inputFile, outputFile, null));
+
+    // Execute the command with an image size
+    final List<String> expectedCommandWithSize = new ArrayList<>(expectedCommand);
+    expectedCommandWithSize.addAll(expectedCommand.indexOf("-r72x72") + 1,
+            Arrays.asList("-g400x566", "-dPDFFitPage"));
+    assertEquals(expectedCommandWithSize, pdfToImageConverter
+            .createPdfConversionCommand(inputFile, outputFile, new Dimension(400, 566)));
   }
 
   @Test
@@ -117,26 +126,27 @@ public class PdfToImageConverterTest {
     // Mock
     doReturn(outputFile).when(pdfToImageConverter).createPdfImageFile();
     final List<String> command = Collections.singletonList("command");
-    doReturn(command).when(pdfToImageConverter).createPdfConversionCommand(inputFile, outputFile);
+    doReturn(command).when(pdfToImageConverter)
+            .createPdfConversionCommand(inputFile, outputFile, null);
     doReturn("").when(commandExecutor).execute(eq(command), eq(false), any());
 
     // Execute happy flow
-    assertEquals(outputFile, pdfToImageConverter.convertToPdf(inputFile));
+    assertEquals(outputFile, pdfToImageConverter.convertToPdf(inputFile, null));
 
     // Test for empty input
-    assertThrows(MediaExtractionException.class, () -> pdfToImageConverter.convertToPdf(null));
+    assertThrows(MediaExtractionException.class, () -> pdfToImageConverter.convertToPdf(null, null));
 
     // Test for problem creating the file - revert and check all is well
     doThrow(MediaExtractionException.class).when(pdfToImageConverter).createPdfImageFile();
-    assertThrows(MediaExtractionException.class, () -> pdfToImageConverter.convertToPdf(inputFile));
+    assertThrows(MediaExtractionException.class, () -> pdfToImageConverter.convertToPdf(inputFile, null));
     doReturn(outputFile).when(pdfToImageConverter).createPdfImageFile();
-    assertEquals(outputFile, pdfToImageConverter.convertToPdf(inputFile));
+    assertEquals(outputFile, pdfToImageConverter.convertToPdf(inputFile, null));
 
     // Test for exceptions in executing the execution
     doNothing().when(pdfToImageConverter).removePdfImageFileSilently(any());
     doThrow(MediaExtractionException.class).when(commandExecutor)
             .execute(eq(command), eq(false), any());
-    assertThrows(MediaExtractionException.class, () -> pdfToImageConverter.convertToPdf(inputFile));
+    assertThrows(MediaExtractionException.class, () -> pdfToImageConverter.convertToPdf(inputFile, null));
     verify(pdfToImageConverter, times(1)).removePdfImageFileSilently(eq(outputFile));
     verify(pdfToImageConverter, times(1)).removePdfImageFileSilently(any());
   }
@@ -0,0 +1,111 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.metis.mediaprocessing.http.RangeReadHttpClient.ByteRange;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RemoteMediaProbeTest {
+
+  private static final String URL = "http://www.test.com/video.mp4";
+
+  private static byte[] createHead(int length, String... boxes) {
+    final ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (int i = 0; i < boxes.length; i += 2) {
+      final int size = Integer.parseInt(boxes[i + 1]);
+      final int start = buffer.position();
+      if (start + 8 > length) {
+        break;
+      }
+      buffer.putInt(size);
+      buffer.put(boxes[i].getBytes(StandardCharsets.ISO_8859_1));
+      buffer.position(Math.min(start + size, length));
+    }
+    return buffer.array();
+  }
+
+  @Test
+  void testFindMovieBoxAtStart() {
+    final byte[] head = createHead(1_000, "ftyp", "32", "moov", "500", "mdat", "5000000");
+    assertArrayEquals(new long[]{1_000, 0}, RemoteMediaProbe.findMovieBox(head, 5_000_532));
+    assertTrue(RemoteMediaProbe.findAdditionalRanges(URL, head, 5_000_532).isEmpty());
+  }
+
+  @Test
+  void testFindMovieBoxAtEnd() {
+    final byte[] head = createHead(1_000, "ftyp", "32", "mdat", "5000000");
+    final long totalSize = 5_000_032 + 20_000;
+    assertArrayEquals(new long[]{5_000_032, 20_000},
+        RemoteMediaProbe.findMovieBox(head, totalSize));
+    final List<ByteRange> ranges = RemoteMediaProbe.findAdditionalRanges(URL, head, totalSize);
+    assertEquals(1, ranges.size());
+    assertEquals(URL, ranges.get(0).getUrl());
+    assertEquals(5_000_032, ranges.get(0).getOffset());
+    assertEquals(20_000, ranges.get(0).getLength());
+  }
+
+  @Test
+  void testFindMovieBoxPartlyInStart() {
+    final byte[] head = createHead(1_000, "ftyp", "32", "moov", "5000");
+    assertArrayEquals(new long[]{1_000, 4_032},
+        RemoteMediaProbe.findMovieBox(head, 1_000_000));
+  }
+
+  @Test
+  void testFindMovieBoxInvalidBox() {
+    final byte[] head = createHead(1_000, "ftyp", "32", "free", "4");
+    assertNull(RemoteMediaProbe.findMovieBox(head, 1_000_000));
+    assertNull(RemoteMediaProbe.findAdditionalRanges(URL, head, 1_000_000));
+  }
+
+  @Test
+  void testFindAdditionalRangesForOtherFormats() {
+
+    // Ogg files: the end of the file is needed.
+    final byte[] oggHead = new byte[1_000];
+    System.arraycopy("OggS".getBytes(StandardCharsets.ISO_8859_1), 0, oggHead, 0, 4);
+    final List<ByteRange> oggRanges = RemoteMediaProbe
+        .findAdditionalRanges(URL, oggHead, 1_000_000);
+    assertEquals(1, oggRanges.size());
+    assertEquals(1_000_000 - RemoteMediaProbe.TAIL_LENGTH, oggRanges.get(0).getOffset());
+    assertEquals(RemoteMediaProbe.TAIL_LENGTH, oggRanges.get(0).getLength());
+
+    // Small ogg file: the rest of the file is needed.
+    final List<ByteRange> smallOggRanges = RemoteMediaProbe
+        .findAdditionalRanges(URL, oggHead, 2_000);
+    assertEquals(1_000, smallOggRanges.get(0).getOffset());
+    assertEquals(1_000, smallOggRanges.get(0).getLength());
+
+    // Unknown files: we don't know what is needed.
+    assertNull(RemoteMediaProbe.findAdditionalRanges(URL, new byte[1_000], 1_000_000));
+  }
+
+  @Test
+  void testFindAdditionalRangesForUnsupportedFormats() {
+
+    // Matroska/WebM files (EBML header): the cues and duration may be anywhere in the file.
+    final byte[] matroskaHead = new byte[1_000];
+    System.arraycopy(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3}, 0, matroskaHead, 0, 4);
+    assertNull(RemoteMediaProbe.findAdditionalRanges(URL, matroskaHead, 1_000_000));
+
+    // AVI files: the index is at the end of the file.
+    final byte[] aviHead = new byte[1_000];
+    System.arraycopy("RIFF".getBytes(StandardCharsets.ISO_8859_1), 0, aviHead, 0, 4);
+    System.arraycopy("AVI ".getBytes(StandardCharsets.ISO_8859_1), 0, aviHead, 8, 4);
+    assertNull(RemoteMediaProbe.findAdditionalRanges(URL, aviHead, 1_000_000));
+
+    // MP3 files (ID3 tag).
+    final byte[] mp3Head = new byte[1_000];
+    System.arraycopy("ID3".getBytes(StandardCharsets.ISO_8859_1), 0, mp3Head, 0, 3);
+    assertNull(RemoteMediaProbe.findAdditionalRanges(URL, mp3Head, 1_000_000));
+
+    // If the start of the file is the whole file, nothing else is needed.
+    assertTrue(RemoteMediaProbe.findAdditionalRanges(URL, mp3Head, 1_000).isEmpty());
+  }
+}
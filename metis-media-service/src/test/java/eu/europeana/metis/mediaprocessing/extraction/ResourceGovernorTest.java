@@ -0,0 +1,62 @@
+package eu.europeana.metis.mediaprocessing.extraction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.metis.mediaprocessing.extraction.ResourceGovernor.Permit;
+import eu.europeana.metis.mediaprocessing.extraction.ResourceGovernor.Stage;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ResourceGovernorTest {
+
+  @Test
+  void testUnlimitedStages() throws InterruptedException {
+    final ResourceGovernor governor = new ResourceGovernor(Map.of(Stage.PDF, 0));
+    assertEquals(0, governor.getMaxConcurrentTasks(Stage.PDF));
+    assertEquals(0, governor.getMaxConcurrentTasks(Stage.IMAGE));
+    try (Permit permit1 = governor.acquire(Stage.PDF);
+        Permit permit2 = governor.acquire(Stage.PDF);
+        Permit permit3 = governor.acquire(null)) {
+      assertEquals(0, governor.getRunningCount(Stage.PDF));
+      assertEquals(0, governor.getQueueLength(Stage.PDF));
+    }
+  }
+
+  @Test
+  void testQuotaAndQueueLength() throws InterruptedException {
+    final ResourceGovernor governor = new ResourceGovernor(Map.of(Stage.AUDIO_VIDEO, 1));
+    assertEquals(1, governor.getMaxConcurrentTasks(Stage.AUDIO_VIDEO));
+
+    // Take the only permit: another stage should not be affected.
+    final Permit permit = governor.acquire(Stage.AUDIO_VIDEO);
+    assertEquals(1, governor.getRunningCount(Stage.AUDIO_VIDEO));
+    governor.acquire(Stage.IMAGE).close();
+
+    // Start a task that has to wait for the permit.
+    final CountDownLatch admitted = new CountDownLatch(1);
+    final Thread waitingTask = new Thread(() -> {
+      try (Permit waitingPermit = governor.acquire(Stage.AUDIO_VIDEO)) {
+        admitted.countDown();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    waitingTask.start();
+    while (governor.getQueueLength(Stage.AUDIO_VIDEO) == 0) {
+      Thread.onSpinWait();
+    }
+    assertEquals(1, governor.getQueueLength(Stage.AUDIO_VIDEO));
+    assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+
+    // Release the permit: the waiting task should be admitted.
+    permit.close();
+    assertTrue(admitted.await(10, TimeUnit.SECONDS));
+    waitingTask.join();
+    assertEquals(0, governor.getQueueLength(Stage.AUDIO_VIDEO));
+    assertEquals(0, governor.getRunningCount(Stage.AUDIO_VIDEO));
+  }
+}
@@ -1,5 +1,6 @@
 package eu.europeana.metis.mediaprocessing.extraction;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -37,6 +38,7 @@ import eu.europeana.metis.mediaprocessing.model.TextResourceMetadata;
 import eu.europeana.metis.mediaprocessing.model.Thumbnail;
 import eu.europeana.metis.mediaprocessing.model.ThumbnailImpl;
 import eu.europeana.metis.mediaprocessing.model.UrlType;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -178,7 +180,12 @@ class TextProcessorTest {
     final Path pdfImagePath = mock(Path.class);
     final File pdfImageFile = new File("PDF image");
     doReturn(pdfImageFile).when(pdfImagePath).toFile();
-    doReturn(pdfImagePath).when(pdfToImageConverter).convertToPdf(contentPath);
+    final OpenPdfFile openPdfFile = mock(OpenPdfFile.class);
+    doReturn(openPdfFile).when(textProcessor).openPdfFile(contentFile);
+    final Dimension pageSize = new Dimension(800, 1000);
+    doReturn(pageSize).when(openPdfFile).getPageSize(1);
+    doReturn(pdfImagePath).when(pdfToImageConverter)
+        .convertToPdf(contentPath, TextProcessor.computePdfImageSize(pageSize));
     doNothing().when(pdfToImageConverter).removePdfImageFileSilently(pdfImagePath);
 
     // Define output and mock thumbnail generator - resource type for which metadata is generated.
@@ -191,7 +198,7 @@ class TextProcessorTest {
 
     // define PDF analysis results and mock the method performing it.
     final PdfCharacteristics pdfCharacteristics = new PdfCharacteristics(true, 1);
-    doReturn(pdfCharacteristics).when(textProcessor).findPdfCharacteristics(contentFile);
+    doReturn(pdfCharacteristics).when(textProcessor).findPdfCharacteristics(openPdfFile);
 
     // Call method
     final ResourceExtractionResultImpl result = textProcessor.extractMetadata(resource, detectedMimeType, false);
@@ -213,9 +220,11 @@ class TextProcessorTest {
     // Verify result thumbnails
     assertEquals(thumbnailsAndMetadata.getRight(), result.getThumbnails());
 
-    // Verify deletion of pdf image
+    // Verify deletion of pdf image and closing of the PDF file
     verify(pdfToImageConverter, times(1)).removePdfImageFileSilently(pdfImagePath);
     verify(pdfToImageConverter, times(1)).removePdfImageFileSilently(any());
+    verify(textProcessor, times(1)).openPdfFile(any());
+    verify(openPdfFile, times(1)).close();
 
     // Test exception occurring in thumbnail creation - revert and check all is well.
     doThrow(MediaExtractionException.class).when(thumbnailGenerator)
@@ -228,22 +237,54 @@ class TextProcessorTest {
             .generateThumbnails(url, "image/png", pdfImageFile, true);
     textProcessor.extractMetadata(resource, detectedMimeType, false);
 
-    // Test exception occurring in establishing content size
-    doThrow(IOException.class).when(resource).getContentSize();
+    // Test exception occurring in finding the PDF characteristics - revert and check all is well.
+    doThrow(IOException.class).when(textProcessor).findPdfCharacteristics(openPdfFile);
     assertThrows(MediaExtractionException.class,
             () -> textProcessor.extractMetadata(resource, detectedMimeType, false));
     verify(thumbnail1, times(1)).close();
     verify(thumbnail2, times(1)).close();
+    doReturn(pdfCharacteristics).when(textProcessor).findPdfCharacteristics(openPdfFile);
+    textProcessor.extractMetadata(resource, detectedMimeType, false);
+
+    // Test exception occurring in opening the PDF file - revert and check all is well.
+    doThrow(IOException.class).when(textProcessor).openPdfFile(contentFile);
+    assertThrows(MediaExtractionException.class,
+            () -> textProcessor.extractMetadata(resource, detectedMimeType, false));
+    doReturn(openPdfFile).when(textProcessor).openPdfFile(contentFile);
+    textProcessor.extractMetadata(resource, detectedMimeType, false);
+
+    // Test exception occurring in establishing content size
+    doThrow(IOException.class).when(resource).getContentSize();
+    assertThrows(MediaExtractionException.class,
+            () -> textProcessor.extractMetadata(resource, detectedMimeType, false));
+    verify(thumbnail1, times(2)).close();
+    verify(thumbnail2, times(2)).close();
+  }
+
+  @Test
+  void testComputePdfImageSize() {
+    assertNull(TextProcessor.computePdfImageSize(null));
+    assertNull(TextProcessor.computePdfImageSize(new Dimension(400, 600)));
+    assertEquals(new Dimension(400, 566), TextProcessor.computePdfImageSize(new Dimension(595, 842)));
+    assertEquals(new Dimension(400, 1), TextProcessor.computePdfImageSize(new Dimension(5000, 1)));
+  }
+
+  @Test
+  void testSelectPagesToSample() {
+    assertArrayEquals(new int[0], TextProcessor.selectPagesToSample(0));
+    assertArrayEquals(new int[]{1, 2, 3, 4}, TextProcessor.selectPagesToSample(4));
+    assertEquals(TextProcessor.MAX_SAMPLED_PAGES,
+        TextProcessor.selectPagesToSample(TextProcessor.MAX_SAMPLED_PAGES).length);
+    assertArrayEquals(new int[]{1, 12, 23, 34, 45, 56, 67, 78, 89, 100},
+        TextProcessor.selectPagesToSample(100));
   }
 
   @Test
   void testFindPdfCharacteristics() throws IOException, MediaExtractionException {
 
     // Mock pdf reading utility classes: we have 4 pages.
-    final File content = new File("content file");
     final OpenPdfFile openPdfFile = mock(OpenPdfFile.class);
     doReturn(4).when(openPdfFile).getNumberOfPages();
-    doReturn(openPdfFile).when(textProcessor).openPdfFile(content);
     final PdfReaderContentParser pdfParser = mock(PdfReaderContentParser.class);
     doReturn(pdfParser).when(openPdfFile).getPdfParser();
     final PdfListener pdfListener = mock(PdfListener.class);
@@ -256,7 +297,7 @@ class TextProcessorTest {
       doReturn(page > 2 ? 1 : null).when(pdfListener).getDpi();
       return pdfListener;
     }).when(pdfParser).processContent(anyInt(), notNull());
-    final PdfCharacteristics result1 = textProcessor.findPdfCharacteristics(content);
+    final PdfCharacteristics result1 = textProcessor.findPdfCharacteristics(openPdfFile);
     assertEquals(Integer.valueOf(1), result1.getResolution());
     assertTrue(result1.containsText());
     verify(pdfParser, times(3)).processContent(anyInt(), eq(pdfListener));
@@ -268,7 +309,7 @@ class TextProcessorTest {
       doReturn(page > 1).when(pdfListener).hasText();
       return pdfListener;
     }).when(pdfParser).processContent(anyInt(), notNull());
-    final PdfCharacteristics result2 = textProcessor.findPdfCharacteristics(content);
+    final PdfCharacteristics result2 = textProcessor.findPdfCharacteristics(openPdfFile);
     assertEquals(Integer.valueOf(2), result2.getResolution());
     assertTrue(result2.containsText());
     verify(pdfParser, times(5)).processContent(anyInt(), eq(pdfListener));
@@ -277,7 +318,7 @@ class TextProcessorTest {
     doReturn(3).when(pdfListener).getDpi();
     doReturn(false).when(pdfListener).hasText();
     doReturn(pdfListener).when(pdfParser).processContent(anyInt(), notNull());
-    final PdfCharacteristics result3 = textProcessor.findPdfCharacteristics(content);
+    final PdfCharacteristics result3 = textProcessor.findPdfCharacteristics(openPdfFile);
     assertEquals(Integer.valueOf(3), result3.getResolution());
     assertFalse(result3.containsText());
     verify(pdfParser, times(9)).processContent(anyInt(), eq(pdfListener));
@@ -286,15 +327,25 @@ class TextProcessorTest {
     doReturn(null).when(pdfListener).getDpi();
     doReturn(true).when(pdfListener).hasText();
     doReturn(pdfListener).when(pdfParser).processContent(anyInt(), notNull());
-    final PdfCharacteristics result4 = textProcessor.findPdfCharacteristics(content);
+    final PdfCharacteristics result4 = textProcessor.findPdfCharacteristics(openPdfFile);
     assertNull(result4.getResolution());
     assertTrue(result4.containsText());
     verify(pdfParser, times(13)).processContent(anyInt(), eq(pdfListener));
 
+    // Now parse a large pdf without image and text: only the sampled pages should be parsed.
+    doReturn(1000).when(openPdfFile).getNumberOfPages();
+    doReturn(null).when(pdfListener).getDpi();
+    doReturn(false).when(pdfListener).hasText();
+    final PdfCharacteristics result5 = textProcessor.findPdfCharacteristics(openPdfFile);
+    assertNull(result5.getResolution());
+    assertFalse(result5.containsText());
+    verify(pdfParser, times(13 + TextProcessor.MAX_SAMPLED_PAGES))
+        .processContent(anyInt(), eq(pdfListener));
+    verify(pdfParser, times(1)).processContent(eq(1000), eq(pdfListener));
+
     // Test exception
-    doThrow(IOException.class).when(textProcessor).openPdfFile(content);
-    assertThrows(MediaExtractionException.class,
-        () -> textProcessor.findPdfCharacteristics(content));
+    doThrow(IOException.class).when(pdfParser).processContent(anyInt(), notNull());
+    assertThrows(IOException.class, () -> textProcessor.findPdfCharacteristics(openPdfFile));
   }
 
   @Test
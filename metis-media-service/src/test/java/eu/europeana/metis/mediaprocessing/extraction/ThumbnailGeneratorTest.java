@@ -31,7 +31,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -215,6 +217,51 @@ class ThumbnailGeneratorTest {
     thumbnailGenerator.generateThumbnails(url, JPG_MIME_TYPE, content, false);
   }
 
+  @Test
+  void testThumbnailGenerationFallsBackOnInProcessFailure()
+      throws MediaExtractionException, IOException {
+
+    // Define the thumbnail
+    final ThumbnailWithSize thumbnail = spy(new ThumbnailWithSize(mock(ThumbnailImpl.class), 123,
+        Paths.get("File 1"), "prefix 1"));
+    doNothing().when(thumbnail).createTempFileForThumbnail();
+    doNothing().when(thumbnail).deleteTempFileSilently();
+    final List<ThumbnailWithSize> thumbnails = Collections.singletonList(thumbnail);
+
+    // Create a generator with an in-process generator that fails with a runtime exception.
+    final InProcessThumbnailGenerator inProcessThumbnailGenerator =
+        mock(InProcessThumbnailGenerator.class);
+    doThrow(new IllegalArgumentException("Corrupt image")).when(inProcessThumbnailGenerator)
+        .generateThumbnails(any(), any(), anyBoolean(), any());
+    final ThumbnailGenerator generator = spy(new ThumbnailGenerator(commandExecutor, IMAGE_MAGICK,
+        COLOR_MAP_FILE, inProcessThumbnailGenerator));
+
+    // Mock the ImageMagick route
+    final String url = "testUrl";
+    final File content = new File("content file");
+    final List<String> command = Arrays.asList("command1", "command2");
+    final String commandResponse = "response";
+    final ImageMetadata imageMetadata = new ImageMetadata(200, 200, "sRGB",
+        Arrays.asList("WHITE", "BLACK"));
+    doReturn(thumbnails).when(generator).prepareThumbnailFiles(eq(url), anyString());
+    doReturn(command).when(generator)
+        .createThumbnailGenerationCommand(same(thumbnails), anyBoolean(), same(content), any());
+    doReturn(commandResponse).when(commandExecutor).execute(eq(command), eq(false), any());
+    doReturn(imageMetadata).when(generator).parseCommandResponse(eq(commandResponse), any());
+    doReturn(1024L).when(generator).getFileSize(any());
+    doNothing().when(generator).copyFile(any(Path.class), any());
+    doNothing().when(generator).copyFile(any(File.class), any());
+
+    // Call the method: the result should come from ImageMagick.
+    final Pair<ImageMetadata, List<Thumbnail>> result = generator
+        .generateThumbnails(url, JPG_MIME_TYPE, content, false);
+    assertSame(imageMetadata, result.getLeft());
+    assertEquals(Collections.singletonList(thumbnail.getThumbnail()), result.getRight());
+    verify(inProcessThumbnailGenerator, times(1))
+        .generateThumbnails(any(), any(), anyBoolean(), any());
+    verify(commandExecutor, times(1)).execute(eq(command), eq(false), any());
+  }
+
   private static String concat(List<String> input) {
     return String.join("\n", input);
   }
@@ -225,11 +272,11 @@ class ThumbnailGeneratorTest {
     // Perform the call
     final String contentMarker = "1234567890";
     final List<String> input = Arrays
-            .asList("", contentMarker, "589", "768", "sRGB", contentMarker, "", contentMarker,
+            .asList("", contentMarker, "589 768 sRGB", contentMarker, "", contentMarker,
                     "      2995: ( 47, 79, 79,255) #2F4F4F DarkSlateGray",
                     "        24: ( 72, 61,139,255) #483D8B DarkSlateBlue",
                     "      6711: ( 85,107, 47,255) #556B2F DarkOliveGreen", contentMarker, "");
-    assertEquals(13, input.size()); // If false, recalculate indices below.
+    assertEquals(11, input.size()); // If false, recalculate indices below.
     final ImageMetadata result = thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check result
@@ -245,6 +292,7 @@ class ThumbnailGeneratorTest {
     assertTrue(colorSet.contains("2F4F4F"));
     assertTrue(colorSet.contains("483D8B"));
     assertTrue(colorSet.contains("556B2F"));
+    assertEquals(Arrays.asList("556B2F", "2F4F4F", "483D8B"), colors);
 
     // Check missing content marker at the beginning
     input.set(1, "");
@@ -254,17 +302,17 @@ class ThumbnailGeneratorTest {
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check missing content marker in the middle
-    input.set(5, "");
+    input.set(3, "");
     assertThrows(MediaExtractionException.class,
             () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(5, contentMarker);
+    input.set(3, contentMarker);
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check missing content marker at the end
-    input.set(11, "");
+    input.set(9, "");
     assertThrows(MediaExtractionException.class,
             () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(11, contentMarker);
+    input.set(9, contentMarker);
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check additional content marker at the end
@@ -275,17 +323,17 @@ class ThumbnailGeneratorTest {
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check additional content marker in the middle
-    input.set(6, contentMarker);
+    input.set(4, contentMarker);
     assertThrows(MediaExtractionException.class,
             () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(6, "");
+    input.set(4, "");
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check additional content marker at the end
-    input.set(12, contentMarker);
+    input.set(10, contentMarker);
     assertThrows(MediaExtractionException.class,
             () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(12, "");
+    input.set(10, "");
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check unexpected content at the beginning
@@ -296,17 +344,17 @@ class ThumbnailGeneratorTest {
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check unexpected content in the middle
-    input.set(6, "UNEXPECTED CONTENT");
+    input.set(4, "UNEXPECTED CONTENT");
     assertThrows(MediaExtractionException.class,
             () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(6, "");
+    input.set(4, "");
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check unexpected content at the end
-    input.set(12, "UNEXPECTED CONTENT");
+    input.set(10, "UNEXPECTED CONTENT");
     assertThrows(MediaExtractionException.class,
             () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(12, "");
+    input.set(10, "");
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check unexpected input
@@ -323,22 +371,43 @@ class ThumbnailGeneratorTest {
     input.set(2, "A");
     assertThrows(MediaExtractionException.class,
         () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
-    input.set(2, "589");
+    input.set(2, "589 768");
+    assertThrows(MediaExtractionException.class,
+        () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
+    input.set(2, "589 768 sRGB extra");
+    assertThrows(MediaExtractionException.class,
+        () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
+    input.set(2, "589 768 sRGB");
     thumbnailGenerator.parseCommandResponse(concat(input), contentMarker);
 
     // Check bad color value
-    input.set(8, "BAD COLOR");
+    input.set(6, "BAD COLOR");
     assertThrows(MediaExtractionException.class,
         () -> thumbnailGenerator.parseCommandResponse(concat(input), contentMarker));
 
     // Check empty color list
+    input.set(6, "");
+    input.set(7, "");
     input.set(8, "");
-    input.set(9, "");
-    input.set(10, "");
     assertTrue(thumbnailGenerator.parseCommandResponse(concat(input), contentMarker)
             .getDominantColors().isEmpty());
   }
 
+  @Test
+  void testParseCommandResponseLimitsDominantColors() throws MediaExtractionException {
+    final String contentMarker = "1234567890";
+    final List<String> input = new ArrayList<>(
+        Arrays.asList("", contentMarker, "10 20 Gray", contentMarker, "", contentMarker));
+    for (int i = 1; i <= 10; i++) {
+      input.add(String.format("%10d: (%3d,%3d,%3d) #%02X%02X%02X", i * 100, i, i, i, i, i, i));
+    }
+    input.addAll(Arrays.asList(contentMarker, ""));
+    final ImageMetadata result = thumbnailGenerator
+        .parseCommandResponse(concat(input), contentMarker);
+    assertEquals(Arrays.asList("0A0A0A", "090909", "080808", "070707", "060606", "050505"),
+        result.getDominantColors());
+  }
+
   @Test
   void testCreateThumbnailGenerationCommand() {
 
@@ -365,7 +434,7 @@ class ThumbnailGeneratorTest {
 
     // Verify
     final List<String> expectedImage = Arrays.asList(IMAGE_MAGICK, file.getPath() + "[0]",
-        "-format", contentMarker + "\n%w\n%h\n%[colorspace]\n" + contentMarker + "\n", "-write", "info:", "(", "+clone",
+        "-format", contentMarker + "\n%w %h %[colorspace]\n" + contentMarker + "\n", "-write", "info:", "(", "+clone",
         "-thumbnail", size1 + "x", "-write", prefix1 + thumbnail1.getTempFileForThumbnail().toString(), "+delete", ")",
         "-thumbnail", size2 + "x", "-write", prefix2 + thumbnail2.getTempFileForThumbnail().toString(),
         "-colorspace", "sRGB", "-dither", "Riemersma", "-remap", COLOR_MAP_FILE,
@@ -378,7 +447,7 @@ class ThumbnailGeneratorTest {
 
     // Verify
     final List<String> expectedText = Arrays.asList(IMAGE_MAGICK, file.getPath() + "[0]",
-        "-format", contentMarker + "\n%w\n%h\n%[colorspace]\n" + contentMarker + "\n", "-write", "info:",
+        "-format", contentMarker + "\n%w %h %[colorspace]\n" + contentMarker + "\n", "-write", "info:",
         "-background", "white", "-alpha", "remove", "(", "+clone",
         "-thumbnail", size1 + "x", "-write", prefix1 + thumbnail1.getTempFileForThumbnail().toString(), "+delete", ")",
         "-thumbnail", size2 + "x", "-write", prefix2 + thumbnail2.getTempFileForThumbnail().toString(),
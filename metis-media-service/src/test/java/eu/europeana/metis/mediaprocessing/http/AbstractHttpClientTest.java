@@ -0,0 +1,205 @@
+package eu.europeana.metis.mediaprocessing.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import eu.europeana.metis.mediaprocessing.http.AbstractHttpClient.ContentHandling;
+import eu.europeana.metis.utils.NetworkUtil;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AbstractHttpClientTest {
+
+  private static final int LARGE_CONTENT_LENGTH = 500 * 1024;
+  private static final int SLOW_RESPONSE_DURATION = 5_000;
+
+  private static int portForWireMock = 9999;
+
+  static {
+    try {
+      portForWireMock = NetworkUtil.getAvailableLocalPort();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static WireMockServer wireMockServer;
+
+  @BeforeAll
+  static void startServer() {
+    wireMockServer = new WireMockServer(wireMockConfig().port(portForWireMock));
+    wireMockServer.start();
+  }
+
+  @AfterAll
+  static void stopServer() {
+    wireMockServer.stop();
+  }
+
+  @BeforeEach
+  void resetServer() {
+    wireMockServer.resetAll();
+  }
+
+  private static String getUrl(String path) {
+    return "http://127.0.0.1:" + portForWireMock + path;
+  }
+
+  private static byte[] createLargeContent() {
+    final byte[] content = new byte[LARGE_CONTENT_LENGTH];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  @Test
+  void testFollowRedirects() throws IOException {
+    wireMockServer.stubFor(get(urlEqualTo("/redirect"))
+        .willReturn(aResponse().withStatus(302).withHeader("Location", "/target")));
+    wireMockServer.stubFor(get(urlEqualTo("/target"))
+        .willReturn(aResponse().withStatus(200).withBody("content")));
+
+    try (TestClient client = new TestClient(1, 10_000, actualUri -> ContentHandling.toMemory(
+        content -> actualUri + " " + new String(content, StandardCharsets.UTF_8), null))) {
+      assertEquals(getUrl("/target") + " content", client.download(getUrl("/redirect")));
+    }
+  }
+
+  @Test
+  void testTooManyRedirects() throws IOException {
+    wireMockServer.stubFor(get(urlEqualTo("/loop"))
+        .willReturn(aResponse().withStatus(302).withHeader("Location", "/loop")));
+
+    try (TestClient client = new TestClient(2, 10_000,
+        actualUri -> ContentHandling.toMemory(content -> "content", null))) {
+      assertThrows(IOException.class, () -> client.download(getUrl("/loop")));
+    }
+    wireMockServer.verify(3, getRequestedFor(urlEqualTo("/loop")));
+  }
+
+  @Test
+  void testErrorStatus() throws IOException {
+    wireMockServer.stubFor(get(urlEqualTo("/missing")).willReturn(aResponse().withStatus(404)));
+
+    try (TestClient client = new TestClient(0, 10_000,
+        actualUri -> ContentHandling.toMemory(content -> "content", null))) {
+      final HttpStatusException exception = assertThrows(HttpStatusException.class,
+          () -> client.download(getUrl("/missing")));
+      assertEquals(404, exception.getStatusCode());
+    }
+  }
+
+  @Test
+  void testAbortWhenRequestTakesTooLong() throws IOException {
+    wireMockServer.stubFor(get(urlEqualTo("/slow")).willReturn(
+        aResponse().withStatus(200).withBody("content")
+            .withFixedDelay(SLOW_RESPONSE_DURATION)));
+
+    try (TestClient client = new TestClient(0, 200,
+        actualUri -> ContentHandling.toMemory(content -> "content", null))) {
+      final long start = System.currentTimeMillis();
+      assertThrows(IOException.class, () -> client.download(getUrl("/slow")));
+      assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DURATION);
+    }
+  }
+
+  @Test
+  void testPrefixStopsTransferEarly() throws IOException {
+    final byte[] content = createLargeContent();
+    wireMockServer.stubFor(get(urlEqualTo("/large")).willReturn(
+        aResponse().withStatus(200).withBody(content)
+            .withChunkedDribbleDelay(10, SLOW_RESPONSE_DURATION)));
+
+    try (TestClient client = new TestClient(0, 10_000, actualUri -> ContentHandling
+        .prefixOnly(16, prefix -> Arrays.equals(content, 0, 16, prefix, 0, 16)
+            + " " + (prefix.length < content.length)))) {
+      final long start = System.currentTimeMillis();
+      assertEquals("true true", client.download(getUrl("/large")));
+      assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DURATION);
+    }
+  }
+
+  @Test
+  void testPrefixWithFullTransfer() throws IOException {
+    final byte[] content = createLargeContent();
+    wireMockServer.stubFor(get(urlEqualTo("/large"))
+        .willReturn(aResponse().withStatus(200).withBody(content)));
+
+    final Path file = Files.createTempFile("http_client_test_", null);
+    final AtomicInteger prefixLength = new AtomicInteger();
+    try (TestClient client = new TestClient(0, 10_000, actualUri -> ContentHandling
+        .withPrefix(16, prefix -> {
+          prefixLength.set(prefix.length);
+          return file;
+        }, () -> "done", null))) {
+      assertEquals("done", client.download(getUrl("/large")));
+      assertTrue(prefixLength.get() >= 16);
+      assertArrayEquals(content, Files.readAllBytes(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testPrefixHandlerDoesNotRunInHttpClientThread() throws IOException {
+    wireMockServer.stubFor(get(urlEqualTo("/small"))
+        .willReturn(aResponse().withStatus(200).withBody("content")));
+
+    // The content is shorter than the prefix: the handler receives all of it.
+    final Path file = Files.createTempFile("http_client_test_", null);
+    final AtomicReference<String> handlerThread = new AtomicReference<>();
+    try (TestClient client = new TestClient(0, 10_000, actualUri -> ContentHandling
+        .withPrefix(1_000, prefix -> {
+          handlerThread.set(Thread.currentThread().getName());
+          return file;
+        }, () -> "done", null))) {
+      assertEquals("done", client.download(getUrl("/small")));
+      assertEquals("http-client-result", handlerThread.get());
+      assertEquals("content", Files.readString(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static class TestClient extends AbstractHttpClient<String, String> {
+
+    private final Function<URI, ContentHandling<String>> contentHandling;
+
+    TestClient(int maxRedirectCount, int requestTimeout,
+        Function<URI, ContentHandling<String>> contentHandling) {
+      super(maxRedirectCount, 1_000, 10_000, requestTimeout);
+      this.contentHandling = contentHandling;
+    }
+
+    @Override
+    protected String getResourceUrl(String resourceEntry) {
+      return resourceEntry;
+    }
+
+    @Override
+    protected ContentHandling<String> handleContent(String resourceEntry, URI actualUri,
+        String mimeType, Long fileSize) {
+      return contentHandling.apply(actualUri);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package eu.europeana.metis.mediaprocessing.linkchecking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import eu.europeana.metis.mediaprocessing.exception.LinkCheckingException;
+import eu.europeana.metis.mediaprocessing.http.HttpStatusException;
+import eu.europeana.metis.mediaprocessing.http.LinkCheckClient;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LinkCheckerImplTest {
+
+  private static final String LINK_OK = "http://host1.org/ok";
+  private static final String LINK_NO_HEAD = "http://host1.org/no-head";
+  private static final String LINK_BROKEN = "https://host2.org/broken";
+  private static final String LINK_NOT_FOUND = "https://host2.org/not-found";
+  private static final String LINK_UNAVAILABLE = "https://host2.org/unavailable";
+
+  private LinkCheckClient headClient;
+  private LinkCheckClient rangedGetClient;
+  private LinkCheckerImpl linkChecker;
+
+  @BeforeEach
+  void setUp() {
+    headClient = mock(LinkCheckClient.class);
+    rangedGetClient = mock(LinkCheckClient.class);
+    doReturn(CompletableFuture.completedFuture(null)).when(headClient).downloadAsync(LINK_OK);
+    doReturn(CompletableFuture.failedFuture(new IOException())).when(headClient)
+        .downloadAsync(LINK_NO_HEAD);
+    doReturn(CompletableFuture.completedFuture(null)).when(rangedGetClient)
+        .downloadAsync(LINK_NO_HEAD);
+    final IOException brokenException = new IOException("Broken");
+    doReturn(CompletableFuture.failedFuture(brokenException)).when(headClient)
+        .downloadAsync(LINK_BROKEN);
+    doReturn(CompletableFuture.failedFuture(brokenException)).when(rangedGetClient)
+        .downloadAsync(LINK_BROKEN);
+    final IOException notFoundException = new HttpStatusException("Not found", 404);
+    doReturn(CompletableFuture.failedFuture(notFoundException)).when(headClient)
+        .downloadAsync(LINK_NOT_FOUND);
+    doReturn(CompletableFuture.failedFuture(notFoundException)).when(rangedGetClient)
+        .downloadAsync(LINK_NOT_FOUND);
+    final IOException unavailableException = new HttpStatusException("Unavailable", 503);
+    doReturn(CompletableFuture.failedFuture(unavailableException)).when(headClient)
+        .downloadAsync(LINK_UNAVAILABLE);
+    doReturn(CompletableFuture.failedFuture(unavailableException)).when(rangedGetClient)
+        .downloadAsync(LINK_UNAVAILABLE);
+    linkChecker = new LinkCheckerImpl(headClient, rangedGetClient, new HostThrottle(2),
+        new LinkCheckCache(Duration.ofHours(1), 100));
+  }
+
+  @Test
+  void testPerformLinkCheckingBatch() {
+    final Map<String, LinkCheckingException> failures = linkChecker
+        .performLinkChecking(Arrays.asList(LINK_OK, LINK_NO_HEAD, LINK_BROKEN, LINK_OK));
+    assertEquals(Collections.singleton(LINK_BROKEN), failures.keySet());
+    assertEquals("Broken", failures.get(LINK_BROKEN).getCause().getMessage());
+
+    // Links are checked once, and the ranged GET is only done if HEAD fails.
+    verify(headClient, times(1)).downloadAsync(LINK_OK);
+    verify(rangedGetClient, never()).downloadAsync(LINK_OK);
+    verify(headClient, times(1)).downloadAsync(LINK_NO_HEAD);
+    verify(rangedGetClient, times(1)).downloadAsync(LINK_NO_HEAD);
+    verify(headClient, times(1)).downloadAsync(LINK_BROKEN);
+    verify(rangedGetClient, times(1)).downloadAsync(LINK_BROKEN);
+  }
+
+  @Test
+  void testPerformLinkCheckingUsesCache() throws LinkCheckingException {
+
+    // Successes are cached.
+    linkChecker.performLinkChecking(LINK_OK);
+    linkChecker.performLinkChecking(LINK_OK);
+    verify(headClient, times(1)).downloadAsync(LINK_OK);
+
+    // Client errors are cached, but every caller receives its own exception.
+    final LinkCheckingException failure = assertThrows(LinkCheckingException.class,
+        () -> linkChecker.performLinkChecking(LINK_NOT_FOUND));
+    final LinkCheckingException cachedFailure = assertThrows(LinkCheckingException.class,
+        () -> linkChecker.performLinkChecking(LINK_NOT_FOUND));
+    assertNotSame(failure, cachedFailure);
+    assertSame(failure.getCause(), cachedFailure.getCause());
+    assertEquals(failure.getMessage(), cachedFailure.getMessage());
+    verify(headClient, times(1)).downloadAsync(LINK_NOT_FOUND);
+  }
+
+  @Test
+  void testPerformLinkCheckingDoesNotCacheTransientFailures() {
+
+    // Connection problems are not cached.
+    assertThrows(LinkCheckingException.class, () -> linkChecker.performLinkChecking(LINK_BROKEN));
+    assertThrows(LinkCheckingException.class, () -> linkChecker.performLinkChecking(LINK_BROKEN));
+    verify(headClient, times(2)).downloadAsync(LINK_BROKEN);
+
+    // Server errors are not cached.
+    assertThrows(LinkCheckingException.class,
+        () -> linkChecker.performLinkChecking(LINK_UNAVAILABLE));
+    assertThrows(LinkCheckingException.class,
+        () -> linkChecker.performLinkChecking(LINK_UNAVAILABLE));
+    verify(headClient, times(2)).downloadAsync(LINK_UNAVAILABLE);
+  }
+
+  @Test
+  void testPerformLinkCheckingInvalidLink() {
+    final List<String> links = Arrays.asList("ftp://host.org/file", "http://host.org/ bad");
+    assertEquals(links.size(), linkChecker.performLinkChecking(links).size());
+    verify(headClient, never()).downloadAsync(any());
+    verify(rangedGetClient, never()).downloadAsync(any());
+  }
+
+  @Test
+  void testHostThrottle() {
+    final HostThrottle hostThrottle = new HostThrottle(1);
+    final CompletableFuture<String> firstTask = new CompletableFuture<>();
+    final CompletableFuture<String> firstResult = hostThrottle.submit("host", () -> firstTask);
+    final CompletableFuture<String> secondResult = hostThrottle
+        .submit("host", () -> CompletableFuture.completedFuture("second"));
+    final CompletableFuture<String> otherHostResult = hostThrottle
+        .submit("other", () -> CompletableFuture.completedFuture("other"));
+
+    // The second task for the host has to wait for the first, the task for the other host doesn't.
+    assertEquals("other", otherHostResult.join());
+    assertFalse(secondResult.isDone());
+    assertEquals(1, hostThrottle.getRunningCount("host"));
+    firstTask.complete("first");
+    assertEquals("first", firstResult.join());
+    assertEquals("second", secondResult.join());
+  }
+
+  @Test
+  void testCache() {
+
+    // Expiry
+    final Clock clock = mock(Clock.class);
+    final Instant now = Instant.now();
+    doReturn(now, now.plusSeconds(30), now.plusSeconds(90)).when(clock).instant();
+    final LinkCheckCache cache = new LinkCheckCache(Duration.ofMinutes(1), 10, clock);
+    cache.put(LINK_OK, null);
+    assertTrue(cache.get(LINK_OK).isPresent());
+    assertTrue(cache.get(LINK_OK).isEmpty());
+
+    // Maximum size
+    final LinkCheckCache smallCache = new LinkCheckCache(Duration.ofMinutes(1), 1);
+    smallCache.put(LINK_OK, null);
+    smallCache.put(LINK_BROKEN, null);
+    assertTrue(smallCache.get(LINK_OK).isEmpty());
+    assertTrue(smallCache.get(LINK_BROKEN).isPresent());
+
+    // Disabled
+    final LinkCheckCache disabledCache = new LinkCheckCache(Duration.ZERO, 10);
+    disabledCache.put(LINK_OK, null);
+    assertTrue(disabledCache.get(LINK_OK).isEmpty());
+  }
+}
@@ -0,0 +1,93 @@
+package eu.europeana.metis.mediaprocessing.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContentStorageTest {
+
+  private static ResourceImpl createResource(ContentStorage contentStorage) {
+    return new ResourceImpl(new RdfResourceEntry("resource url", Collections.emptyList()), null,
+        null, URI.create("http://www.test.com"), null, false, contentStorage);
+  }
+
+  @Test
+  void testArenaFilesAreReused(@TempDir Path directory) throws IOException {
+    final ContentStorage contentStorage = new ContentStorage(directory, 0);
+
+    // Acquire two files: they should be different and in the arena.
+    final Path file1 = contentStorage.acquireFile("prefix_", null);
+    final Path file2 = contentStorage.acquireFile("prefix_", null);
+    assertNotEquals(file1, file2);
+    assertEquals(directory, file1.getParent().getParent());
+
+    // Release a file with content: it should be emptied and handed out again.
+    Files.write(file1, new byte[]{1, 2, 3});
+    contentStorage.releaseFile(file1);
+    assertEquals(0, Files.size(file1));
+    assertEquals(file1, contentStorage.acquireFile("prefix_", null));
+
+    // Close the storage: released files and the arena should be removed.
+    contentStorage.releaseFile(file1);
+    contentStorage.releaseFile(file2);
+    contentStorage.close();
+    assertFalse(Files.exists(file1));
+    assertFalse(Files.exists(file1.getParent()));
+    assertThrows(IOException.class, () -> contentStorage.acquireFile("prefix_", null));
+  }
+
+  @Test
+  void testSmallContentIsKeptInMemory(@TempDir Path directory) throws IOException {
+    final byte[] content = {1, 2, 3};
+    try (final ContentStorage contentStorage = new ContentStorage(directory, content.length);
+        final ResourceImpl resource = createResource(contentStorage)) {
+
+      // Add small content: it should be in memory.
+      resource.markAsWithContent(new ByteArrayInputStream(content));
+      assertTrue(resource.hasContent());
+      assertEquals(Long.valueOf(content.length), resource.getContentSize());
+      assertNull(resource.getContentPath());
+      try (final InputStream stream = resource.getContentStream()) {
+        assertArrayEquals(content, stream.readAllBytes());
+      }
+
+      // Move it to a file.
+      resource.moveContentToFile();
+      assertNotNull(resource.getContentPath());
+      assertArrayEquals(content, Files.readAllBytes(resource.getContentPath()));
+      assertEquals(Long.valueOf(content.length), resource.getContentSize());
+
+      // Remove the content.
+      resource.markAsNoContent();
+      assertFalse(resource.hasContent());
+      assertNull(resource.getContentPath());
+    }
+  }
+
+  @Test
+  void testLargeContentIsKeptInFile(@TempDir Path directory) throws IOException {
+    final byte[] content = {1, 2, 3, 4};
+    try (final ContentStorage contentStorage = new ContentStorage(directory, content.length - 1);
+        final ResourceImpl resource = createResource(contentStorage)) {
+      resource.markAsWithContent(new ByteArrayInputStream(content));
+      assertNotNull(resource.getContentPath());
+      assertArrayEquals(content, Files.readAllBytes(resource.getContentPath()));
+      assertEquals(Long.valueOf(content.length), resource.getContentSize());
+    }
+  }
+}
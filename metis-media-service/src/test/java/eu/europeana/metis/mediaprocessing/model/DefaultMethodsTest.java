@@ -0,0 +1,85 @@
+package eu.europeana.metis.mediaprocessing.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+
+/**
+ * Tests the default methods of {@link Resource} and {@link Thumbnail}, which apply to
+ * implementations that were written before these methods were introduced.
+ */
+class DefaultMethodsTest {
+
+  private static <T> T mockWithDefaultMethods(Class<T> type) {
+    return mock(type, withSettings().defaultAnswer(Answers.CALLS_REAL_METHODS));
+  }
+
+  @Test
+  void testThumbnailContentBuffer() throws IOException {
+    final byte[] content = {1, 2, 3};
+    final Thumbnail thumbnail = mockWithDefaultMethods(Thumbnail.class);
+    doReturn(new ByteArrayInputStream(content)).when(thumbnail).getContentStream();
+    final ByteBuffer buffer = thumbnail.getContentBuffer();
+    assertTrue(buffer.isReadOnly());
+    final byte[] result = new byte[buffer.remaining()];
+    buffer.get(result);
+    assertArrayEquals(content, result);
+  }
+
+  @Test
+  void testResourceDefaults() throws IOException {
+    final Resource resource = mockWithDefaultMethods(Resource.class);
+    assertSame(ResourceValidators.NONE, resource.getValidators());
+    assertFalse(resource.isNotModified());
+    assertNull(resource.getDetectedMimeType());
+  }
+
+  @Test
+  void testResourceMoveContentToFile() throws IOException {
+    final Resource resource = mockWithDefaultMethods(Resource.class);
+
+    // No content: nothing to do.
+    doReturn(null).when(resource).getContentPath();
+    doReturn(false).when(resource).hasContent();
+    resource.moveContentToFile();
+
+    // Content already in a file: nothing to do.
+    doReturn(Paths.get("content")).when(resource).getContentPath();
+    doReturn(true).when(resource).hasContent();
+    resource.moveContentToFile();
+
+    // Content not in a file: this can't be resolved.
+    doReturn(null).when(resource).getContentPath();
+    assertThrows(IOException.class, resource::moveContentToFile);
+  }
+
+  @Test
+  void testResourceCreateContentFile() throws IOException {
+    final Resource resource = mockWithDefaultMethods(Resource.class);
+    final Path path = Paths.get("content");
+    doReturn(path).when(resource).getContentPath();
+    assertEquals(path, resource.createContentFile());
+    verify(resource).markAsWithContent(any(InputStream.class));
+
+    doReturn(null).when(resource).getContentPath();
+    assertThrows(IOException.class, resource::createContentFile);
+  }
+}